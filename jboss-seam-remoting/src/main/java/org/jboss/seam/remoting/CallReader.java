@@ -0,0 +1,257 @@
+package org.jboss.seam.remoting;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.jboss.seam.remoting.wrapper.Wrapper;
+
+/**
+ * Reads the calls of a remoting request with a pull parser, straight
+ * from the request stream. The envelope is never held in memory;
+ * only the refs and params of one call at a time are read into DOM4J
+ * elements, which are what the wrappers unmarshal their values from.
+ *
+ * The context in the header is read first, so that the conversation
+ * can be restored before the calls are read.
+ */
+public class CallReader
+{
+  private static final XMLInputFactory factory = createFactory();
+
+  private final XMLStreamReader reader;
+
+  private static XMLInputFactory createFactory()
+  {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  /**
+   * @param in InputStream the request body
+   * @param encoding String the request encoding, or null to detect it
+   *        from the XML declaration
+   * @throws XMLStreamException
+   */
+  public CallReader(InputStream in, String encoding) throws XMLStreamException
+  {
+    reader = encoding == null ? factory.createXMLStreamReader(in) :
+        factory.createXMLStreamReader(in, encoding);
+  }
+
+  /**
+   * Reads the envelope header, and leaves the reader at the start of
+   * the body.
+   *
+   * @return RequestContext
+   * @throws XMLStreamException
+   */
+  public RequestContext readContext() throws XMLStreamException
+  {
+    RequestContext ctx = new RequestContext();
+
+    // The envelope
+    if (!nextStartElement())
+    {
+      throw new XMLStreamException("Empty remoting request");
+    }
+
+    while (nextStartElement())
+    {
+      if ("body".equals(reader.getLocalName()))
+      {
+        return ctx;
+      }
+      else if ("header".equals(reader.getLocalName()))
+      {
+        Element header = readElement();
+        Element context = header.element("context");
+        if (context != null)
+        {
+          Element convId = context.element("conversationId");
+          if (convId != null)
+          {
+            ctx.setConversationId(convId.getText());
+          }
+        }
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+
+    throw new XMLStreamException("No body found in remoting request");
+  }
+
+  /**
+   * Reads the calls in the body. Must be called after readContext().
+   *
+   * @return List the calls, in the order they were sent
+   * @throws Exception
+   */
+  public List<Call> readCalls() throws Exception
+  {
+    List<Call> calls = new ArrayList<Call>();
+
+    while (nextStartElement())
+    {
+      if ("call".equals(reader.getLocalName()))
+      {
+        calls.add(readCall());
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+
+    return calls;
+  }
+
+  public void close() throws XMLStreamException
+  {
+    reader.close();
+  }
+
+  private Call readCall() throws Exception
+  {
+    Call call = new Call(reader.getAttributeValue(null, "id"),
+                         reader.getAttributeValue(null, "component"),
+                         reader.getAttributeValue(null, "method"));
+
+    // The params are sent before the refs they use, so hold on to
+    // them until the refs have been read
+    List<Element> refs = new ArrayList<Element>();
+    List<Element> params = new ArrayList<Element>();
+
+    while (nextStartElement())
+    {
+      String name = reader.getLocalName();
+      if ("refs".equals(name) || "params".equals(name))
+      {
+        List<Element> children = "refs".equals(name) ? refs : params;
+        while (nextStartElement())
+        {
+          children.add(readElement());
+        }
+      }
+      else
+      {
+        skipElement();
+      }
+    }
+
+    // First reconstruct all the references
+    for (Element ref : refs)
+    {
+      if ("ref".equals(ref.getName()))
+      {
+        call.getContext().createWrapperFromElement(ref);
+      }
+    }
+
+    // Now unmarshal the ref values
+    for (Wrapper w : call.getContext().getInRefs().values())
+    {
+      w.unmarshal();
+    }
+
+    // Then process the param values
+    for (Element param : params)
+    {
+      if ("param".equals(param.getName()))
+      {
+        call.addParameter(call.getContext().createWrapperFromElement(
+          (Element) param.elementIterator().next()));
+      }
+    }
+
+    return call;
+  }
+
+  /**
+   * Moves to the next child element of the current element.
+   *
+   * @return boolean true if the reader is at the start of a child
+   *         element, false if it is at the end of the current element
+   */
+  private boolean nextStartElement() throws XMLStreamException
+  {
+    while (reader.hasNext())
+    {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+      {
+        return true;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT)
+      {
+        return false;
+      }
+      else if (event == XMLStreamConstants.DTD)
+      {
+        throw new XMLStreamException("DOCTYPE is not allowed in remoting requests");
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the current element and its children into a DOM4J element,
+   * and leaves the reader at the end of the element.
+   */
+  private Element readElement() throws XMLStreamException
+  {
+    Element element = DocumentHelper.createElement(reader.getLocalName());
+    for (int i = 0; i < reader.getAttributeCount(); i++)
+    {
+      element.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+    }
+
+    while (reader.hasNext())
+    {
+      switch (reader.next())
+      {
+        case XMLStreamConstants.START_ELEMENT:
+          element.add(readElement());
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          element.addText(reader.getText());
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          return element;
+      }
+    }
+    return element;
+  }
+
+  private void skipElement() throws XMLStreamException
+  {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext())
+    {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT)
+      {
+        depth++;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT)
+      {
+        depth--;
+      }
+    }
+  }
+}
@@ -18,6 +18,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -47,7 +49,7 @@ public class InterfaceGenerator extends BaseRequestHandler implements RequestHan
   /**
    * Maintain a cache of the accessible fields
    */
-  private static Map<Class,Set<String>> accessibleProperties = new HashMap<Class,Set<String>>();
+  private static ConcurrentMap<Class,Set<String>> accessibleProperties = new ConcurrentHashMap<Class,Set<String>>();
 
   /**
    * A cache of component interfaces, keyed by component name.
@@ -148,102 +150,103 @@ public class InterfaceGenerator extends BaseRequestHandler implements RequestHan
     if (cls.getName().contains("EnhancerByCGLIB"))
       cls = cls.getSuperclass();
 
-    if (!accessibleProperties.containsKey(cls))
+    Set<String> properties = accessibleProperties.get(cls);
+    if (properties == null)
     {
-      synchronized(accessibleProperties)
+      // Two threads may both compute the properties of a class, in which
+      // case the first result put in the cache is kept
+      properties = new HashSet<String>();
+
+      Class c = cls;
+      while (c != null && !c.equals(Object.class))
       {
-        if (!accessibleProperties.containsKey(cls))
+        for (Field f : c.getDeclaredFields())
         {
-          Set<String> properties = new HashSet<String>();
-
-          Class c = cls;
-          while (c != null && !c.equals(Object.class))
+          if (!Modifier.isTransient(f.getModifiers()) &&
+              !Modifier.isStatic(f.getModifiers()))
           {
-            for (Field f : c.getDeclaredFields())
+            String fieldName = f.getName().substring(0, 1).toUpperCase() +
+                f.getName().substring(1);
+            String getterName = String.format("get%s", fieldName);
+            String setterName = String.format("set%s", fieldName);
+            Method getMethod = null;
+            Method setMethod = null;
+
+            try
             {
-              if (!Modifier.isTransient(f.getModifiers()) &&
-                  !Modifier.isStatic(f.getModifiers()))
-              {
-                String fieldName = f.getName().substring(0, 1).toUpperCase() +
-                    f.getName().substring(1);
-                String getterName = String.format("get%s", fieldName);
-                String setterName = String.format("set%s", fieldName);
-                Method getMethod = null;
-                Method setMethod = null;
-
-                try
-                {
-                  getMethod = c.getMethod(getterName);
-                }
-                catch (SecurityException ex)
-                {}
-                catch (NoSuchMethodException ex)
-                {
-                  // it might be an "is" method...
-                  getterName = String.format("is%s", fieldName);
-                  try
-                  {
-                    getMethod = c.getMethod(getterName);
-                  }
-                  catch (NoSuchMethodException ex2)
-                  { /* don't care */}
-                }
-
-                try
-                {
-                  setMethod = c.getMethod(setterName, new Class[] {f.getType()});
-                }
-                catch (SecurityException ex)
-                {}
-                catch (NoSuchMethodException ex)
-                { /* don't care */}
-
-                if (Modifier.isPublic(f.getModifiers()) ||
-                    (getMethod != null &&
-                     Modifier.isPublic(getMethod.getModifiers()) ||
-                     (setMethod != null &&
-                      Modifier.isPublic(setMethod.getModifiers()))))
-                {
-                  properties.add(f.getName());
-                }
-              }
+              getMethod = c.getMethod(getterName);
             }
-
-            //
-            for (Method m : c.getDeclaredMethods())
+            catch (SecurityException ex)
+            {}
+            catch (NoSuchMethodException ex)
             {
-              if (m.getName().startsWith("get") || m.getName().startsWith("is"))
+              // it might be an "is" method...
+              getterName = String.format("is%s", fieldName);
+              try
               {
-                int startIdx = m.getName().startsWith("get") ? 3 : 2;
-
-                try
-                {
-                  c.getMethod(String.format("set%s",
-                                            m.getName().substring(startIdx)), m.getReturnType());
-                }
-                catch (NoSuchMethodException ex)
-                {
-                  continue;
-                }
-
-                String propertyName = String.format("%s%s",
-                    Character.toLowerCase(m.getName().charAt(startIdx)),
-                    m.getName().substring(startIdx + 1));
-
-                if (!properties.contains(propertyName))
-                  properties.add(propertyName);
+                getMethod = c.getMethod(getterName);
               }
+              catch (NoSuchMethodException ex2)
+              { /* don't care */}
             }
 
-            c = c.getSuperclass();
+            try
+            {
+              setMethod = c.getMethod(setterName, new Class[] {f.getType()});
+            }
+            catch (SecurityException ex)
+            {}
+            catch (NoSuchMethodException ex)
+            { /* don't care */}
+
+            if (Modifier.isPublic(f.getModifiers()) ||
+                (getMethod != null &&
+                 Modifier.isPublic(getMethod.getModifiers()) ||
+                 (setMethod != null &&
+                  Modifier.isPublic(setMethod.getModifiers()))))
+            {
+              properties.add(f.getName());
+            }
           }
+        }
+
+        //
+        for (Method m : c.getDeclaredMethods())
+        {
+          if (m.getName().startsWith("get") || m.getName().startsWith("is"))
+          {
+            int startIdx = m.getName().startsWith("get") ? 3 : 2;
+
+            try
+            {
+              c.getMethod(String.format("set%s",
+                                        m.getName().substring(startIdx)), m.getReturnType());
+            }
+            catch (NoSuchMethodException ex)
+            {
+              continue;
+            }
 
-          accessibleProperties.put(cls, properties);
+            String propertyName = String.format("%s%s",
+                Character.toLowerCase(m.getName().charAt(startIdx)),
+                m.getName().substring(startIdx + 1));
+
+            if (!properties.contains(propertyName))
+              properties.add(propertyName);
+          }
         }
+
+        c = c.getSuperclass();
+      }
+
+      Set<String> existing = accessibleProperties.putIfAbsent(cls, properties);
+      if (existing != null)
+      {
+        properties = existing;
       }
     }
 
-    return accessibleProperties.get(cls);
+    return properties;
   }
 
   /**
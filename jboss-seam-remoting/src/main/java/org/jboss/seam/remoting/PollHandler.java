@@ -9,6 +9,7 @@ import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.ObjectMessage;
 import javax.jms.TextMessage;
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -17,8 +18,11 @@ import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.remoting.messaging.PendingPoll;
 import org.jboss.seam.remoting.messaging.PollError;
 import org.jboss.seam.remoting.messaging.PollRequest;
+import org.jboss.seam.remoting.messaging.RemoteSubscriber;
+import org.jboss.seam.remoting.messaging.SubscriptionRegistry;
 import org.jboss.seam.remoting.wrapper.Wrapper;
 import org.jboss.seam.servlet.ContextualHttpServletRequest;
 import org.jboss.seam.util.XML;
@@ -50,27 +54,48 @@ public class PollHandler extends BaseRequestHandler implements RequestHandler
   private static final byte[] VALUE_TAG_OPEN = "<value>".getBytes();
   private static final byte[] VALUE_TAG_CLOSE = "</value>".getBytes();
 
-  public void handle(HttpServletRequest request, final HttpServletResponse response)
+  private static final String PARKED_POLLS_ATTRIBUTE = PollHandler.class.getName() + ".parkedPolls";
+
+  public void handle(final HttpServletRequest request, final HttpServletResponse response)
       throws Exception
   {
     // We're sending an XML response, so set the response content type to text/xml
     response.setContentType("text/xml");
 
-    // Parse the incoming request as XML
-    SAXReader xmlReader = XML.getSafeSaxReader();
-    Document doc = xmlReader.read(request.getInputStream());
-    Element env = doc.getRootElement();
+    // A parked poll is dispatched back here once it has been woken
+    final List<PollRequest> parked = (List<PollRequest>) request.getAttribute(PARKED_POLLS_ATTRIBUTE);
+    final List<PollRequest> polls;
+    if (parked != null)
+    {
+      request.removeAttribute(PARKED_POLLS_ATTRIBUTE);
+      polls = parked;
+    }
+    else
+    {
+      // Parse the incoming request as XML
+      SAXReader xmlReader = XML.getSafeSaxReader();
+      Document doc = xmlReader.read(request.getInputStream());
+      Element env = doc.getRootElement();
 
-    final List<PollRequest> polls = unmarshalRequests(env);
+      polls = unmarshalRequests(env);
+    }
 
     new ContextualHttpServletRequest(request)
     {
        @Override
        public void process() throws Exception
        {        
+          if (parked == null && park(request, polls))
+          {
+             return;
+          }
+
           for (PollRequest req : polls)
           {
-             req.poll();
+             if (parked != null)
+                req.receive();
+             else
+                req.poll();
           }
       
           // Package up the response
@@ -79,6 +104,46 @@ public class PollHandler extends BaseRequestHandler implements RequestHandler
     }.run();
   }
 
+  /**
+   * Suspends the request until a message arrives for one of the polled
+   * subscriptions or the poll times out, if the subscriptions are buffered
+   * and none of them has a message already.
+   *
+   * @return boolean true if the request was suspended
+   */
+  private boolean park(HttpServletRequest request, List<PollRequest> polls)
+  {
+    SubscriptionRegistry registry = SubscriptionRegistry.instance();
+    if (!registry.isAsyncPoll() || !request.isAsyncSupported())
+    {
+      return false;
+    }
+
+    int timeout = 0;
+    List<RemoteSubscriber> subscribers = new ArrayList<RemoteSubscriber>(polls.size());
+    for (PollRequest req : polls)
+    {
+      RemoteSubscriber subscriber = registry.getSubscription(req.getToken());
+      if (subscriber == null || !subscriber.isBuffered() || subscriber.hasMessages())
+      {
+        // There is something to send already
+        return false;
+      }
+      subscribers.add(subscriber);
+      timeout = Math.max(timeout, req.getTimeout());
+    }
+
+    if (timeout == 0)
+    {
+      return false;
+    }
+
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(timeout * 1000L);
+    request.setAttribute(PARKED_POLLS_ATTRIBUTE, polls);
+    new PendingPoll(asyncContext, subscribers, registry.getPollStatistics()).park();
+    return true;
+  }
 
   private List<PollRequest> unmarshalRequests(Element env)
       throws Exception
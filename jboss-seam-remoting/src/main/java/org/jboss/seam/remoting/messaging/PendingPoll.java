@@ -0,0 +1,96 @@
+package org.jboss.seam.remoting.messaging;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+
+/**
+ * A poll request which has been suspended until a message arrives for
+ * one of its subscriptions, or it times out. The request is woken only
+ * once, by dispatching it back to the PollHandler, which writes the
+ * buffered messages in the response.
+ */
+public class PendingPoll implements AsyncListener
+{
+  private final AsyncContext asyncContext;
+  private final List<RemoteSubscriber> subscribers;
+  private final PollStatistics statistics;
+
+  private final AtomicBoolean woken = new AtomicBoolean();
+
+  public PendingPoll(AsyncContext asyncContext, List<RemoteSubscriber> subscribers,
+      PollStatistics statistics)
+  {
+    this.asyncContext = asyncContext;
+    this.subscribers = subscribers;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Parks the poll on each of its subscribers, or wakes it straight away
+   * if one of them has buffered messages.
+   */
+  public void park()
+  {
+    asyncContext.addListener(this);
+    statistics.pollParked();
+
+    for (RemoteSubscriber subscriber : subscribers)
+    {
+      if (woken.get())
+        break;
+
+      if (!subscriber.park(this))
+      {
+        wake();
+        break;
+      }
+    }
+  }
+
+  public boolean isWoken()
+  {
+    return woken.get();
+  }
+
+  public void wake()
+  {
+    if (release())
+      asyncContext.dispatch();
+  }
+
+  private boolean release()
+  {
+    if (!woken.compareAndSet(false, true))
+      return false;
+
+    for (RemoteSubscriber subscriber : subscribers)
+    {
+      subscriber.unpark(this);
+    }
+    statistics.pollWoken();
+    return true;
+  }
+
+  public void onTimeout(AsyncEvent event) throws IOException
+  {
+    wake();
+  }
+
+  public void onError(AsyncEvent event) throws IOException
+  {
+    if (release())
+      asyncContext.complete();
+  }
+
+  public void onComplete(AsyncEvent event) throws IOException
+  {
+    release();
+  }
+
+  public void onStartAsync(AsyncEvent event) throws IOException { }
+}
@@ -38,7 +38,30 @@ public class PollRequest
     return errors;
   }
 
+  public int getTimeout()
+  {
+    return timeout;
+  }
+
+  /**
+   * Receives the messages for the subscription, waiting up to the
+   * timeout for the first one.
+   */
   public void poll()
+  {
+    poll(timeout);
+  }
+
+  /**
+   * Receives the messages which have already arrived for the
+   * subscription, without waiting.
+   */
+  public void receive()
+  {
+    poll(0);
+  }
+
+  private void poll(int timeout)
   {
     RemoteSubscriber subscriber = SubscriptionRegistry.instance().getSubscription(token);
     if (subscriber != null)
@@ -0,0 +1,100 @@
+package org.jboss.seam.remoting.messaging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the polls parked waiting for messages, and of the
+ * messages delivered from subscription buffers.
+ *
+ * @see SubscriptionRegistry#getPollStatistics()
+ */
+public class PollStatistics
+{
+  private final AtomicInteger parkedPolls = new AtomicInteger();
+  private final AtomicLong parkedPollCount = new AtomicLong();
+  private final AtomicLong deliveredMessageCount = new AtomicLong();
+  private final AtomicLong totalDeliveryLatency = new AtomicLong();
+  private final AtomicLong maxDeliveryLatency = new AtomicLong();
+  private final AtomicLong droppedMessageCount = new AtomicLong();
+
+  void pollParked()
+  {
+    parkedPolls.incrementAndGet();
+    parkedPollCount.incrementAndGet();
+  }
+
+  void pollWoken()
+  {
+    parkedPolls.decrementAndGet();
+  }
+
+  void messageDelivered(long latency)
+  {
+    deliveredMessageCount.incrementAndGet();
+    totalDeliveryLatency.addAndGet(latency);
+
+    long max = maxDeliveryLatency.get();
+    while (latency > max && !maxDeliveryLatency.compareAndSet(max, latency))
+    {
+      max = maxDeliveryLatency.get();
+    }
+  }
+
+  void messageDropped()
+  {
+    droppedMessageCount.incrementAndGet();
+  }
+
+  /**
+   * @return the number of polls currently parked
+   */
+  public int getParkedPolls()
+  {
+    return parkedPolls.get();
+  }
+
+  /**
+   * @return the number of polls parked since the application started
+   */
+  public long getParkedPollCount()
+  {
+    return parkedPollCount.get();
+  }
+
+  /**
+   * @return the number of buffered messages delivered to clients
+   */
+  public long getDeliveredMessageCount()
+  {
+    return deliveredMessageCount.get();
+  }
+
+  /**
+   * @return the average time in milliseconds a message was buffered
+   *         before it was delivered to a client
+   */
+  public long getAverageDeliveryLatency()
+  {
+    long count = deliveredMessageCount.get();
+    return count == 0 ? 0 : totalDeliveryLatency.get() / count;
+  }
+
+  /**
+   * @return the longest time in milliseconds a message was buffered
+   *         before it was delivered to a client
+   */
+  public long getMaxDeliveryLatency()
+  {
+    return maxDeliveryLatency.get();
+  }
+
+  /**
+   * @return the number of messages dropped because a subscription's
+   *         buffer was full
+   */
+  public long getDroppedMessageCount()
+  {
+    return droppedMessageCount.get();
+  }
+}
@@ -1,20 +1,30 @@
 package org.jboss.seam.remoting.messaging;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageListener;
 import javax.jms.Topic;
 import javax.jms.TopicConnection;
 import javax.jms.TopicSession;
 import javax.jms.TopicSubscriber;
 
 /**
+ * A client's subscription to a topic.
+ *
+ * By default messages are received when the client polls, blocking the
+ * polling thread until a message arrives or the poll times out. If the
+ * subscriber is created with a buffer size, messages are instead
+ * delivered to the subscriber as they arrive and held in a buffer
+ * until they are polled, and a parked poll is woken when a message
+ * arrives. If the buffer is full, the oldest message is dropped.
  *
  * @author Shane Bryzak
  */
-public class RemoteSubscriber
+public class RemoteSubscriber implements MessageListener
 {
   private String token;
   private String topicName;
@@ -23,12 +33,46 @@ public class RemoteSubscriber
   private TopicSession topicSession;
   private TopicSubscriber subscriber;
 
+  private int maxBufferedMessages;
+  private PollStatistics statistics;
+
+  private final LinkedList<BufferedMessage> buffer = new LinkedList<BufferedMessage>();
+  private PendingPoll pendingPoll;
+
+  /**
+   * A message, and the time it was received
+   */
+  private static class BufferedMessage
+  {
+    private final Message message;
+    private final long received = System.currentTimeMillis();
+
+    private BufferedMessage(Message message)
+    {
+      this.message = message;
+    }
+  }
+
   public RemoteSubscriber(String token, String topicName)
   {
     this.token = token;
     this.topicName = topicName;
   }
 
+  /**
+   * @param maxBufferedMessages int the number of messages held until
+   *        they are polled, or 0 to receive messages when polled
+   * @param statistics PollStatistics the statistics to record buffered
+   *        messages in
+   */
+  public RemoteSubscriber(String token, String topicName, int maxBufferedMessages,
+      PollStatistics statistics)
+  {
+    this(token, topicName);
+    this.maxBufferedMessages = maxBufferedMessages;
+    this.statistics = statistics;
+  }
+
   public String getToken()
   {
     return token;
@@ -45,6 +89,16 @@ public class RemoteSubscriber
     topicSession = conn.createTopicSession(false, javax.jms.Session.AUTO_ACKNOWLEDGE);
     topic = topicSession.createTopic(topicName);
     subscriber = topicSession.createSubscriber(topic);
+
+    if (isBuffered())
+    {
+      subscriber.setMessageListener(this);
+    }
+  }
+
+  public boolean isBuffered()
+  {
+    return maxBufferedMessages > 0;
   }
 
   public void unsubscribe()
@@ -61,6 +115,16 @@ public class RemoteSubscriber
       topicSession.close();
     }
     catch (JMSException ex) { }
+
+    // Don't keep a parked poll waiting for a subscription that is gone
+    PendingPoll poll;
+    synchronized(buffer)
+    {
+      poll = pendingPoll;
+      pendingPoll = null;
+    }
+    if (poll != null)
+      poll.wake();
   }
 
   public void setTopicSubscriber(TopicSubscriber subscriber)
@@ -73,9 +137,87 @@ public class RemoteSubscriber
     return subscriber;
   }
 
+  /**
+   * Buffers a message delivered to a buffered subscriber, and wakes the
+   * poll parked on the subscriber, if there is one.
+   */
+  public void onMessage(Message message)
+  {
+    PendingPoll poll;
+    synchronized(buffer)
+    {
+      if (buffer.size() >= maxBufferedMessages)
+      {
+        buffer.removeFirst();
+        statistics.messageDropped();
+      }
+      buffer.add(new BufferedMessage(message));
+      buffer.notifyAll();
+
+      poll = pendingPoll;
+      pendingPoll = null;
+    }
+
+    if (poll != null)
+      poll.wake();
+  }
+
+  /**
+   * Parks a poll on a buffered subscriber, to be woken when a message
+   * arrives. A poll already parked on the subscriber is woken, since a
+   * client only waits for one poll at a time.
+   *
+   * @return boolean false if there are buffered messages already, in
+   *         which case the poll is not parked
+   */
+  public boolean park(PendingPoll poll)
+  {
+    PendingPoll previous;
+    synchronized(buffer)
+    {
+      if (!buffer.isEmpty())
+        return false;
+
+      previous = pendingPoll;
+      pendingPoll = poll;
+    }
+
+    if (previous != null && previous != poll)
+      previous.wake();
+    return true;
+  }
+
+  public void unpark(PendingPoll poll)
+  {
+    synchronized(buffer)
+    {
+      if (pendingPoll == poll)
+        pendingPoll = null;
+    }
+  }
+
+  public boolean hasMessages()
+  {
+    synchronized(buffer)
+    {
+      return !buffer.isEmpty();
+    }
+  }
+
+  /**
+   * Returns the messages received since the last poll, waiting up to
+   * timeout seconds for the first message.
+   *
+   * @return List the messages, or null if there are none
+   */
   public List<Message> poll(int timeout)
       throws JMSException
   {
+    if (isBuffered())
+    {
+      return pollBuffer(timeout);
+    }
+
     List<Message> messages = null;
 
     Message m = null;
@@ -100,4 +242,39 @@ public class RemoteSubscriber
 
     return messages;
   }
+
+  private List<Message> pollBuffer(int timeout)
+  {
+    synchronized(buffer)
+    {
+      long end = System.currentTimeMillis() + timeout * 1000L;
+      long wait = timeout * 1000L;
+      while (buffer.isEmpty() && wait > 0)
+      {
+        try
+        {
+          buffer.wait(wait);
+        }
+        catch (InterruptedException ex)
+        {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        wait = end - System.currentTimeMillis();
+      }
+
+      if (buffer.isEmpty())
+        return null;
+
+      long now = System.currentTimeMillis();
+      List<Message> messages = new ArrayList<Message>(buffer.size());
+      for (BufferedMessage m : buffer)
+      {
+        messages.add(m.message);
+        statistics.messageDelivered(now - m.received);
+      }
+      buffer.clear();
+      return messages;
+    }
+  }
 }
@@ -41,6 +41,12 @@ public class SubscriptionRegistry
 
   private Map<String,RemoteSubscriber> subscriptions = new ConcurrentHashMap<String,RemoteSubscriber>();
 
+  private boolean asyncPoll;
+
+  private int maxBufferedMessages = 100;
+
+  private final PollStatistics pollStatistics = new PollStatistics();
+
   /**
    * Contains a list of all the topics that clients are allowed to subscribe to.
    */
@@ -68,6 +74,42 @@ public class SubscriptionRegistry
     this.allowedTopics = allowedTopics;
   }
 
+  /**
+   * If true, messages are buffered as they arrive, and polls which find
+   * no messages are suspended as asynchronous requests instead of
+   * blocking a request thread. The remoting servlet, and any filters
+   * in front of it, must support asynchronous requests; otherwise polls
+   * wait for the buffer in the request thread.
+   */
+  public boolean isAsyncPoll()
+  {
+    return asyncPoll;
+  }
+
+  public void setAsyncPoll(boolean asyncPoll)
+  {
+    this.asyncPoll = asyncPoll;
+  }
+
+  /**
+   * The number of messages buffered for each subscription when asyncPoll
+   * is enabled. When the buffer is full the oldest message is dropped.
+   */
+  public int getMaxBufferedMessages()
+  {
+    return maxBufferedMessages;
+  }
+
+  public void setMaxBufferedMessages(int maxBufferedMessages)
+  {
+    this.maxBufferedMessages = maxBufferedMessages;
+  }
+
+  public PollStatistics getPollStatistics()
+  {
+    return pollStatistics;
+  }
+
   public String getConnectionProvider()
   {
     return connectionProvider;
@@ -110,7 +152,10 @@ public class SubscriptionRegistry
         "allowed topic.", topicName));
     }
 
-    RemoteSubscriber sub = new RemoteSubscriber(UUID.randomUUID().toString(), topicName);
+    RemoteSubscriber sub = asyncPoll ?
+        new RemoteSubscriber(UUID.randomUUID().toString(), topicName,
+            maxBufferedMessages, pollStatistics) :
+        new RemoteSubscriber(UUID.randomUUID().toString(), topicName);
 
     try {
       subscribe(sub);
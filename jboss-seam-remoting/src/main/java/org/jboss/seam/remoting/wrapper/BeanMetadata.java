@@ -0,0 +1,212 @@
+package org.jboss.seam.remoting.wrapper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.seam.remoting.InterfaceGenerator;
+
+/**
+ * The reflective metadata BeanWrapper needs to read and write the
+ * properties of a class, looked up once per class and shared by
+ * all requests.
+ */
+class BeanMetadata
+{
+  private static final ConcurrentMap<Class, BeanMetadata> metadata = new ConcurrentHashMap<Class, BeanMetadata>();
+
+  /**
+   * The setter methods with a single parameter, by method name
+   */
+  private final Map<String, List<Method>> setters = new HashMap<String, List<Method>>();
+
+  /**
+   * The fields declared by the class and its superclasses, by name.
+   * A field is made accessible when it is first looked up.
+   */
+  private final Map<String, Field> fields = new HashMap<String, Field>();
+
+  /**
+   * The accessible properties which can be read, in the order they
+   * are serialized
+   */
+  private final List<Property> properties = new ArrayList<Property>();
+
+  /**
+   * A readable property, read from a public field or a getter method
+   */
+  static class Property
+  {
+    private final String name;
+    private final Field field;
+    private final Method getter;
+
+    private Property(String name, Field field, Method getter)
+    {
+      this.name = name;
+      this.field = field;
+      this.getter = getter;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    public boolean isField()
+    {
+      return field != null;
+    }
+
+    public Object getValue(Object bean)
+      throws IllegalAccessException, InvocationTargetException
+    {
+      return field != null ? field.get(bean) : getter.invoke(bean);
+    }
+  }
+
+  private BeanMetadata(Class cls)
+  {
+    for (Method m : cls.getMethods())
+    {
+      if (m.getName().startsWith("set") && m.getParameterTypes().length == 1)
+      {
+        List<Method> candidates = setters.get(m.getName());
+        if (candidates == null)
+        {
+          candidates = new ArrayList<Method>(1);
+          setters.put(m.getName(), candidates);
+        }
+        candidates.add(m);
+      }
+    }
+
+    for (Class c = cls; c != null && !c.equals(Object.class); c = c.getSuperclass())
+    {
+      for (Field f : c.getDeclaredFields())
+      {
+        if (!fields.containsKey(f.getName()))
+        {
+          fields.put(f.getName(), f);
+        }
+      }
+    }
+
+    for (String propertyName : InterfaceGenerator.getAccessibleProperties(cls))
+    {
+      Field f = null;
+      try
+      {
+        f = cls.getField(propertyName);
+        makeAccessible(f);
+      }
+      catch (NoSuchFieldException ex) { }
+
+      Method getter = null;
+      if (f == null)
+      {
+        String suffix = Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+        try
+        {
+          getter = cls.getMethod("get" + suffix);
+        }
+        catch (NoSuchMethodException ex)
+        {
+          try
+          {
+            getter = cls.getMethod("is" + suffix);
+          }
+          catch (NoSuchMethodException ex2)
+          {
+            // a property with a setter only can't be read
+            continue;
+          }
+        }
+      }
+
+      properties.add(new Property(propertyName, f, getter));
+    }
+  }
+
+  /**
+   * Makes a field accessible if the security manager or, from Java 9,
+   * the module of the class allows it. Otherwise the field is used as
+   * it is, and can only be accessed if it is public.
+   */
+  private static void makeAccessible(Field f)
+  {
+    try
+    {
+      f.setAccessible(true);
+    }
+    catch (RuntimeException ex) { }
+  }
+
+  static BeanMetadata forClass(Class cls)
+  {
+    BeanMetadata result = metadata.get(cls);
+    if (result == null)
+    {
+      BeanMetadata newMetadata = new BeanMetadata(cls);
+      result = metadata.putIfAbsent(cls, newMetadata);
+      if (result == null)
+      {
+        result = newMetadata;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the setter method for a property which best fits the
+   * value of a wrapper, or null if there is none
+   */
+  Method getSetter(String name, Wrapper w)
+  {
+    String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    List<Method> candidates = setters.get(setter);
+    if (candidates == null)
+    {
+      return null;
+    }
+
+    Method method = null;
+    ConversionScore score = ConversionScore.nomatch;
+    for (Method m : candidates)
+    {
+      ConversionScore s = w.conversionScore(m.getParameterTypes()[0]);
+      if (s.getScore() > score.getScore())
+      {
+        method = m;
+        score = s;
+      }
+    }
+    return method;
+  }
+
+  /**
+   * Returns the field with the given name, declared by the class or
+   * one of its superclasses, or null if there is none
+   */
+  Field getField(String name)
+  {
+    Field f = fields.get(name);
+    if (f != null && !f.isAccessible())
+    {
+      makeAccessible(f);
+    }
+    return f;
+  }
+
+  List<Property> getProperties()
+  {
+    return Collections.unmodifiableList(properties);
+  }
+}
@@ -11,7 +11,6 @@ import java.util.List;
 import org.dom4j.Element;
 import org.jboss.seam.Component;
 import org.jboss.seam.Seam;
-import org.jboss.seam.remoting.InterfaceGenerator;
 import org.jboss.seam.util.Reflections;
 
 /**
@@ -65,45 +64,18 @@ public class BeanWrapper extends BaseWrapper implements Wrapper
 
       Wrapper w = context.createWrapperFromElement((Element) member.elementIterator().next());
 
-      Class cls = value.getClass();
+      BeanMetadata metadata = BeanMetadata.forClass(value.getClass());
 
       // We're going to try a combination of ways to set the property value here
-      Method method = null;
       Field field = null;
               
       // First try to find the best matching method
-      String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
-      
-      ConversionScore score = ConversionScore.nomatch;
-      for (Method m : cls.getMethods())
-      {
-         if (setter.equals(m.getName()) && m.getParameterTypes().length == 1)
-         {
-            ConversionScore s = w.conversionScore(m.getParameterTypes()[0]);
-            if (s.getScore() > score.getScore())
-            {
-               method = m;
-               score = s;
-            }
-         }
-      }    
+      Method method = metadata.getSetter(name, w);
       
       // If we can't find a method, look for a matching field name
       if (method == null)
       {
-         while (field == null && !cls.equals(Object.class))
-         {
-           try
-           {
-             // First check the declared fields
-             field = cls.getDeclaredField(name);
-           }
-           catch (NoSuchFieldException ex)
-           {
-             // Couldn't find the field.. try the superclass
-             cls = cls.getSuperclass();
-           }
-         }
+         field = metadata.getField(name);
 
          if (field == null)
          {
@@ -139,21 +111,14 @@ public class BeanWrapper extends BaseWrapper implements Wrapper
       else
       {
          // Otherwise try to set the field value directly
-         boolean accessible = field.isAccessible();
          try
          {
-           if (!accessible)
-             field.setAccessible(true);
            field.set(value, fieldValue);
          }
          catch (Exception ex)
          {
            throw new RuntimeException("Could not set field value.", ex);
          }
-         finally
-         {
-           field.setAccessible(accessible);
-         }
       }
     }
   }
@@ -217,8 +182,9 @@ public class BeanWrapper extends BaseWrapper implements Wrapper
 
     out.write(BEAN_START_TAG_CLOSE);
 
-    for (String propertyName : InterfaceGenerator.getAccessibleProperties(cls))
+    for (BeanMetadata.Property property : BeanMetadata.forClass(cls).getProperties())
     {
+      String propertyName = property.getName();
       String fieldPath = path != null && path.length() > 0 ? String.format("%s.%s", path, propertyName) : propertyName;
 
       // Also exclude fields listed using wildcard notation: [componentName].fieldName
@@ -230,69 +196,20 @@ public class BeanWrapper extends BaseWrapper implements Wrapper
         out.write(propertyName.getBytes());
         out.write(MEMBER_START_TAG_CLOSE);
 
-        Field f = null;
         try
         {
-          f = cls.getField(propertyName);
+          context.createWrapperFromObject(property.getValue(value), fieldPath).marshal(out);
         }
-        catch (NoSuchFieldException ex) { }
-
-        boolean accessible = false;
-        try
+        catch (InvocationTargetException ex)
         {
-          // Temporarily set the field's accessibility so we can read it
-          if (f != null)
-          {
-            accessible = f.isAccessible();
-            f.setAccessible(true);
-            context.createWrapperFromObject(f.get(value),
-                fieldPath).marshal(out);
-          }
-          else
-          {
-            Method accessor = null;
-            try
-            {
-              accessor = cls.getMethod(String.format("get%s%s",
-                  Character.toUpperCase(propertyName.charAt(0)),
-                  propertyName.substring(1)));
-            }
-            catch (NoSuchMethodException ex)
-            {
-              try
-              {
-                accessor = cls.getMethod(String.format("is%s%s",
-                    Character.toUpperCase(propertyName.charAt(0)),
-                    propertyName.substring(1)));
-              }
-              catch (NoSuchMethodException ex2)
-              {
-                // uh oh... continue with the next one
-                continue;
-              }
-            }
-
-            try
-            {
-              context.createWrapperFromObject(accessor.invoke(value), fieldPath).
-                  marshal(out);
-            }
-            catch (InvocationTargetException ex)
-            {
-              throw new RuntimeException(String.format(
-                  "Failed to read property [%s] for object [%s]",
-                  propertyName, value));
-            }
-          }
+          throw new RuntimeException(String.format(
+              "Failed to read property [%s] for object [%s]",
+              propertyName, value));
         }
         catch (IllegalAccessException ex)
         {
-          throw new RuntimeException("Error reading value from field.");
-        }
-        finally
-        {
-          if (f != null)
-            f.setAccessible(accessible);
+          throw new RuntimeException(property.isField() ? "Error reading value from field." :
+              String.format("Failed to read property [%s] for object [%s]", propertyName, value));
         }
 
         out.write(MEMBER_CLOSE_TAG);
@@ -14,6 +14,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -28,6 +31,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Message;
+import javax.servlet.AsyncContext;
 
 import org.dom4j.Document;
 import org.dom4j.DocumentFactory;
@@ -39,9 +46,13 @@ import org.jboss.seam.init.Initialization;
 import org.jboss.seam.mock.MockServletContext;
 import org.jboss.seam.remoting.Call;
 import org.jboss.seam.remoting.CallContext;
+import org.jboss.seam.remoting.CallReader;
 import org.jboss.seam.remoting.InterfaceGenerator;
 import org.jboss.seam.remoting.MarshalUtils;
 import org.jboss.seam.remoting.client.ParserUtils;
+import org.jboss.seam.remoting.messaging.PendingPoll;
+import org.jboss.seam.remoting.messaging.PollStatistics;
+import org.jboss.seam.remoting.messaging.RemoteSubscriber;
 import org.jboss.seam.remoting.wrapper.BagWrapper;
 import org.jboss.seam.remoting.wrapper.BaseWrapper;
 import org.jboss.seam.remoting.wrapper.BeanWrapper;
@@ -386,6 +397,28 @@ public class RemotingTest
       }
    }
 
+   @Test
+   public void testCallReader() throws Exception
+   {
+      String request = "<envelope><header><context><conversationId>5</conversationId></context></header>" +
+            "<body><call component=\"widget\" method=\"setValue\" id=\"0\">" +
+            "<params><param><ref id=\"0\"/></param><param><number>42</number></param></params>" +
+            "<refs><ref id=\"0\"><str>abc%20def</str></ref></refs></call>" +
+            "<call component=\"widget\" method=\"getValue\" id=\"1\"><params></params><refs></refs></call></body></envelope>";
+      
+      CallReader reader = new CallReader(new ByteArrayInputStream(request.getBytes("UTF-8")), null);
+      assertEquals(reader.readContext().getConversationId(), "5");
+      
+      List<Call> calls = reader.readCalls();
+      reader.close();
+      assertEquals(calls.size(), 2);
+      assertEquals(calls.get(0).getId(), "0");
+      assertEquals(calls.get(1).getId(), "1");
+      assertEquals(calls.get(0).getContext().getInRefs().size(), 1);
+      assertEquals(calls.get(0).getContext().getInRefs().get("0").convert(String.class), "abc def");
+      assert calls.get(1).getContext().getInRefs().isEmpty();
+   }
+
    @Test
    public void testBagWrapper() throws Exception
    {
@@ -516,12 +549,72 @@ public class RemotingTest
             .conversionScore(InvalidClass.class);
    }
 
+   /**
+    * Used in testBeanWrapper()
+    */
+   public static class BaseGadget
+   {
+      private String name;
+
+      public String getName()
+      {
+         return name;
+      }
+   }
+
+   /**
+    * Used in testBeanWrapper()
+    */
+   public static class Gadget extends BaseGadget
+   {
+      private Object amount;
+
+      public void setAmount(Long amount)
+      {
+         this.amount = amount;
+      }
+
+      public void setAmount(String amount)
+      {
+         this.amount = "string:" + amount;
+      }
+   }
+
    @Test
-   public void testBeanWrapper()
+   public void testBeanWrapper() throws Exception
    {
-      // BeanWrapper wrapper = new BeanWrapper();
+      Lifecycle.setupApplication(new HashMap<String, Object>());
+      try
+      {
+         // the setter whose parameter type best fits the value is used
+         Gadget gadget = unmarshalGadget("<str>10</str>");
+         assert "string:10".equals(gadget.amount);
+         assert "gadget".equals(gadget.getName());
+
+         gadget = unmarshalGadget("<number>10</number>");
+         assert Long.valueOf(10).equals(gadget.amount);
+         // a property without a setter is set through the private
+         // field of the superclass
+         assert "gadget".equals(gadget.getName());
+      }
+      finally
+      {
+         Lifecycle.cleanupApplication();
+      }
+   }
+
+   private Gadget unmarshalGadget(String amount) throws Exception
+   {
+      String xml = "<bean type=\"" + Gadget.class.getName() + "\">" +
+            "<member name=\"amount\">" + amount + "</member>" +
+            "<member name=\"name\"><str>gadget</str></member></bean>";
+      Element e = new SAXReader().read(new StringReader(xml)).getRootElement();
 
-      /** @todo Write tests for BeanWrapper */
+      BeanWrapper wrapper = new BeanWrapper();
+      wrapper.setCallContext(new CallContext());
+      wrapper.setElement(e);
+      wrapper.unmarshal();
+      return (Gadget) wrapper.getValue();
    }
 
    /**
@@ -1053,4 +1146,95 @@ public class RemotingTest
       assert ("bag".equals(gen
             .getFieldType(getDummyReturnType("getGenericCollection"))));
    }
+
+   @Test
+   public void testAccessibleProperties()
+   {
+      Set<String> properties = InterfaceGenerator.getAccessibleProperties(Widget.class);
+      assert properties.contains("value");
+      assert properties.contains("secret");
+      assert properties.contains("widgetList");
+
+      // The properties of a class are only looked up once
+      assert properties == InterfaceGenerator.getAccessibleProperties(Widget.class);
+   }
+
+   @Test
+   public void testBufferedSubscriber() throws Exception
+   {
+      PollStatistics statistics = new PollStatistics();
+      RemoteSubscriber subscriber = new RemoteSubscriber("token", "topic", 2, statistics);
+      assert subscriber.isBuffered();
+      assert subscriber.poll(0) == null;
+
+      // The oldest message is dropped when the buffer is full
+      Message first = createMessage();
+      Message second = createMessage();
+      Message third = createMessage();
+      subscriber.onMessage(first);
+      subscriber.onMessage(second);
+      subscriber.onMessage(third);
+
+      List<Message> messages = subscriber.poll(0);
+      assertEquals(messages, Arrays.asList(second, third));
+      assertEquals(statistics.getDroppedMessageCount(), 1);
+      assertEquals(statistics.getDeliveredMessageCount(), 2);
+      assert subscriber.poll(0) == null;
+
+      // A parked poll is dispatched once, when a message arrives
+      final AtomicInteger dispatched = new AtomicInteger();
+      AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class[] { AsyncContext.class },
+            new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  if ("dispatch".equals(method.getName()))
+                  {
+                     dispatched.incrementAndGet();
+                  }
+                  return null;
+               }
+            });
+
+      PendingPoll poll = new PendingPoll(asyncContext,
+            Arrays.asList(subscriber), statistics);
+      poll.park();
+      assert !poll.isWoken();
+      assertEquals(statistics.getParkedPolls(), 1);
+
+      subscriber.onMessage(first);
+      subscriber.onMessage(second);
+      assert poll.isWoken();
+      assertEquals(dispatched.get(), 1);
+      assertEquals(statistics.getParkedPolls(), 0);
+      assertEquals(subscriber.poll(0).size(), 2);
+
+      // A poll is not parked while there are buffered messages
+      subscriber.onMessage(third);
+      poll = new PendingPoll(asyncContext, Arrays.asList(subscriber), statistics);
+      poll.park();
+      assert poll.isWoken();
+      assertEquals(dispatched.get(), 2);
+   }
+
+   private Message createMessage()
+   {
+      return (Message) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { Message.class }, new InvocationHandler()
+            {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  if ("equals".equals(method.getName()))
+                  {
+                     return proxy == args[0];
+                  }
+                  else if ("hashCode".equals(method.getName()))
+                  {
+                     return System.identityHashCode(proxy);
+                  }
+                  return null;
+               }
+            });
+   }
 }
@@ -16,6 +16,7 @@ import org.jboss.seam.core.Manager;
 import org.jboss.seam.document.DocumentData;
 import org.jboss.seam.document.DocumentStore;
 import org.jboss.seam.document.DocumentData.DocumentType;
+import org.jboss.seam.document.FileDocumentData;
 import org.jboss.seam.navigation.Pages;
 import org.jboss.seam.ui.component.UIResource;
 
@@ -71,6 +72,32 @@ public class DocumentStoreUtils
             }
         }
 
+        @Override
+        public void writeDataToStream(OutputStream os, long offset, long length) 
+            throws IOException 
+        {
+            if (data instanceof byte[]) {
+                os.write((byte[]) data, (int) offset, (int) length);
+            } else if (data instanceof File) {
+                new FileDocumentData(getBaseName(), getDocumentType(), (File) data)
+                    .writeDataToStream(os, offset, length);
+            } else {
+                super.writeDataToStream(os, offset, length);
+            }
+        }
+
+        @Override
+        public long getSize() 
+        {
+            if (data instanceof byte[]) {
+                return ((byte[]) data).length;
+            } else if (data instanceof File) {
+                return ((File) data).length();
+            } else {
+                return -1;
+            }
+        }
+
         private void writeStream(OutputStream os, InputStream is)
             throws IOException 
                        
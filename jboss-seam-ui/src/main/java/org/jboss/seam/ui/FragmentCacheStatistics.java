@@ -0,0 +1,148 @@
+package org.jboss.seam.ui;
+
+import static org.jboss.seam.ScopeType.APPLICATION;
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.contexts.Contexts;
+
+/**
+ * Counts the hits and misses of &lt;s:cache&gt;, and the time
+ * spent rendering the fragments which were missing, for each
+ * cache region.
+ */
+@Name("org.jboss.seam.ui.fragmentCacheStatistics")
+@Scope(APPLICATION)
+@Install(precedence = BUILT_IN)
+@BypassInterceptors
+public class FragmentCacheStatistics
+{
+   private final ConcurrentMap<String, Region> regions = new ConcurrentHashMap<String, Region>();
+
+   public static class Region
+   {
+      private final AtomicLong hits = new AtomicLong();
+      private final AtomicLong staleHits = new AtomicLong();
+      private final AtomicLong misses = new AtomicLong();
+      private final AtomicLong waits = new AtomicLong();
+      private final AtomicLong renderTime = new AtomicLong();
+
+      public void hit()
+      {
+         hits.incrementAndGet();
+      }
+
+      public void staleHit()
+      {
+         staleHits.incrementAndGet();
+      }
+
+      public void waited()
+      {
+         waits.incrementAndGet();
+      }
+
+      /**
+       * @param time the time taken to render the missing fragment,
+       * in milliseconds
+       */
+      public void miss(long time)
+      {
+         misses.incrementAndGet();
+         renderTime.addAndGet(time);
+      }
+
+      /**
+       * The number of fragments served from the cache
+       */
+      public long getHits()
+      {
+         return hits.get();
+      }
+
+      /**
+       * The number of expired fragments served from the cache
+       * while another request rendered them again
+       */
+      public long getStaleHits()
+      {
+         return staleHits.get();
+      }
+
+      /**
+       * The number of fragments rendered
+       */
+      public long getMisses()
+      {
+         return misses.get();
+      }
+
+      /**
+       * The number of times a request waited for another request
+       * to render a fragment
+       */
+      public long getWaits()
+      {
+         return waits.get();
+      }
+
+      /**
+       * The total time spent rendering fragments, in milliseconds
+       */
+      public long getRenderTime()
+      {
+         return renderTime.get();
+      }
+
+      public long getAverageRenderTime()
+      {
+         long misses = getMisses();
+         return misses==0 ? 0 : getRenderTime() / misses;
+      }
+   }
+
+   public Region getRegion(String name)
+   {
+      Region region = regions.get(name);
+      if (region==null)
+      {
+         Region newRegion = new Region();
+         region = regions.putIfAbsent(name, newRegion);
+         if (region==null)
+         {
+            region = newRegion;
+         }
+      }
+      return region;
+   }
+
+   public Map<String, Region> getRegions()
+   {
+      return Collections.unmodifiableMap(regions);
+   }
+
+   public void clear()
+   {
+      regions.clear();
+   }
+
+   public static FragmentCacheStatistics instance()
+   {
+      if ( !Contexts.isApplicationContextActive() )
+      {
+         throw new IllegalStateException("No active application context");
+      }
+      return (FragmentCacheStatistics) Component.getInstance(FragmentCacheStatistics.class, APPLICATION);
+   }
+
+}
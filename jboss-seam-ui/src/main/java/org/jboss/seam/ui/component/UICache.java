@@ -58,4 +58,16 @@ public abstract class UICache extends UIComponentBase
            "cache provider in an application where multiple cache providers are in use"))
    public abstract CacheProvider getCacheProvider();
    
+   @Attribute(description = @Description("the time in seconds after which the cached content is rendered again. " +
+           "By default, the content is kept until the cache provider evicts it."))
+   public abstract Integer getTimeToLive();
+   
+   @Attribute(description = @Description("the time in seconds past the time to live during which the expired content " +
+           "is still served, while a single request renders it again."))
+   public abstract Integer getStaleWhileRevalidate();
+   
+   @Attribute(defaultValue = "false", description = @Description("if true, only one request renders missing content, " +
+           "while concurrent requests for the same key wait for it to be cached."))
+   public abstract boolean isSingleFlight();
+   
 }
@@ -3,13 +3,19 @@ package org.jboss.seam.ui.renderkit;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import javax.faces.component.UIComponent;
 import javax.faces.context.FacesContext;
 import javax.faces.context.ResponseWriter;
 
+import org.jboss.seam.cache.CacheProvider;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.ui.FragmentCacheStatistics;
 import org.jboss.seam.ui.component.UICache;
 import org.jboss.seam.ui.util.cdk.RendererBase;
 import org.richfaces.cdk.annotations.JsfRenderer;
@@ -30,30 +36,173 @@ public class CacheRendererBase extends RendererBase {
       return UICache.class;
    }
 
+   /**
+    * the longest time a request waits for another request to
+    * render a fragment, before rendering it itself
+    */
+   private static final long MAX_WAIT = 10000;
+   
+   /**
+    * the fragments which are being rendered, by cache provider, region and key
+    */
+   private static final ConcurrentMap<RenderingKey, Rendering> renderings = new ConcurrentHashMap<RenderingKey, Rendering>();
+   
+   /**
+    * Identifies a fragment being rendered. Cache providers are compared
+    * by identity, as two providers may hold the same region and key.
+    */
+   private static class RenderingKey
+   {
+      private final CacheProvider cacheProvider;
+      private final String region;
+      private final String key;
+      
+      private RenderingKey(CacheProvider cacheProvider, String region, String key)
+      {
+         this.cacheProvider = cacheProvider;
+         this.region = region;
+         this.key = key;
+      }
+      
+      @Override
+      public boolean equals(Object other)
+      {
+         if ( !(other instanceof RenderingKey) )
+         {
+            return false;
+         }
+         RenderingKey that = (RenderingKey) other;
+         return cacheProvider==that.cacheProvider && 
+               ( region==null ? that.region==null : region.equals(that.region) ) && 
+               ( key==null ? that.key==null : key.equals(that.key) );
+      }
+      
+      @Override
+      public int hashCode()
+      {
+         int hash = System.identityHashCode(cacheProvider);
+         hash = 31 * hash + ( region==null ? 0 : region.hashCode() );
+         return 31 * hash + ( key==null ? 0 : key.hashCode() );
+      }
+   }
+   
+   private static class Rendering
+   {
+      private final CountDownLatch done = new CountDownLatch(1);
+      private volatile CachedFragment fragment;
+      
+      private CachedFragment await()
+      {
+         try
+         {
+            done.await(MAX_WAIT, TimeUnit.MILLISECONDS);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+         return fragment;
+      }
+   }
+
    @Override
    protected void doEncodeChildren(ResponseWriter writer, FacesContext context, UIComponent component) throws IOException
    {
       UICache cache = (UICache) component;
       if (cache.isEnabled())
       {
+         CacheProvider cacheProvider = cache.getCacheProvider();
+         String region = cache.getRegion();
          String key = cache.getKey();
-         String cachedContent = (String) cache.getCacheProvider().get(cache.getRegion(), key); 
-         if (cachedContent == null)
+         FragmentCacheStatistics.Region statistics = getStatistics(cacheProvider, region);
+         
+         Object cachedContent = cacheProvider.get(region, key);
+         if (cachedContent instanceof String)
+         {
+            //cached by an earlier version
+            log.debug("rendering from cache: " + key);
+            statistics.hit();
+            writer.write( (String) cachedContent );
+            return;
+         }
+         
+         long now = System.currentTimeMillis();
+         CachedFragment fragment = cachedContent instanceof CachedFragment ? (CachedFragment) cachedContent : null;
+         if ( fragment!=null && !fragment.isExpired( cache.getTimeToLive(), now ) )
+         {
+            log.debug("rendering from cache: " + key);
+            statistics.hit();
+            writer.write( fragment.getContent() );
+            return;
+         }
+         
+         CachedFragment stale = fragment!=null && fragment.isUsable( cache.getTimeToLive(), cache.getStaleWhileRevalidate(), now ) ? 
+               fragment : null;
+         
+         Rendering rendering = null;
+         RenderingKey renderingKey = new RenderingKey(cacheProvider, region, key);
+         if ( cache.isSingleFlight() || stale!=null )
+         {
+            Rendering newRendering = new Rendering();
+            Rendering currentRendering = renderings.putIfAbsent(renderingKey, newRendering);
+            if (currentRendering==null)
+            {
+               rendering = newRendering;
+            }
+            else if (stale!=null)
+            {
+               log.debug("rendering stale content from cache: " + key);
+               statistics.staleHit();
+               writer.write( stale.getContent() );
+               return;
+            }
+            else
+            {
+               log.debug("waiting for content to be rendered: " + key);
+               statistics.waited();
+               CachedFragment rendered = currentRendering.await();
+               if (rendered!=null)
+               {
+                  statistics.hit();
+                  writer.write( rendered.getContent() );
+                  return;
+               }
+            }
+         }
+         
+         try
          {
             log.debug("rendering from scratch: " + key);
+            long start = System.currentTimeMillis();
             StringWriter stringWriter = new StringWriter();
             ResponseWriter cachingResponseWriter = writer.cloneWithWriter(stringWriter);
             context.setResponseWriter(cachingResponseWriter);
-            renderChildren(context, component);
-            context.setResponseWriter(writer);
+            try
+            {
+               renderChildren(context, component);
+            }
+            finally
+            {
+               context.setResponseWriter(writer);
+            }
             String output = stringWriter.getBuffer().toString();
             writer.write(output);
-            cache.getCacheProvider().put(cache.getRegion(), key, output);
+            
+            CachedFragment rendered = new CachedFragment( output, System.currentTimeMillis() );
+            cacheProvider.put(region, key, rendered);
+            statistics.miss( rendered.getRendered() - start );
+            if (rendering!=null)
+            {
+               rendering.fragment = rendered;
+            }
          }
-         else
+         finally
          {
-            log.debug("rendering from cache: " + key);
-            writer.write(cachedContent);
+            if (rendering!=null)
+            {
+               renderings.remove(renderingKey, rendering);
+               rendering.done.countDown();
+            }
          }
       }
       else
@@ -61,6 +210,17 @@ public class CacheRendererBase extends RendererBase {
          renderChildren(context, component);
       }
    }
+   
+   private FragmentCacheStatistics.Region getStatistics(CacheProvider cacheProvider, String region)
+   {
+      FragmentCacheStatistics statistics = FragmentCacheStatistics.instance();
+      if (statistics==null)
+      {
+         //not installed
+         return new FragmentCacheStatistics.Region();
+      }
+      return statistics.getRegion( region==null ? cacheProvider.getDefaultRegion() : region );
+   }
 
    @Override
    public boolean getRendersChildren()
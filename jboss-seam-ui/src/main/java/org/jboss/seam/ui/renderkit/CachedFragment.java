@@ -0,0 +1,63 @@
+package org.jboss.seam.ui.renderkit;
+
+import java.io.Serializable;
+
+/**
+ * A page fragment rendered by &lt;s:cache&gt;, along with the
+ * time it was rendered. The content is kept as the String that
+ * is written to the response, so that a hit does not have to 
+ * decode it again.
+ */
+public class CachedFragment implements Serializable
+{
+   private static final long serialVersionUID = 1L;
+
+   private final String content;
+   private final long rendered;
+
+   public CachedFragment(String content, long rendered)
+   {
+      this.content = content;
+      this.rendered = rendered;
+   }
+
+   public String getContent()
+   {
+      return content;
+   }
+
+   /**
+    * The time the fragment was rendered, in milliseconds
+    */
+   public long getRendered()
+   {
+      return rendered;
+   }
+
+   /**
+    * @param timeToLive the time in seconds, or null if the
+    * fragment never expires
+    */
+   public boolean isExpired(Integer timeToLive, long now)
+   {
+      return isOlderThan(timeToLive, 0, now);
+   }
+
+   /**
+    * @param staleWhileRevalidate the time in seconds past the time
+    * to live during which the fragment may still be served, while
+    * it is rendered again
+    */
+   public boolean isUsable(Integer timeToLive, Integer staleWhileRevalidate, long now)
+   {
+      int grace = staleWhileRevalidate==null ? 0 : staleWhileRevalidate;
+      return !isOlderThan(timeToLive, grace, now);
+   }
+
+   private boolean isOlderThan(Integer timeToLive, int grace, long now)
+   {
+      return timeToLive!=null && timeToLive>0 &&
+            now - rendered > ( timeToLive + (long) grace ) * 1000;
+   }
+
+}
@@ -0,0 +1,371 @@
+package org.jboss.seam.ui.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.faces.component.UIComponent;
+import javax.faces.component.UIComponentBase;
+import javax.faces.context.FacesContext;
+import javax.faces.context.ResponseWriter;
+
+import org.jboss.seam.Seam;
+import org.jboss.seam.cache.CacheProvider;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.mock.MockFacesContext;
+import org.jboss.seam.mock.MockResponseWriter;
+import org.jboss.seam.ui.FragmentCacheStatistics;
+import org.jboss.seam.ui.component.UICache;
+import org.jboss.seam.ui.renderkit.CacheRendererBase;
+import org.jboss.seam.ui.renderkit.CachedFragment;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CacheRendererTest
+{
+   private static final String REGION = "fragments";
+
+   private Map<String, Object> application;
+   private FragmentCacheStatistics statistics;
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setup()
+   {
+      application = new ConcurrentHashMap<String, Object>();
+      statistics = new FragmentCacheStatistics();
+      application.put( Seam.getComponentName(FragmentCacheStatistics.class), statistics );
+      executor = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod
+   public void cleanup()
+   {
+      executor.shutdownNow();
+   }
+
+   @Test
+   public void testFragmentExpiry() throws Exception
+   {
+      CachedFragment fragment = new CachedFragment("café", 1000);
+      assertEquals(fragment.getContent(), "café");
+
+      // without a time to live, the fragment is kept until it is evicted
+      assertFalse( fragment.isExpired(null, Long.MAX_VALUE) );
+      assertFalse( fragment.isExpired(0, Long.MAX_VALUE) );
+      assertTrue( fragment.isUsable(null, null, Long.MAX_VALUE) );
+
+      assertFalse( fragment.isExpired(10, 11000) );
+      assertTrue( fragment.isExpired(10, 11001) );
+      assertFalse( fragment.isUsable(10, null, 11001) );
+
+      // past the time to live, it is still served during the grace period
+      assertTrue( fragment.isUsable(10, 5, 16000) );
+      assertFalse( fragment.isUsable(10, 5, 16001) );
+   }
+
+   @Test
+   public void testRenderFromCache() throws Exception
+   {
+      Provider provider = new Provider();
+      Text text = new Text("fragment");
+
+      assertEquals( render( new Cache(provider, text) ), "fragment" );
+      assertEquals( render( new Cache(provider, text) ), "fragment" );
+      assertEquals(text.renders.get(), 1);
+      assertEquals(statistics.getRegion(REGION).getMisses(), 1);
+      assertEquals(statistics.getRegion(REGION).getHits(), 1);
+   }
+
+   @Test
+   public void testRenderExpired() throws Exception
+   {
+      Provider provider = new Provider();
+      provider.put( REGION, "key", new CachedFragment("expired", System.currentTimeMillis() - 20000) );
+      Text text = new Text("fragment");
+      Cache cache = new Cache(provider, text);
+      cache.timeToLive = 10;
+
+      assertEquals( render(cache), "fragment" );
+      assertEquals(text.renders.get(), 1);
+      assertEquals( ( (CachedFragment) provider.get(REGION, "key") ).getContent(), "fragment" );
+   }
+
+   @Test
+   public void testWaitForRendering() throws Exception
+   {
+      Provider provider = new Provider();
+      Text text = new Text("fragment").block();
+      Cache first = new Cache(provider, text);
+      first.singleFlight = true;
+      Cache second = new Cache(provider, text);
+      second.singleFlight = true;
+
+      Future<String> rendering = renderLater(first);
+      text.started.await(5, TimeUnit.SECONDS);
+      Future<String> waiting = renderLater(second);
+      for (int i = 0; i < 500 && statistics.getRegion(REGION).getWaits() == 0; i++)
+      {
+         Thread.sleep(10);
+      }
+      assertEquals(statistics.getRegion(REGION).getWaits(), 1);
+
+      text.release.countDown();
+      assertEquals( rendering.get(5, TimeUnit.SECONDS), "fragment" );
+      assertEquals( waiting.get(5, TimeUnit.SECONDS), "fragment" );
+      assertEquals(text.renders.get(), 1);
+   }
+
+   @Test
+   public void testStaleWhileRevalidate() throws Exception
+   {
+      Provider provider = new Provider();
+      provider.put( REGION, "key", new CachedFragment("stale", System.currentTimeMillis() - 20000) );
+      Text text = new Text("fresh").block();
+      Cache first = new Cache(provider, text);
+      first.timeToLive = 10;
+      first.staleWhileRevalidate = 3600;
+      Cache second = new Cache(provider, text);
+      second.timeToLive = 10;
+      second.staleWhileRevalidate = 3600;
+
+      Future<String> rendering = renderLater(first);
+      text.started.await(5, TimeUnit.SECONDS);
+      // served while the first request is still rendering
+      assertEquals( renderLater(second).get(5, TimeUnit.SECONDS), "stale" );
+      assertEquals(statistics.getRegion(REGION).getStaleHits(), 1);
+
+      text.release.countDown();
+      assertEquals( rendering.get(5, TimeUnit.SECONDS), "fresh" );
+      assertEquals( ( (CachedFragment) provider.get(REGION, "key") ).getContent(), "fresh" );
+   }
+
+   @Test
+   public void testRenderingPerProvider() throws Exception
+   {
+      Text blocked = new Text("first").block();
+      Cache first = new Cache(new Provider(), blocked);
+      first.singleFlight = true;
+      Text text = new Text("second");
+      Cache second = new Cache(new Provider(), text);
+      second.singleFlight = true;
+
+      Future<String> rendering = renderLater(first);
+      blocked.started.await(5, TimeUnit.SECONDS);
+      // the same region and key of another provider does not wait
+      assertEquals( renderLater(second).get(5, TimeUnit.SECONDS), "second" );
+      assertEquals(statistics.getRegion(REGION).getWaits(), 0);
+
+      blocked.release.countDown();
+      assertEquals( rendering.get(5, TimeUnit.SECONDS), "first" );
+   }
+
+   private Future<String> renderLater(final Cache cache)
+   {
+      return executor.submit( new Callable<String>()
+      {
+         public String call() throws Exception
+         {
+            return render(cache);
+         }
+      } );
+   }
+
+   private String render(Cache cache) throws IOException
+   {
+      Lifecycle.setupApplication(application);
+      try
+      {
+         StringWriter output = new StringWriter();
+         ResponseWriter writer = new MockResponseWriter(output);
+         FacesContext context = new MockFacesContext(null, null);
+         context.setResponseWriter(writer);
+         new Renderer().encode(writer, context, cache);
+         return output.toString();
+      }
+      finally
+      {
+         Lifecycle.cleanupApplication();
+      }
+   }
+
+   public static class Renderer extends CacheRendererBase
+   {
+      public void encode(ResponseWriter writer, FacesContext context, UIComponent component) throws IOException
+      {
+         doEncodeChildren(writer, context, component);
+      }
+   }
+
+   public static class Provider extends CacheProvider<Map<String, Object>>
+   {
+      private Map<String, Object> cache = new ConcurrentHashMap<String, Object>();
+
+      @Override
+      public Map<String, Object> getDelegate()
+      {
+         return cache;
+      }
+
+      @Override
+      public Object get(String region, String key)
+      {
+         return cache.get(region + ':' + key);
+      }
+
+      @Override
+      public void put(String region, String key, Object object)
+      {
+         cache.put(region + ':' + key, object);
+      }
+
+      @Override
+      public void remove(String region, String key)
+      {
+         cache.remove(region + ':' + key);
+      }
+
+      @Override
+      public void clear()
+      {
+         cache.clear();
+      }
+   }
+
+   public static class Cache extends UICache
+   {
+      private CacheProvider provider;
+      private List<UIComponent> children = new ArrayList<UIComponent>();
+      private Integer timeToLive;
+      private Integer staleWhileRevalidate;
+      private boolean singleFlight;
+
+      public Cache(CacheProvider provider, UIComponent child)
+      {
+         this.provider = provider;
+         children.add(child);
+      }
+
+      @Override
+      public String getFamily()
+      {
+         return "org.jboss.seam.ui.Cache";
+      }
+
+      @Override
+      public List<UIComponent> getChildren()
+      {
+         return children;
+      }
+
+      @Override
+      public int getChildCount()
+      {
+         return children.size();
+      }
+
+      @Override
+      public boolean isEnabled()
+      {
+         return true;
+      }
+
+      @Override
+      public String getKey()
+      {
+         return "key";
+      }
+
+      @Override
+      public String getRegion()
+      {
+         return REGION;
+      }
+
+      @Override
+      public CacheProvider getCacheProvider()
+      {
+         return provider;
+      }
+
+      @Override
+      public Integer getTimeToLive()
+      {
+         return timeToLive;
+      }
+
+      @Override
+      public Integer getStaleWhileRevalidate()
+      {
+         return staleWhileRevalidate;
+      }
+
+      @Override
+      public boolean isSingleFlight()
+      {
+         return singleFlight;
+      }
+   }
+
+   /**
+    * Writes its text, optionally waiting to be released first
+    */
+   public static class Text extends UIComponentBase
+   {
+      private String text;
+      private AtomicInteger renders = new AtomicInteger();
+      private CountDownLatch started = new CountDownLatch(1);
+      private CountDownLatch release = new CountDownLatch(0);
+
+      public Text(String text)
+      {
+         this.text = text;
+      }
+
+      public Text block()
+      {
+         release = new CountDownLatch(1);
+         return this;
+      }
+
+      @Override
+      public String getFamily()
+      {
+         return "org.jboss.seam.ui.test.Text";
+      }
+
+      @Override
+      public void encodeBegin(FacesContext context) throws IOException
+      {
+         renders.incrementAndGet();
+         started.countDown();
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ie)
+         {
+            Thread.currentThread().interrupt();
+         }
+         context.getResponseWriter().write(text);
+      }
+
+      @Override
+      public void encodeEnd(FacesContext context) {}
+   }
+}
@@ -33,6 +33,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -56,9 +57,12 @@ import javassist.util.proxy.MethodHandler;
 import javassist.util.proxy.ProxyObject;
 
 import javax.naming.NamingException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpSessionActivationListener;
 
 import org.jboss.seam.annotations.Begin;
+import org.jboss.seam.annotations.ConcurrentBijection;
 import org.jboss.seam.annotations.Create;
 import org.jboss.seam.annotations.DataBinderClass;
 import org.jboss.seam.annotations.DataSelectorClass;
@@ -104,6 +108,8 @@ import org.jboss.seam.intercept.JavaBeanInterceptor;
 import org.jboss.seam.intercept.Proxy;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.util.AttributeAccessor;
+import org.jboss.seam.util.AttributeAccessorFactory;
 import org.jboss.seam.util.Conversions;
 import org.jboss.seam.util.Conversions.PropertyValue;
 import org.jboss.seam.util.Naming;
@@ -112,6 +118,7 @@ import org.jboss.seam.util.Reflections;
 import org.jboss.seam.util.SortItem;
 import org.jboss.seam.util.Sorter;
 import org.jboss.seam.web.Parameters;
+import org.jboss.seam.web.ServletContexts;
 
 /**
  * Metamodel class for component classes.
@@ -166,6 +173,8 @@ public class Component extends Model
    private List<BijectedAttribute> pcAttributes = new ArrayList<BijectedAttribute>();
    private Map<String, BijectedAttribute> dataModelSelectionSetters = new HashMap<String, BijectedAttribute>();
    
+   private AttributeAccessor attributeAccessor;
+   
    private List<Interceptor> interceptors = new ArrayList<Interceptor>();
    private List<Interceptor> clientSideInterceptors = new ArrayList<Interceptor>();
 
@@ -179,6 +188,7 @@ public class Component extends Model
    private Namespace namespace;
    
    private boolean perNestedConversation;
+   private boolean concurrentBijection;
 
    private Class<ProxyObject> factory;
 
@@ -216,6 +226,7 @@ public class Component extends Model
       type = Seam.getComponentType( getBeanClass() );
       interceptionEnabled = Seam.isInterceptionEnabled( getBeanClass() );
       perNestedConversation = hasAnnotation(getBeanClass(), PerNestedConversation.class);
+      concurrentBijection = hasAnnotation(getBeanClass(), ConcurrentBijection.class);
       
       checkName();  
       checkNonabstract();
@@ -242,6 +253,7 @@ public class Component extends Model
          );
 
       initMembers( getBeanClass(), applicationContext );
+      initAttributeAccessor();
       checkDefaultRemoveMethod();
 
       businessInterfaces = getBusinessInterfaces( getBeanClass() );
@@ -544,6 +556,47 @@ public class Component extends Model
       }
    }
 
+   /**
+    * Generate straight-line accessors for the @In and @Out
+    * attributes that do not need reflection. Any attribute
+    * the generated class cannot reach keeps using reflection.
+    */
+   private void initAttributeAccessor()
+   {
+      List<BijectedAttribute> attributes = new ArrayList<BijectedAttribute>();
+      List<Member> members = new ArrayList<Member>();
+      List<BijectedAttribute> bijectedAttributes = new ArrayList<BijectedAttribute>(inAttributes);
+      bijectedAttributes.addAll(outAttributes);
+      for (BijectedAttribute attribute: bijectedAttributes)
+      {
+         Member member = attribute instanceof BijectedField ?
+               ( (BijectedField) attribute ).getField() :
+               ( (BijectedMethod) attribute ).getMethod();
+         if ( AttributeAccessorFactory.isAccessible( getBeanClass(), member ) )
+         {
+            attributes.add(attribute);
+            members.add(member);
+         }
+      }
+      
+      attributeAccessor = AttributeAccessorFactory.create( getBeanClass(), members );
+      if (attributeAccessor!=null)
+      {
+         for (int i=0; i<attributes.size(); i++)
+         {
+            BijectedAttribute attribute = attributes.get(i);
+            if (attribute instanceof BijectedField)
+            {
+               ( (BijectedField) attribute ).accessorIndex = i;
+            }
+            else
+            {
+               ( (BijectedMethod) attribute ).accessorIndex = i;
+            }
+         }
+      }
+   }
+
    private void initMembers(Class<?> clazz, Context applicationContext)
    {
       Map<Method, Annotation> selectionSetters = new HashMap<Method, Annotation>();
@@ -1929,6 +1982,41 @@ public class Component extends Model
       }
    }
 
+   private Object getAccessorValue(Object bean, int index, String name)
+   {
+      try
+      {
+         return attributeAccessor.get(bean, index);
+      }
+      catch (Exception e)
+      {
+         throw new IllegalArgumentException("could not get attribute value: " + getAttributeMessage(name), e);
+      }
+   }
+
+   private void setAccessorValue(Object bean, int index, String name, Object value)
+   {
+      try
+      {
+         attributeAccessor.set(bean, index, value);
+      }
+      catch (Exception e)
+      {
+         throw new IllegalArgumentException("could not set attribute value: " + getAttributeMessage(name), e);
+      }
+   }
+
+   /**
+    * The generated accessor could not link to the attribute, 
+    * for example because its type is not visible from the 
+    * accessor's package. Use reflection for it from now on.
+    */
+   private int disableAccessor(String name, IllegalAccessError e)
+   {
+      log.warn("generated accessor cannot reach attribute, using reflection: " + getAttributeMessage(name), e);
+      return -1;
+   }
+
    private void setFieldValue(Object bean, Field field, String name, Object value)
    {
       try
@@ -2110,11 +2198,22 @@ public class Component extends Model
             {
               // Only one factory instance can access result scope
               // CONVERSATION / EVENT / PAGE anyway due to
-              // the locking of the conversation.
-              synchronized (factoryMethod)
+              // the locking of the conversation. When neither the
+              // result nor the factory is shared between sessions,
+              // only threads of the same session need to wait.
+              Object lockKey = getFactoryLockKey(scopeResult, scopeFactory, factoryMethod.getComponent().interceptionEnabled);
+              boolean locked = factoryMethod.lock(lockKey);
+              try
               {
                  return createInstanceFromFactory(name, scope, factoryMethod, factory);
               }
+              finally
+              {
+                 if (locked)
+                 {
+                    factoryMethod.unlock(lockKey);
+                 }
+              }
             }
             else
             {
@@ -2128,6 +2227,26 @@ public class Component extends Model
       }
    }
 
+   private static Object getFactoryLockKey(ScopeType scopeResult, ScopeType scopeFactory, boolean factoryIntercepted)
+   {
+      boolean resultPerSession = scopeResult==SESSION || scopeResult==CONVERSATION || 
+            scopeResult==EVENT || scopeResult==PAGE;
+      boolean factoryPerSession = !factoryIntercepted || scopeFactory==SESSION || scopeFactory==STATELESS || 
+            scopeFactory==CONVERSATION || scopeFactory==EVENT || scopeFactory==PAGE;
+      if (resultPerSession && factoryPerSession)
+      {
+         ServletContexts servletContexts = ServletContexts.getInstance();
+         HttpServletRequest request = servletContexts==null ? null : servletContexts.getRequest();
+         HttpSession session = request==null ? null : request.getSession(false);
+         String sessionId = session==null ? null : session.getId();
+         if (sessionId!=null)
+         {
+            return sessionId;
+         }
+      }
+      return APPLICATION;
+   }
+
    private static Object createInstanceFromFactory(String name, ScopeType scope, Init.FactoryMethod factoryMethod, Object factory)
    {
       // check whether there has been created an instance by another thread
@@ -2196,7 +2315,7 @@ public class Component extends Model
             callCreateMethod(instance);
             
             if (Events.exists()) {
-                Events.instance().raiseEvent("org.jboss.seam.postCreate." + name, instance);
+                Events.instance().raiseQualifiedEvent("org.jboss.seam.postCreate.", name, instance);
             }
          }
          
@@ -2890,6 +3009,7 @@ public class Component extends Model
       private final String name;
       private final Method method;
       private final T annotation;
+      private int accessorIndex = -1;
       
       private BijectedMethod(String name, Method method, T annotation)
       {
@@ -2911,10 +3031,33 @@ public class Component extends Model
       }
       public void set(Object bean, Object value)
       {
+         if (accessorIndex>=0)
+         {
+            try
+            {
+               setAccessorValue(bean, accessorIndex, name, value);
+               return;
+            }
+            catch (IllegalAccessError e)
+            {
+               accessorIndex = disableAccessor(name, e);
+            }
+         }
          setPropertyValue(bean, method, name, value);
       }
       public Object get(Object bean)
       {
+         if (accessorIndex>=0)
+         {
+            try
+            {
+               return getAccessorValue(bean, accessorIndex, name);
+            }
+            catch (IllegalAccessError e)
+            {
+               accessorIndex = disableAccessor(name, e);
+            }
+         }
          return getPropertyValue(bean, method, name);
       }
       public Class getType()
@@ -2987,6 +3130,7 @@ public class Component extends Model
       private final String name;
       private final Field field;
       private final T annotation;
+      private int accessorIndex = -1;
       
       private BijectedField(String name, Field field, T annotation)
       {
@@ -3012,10 +3156,33 @@ public class Component extends Model
       }
       public void set(Object bean, Object value)
       {
+         if (accessorIndex>=0)
+         {
+            try
+            {
+               setAccessorValue(bean, accessorIndex, name, value);
+               return;
+            }
+            catch (IllegalAccessError e)
+            {
+               accessorIndex = disableAccessor(name, e);
+            }
+         }
          setFieldValue(bean, field, name, value);
       }
       public Object get(Object bean)
       {
+         if (accessorIndex>=0)
+         {
+            try
+            {
+               return getAccessorValue(bean, accessorIndex, name);
+            }
+            catch (IllegalAccessError e)
+            {
+               accessorIndex = disableAccessor(name, e);
+            }
+         }
          return getFieldValue(bean, field, name);
       }
       @Override
@@ -3045,6 +3212,11 @@ public class Component extends Model
       return perNestedConversation;
    }
    
+   public boolean isConcurrentBijection()
+   {
+      return concurrentBijection;
+   }
+   
    public boolean hasConversationManagementMethods()
    {
       return !conversationManagementMethods.isEmpty();
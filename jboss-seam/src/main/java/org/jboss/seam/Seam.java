@@ -15,12 +15,17 @@ import static org.jboss.seam.util.EJB.name;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.WeakReference;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
 
@@ -45,9 +50,12 @@ import org.jboss.seam.web.Session;
  */
 public class Seam
 {
-   private static final Map<Class, String> COMPONENT_NAME_CACHE = new ConcurrentHashMap<Class, String>();
-   private static final Map<Class, EjbDescriptor> EJB_DESCRIPTOR_CACHE = new ConcurrentHashMap<Class, EjbDescriptor>();
-   private static final Set<ClassLoader> CLASSLOADERS_LOADED = new HashSet<ClassLoader>(); 
+   //all weakly keyed, so that classes of a hot redeployed or
+   //undeployed application may be garbage collected
+   private static volatile ClassLoaderMetadata[] METADATA_CACHE = new ClassLoaderMetadata[0];
+   private static final ConcurrentMap<String, ClassMetadata> BOOTSTRAP_METADATA_CACHE = new ConcurrentHashMap<String, ClassMetadata>();
+   private static final Map<Class, EjbDescriptor> EJB_DESCRIPTOR_CACHE = Collections.synchronizedMap( new WeakHashMap<Class, EjbDescriptor>() );
+   private static final Set<ClassLoader> CLASSLOADERS_LOADED = Collections.synchronizedSet( Collections.newSetFromMap( new WeakHashMap<ClassLoader, Boolean>() ) ); 
 
    // application-scoped property in which the Seam version is stored
    public static final String VERSION = "org.jboss.seam.version";
@@ -55,6 +63,101 @@ public class Seam
    private static String jarName;
    private static String versionString;
 
+   /**
+    * What Seam has worked out about a class. Classes are only held
+    * weakly, so that the metadata does not keep a class loader alive.
+    */
+   private static final class ClassMetadata
+   {
+      private final String componentName;
+      private final ScopeType componentScope;
+      private final WeakReference<Class> entityClass;
+
+      ClassMetadata(Class<?> clazz)
+      {
+         componentName = searchComponentName(clazz);
+         componentScope = searchComponentScope(clazz);
+         Class result = searchEntityClass(clazz);
+         entityClass = result==null ? null : new WeakReference<Class>(result);
+      }
+
+      Class getEntityClass()
+      {
+         return entityClass==null ? null : entityClass.get();
+      }
+   }
+
+   /**
+    * What Seam has worked out about the classes of a class loader, 
+    * by class name. The class loader is only held weakly, and the 
+    * metadata does not refer to it. There are only ever a few class 
+    * loaders, so they are kept in an array which is copied when a 
+    * class loader is added, and read without locking.
+    */
+   private static final class ClassLoaderMetadata extends WeakReference<ClassLoader>
+   {
+      private final ConcurrentMap<String, ClassMetadata> classes = new ConcurrentHashMap<String, ClassMetadata>();
+
+      ClassLoaderMetadata(ClassLoader classLoader)
+      {
+         super(classLoader);
+      }
+   }
+
+   private static ClassMetadata getMetadata(Class<?> clazz)
+   {
+      ConcurrentMap<String, ClassMetadata> classes = getMetadataCache( clazz.getClassLoader() );
+      ClassMetadata metadata = classes.get( clazz.getName() );
+      if (metadata==null)
+      {
+         //may be computed twice by concurrent threads, which is harmless
+         metadata = new ClassMetadata(clazz);
+         ClassMetadata existing = classes.putIfAbsent( clazz.getName(), metadata );
+         if (existing!=null)
+         {
+            metadata = existing;
+         }
+      }
+      return metadata;
+   }
+   
+   private static ConcurrentMap<String, ClassMetadata> getMetadataCache(ClassLoader classLoader)
+   {
+      if (classLoader==null)
+      {
+         return BOOTSTRAP_METADATA_CACHE;
+      }
+      for ( ClassLoaderMetadata metadata: METADATA_CACHE )
+      {
+         if ( metadata.get()==classLoader )
+         {
+            return metadata.classes;
+         }
+      }
+      return addMetadataCache(classLoader);
+   }
+   
+   private static synchronized ConcurrentMap<String, ClassMetadata> addMetadataCache(ClassLoader classLoader)
+   {
+      List<ClassLoaderMetadata> cache = new ArrayList<ClassLoaderMetadata>(METADATA_CACHE.length + 1);
+      for ( ClassLoaderMetadata metadata: METADATA_CACHE )
+      {
+         if ( metadata.get()==classLoader )
+         {
+            //added by another thread
+            return metadata.classes;
+         }
+         else if ( metadata.get()!=null )
+         {
+            cache.add(metadata);
+         }
+      }
+      ClassLoaderMetadata metadata = new ClassLoaderMetadata(classLoader);
+      cache.add(metadata);
+      METADATA_CACHE = cache.toArray( new ClassLoaderMetadata[cache.size()] );
+      return metadata.classes;
+   }
+
    public static EjbDescriptor getEjbDescriptor(Class clazz)
    {
       EjbDescriptor info = EJB_DESCRIPTOR_CACHE.get(clazz);
@@ -86,6 +189,11 @@ public class Seam
     * @see Scope
     */
    public static ScopeType getComponentScope(Class<?> clazz)
+   {
+      return getMetadata(clazz).componentScope;
+   }
+   
+   private static ScopeType searchComponentScope(Class<?> clazz)
    {
        return clazz.isAnnotationPresent(Scope.class) ?
                clazz.getAnnotation(Scope.class).value() :
@@ -148,16 +256,7 @@ public class Seam
     */
    public static String getComponentName(Class<?> clazz)
    {
-      String result = COMPONENT_NAME_CACHE.get(clazz);
-      if (result==null)
-      {
-         result = searchComponentName(clazz);
-         if (result!=null)
-         {
-            COMPONENT_NAME_CACHE.put(clazz, result);
-         }
-      }
-      return result;
+      return getMetadata(clazz).componentName;
    }
    
    public static String searchComponentName(Class<?> clazz)
@@ -177,6 +276,11 @@ public class Seam
     * 
     */
    public static Class getEntityClass(Class clazz)
+   {
+      return getMetadata(clazz).getEntityClass();
+   }
+   
+   private static Class searchEntityClass(Class clazz)
    {
       while (clazz != null && !Object.class.equals(clazz))
       {
@@ -384,9 +488,10 @@ public class Seam
       return versionString;
    }
    
-   public static void clearComponentNameCache()
+   public static synchronized void clearComponentNameCache()
    {
-      COMPONENT_NAME_CACHE.clear();
+      METADATA_CACHE = new ClassLoaderMetadata[0];
+      BOOTSTRAP_METADATA_CACHE.clear();
       EJB_DESCRIPTOR_CACHE.clear();
    }
    
@@ -0,0 +1,28 @@
+package org.jboss.seam.annotations;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Specifies that a component has many concurrent
+ * clients, and that bijection should track its
+ * clients with atomic operations rather than a
+ * lock. Once the component has been injected,
+ * concurrent and re-entrant calls do not contend
+ * on a shared monitor. Intended for APPLICATION
+ * or SESSION scoped components that are not
+ * otherwise @Synchronized.
+ *
+ * @see org.jboss.seam.core.BijectionInterceptor
+ *
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+@Documented
+@Inherited
+public @interface ConcurrentBijection {}
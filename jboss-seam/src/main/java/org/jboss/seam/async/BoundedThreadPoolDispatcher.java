@@ -0,0 +1,478 @@
+package org.jboss.seam.async;
+
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.annotations.Create;
+import org.jboss.seam.annotations.Destroy;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.Startup;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.async.ThreadPoolDispatcher.RunnableAsynchronous;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.intercept.InvocationContext;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Dispatcher implementation that runs asynchronous calls and
+ * events on a thread pool with a bounded queue, and timed calls
+ * and events on a separate ScheduledThreadPoolExecutor. When the
+ * queue is full, the call is either refused with a
+ * RejectedExecutionException, or made by the calling thread,
+ * according to the rejection policy. A call made by the calling
+ * thread still runs in contexts of its own, as it would on a
+ * pool thread. Identical asynchronous
+ * events that are still waiting for a thread may optionally be
+ * coalesced.
+ *
+ * The dispatcher registers itself with the platform MBeanServer.
+ *
+ * @see ThreadPoolDispatcher
+ */
+@Startup
+@Scope(ScopeType.APPLICATION)
+@Name("org.jboss.seam.async.dispatcher")
+@Install(value=false, precedence=BUILT_IN)
+@BypassInterceptors
+public class BoundedThreadPoolDispatcher extends AbstractDispatcher<Future, TimerSchedule>
+   implements BoundedThreadPoolDispatcherMBean
+{
+   private static final LogProvider log = Logging.getLogProvider(BoundedThreadPoolDispatcher.class);
+
+   public static final String ABORT = "abort";
+   public static final String CALLER_RUNS = "caller-runs";
+
+   private int threadPoolSize = 10;
+   private int scheduledThreadPoolSize = 2;
+   private int queueSize = 1000;
+   private String rejectionPolicy = ABORT;
+   private boolean coalesceEvents;
+   private String objectName;
+
+   private ThreadPoolExecutor executor;
+   private ScheduledThreadPoolExecutor scheduledExecutor;
+   private ObjectName registeredName;
+
+   private final Map<EventKey, Future> pendingEvents = new HashMap<EventKey, Future>();
+
+   private final AtomicLong submitted = new AtomicLong();
+   private final AtomicLong completed = new AtomicLong();
+   private final AtomicLong rejected = new AtomicLong();
+   private final AtomicLong callerRuns = new AtomicLong();
+   private final AtomicLong coalesced = new AtomicLong();
+   private final AtomicLong queueTime = new AtomicLong();
+   private final AtomicLong maxQueueTime = new AtomicLong();
+   private final AtomicLong executionTime = new AtomicLong();
+
+   @Create
+   public void startup()
+   {
+      if ( !ABORT.equals(rejectionPolicy) && !CALLER_RUNS.equals(rejectionPolicy) )
+      {
+         throw new IllegalArgumentException("rejection policy must be " + ABORT + " or " + CALLER_RUNS + ": " + rejectionPolicy);
+      }
+      executor = new ThreadPoolExecutor( threadPoolSize, threadPoolSize,
+               0L, TimeUnit.MILLISECONDS,
+               new LinkedBlockingQueue<Runnable>(queueSize) );
+      scheduledExecutor = new ScheduledThreadPoolExecutor(scheduledThreadPoolSize);
+      registerMBean();
+   }
+
+   public Future scheduleAsynchronousEvent(String type, Object... parameters)
+   {
+      AsynchronousEvent event = new AsynchronousEvent(type, parameters);
+      if (!coalesceEvents)
+      {
+         return execute( new MeasuredRunnable(event, null) );
+      }
+
+      EventKey key = new EventKey(type, parameters);
+      MeasuredRunnable runnable = new MeasuredRunnable(event, key);
+      synchronized (pendingEvents)
+      {
+         Future pending = pendingEvents.get(key);
+         if (pending!=null)
+         {
+            coalesced.incrementAndGet();
+            return pending;
+         }
+         Future future = submit(runnable);
+         if (future!=null)
+         {
+            pendingEvents.put(key, future);
+            return future;
+         }
+      }
+      //the queue is full, run it outside the lock
+      return callerRuns(runnable);
+   }
+
+   public Future scheduleTimedEvent(String type, TimerSchedule schedule, Object... parameters)
+   {
+      return schedule( schedule, new MeasuredRunnable( new AsynchronousEvent(type, parameters), null ) );
+   }
+
+   public Future scheduleInvocation(InvocationContext invocation, Component component)
+   {
+      return schedule(
+               createTimerSchedule(invocation),
+               new MeasuredRunnable( new AsynchronousInvocation(invocation, component), null )
+            );
+   }
+
+   private Future schedule(TimerSchedule schedule, MeasuredRunnable runnable)
+   {
+      if ( schedule.getIntervalDuration()==null &&
+               schedule.getExpiration()==null &&
+               schedule.getDuration()==null )
+      {
+         return execute(runnable);
+      }
+
+      if ( scheduledExecutor.getQueue().size() >= queueSize )
+      {
+         rejected.incrementAndGet();
+         throw new RejectedExecutionException("too many timed asynchronous calls are scheduled: " + queueSize);
+      }
+      submitted.incrementAndGet();
+      return ThreadPoolDispatcher.scheduleWithExecutorService(scheduledExecutor, schedule, runnable);
+   }
+
+   private Future execute(MeasuredRunnable runnable)
+   {
+      Future future = submit(runnable);
+      return future==null ? callerRuns(runnable) : future;
+   }
+
+   /**
+    * @return the future, or null if the queue is full
+    * and the caller should make the call
+    */
+   private Future submit(MeasuredRunnable runnable)
+   {
+      try
+      {
+         runnable.enqueued = System.nanoTime();
+         Future future = executor.submit(runnable);
+         runnable.setFuture(future);
+         submitted.incrementAndGet();
+         return future;
+      }
+      catch (RejectedExecutionException ree)
+      {
+         rejected.incrementAndGet();
+         if ( CALLER_RUNS.equals(rejectionPolicy) && !executor.isShutdown() )
+         {
+            return null;
+         }
+         throw ree;
+      }
+   }
+
+   private Future callerRuns(MeasuredRunnable runnable)
+   {
+      log.debug("asynchronous queue full, running in calling thread: " + runnable);
+      callerRuns.incrementAndGet();
+      FutureTask<Object> future = new FutureTask<Object>(runnable, null);
+      runnable.setFuture(future);
+      runnable.enqueued = System.nanoTime();
+      Context[] contexts = Lifecycle.suspendContexts();
+      try
+      {
+         future.run();
+      }
+      finally
+      {
+         Lifecycle.resumeContexts(contexts);
+      }
+      return future;
+   }
+
+   @Destroy
+   public void destroy()
+   {
+      unregisterMBean();
+      executor.shutdown();
+      scheduledExecutor.shutdown();
+      try
+      {
+         executor.awaitTermination(5, TimeUnit.SECONDS);
+         scheduledExecutor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+
+      }
+   }
+
+   class MeasuredRunnable extends RunnableAsynchronous
+   {
+      private final EventKey key;
+      private volatile long enqueued;
+
+      MeasuredRunnable(Asynchronous async, EventKey key)
+      {
+         super(async);
+         this.key = key;
+      }
+
+      @Override
+      public void run()
+      {
+         if (key!=null)
+         {
+            synchronized (pendingEvents)
+            {
+               pendingEvents.remove(key);
+            }
+         }
+
+         long start = System.nanoTime();
+         if (enqueued!=0)
+         {
+            long waited = TimeUnit.NANOSECONDS.toMillis(start - enqueued);
+            queueTime.addAndGet(waited);
+            long max = maxQueueTime.get();
+            while ( waited>max && !maxQueueTime.compareAndSet(max, waited) )
+            {
+               max = maxQueueTime.get();
+            }
+            //timed calls are only measured on their first run
+            enqueued = 0;
+         }
+         try
+         {
+            super.run();
+         }
+         finally
+         {
+            executionTime.addAndGet( TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
+            completed.incrementAndGet();
+         }
+      }
+   }
+
+   /**
+    * Identifies asynchronous events with the same type and parameters
+    */
+   static class EventKey
+   {
+      private final String type;
+      private final Object[] parameters;
+
+      EventKey(String type, Object[] parameters)
+      {
+         this.type = type;
+         this.parameters = parameters;
+      }
+
+      @Override
+      public boolean equals(Object other)
+      {
+         if ( !(other instanceof EventKey) ) return false;
+         EventKey that = (EventKey) other;
+         return type.equals(that.type) && Arrays.deepEquals(parameters, that.parameters);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return type.hashCode() * 31 + Arrays.deepHashCode(parameters);
+      }
+   }
+
+   private void registerMBean()
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName( getObjectName() );
+         if ( !server.isRegistered(name) )
+         {
+            server.registerMBean(this, name);
+            registeredName = name;
+         }
+      }
+      catch (Exception e)
+      {
+         log.warn("could not register asynchronous dispatcher with JMX", e);
+      }
+   }
+
+   private void unregisterMBean()
+   {
+      if (registeredName!=null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+         }
+         catch (Exception e)
+         {
+            log.debug("could not unregister asynchronous dispatcher from JMX", e);
+         }
+         registeredName = null;
+      }
+   }
+
+   public int getQueueDepth()
+   {
+      return executor.getQueue().size();
+   }
+
+   public int getScheduledCount()
+   {
+      return scheduledExecutor.getQueue().size();
+   }
+
+   public int getActiveCount()
+   {
+      return executor.getActiveCount() + scheduledExecutor.getActiveCount();
+   }
+
+   public long getSubmittedCount()
+   {
+      return submitted.get();
+   }
+
+   public long getCompletedCount()
+   {
+      return completed.get();
+   }
+
+   public long getRejectedCount()
+   {
+      return rejected.get();
+   }
+
+   public long getCallerRunsCount()
+   {
+      return callerRuns.get();
+   }
+
+   public long getCoalescedCount()
+   {
+      return coalesced.get();
+   }
+
+   public double getAverageQueueTime()
+   {
+      long count = completed.get();
+      return count==0 ? 0 : (double) queueTime.get() / count;
+   }
+
+   public long getMaxQueueTime()
+   {
+      return maxQueueTime.get();
+   }
+
+   public double getAverageExecutionTime()
+   {
+      long count = completed.get();
+      return count==0 ? 0 : (double) executionTime.get() / count;
+   }
+
+   public int getThreadPoolSize()
+   {
+      return threadPoolSize;
+   }
+
+   public void setThreadPoolSize(int threadPoolSize)
+   {
+      this.threadPoolSize = threadPoolSize;
+   }
+
+   public int getScheduledThreadPoolSize()
+   {
+      return scheduledThreadPoolSize;
+   }
+
+   public void setScheduledThreadPoolSize(int scheduledThreadPoolSize)
+   {
+      this.scheduledThreadPoolSize = scheduledThreadPoolSize;
+   }
+
+   public int getQueueSize()
+   {
+      return queueSize;
+   }
+
+   /**
+    * The maximum number of asynchronous calls waiting for a thread,
+    * and of timed calls waiting for their schedule
+    */
+   public void setQueueSize(int queueSize)
+   {
+      this.queueSize = queueSize;
+   }
+
+   public String getRejectionPolicy()
+   {
+      return rejectionPolicy;
+   }
+
+   /**
+    * What to do when the queue is full, either "abort" or "caller-runs"
+    */
+   public void setRejectionPolicy(String rejectionPolicy)
+   {
+      this.rejectionPolicy = rejectionPolicy;
+   }
+
+   public boolean isCoalesceEvents()
+   {
+      return coalesceEvents;
+   }
+
+   /**
+    * Merge an asynchronous event into an identical event that
+    * is still waiting for a thread
+    */
+   public void setCoalesceEvents(boolean coalesceEvents)
+   {
+      this.coalesceEvents = coalesceEvents;
+   }
+
+   public String getObjectName()
+   {
+      if (objectName==null)
+      {
+         ServletContext servletContext = ServletLifecycle.getCurrentServletContext();
+         String application = servletContext==null ? "" : servletContext.getContextPath();
+         return "org.jboss.seam:service=AsynchronousDispatcher,application=" + ObjectName.quote(application);
+      }
+      return objectName;
+   }
+
+   /**
+    * The JMX name of the dispatcher
+    */
+   public void setObjectName(String objectName)
+   {
+      this.objectName = objectName;
+   }
+
+}
@@ -0,0 +1,73 @@
+package org.jboss.seam.async;
+
+/**
+ * JMX view of the BoundedThreadPoolDispatcher.
+ * 
+ * @see BoundedThreadPoolDispatcher
+ */
+public interface BoundedThreadPoolDispatcherMBean
+{
+   /**
+    * @return the number of asynchronous calls and events waiting 
+    * for a thread
+    */
+   public int getQueueDepth();
+   
+   /**
+    * @return the number of timed calls and events waiting for 
+    * their schedule
+    */
+   public int getScheduledCount();
+   
+   public int getActiveCount();
+   
+   public long getSubmittedCount();
+   
+   public long getCompletedCount();
+   
+   /**
+    * @return the number of calls and events refused because 
+    * the queue was full
+    */
+   public long getRejectedCount();
+   
+   /**
+    * @return the number of calls made by the submitting thread
+    * because the queue was full
+    */
+   public long getCallerRunsCount();
+   
+   /**
+    * @return the number of asynchronous events merged into an 
+    * identical event that was still waiting for a thread
+    */
+   public long getCoalescedCount();
+   
+   /**
+    * @return the average time an asynchronous call waited for 
+    * a thread, in milliseconds
+    */
+   public double getAverageQueueTime();
+   
+   /**
+    * @return the longest time an asynchronous call waited for 
+    * a thread, in milliseconds
+    */
+   public long getMaxQueueTime();
+   
+   /**
+    * @return the average execution time of an asynchronous 
+    * call, in milliseconds
+    */
+   public double getAverageExecutionTime();
+   
+   public int getThreadPoolSize();
+   
+   public int getScheduledThreadPoolSize();
+   
+   public int getQueueSize();
+   
+   public String getRejectionPolicy();
+   
+   public boolean isCoalesceEvents();
+}
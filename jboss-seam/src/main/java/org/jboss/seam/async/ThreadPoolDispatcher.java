@@ -65,6 +65,11 @@ public class ThreadPoolDispatcher extends AbstractDispatcher<Future, TimerSchedu
    }
    
    private Future scheduleWithExecutorService(TimerSchedule schedule, RunnableAsynchronous runnable)
+   {
+      return scheduleWithExecutorService(executor, schedule, runnable);
+   }
+   
+   static Future scheduleWithExecutorService(ScheduledExecutorService executor, TimerSchedule schedule, RunnableAsynchronous runnable)
    {
       Future future = null;
       if ( schedule.getIntervalDuration()!=null )
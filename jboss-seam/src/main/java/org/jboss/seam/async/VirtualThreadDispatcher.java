@@ -0,0 +1,405 @@
+package org.jboss.seam.async;
+
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.lang.reflect.Method;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.annotations.Create;
+import org.jboss.seam.annotations.Destroy;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.Startup;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.async.ThreadPoolDispatcher.RunnableAsynchronous;
+import org.jboss.seam.intercept.InvocationContext;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Dispatcher implementation that runs each asynchronous call
+ * and event on its own virtual thread, for applications where
+ * asynchronous methods mostly block on I/O. Timed calls and
+ * events are triggered by a small ScheduledThreadPoolExecutor,
+ * and then run on a virtual thread.
+ *
+ * If the JVM does not support virtual threads, the dispatcher
+ * falls back to a fixed pool of platform threads.
+ *
+ * The number of calls to the same component that run at once
+ * may be limited with maxConcurrentCallsPerComponent. Calls
+ * over the limit wait in a queue, without holding a thread.
+ *
+ * @see ThreadPoolDispatcher
+ */
+@Startup
+@Scope(ScopeType.APPLICATION)
+@Name("org.jboss.seam.async.dispatcher")
+@Install(value=false, precedence=BUILT_IN)
+@BypassInterceptors
+public class VirtualThreadDispatcher extends AbstractDispatcher<Future, TimerSchedule>
+{
+   private static final LogProvider log = Logging.getLogProvider(VirtualThreadDispatcher.class);
+
+   private int threadPoolSize = 10;
+   private int scheduledThreadPoolSize = 1;
+   private int maxConcurrentCallsPerComponent = 0;
+
+   private ExecutorService executor;
+   private ScheduledThreadPoolExecutor scheduler;
+   private boolean virtualThreads;
+
+   private final ConcurrentMap<String, Permits> permits = new ConcurrentHashMap<String, Permits>();
+
+   @Create
+   public void startup()
+   {
+      executor = createVirtualThreadExecutor();
+      virtualThreads = executor!=null;
+      if (!virtualThreads)
+      {
+         log.info("virtual threads are not supported by this JVM, using a pool of " + threadPoolSize + " threads");
+         executor = Executors.newFixedThreadPool(threadPoolSize);
+      }
+      scheduler = new ScheduledThreadPoolExecutor(scheduledThreadPoolSize);
+   }
+
+   private static ExecutorService createVirtualThreadExecutor()
+   {
+      try
+      {
+         Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+         return (ExecutorService) method.invoke(null);
+      }
+      catch (NoSuchMethodException nsme)
+      {
+         return null;
+      }
+      catch (Exception e)
+      {
+         //e.g. preview feature not enabled
+         log.debug("could not create virtual thread executor", e);
+         return null;
+      }
+   }
+
+   public Future scheduleAsynchronousEvent(String type, Object... parameters)
+   {
+      return execute( new RunnableAsynchronous( new AsynchronousEvent(type, parameters) ), null );
+   }
+
+   public Future scheduleTimedEvent(String type, TimerSchedule schedule, Object... parameters)
+   {
+      return schedule( schedule, new RunnableAsynchronous( new AsynchronousEvent(type, parameters) ), null );
+   }
+
+   public Future scheduleInvocation(InvocationContext invocation, Component component)
+   {
+      return schedule(
+               createTimerSchedule(invocation),
+               new RunnableAsynchronous( new AsynchronousInvocation(invocation, component) ),
+               getPermits( component.getName() )
+            );
+   }
+
+   private Future schedule(TimerSchedule schedule, RunnableAsynchronous runnable, Permits permits)
+   {
+      if ( schedule.getIntervalDuration()==null &&
+               schedule.getExpiration()==null &&
+               schedule.getDuration()==null )
+      {
+         return execute(runnable, permits);
+      }
+      TimedCall call = new TimedCall(runnable, permits);
+      ThreadPoolDispatcher.scheduleWithExecutorService(scheduler, schedule, call);
+      return call;
+   }
+
+   private Future execute(RunnableAsynchronous runnable, Permits permits)
+   {
+      FutureTask<Object> task = new FutureTask<Object>(runnable, null);
+      runnable.setFuture(task);
+      dispatch(task, permits);
+      return task;
+   }
+
+   private void dispatch(Runnable task, Permits permits)
+   {
+      if (permits==null)
+      {
+         executor.execute(task);
+      }
+      else
+      {
+         permits.execute(task);
+      }
+   }
+
+   private Permits getPermits(String componentName)
+   {
+      if (maxConcurrentCallsPerComponent<=0)
+      {
+         return null;
+      }
+      Permits result = permits.get(componentName);
+      if (result==null)
+      {
+         Permits created = new Permits(maxConcurrentCallsPerComponent);
+         result = permits.putIfAbsent(componentName, created);
+         if (result==null) result = created;
+      }
+      return result;
+   }
+
+   @Destroy
+   public void destroy()
+   {
+      scheduler.shutdown();
+      executor.shutdown();
+      try
+      {
+         scheduler.awaitTermination(5, TimeUnit.SECONDS);
+         executor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException ie)
+      {
+
+      }
+   }
+
+   /**
+    * Limits the calls to a component that run at once. A call
+    * that finds no permit waits in a queue, rather than holding
+    * a thread, and is handed to the executor when a running call 
+    * finishes.
+    */
+   class Permits
+   {
+      private int available;
+      private final Queue<Runnable> waiting = new LinkedList<Runnable>();
+
+      Permits(int available)
+      {
+         this.available = available;
+      }
+
+      void execute(Runnable task)
+      {
+         synchronized (this)
+         {
+            if (available==0)
+            {
+               waiting.add(task);
+               return;
+            }
+            available--;
+         }
+         submit(task);
+      }
+
+      private void submit(final Runnable task)
+      {
+         executor.execute( new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  task.run();
+               }
+               finally
+               {
+                  release();
+               }
+            }
+         });
+      }
+
+      private void release()
+      {
+         Runnable next;
+         synchronized (this)
+         {
+            next = waiting.poll();
+            if (next==null)
+            {
+               available++;
+               return;
+            }
+         }
+         //the permit passes to the next call
+         submit(next);
+      }
+   }
+
+   /**
+    * Hands a timed call from the scheduler to the executor when
+    * it is due. As with ThreadPoolDispatcher, the runs of a
+    * repeating call never overlap: a run that falls due while the 
+    * previous one is still going starts when it finishes. Cancelling 
+    * the call also cancels a run that has already been handed off.
+    */
+   class TimedCall extends RunnableAsynchronous implements Future<Object>
+   {
+      private final RunnableAsynchronous runnable;
+      private final Permits permits;
+      private final AtomicInteger due = new AtomicInteger();
+      private volatile Future<?> scheduled;
+      private volatile FutureTask<Object> current;
+
+      TimedCall(RunnableAsynchronous runnable, Permits permits)
+      {
+         super(null);
+         this.runnable = runnable;
+         this.permits = permits;
+         runnable.setFuture(this);
+      }
+
+      @Override
+      public void run()
+      {
+         if ( due.getAndIncrement()==0 )
+         {
+            dispatchRun();
+         }
+      }
+
+      private void dispatchRun()
+      {
+         FutureTask<Object> task = new FutureTask<Object>(runnable, null)
+         {
+            @Override
+            protected void done()
+            {
+               if ( due.decrementAndGet()>0 )
+               {
+                  dispatchRun();
+               }
+            }
+         };
+         current = task;
+         //the scheduler may run the call before its future is set
+         Future<?> future = scheduled;
+         if ( future!=null && future.isCancelled() )
+         {
+            due.set(0);
+            current.cancel(false);
+            return;
+         }
+         dispatch(task, permits);
+      }
+
+      @Override
+      public void setFuture(Future future)
+      {
+         scheduled = future;
+      }
+
+      public boolean cancel(boolean mayInterruptIfRunning)
+      {
+         boolean cancelled = scheduled.cancel(mayInterruptIfRunning);
+         Future<?> run = current;
+         if (run!=null)
+         {
+            run.cancel(mayInterruptIfRunning);
+         }
+         return cancelled;
+      }
+
+      public boolean isCancelled()
+      {
+         return scheduled.isCancelled();
+      }
+
+      public boolean isDone()
+      {
+         Future<?> run = current;
+         return scheduled.isDone() && ( run==null || run.isDone() );
+      }
+
+      public Object get() throws InterruptedException, ExecutionException
+      {
+         scheduled.get();
+         Future<?> run = current;
+         if (run!=null)
+         {
+            run.get();
+         }
+         return null;
+      }
+
+      public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException
+      {
+         long deadline = System.nanoTime() + unit.toNanos(timeout);
+         scheduled.get(timeout, unit);
+         Future<?> run = current;
+         if (run!=null)
+         {
+            run.get( deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+         }
+         return null;
+      }
+   }
+
+   /**
+    * @return true if asynchronous calls run on virtual threads
+    */
+   public boolean isVirtualThreads()
+   {
+      return virtualThreads;
+   }
+
+   public int getThreadPoolSize()
+   {
+      return threadPoolSize;
+   }
+
+   /**
+    * The size of the thread pool to use when the JVM does not
+    * support virtual threads
+    */
+   public void setThreadPoolSize(int threadPoolSize)
+   {
+      this.threadPoolSize = threadPoolSize;
+   }
+
+   public int getScheduledThreadPoolSize()
+   {
+      return scheduledThreadPoolSize;
+   }
+
+   public void setScheduledThreadPoolSize(int scheduledThreadPoolSize)
+   {
+      this.scheduledThreadPoolSize = scheduledThreadPoolSize;
+   }
+
+   public int getMaxConcurrentCallsPerComponent()
+   {
+      return maxConcurrentCallsPerComponent;
+   }
+
+   /**
+    * The maximum number of asynchronous calls to the same component
+    * that may run at once, or 0 for no limit
+    */
+   public void setMaxConcurrentCallsPerComponent(int maxConcurrentCallsPerComponent)
+   {
+      this.maxConcurrentCallsPerComponent = maxConcurrentCallsPerComponent;
+   }
+
+}
@@ -0,0 +1,82 @@
+package org.jboss.seam.cache;
+
+/**
+ * A count-min sketch of how often keys were used recently, kept
+ * in a fixed amount of memory. Each key increments four small
+ * counters, and its estimated frequency is the lowest of them.
+ * All counters are halved after a number of increments, so that
+ * keys which were popular a long time ago are forgotten.
+ *
+ * Counters are updated without synchronization, since an
+ * occasionally lost increment does not matter for an estimate.
+ */
+class FrequencySketch
+{
+   private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xcbf29ce4 };
+   private static final int MAX_COUNT = 15;
+
+   private final int[] table;
+   private final int mask;
+   private final int sampleSize;
+   private int additions;
+
+   /**
+    * @param maxSize the number of entries held by the cache
+    */
+   FrequencySketch(int maxSize)
+   {
+      int length = 64;
+      while ( length < 4L * maxSize && length < (1 << 24) )
+      {
+         length <<= 1;
+      }
+      table = new int[length];
+      mask = length - 1;
+      sampleSize = (int) Math.min( 10L * maxSize, Integer.MAX_VALUE );
+   }
+
+   void increment(int hash)
+   {
+      boolean added = false;
+      for (int i=0; i<SEEDS.length; i++)
+      {
+         int index = index(hash, i);
+         if ( table[index]<MAX_COUNT )
+         {
+            table[index]++;
+            added = true;
+         }
+      }
+      if ( added && ++additions>=sampleSize )
+      {
+         reset();
+      }
+   }
+
+   int frequency(int hash)
+   {
+      int frequency = MAX_COUNT;
+      for (int i=0; i<SEEDS.length; i++)
+      {
+         frequency = Math.min( frequency, table[ index(hash, i) ] );
+      }
+      return frequency;
+   }
+
+   private void reset()
+   {
+      for (int i=0; i<table.length; i++)
+      {
+         table[i] >>>= 1;
+      }
+      additions = additions / 2;
+   }
+
+   private int index(int hash, int i)
+   {
+      int h = (hash + SEEDS[i]) * SEEDS[i];
+      h += h >>> 16;
+      return h & mask;
+   }
+
+}
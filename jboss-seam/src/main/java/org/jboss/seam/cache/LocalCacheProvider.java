@@ -0,0 +1,277 @@
+package org.jboss.seam.cache;
+
+import static org.jboss.seam.ScopeType.APPLICATION;
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.jboss.seam.annotations.AutoCreate;
+import org.jboss.seam.annotations.Create;
+import org.jboss.seam.annotations.Destroy;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Implementation of CacheProvider which keeps the cache in the
+ * memory of the local JVM, and needs no other library and no
+ * configuration file. Each region holds at most maxSize entries,
+ * and evicts entries which are rarely used first (see
+ * {@link LocalCacheRegion}). The size and the time to live of
+ * each region may be configured by its name.
+ *
+ * The provider registers itself with the platform MBeanServer.
+ */
+@Name("org.jboss.seam.cache.cacheProvider")
+@Scope(APPLICATION)
+@BypassInterceptors
+@Install(value = false, precedence = BUILT_IN)
+@AutoCreate
+public class LocalCacheProvider extends CacheProvider<Map<String, LocalCacheRegion>> implements LocalCacheProviderMBean
+{
+   private static final LogProvider log = Logging.getLogProvider(LocalCacheProvider.class);
+
+   private int maxSize = 10000;
+   private long timeToLive;
+   private Map<String, Integer> regionMaxSizes = new HashMap<String, Integer>();
+   private Map<String, Long> regionTimeToLives = new HashMap<String, Long>();
+   private String objectName;
+
+   private final ConcurrentMap<String, LocalCacheRegion> regions = new ConcurrentHashMap<String, LocalCacheRegion>();
+   private ObjectName registeredName;
+
+   @Override
+   public Map<String, LocalCacheRegion> getDelegate()
+   {
+      return regions;
+   }
+
+   @Override
+   public Object get(String region, String key)
+   {
+      return getCacheRegion(region).get(key);
+   }
+
+   @Override
+   public void put(String region, String key, Object object)
+   {
+      getCacheRegion(region).put(key, object);
+   }
+
+   @Override
+   public void remove(String region, String key)
+   {
+      getCacheRegion(region).remove(key);
+   }
+
+   @Override
+   public void clear()
+   {
+      for ( LocalCacheRegion region: regions.values() )
+      {
+         region.clear();
+      }
+   }
+
+   public LocalCacheRegion getCacheRegion(String regionName)
+   {
+      if (regionName == null)
+      {
+         regionName = getDefaultRegion();
+      }
+      LocalCacheRegion region = regions.get(regionName);
+      if (region == null)
+      {
+         Integer regionMaxSize = regionMaxSizes.get(regionName);
+         Long regionTimeToLive = regionTimeToLives.get(regionName);
+         LocalCacheRegion newRegion = new LocalCacheRegion( regionName,
+               regionMaxSize == null ? maxSize : regionMaxSize,
+               regionTimeToLive == null ? timeToLive : regionTimeToLive );
+         region = regions.putIfAbsent(regionName, newRegion);
+         if (region == null)
+         {
+            log.debug("local cache region created: " + regionName);
+            region = newRegion;
+         }
+      }
+      return region;
+   }
+
+   @Create
+   public void create()
+   {
+      registerMBean();
+   }
+
+   @Destroy
+   public void destroy()
+   {
+      unregisterMBean();
+      regions.clear();
+   }
+
+   private void registerMBean()
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName( getObjectName() );
+         if ( !server.isRegistered(name) )
+         {
+            server.registerMBean(this, name);
+            registeredName = name;
+         }
+      }
+      catch (Exception e)
+      {
+         log.warn("could not register local cache provider with JMX", e);
+      }
+   }
+
+   private void unregisterMBean()
+   {
+      if (registeredName != null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+         }
+         catch (Exception e)
+         {
+            log.debug("could not unregister local cache provider from JMX", e);
+         }
+         registeredName = null;
+      }
+   }
+
+   public String[] getRegionNames()
+   {
+      return regions.keySet().toArray( new String[0] );
+   }
+
+   public long getHitCount()
+   {
+      long hits = 0;
+      for ( LocalCacheRegion region: regions.values() )
+      {
+         hits += region.getHitCount();
+      }
+      return hits;
+   }
+
+   public long getMissCount()
+   {
+      long misses = 0;
+      for ( LocalCacheRegion region: regions.values() )
+      {
+         misses += region.getMissCount();
+      }
+      return misses;
+   }
+
+   public double getHitRatio()
+   {
+      long hits = getHitCount();
+      long requests = hits + getMissCount();
+      return requests == 0 ? 1.0 : (double) hits / requests;
+   }
+
+   public double getHitRatio(String region)
+   {
+      LocalCacheRegion cacheRegion = regions.get(region);
+      return cacheRegion == null ? 1.0 : cacheRegion.getHitRatio();
+   }
+
+   public int getSize(String region)
+   {
+      LocalCacheRegion cacheRegion = regions.get(region);
+      return cacheRegion == null ? 0 : cacheRegion.getSize();
+   }
+
+   public long getEvictionCount(String region)
+   {
+      LocalCacheRegion cacheRegion = regions.get(region);
+      return cacheRegion == null ? 0 : cacheRegion.getEvictionCount();
+   }
+
+   /**
+    * The maximum number of entries in a region, unless the
+    * region is listed in regionMaxSizes, or 0 for no limit
+    */
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   public void setMaxSize(int maxSize)
+   {
+      this.maxSize = maxSize;
+   }
+
+   /**
+    * The time in milliseconds an entry is kept in a region,
+    * unless the region is listed in regionTimeToLives, or 0
+    * to keep it until it is evicted
+    */
+   public long getTimeToLive()
+   {
+      return timeToLive;
+   }
+
+   public void setTimeToLive(long timeToLive)
+   {
+      this.timeToLive = timeToLive;
+   }
+
+   public Map<String, Integer> getRegionMaxSizes()
+   {
+      return regionMaxSizes;
+   }
+
+   public void setRegionMaxSizes(Map<String, Integer> regionMaxSizes)
+   {
+      this.regionMaxSizes = regionMaxSizes;
+   }
+
+   public Map<String, Long> getRegionTimeToLives()
+   {
+      return regionTimeToLives;
+   }
+
+   public void setRegionTimeToLives(Map<String, Long> regionTimeToLives)
+   {
+      this.regionTimeToLives = regionTimeToLives;
+   }
+
+   public String getObjectName()
+   {
+      if (objectName == null)
+      {
+         ServletContext servletContext = ServletLifecycle.getCurrentServletContext();
+         String application = servletContext == null ? "" : servletContext.getContextPath();
+         return "org.jboss.seam:service=LocalCacheProvider,application=" + ObjectName.quote(application);
+      }
+      return objectName;
+   }
+
+   /**
+    * The JMX name of the provider
+    */
+   public void setObjectName(String objectName)
+   {
+      this.objectName = objectName;
+   }
+
+}
@@ -0,0 +1,54 @@
+package org.jboss.seam.cache;
+
+/**
+ * JMX view of the LocalCacheProvider.
+ *
+ * @see LocalCacheProvider
+ */
+public interface LocalCacheProviderMBean
+{
+   /**
+    * @return the names of the regions created so far
+    */
+   public String[] getRegionNames();
+
+   /**
+    * @return the number of reads of all regions which found
+    * an entry
+    */
+   public long getHitCount();
+
+   /**
+    * @return the number of reads of all regions which found
+    * no entry
+    */
+   public long getMissCount();
+
+   /**
+    * @return the proportion of reads of all regions which found
+    * an entry
+    */
+   public double getHitRatio();
+
+   /**
+    * @return the proportion of reads of the region which found
+    * an entry
+    */
+   public double getHitRatio(String region);
+
+   /**
+    * @return the number of entries in the region
+    */
+   public int getSize(String region);
+
+   /**
+    * @return the number of entries evicted from the region to
+    * make room for new entries
+    */
+   public long getEvictionCount(String region);
+
+   /**
+    * Remove all entries from all regions
+    */
+   public void clear();
+}
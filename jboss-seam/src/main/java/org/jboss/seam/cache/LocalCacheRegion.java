@@ -0,0 +1,250 @@
+package org.jboss.seam.cache;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A region of the {@link LocalCacheProvider}, holding at most a
+ * given number of entries, each for at most a given time.
+ *
+ * When the region is full, the oldest entry is evicted, unless
+ * it has been used more often recently than the entry just added
+ * (as estimated by a {@link FrequencySketch}). In that case the
+ * new entry is evicted instead, and the old one is moved to the
+ * back of the queue. Entries that are used often stay cached,
+ * and entries that are only used once do not push them out.
+ *
+ * Reads do not lock. Writes lock only when the region is full.
+ */
+public class LocalCacheRegion
+{
+   private final String name;
+   private final int maxSize;
+   private final long timeToLive;
+
+   private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+   private final Queue<Entry> evictionOrder = new ConcurrentLinkedQueue<Entry>();
+   private final AtomicInteger queued = new AtomicInteger();
+   private final FrequencySketch sketch;
+   private final Object evictionLock = new Object();
+
+   private final AtomicLong hits = new AtomicLong();
+   private final AtomicLong misses = new AtomicLong();
+   private final AtomicLong evictions = new AtomicLong();
+   private final AtomicLong expirations = new AtomicLong();
+
+   private static class Entry
+   {
+      private final String key;
+      private volatile Value value;
+
+      private Entry(String key, Value value)
+      {
+         this.key = key;
+         this.value = value;
+      }
+   }
+
+   private static class Value
+   {
+      private final Object object;
+      private final long expires;
+
+      private Value(Object object, long expires)
+      {
+         this.object = object;
+         this.expires = expires;
+      }
+
+      private boolean isExpired(long now)
+      {
+         return expires!=0 && now>expires;
+      }
+   }
+
+   /**
+    * @param maxSize the maximum number of entries, or 0 for no limit
+    * @param timeToLive the time in milliseconds an entry is kept
+    * after it was put, or 0 to keep it until it is evicted
+    */
+   public LocalCacheRegion(String name, int maxSize, long timeToLive)
+   {
+      this.name = name;
+      this.maxSize = maxSize;
+      this.timeToLive = timeToLive;
+      this.sketch = maxSize>0 ? new FrequencySketch(maxSize) : null;
+   }
+
+   public Object get(String key)
+   {
+      if (sketch!=null)
+      {
+         sketch.increment( key.hashCode() );
+      }
+      Entry entry = entries.get(key);
+      if (entry!=null)
+      {
+         Value value = entry.value;
+         if ( !value.isExpired( System.currentTimeMillis() ) )
+         {
+            hits.incrementAndGet();
+            return value.object;
+         }
+         if ( entries.remove(key, entry) )
+         {
+            expirations.incrementAndGet();
+         }
+      }
+      misses.incrementAndGet();
+      return null;
+   }
+
+   public void put(String key, Object object)
+   {
+      if (sketch!=null)
+      {
+         sketch.increment( key.hashCode() );
+      }
+      Value value = new Value( object, timeToLive>0 ? System.currentTimeMillis() + timeToLive : 0 );
+
+      //replace the value of an existing entry, so that an entry
+      //is only ever queued once
+      Entry entry = entries.get(key);
+      if (entry==null)
+      {
+         Entry newEntry = new Entry(key, value);
+         entry = entries.putIfAbsent(key, newEntry);
+         if (entry==null)
+         {
+            evictionOrder.add(newEntry);
+            queued.incrementAndGet();
+            if ( maxSize>0 && ( entries.size()>maxSize || queued.get()>2*maxSize ) )
+            {
+               evict(newEntry);
+            }
+            return;
+         }
+      }
+      entry.value = value;
+   }
+
+   public void remove(String key)
+   {
+      entries.remove(key);
+   }
+
+   public void clear()
+   {
+      synchronized (evictionLock)
+      {
+         entries.clear();
+         evictionOrder.clear();
+         queued.set(0);
+      }
+   }
+
+   private void evict(Entry candidate)
+   {
+      synchronized (evictionLock)
+      {
+         while ( entries.size()>maxSize )
+         {
+            Entry victim = evictionOrder.poll();
+            if (victim==null)
+            {
+               break;
+            }
+            queued.decrementAndGet();
+            if ( entries.get(victim.key)!=victim )
+            {
+               //already removed
+               continue;
+            }
+
+            if ( victim!=candidate && entries.get(candidate.key)==candidate &&
+                  sketch.frequency( victim.key.hashCode() ) > sketch.frequency( candidate.key.hashCode() ) )
+            {
+               //keep the victim, which is used more often
+               evictionOrder.add(victim);
+               queued.incrementAndGet();
+               victim = candidate;
+            }
+            if ( entries.remove(victim.key, victim) )
+            {
+               evictions.incrementAndGet();
+            }
+         }
+
+         if ( queued.get()>2*maxSize )
+         {
+            //drop the queued entries which were removed
+            for ( Iterator<Entry> iter = evictionOrder.iterator(); iter.hasNext(); )
+            {
+               Entry entry = iter.next();
+               if ( entries.get(entry.key)!=entry )
+               {
+                  iter.remove();
+                  queued.decrementAndGet();
+               }
+            }
+         }
+      }
+   }
+
+   public String getName()
+   {
+      return name;
+   }
+
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+   public long getTimeToLive()
+   {
+      return timeToLive;
+   }
+
+   /**
+    * The number of entries, including expired entries which
+    * have not been read since they expired
+    */
+   public int getSize()
+   {
+      return entries.size();
+   }
+
+   public long getHitCount()
+   {
+      return hits.get();
+   }
+
+   public long getMissCount()
+   {
+      return misses.get();
+   }
+
+   public long getEvictionCount()
+   {
+      return evictions.get();
+   }
+
+   public long getExpirationCount()
+   {
+      return expirations.get();
+   }
+
+   public double getHitRatio()
+   {
+      long hits = getHitCount();
+      long requests = hits + getMissCount();
+      return requests==0 ? 1.0 : (double) hits / requests;
+   }
+
+}
@@ -69,9 +69,10 @@ public class BasicContext implements Context
 
    public void remove(String name)
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preRemoveVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preRemoveVariable.", name);
       map.remove(name);
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postRemoveVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postRemoveVariable.", name);
    }
 
    public void set(String name, Object value)
@@ -79,10 +80,11 @@ public class BasicContext implements Context
       // We can't raise a preSetVariable event for Events itself because it doesn't exist yet...
       if ( !Seam.getComponentName(Events.class).equals(name) && Events.exists() ) 
       {
-         Events.instance().raiseEvent("org.jboss.seam.preSetVariable." + name);
+         Events.instance().raiseQualifiedEvent("org.jboss.seam.preSetVariable.", name);
       }
       map.put(name, value);
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postSetVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postSetVariable.", name);
    }
 
    public void flush() {}
@@ -77,7 +77,7 @@ public class BusinessProcessContext implements Context
 
    public void set(String name, Object value) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preSetVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preSetVariable.", name);
       if (value==null)
       {
          //yes, we need this
@@ -88,7 +88,7 @@ public class BusinessProcessContext implements Context
          removals.remove(name);
          additions.put(name, value);
       }
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postSetVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postSetVariable.", name);
    }
 
    public boolean isSet(String name) 
@@ -98,10 +98,10 @@ public class BusinessProcessContext implements Context
    
    public void remove(String name) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preRemoveVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preRemoveVariable.", name);
       additions.remove(name);
       removals.add(name);
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postRemoveVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postRemoveVariable.", name);
    }
 
    public String[] getNames() 
@@ -193,12 +193,16 @@ public class Contexts
     */
    public static Object lookupInStatefulContexts(String name)
    {
+      ResolutionCache cache = ResolutionCache.instance();
+      ScopeType resolved = cache==null ? null : cache.get(name);
+      
       if (isMethodContextActive())
       {
          Object result = getMethodContext().get(name);
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in method context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.METHOD);
             return result;
          }
       }
@@ -209,26 +213,29 @@ public class Contexts
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in event context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.EVENT);
             return result;
          }
       }
       
-      if ( isPageContextActive() )
+      if ( isPageContextActive() && !ResolutionCache.isAbsent(resolved, ScopeType.PAGE) )
       {
          Object result = getPageContext().get(name);
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in page context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.PAGE);
             return result;
          }
       }
       
-      if (isConversationContextActive())
+      if ( isConversationContextActive() && !ResolutionCache.isAbsent(resolved, ScopeType.CONVERSATION) )
       {
          Object result = getConversationContext().get(name);
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in conversation context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.CONVERSATION);
             return result;
          }
       }
@@ -239,6 +246,7 @@ public class Contexts
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in session context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.SESSION);
             return result;
          }
       }
@@ -249,6 +257,7 @@ public class Contexts
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in business process context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.BUSINESS_PROCESS);
             return result;
          }
       }
@@ -259,20 +268,31 @@ public class Contexts
          if (result!=null)
          {
              if ( log.isTraceEnabled() ) log.trace("found in application context: " + name);
+            if (cache!=null) cache.put(name, ScopeType.APPLICATION);
             return result;
          }
       }
       
+      if (cache!=null) cache.put(name, ScopeType.UNSPECIFIED);
       return null;
       
    }
    
+   /**
+    * Forget where context variables were found by lookupInStatefulContexts()
+    * during the current request. Called when the current conversation changes.
+    */
+   public static void clearResolutionCache()
+   {
+      ResolutionCache.forgetAll();
+   }
+   
    /**
     * Destroy all components in the given context
     */
    static void destroy(Context context)
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preDestroyContext." + context.getType().toString());
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preDestroyContext.", context.getType().toString());
       
       Lifecycle.startDestroying();
       try
@@ -286,7 +306,7 @@ public class Contexts
                Object object = context.get(name);
                if (object!=null) //in a portal environment, this is possible
                {
-                  if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preDestroy." + name);
+                  if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preDestroy.", name);
                   component.destroy(object);
                }
             }
@@ -297,7 +317,7 @@ public class Contexts
          Lifecycle.stopDestroying();
       }
       
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postDestroyContext." + context.getType().toString());
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postDestroyContext.", context.getType().toString());
    }
    
    /**
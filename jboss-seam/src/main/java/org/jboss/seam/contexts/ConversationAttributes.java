@@ -0,0 +1,137 @@
+package org.jboss.seam.contexts;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
+
+/**
+ * The variables of a conversation, held by a single session
+ * attribute. The servlet container only sees this map, so the
+ * map passes session activation and binding events on to the
+ * variables, as the container would if each variable was a
+ * session attribute of its own.
+ *
+ * @see ServerConversationContext
+ */
+class ConversationAttributes extends ConcurrentHashMap<String, Object>
+      implements HttpSessionActivationListener, HttpSessionBindingListener
+{
+   private static final long serialVersionUID = -3614382467411379235L;
+
+   private final String key;
+
+   //the session this map is bound to, or null if it is not bound
+   private transient volatile HttpSession session;
+
+   ConversationAttributes(String key)
+   {
+      this.key = key;
+   }
+
+   /**
+    * Add or replace a variable, notifying the old and the new value
+    * if the map is bound to a session
+    */
+   void setAttribute(String name, Object value)
+   {
+      Object oldValue = put(name, value);
+      if (session!=null && oldValue!=value)
+      {
+         unbound(session, name, oldValue);
+         bound(session, name, value);
+      }
+   }
+
+   /**
+    * Remove a variable, notifying it if the map is bound to a session
+    *
+    * @return true if the variable was removed
+    */
+   boolean removeAttribute(String name)
+   {
+      Object oldValue = remove(name);
+      if (session!=null)
+      {
+         unbound(session, name, oldValue);
+      }
+      return oldValue!=null;
+   }
+
+   public void valueBound(HttpSessionBindingEvent event)
+   {
+      //the map is put in the session again whenever it changes
+      if (session==null)
+      {
+         session = event.getSession();
+         for ( Map.Entry<String, Object> entry: entrySet() )
+         {
+            bound( session, entry.getKey(), entry.getValue() );
+         }
+      }
+   }
+
+   public void valueUnbound(HttpSessionBindingEvent event)
+   {
+      if (session!=null)
+      {
+         for ( Map.Entry<String, Object> entry: entrySet() )
+         {
+            unbound( event.getSession(), entry.getKey(), entry.getValue() );
+         }
+         session = null;
+      }
+   }
+
+   public void sessionWillPassivate(HttpSessionEvent event)
+   {
+      for ( Object value: values() )
+      {
+         if (value instanceof HttpSessionActivationListener)
+         {
+            ( (HttpSessionActivationListener) value ).sessionWillPassivate(event);
+         }
+      }
+   }
+
+   public void sessionDidActivate(HttpSessionEvent event)
+   {
+      session = event.getSession();
+      for ( Object value: values() )
+      {
+         if (value instanceof HttpSessionActivationListener)
+         {
+            ( (HttpSessionActivationListener) value ).sessionDidActivate(event);
+         }
+      }
+   }
+
+   private void bound(HttpSession session, String name, Object value)
+   {
+      if (value instanceof HttpSessionBindingListener)
+      {
+         ( (HttpSessionBindingListener) value ).valueBound( new HttpSessionBindingEvent( session, getName(name), value ) );
+      }
+   }
+
+   private void unbound(HttpSession session, String name, Object value)
+   {
+      if (value instanceof HttpSessionBindingListener)
+      {
+         ( (HttpSessionBindingListener) value ).valueUnbound( new HttpSessionBindingEvent( session, getName(name), value ) );
+      }
+   }
+
+   /**
+    * The name the variable would have as a session attribute
+    */
+   private String getName(String name)
+   {
+      return key + '$' + name;
+   }
+
+}
@@ -35,6 +35,8 @@ public class FacesLifecycle
    public static void setPhaseId(PhaseId phase)
    {
       phaseId.set(phase);
+      //the page context reads a different page in some phases
+      ResolutionCache.forgetAll();
    }
    
    public static PhaseId getPhaseId()
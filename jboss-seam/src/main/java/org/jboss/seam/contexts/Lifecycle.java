@@ -142,6 +142,7 @@ public class Lifecycle
    public static void cleanupApplication()
    {
       Contexts.applicationContext.set(null);
+      ResolutionCache.clear();
    }
 
    public static Context beginMethod()
@@ -170,6 +171,38 @@ public class Lifecycle
       }
    }
 
+   /**
+    * Detach the contexts of the current thread, so that work done on
+    * behalf of another caller runs in contexts of its own.
+    * 
+    * @return the detached contexts, to pass to resumeContexts()
+    */
+   public static Context[] suspendContexts()
+   {
+      Context[] contexts = { Contexts.applicationContext.get(), Contexts.methodContext.get(), 
+               Contexts.eventContext.get(), Contexts.pageContext.get(), Contexts.sessionContext.get(), 
+               Contexts.conversationContext.get(), Contexts.businessProcessContext.get() };
+      clearThreadlocals();
+      Contexts.methodContext.set(null);
+      return contexts;
+   }
+   
+   /**
+    * Reattach contexts detached by suspendContexts()
+    */
+   public static void resumeContexts(Context[] contexts)
+   {
+      Contexts.applicationContext.set( contexts[0] );
+      Contexts.methodContext.set( contexts[1] );
+      Contexts.eventContext.set( contexts[2] );
+      Contexts.pageContext.set( contexts[3] );
+      Contexts.sessionContext.set( contexts[4] );
+      Contexts.conversationContext.set( contexts[5] );
+      Contexts.businessProcessContext.set( contexts[6] );
+      //lookups made while the contexts were detached do not apply to them
+      ResolutionCache.clear();
+   }
+
    static void clearThreadlocals() 
    {
       Contexts.eventContext.set(null);
@@ -178,6 +211,7 @@ public class Lifecycle
       Contexts.conversationContext.set(null);
       Contexts.businessProcessContext.set(null);
       Contexts.applicationContext.set(null);
+      ResolutionCache.clear();
    }
    
    public static void destroyConversationContext(Map<String, Object> session, String conversationId)
@@ -249,6 +283,44 @@ public class Lifecycle
       }
       
    }
+   /**
+    * Time out the conversations of a session outside of a request, 
+    * from a background thread
+    * 
+    * @return the number of conversations that timed out
+    */
+   public static int timeoutConversations(Map<String, Object> session, Map<String,Object> app)
+   {
+      if ( Contexts.isEventContextActive() || Contexts.isApplicationContextActive() )
+      {
+         throw new IllegalStateException("Conversations may only be timed out outside of a request");
+      }
+      
+      Contexts.applicationContext.set( new ApplicationContext(app) );
+      //this is used just as a place to stick the ConversationManager
+      Context tempEventContext = new BasicContext(ScopeType.EVENT);
+      Contexts.eventContext.set(tempEventContext);
+      Contexts.sessionContext.set( new SessionContext(session) );
+      Context tempConversationContext = new BasicContext(ScopeType.CONVERSATION);
+      Contexts.conversationContext.set(tempConversationContext);
+      try
+      {
+         return Manager.instance().conversationTimeout(session);
+      }
+      finally
+      {
+         try
+         {
+            Contexts.destroy(tempConversationContext);
+            Contexts.destroy(tempEventContext);
+         }
+         finally
+         {
+            clearThreadlocals();
+         }
+      }
+   }
+   
    public static void endSession(Map<String, Object> session)
    {
       endSession(session, application);
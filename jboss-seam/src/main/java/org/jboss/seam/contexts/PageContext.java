@@ -94,16 +94,18 @@ public class PageContext implements Context
 
 	public void set(String name, Object value) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preSetVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preSetVariable.", name);
       getCurrentWritableMap().put( getKey(name), value );
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postSetVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postSetVariable.", name);
 	}
 
 	public void remove(String name) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preRemoveVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preRemoveVariable.", name);
       getCurrentWritableMap().remove( getKey(name) );
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postRemoveVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postRemoveVariable.", name);
 	}
 
    public String[] getNames() 
@@ -0,0 +1,123 @@
+package org.jboss.seam.contexts;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.seam.ScopeType;
+
+/**
+ * Remembers, for the current request, the scope in which each context
+ * variable was last found by Contexts.lookupInStatefulContexts(), so that
+ * the page and conversation contexts need not be searched again for a
+ * variable that is known to be absent from them. Other contexts are always
+ * searched: the method context comes and goes with each call, the event,
+ * session and application contexts are backed by servlet attributes which
+ * may change behind Seam's back, and business process variables may be
+ * changed by the process itself.
+ *
+ * A variable is forgotten when it is set or removed in the page or
+ * conversation context, and everything is forgotten when the page or
+ * conversation context is replaced, the JSF phase changes, or the
+ * current conversation changes. The cache is dropped along with the
+ * contexts of the thread at the end of each request.
+ *
+ * @see Contexts#lookupInStatefulContexts(String)
+ */
+final class ResolutionCache
+{
+   private static final ThreadLocal<ResolutionCache> instance = new ThreadLocal<ResolutionCache>();
+
+   //the order in which lookupInStatefulContexts() searches the contexts
+   private static final int[] SEARCH_ORDER = new int[ScopeType.values().length];
+   static
+   {
+      ScopeType[] order = { ScopeType.METHOD, ScopeType.EVENT, ScopeType.PAGE, ScopeType.CONVERSATION,
+               ScopeType.SESSION, ScopeType.BUSINESS_PROCESS, ScopeType.APPLICATION };
+      for ( int i=0; i<SEARCH_ORDER.length; i++ )
+      {
+         SEARCH_ORDER[i] = order.length;
+      }
+      for ( int i=0; i<order.length; i++ )
+      {
+         SEARCH_ORDER[ order[i].ordinal() ] = i;
+      }
+   }
+
+   private final Map<String, ScopeType> resolutions = new HashMap<String, ScopeType>();
+   private Context pageContext;
+   private Context conversationContext;
+
+   /**
+    * @return the cache for the current request, or null if there
+    * is no request
+    */
+   static ResolutionCache instance()
+   {
+      if ( !Contexts.isEventContextActive() )
+      {
+         return null;
+      }
+      ResolutionCache cache = instance.get();
+      if (cache==null)
+      {
+         cache = new ResolutionCache();
+         instance.set(cache);
+      }
+      Context currentPageContext = Contexts.pageContext.get();
+      Context currentConversationContext = Contexts.conversationContext.get();
+      if ( cache.pageContext!=currentPageContext || cache.conversationContext!=currentConversationContext )
+      {
+         cache.resolutions.clear();
+         cache.pageContext = currentPageContext;
+         cache.conversationContext = currentConversationContext;
+      }
+      return cache;
+   }
+
+   /**
+    * @return the scope the variable was last found in, UNSPECIFIED if it
+    * was not found, or null if it has not been looked up
+    */
+   ScopeType get(String name)
+   {
+      return resolutions.get(name);
+   }
+
+   void put(String name, ScopeType scope)
+   {
+      resolutions.put(name, scope);
+   }
+
+   /**
+    * @return true if a variable last found in the resolved scope, or not
+    * found at all, is known to be absent from the given context
+    */
+   static boolean isAbsent(ScopeType resolved, ScopeType scope)
+   {
+      return resolved!=null && SEARCH_ORDER[ resolved.ordinal() ] > SEARCH_ORDER[ scope.ordinal() ];
+   }
+
+   static void forget(String name)
+   {
+      ResolutionCache cache = instance.get();
+      if (cache!=null)
+      {
+         cache.resolutions.remove(name);
+      }
+   }
+
+   static void forgetAll()
+   {
+      ResolutionCache cache = instance.get();
+      if (cache!=null)
+      {
+         cache.resolutions.clear();
+      }
+   }
+
+   static void clear()
+   {
+      instance.remove();
+   }
+
+}
@@ -6,6 +6,7 @@
  */
 package org.jboss.seam.contexts;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -34,6 +35,7 @@ public class ServerConversationContext implements Context
    private final Map<String, Object> session;
    private final Map<String, Object> additions = new HashMap<String, Object>();
    private final Set<String> removals = new HashSet<String>();
+   private final Map<String, String> keys = new HashMap<String, String>();
    private final String id;
    private final List<String> idStack;
    
@@ -52,19 +54,32 @@ public class ServerConversationContext implements Context
       return ScopeType.CONVERSATION;
    }
 
-   private String getKey(String name)
+   /**
+    * The session attribute holding the state of a conversation
+    */
+   public static String getSessionKey(String id)
    {
-      return getPrefix( getId() ) + name;
+      return ScopeType.CONVERSATION.getPrefix() + '#' + id;
    }
 
-   private String getKey(String name, String id)
+   private String getKey(String id)
    {
-      return getPrefix(id) + name;
+      String key = keys.get(id);
+      if (key==null)
+      {
+         key = getSessionKey(id);
+         keys.put(id, key);
+      }
+      return key;
    }
 
-   private String getPrefix(String id)
+   /**
+    * The attributes of a conversation, held by a single map
+    * in the session, or null if the conversation has none.
+    */
+   private ConversationAttributes getAttributes(String id)
    {
-      return ScopeType.CONVERSATION.getPrefix() + '#' + id + '$';
+      return (ConversationAttributes) session.get( getKey(id) );
    }
 
    public ServerConversationContext(Map<String, Object> session)
@@ -100,14 +115,15 @@ public class ServerConversationContext implements Context
             List<String> stack = getIdStack();
             if (stack==null)
             {
-               return unwrapEntityBean( session.get( getKey(name) ) );
+               Map<String, Object> attributes = getAttributes( getId() );
+               return attributes==null ? null : unwrapEntityBean( attributes.get(name) );
             }
             else
             {
                for ( int i=0; i<stack.size(); i++ )
                {
-                  String id = stack.get(i);
-                  result = session.get( getKey(name, id) );
+                  Map<String, Object> attributes = getAttributes( stack.get(i) );
+                  result = attributes==null ? null : attributes.get(name);
 
                   if (result != null) 
                   {
@@ -147,7 +163,7 @@ public class ServerConversationContext implements Context
 
    public void set(String name, Object value) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preSetVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preSetVariable.", name);
       if (value==null)
       {
          //yes, we need this
@@ -174,7 +190,8 @@ public class ServerConversationContext implements Context
          }
          additions.put(name, value);
       }
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postSetVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postSetVariable.", name);
 	}
 
 	public boolean isSet(String name) 
@@ -184,10 +201,11 @@ public class ServerConversationContext implements Context
    
 	public void remove(String name) 
    {
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.preRemoveVariable." + name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.preRemoveVariable.", name);
       additions.remove(name);
       removals.add(name);
-      if ( Events.exists() ) Events.instance().raiseEvent("org.jboss.seam.postRemoveVariable." + name);
+      ResolutionCache.forget(name);
+      if ( Events.exists() ) Events.instance().raiseQualifiedEvent("org.jboss.seam.postRemoveVariable.", name);
 	}
 
    public String[] getNames() 
@@ -201,10 +219,9 @@ public class ServerConversationContext implements Context
    {       
        HashSet<String> results = new HashSet<String>();
        
-       String prefix = getPrefix(getId());
-       for (String name: session.keySet()) {
-           if (name.startsWith(prefix)) {
-               name = name.substring(prefix.length());
+       Map<String, Object> attributes = getAttributes( getId() );
+       if (attributes != null) {
+           for (String name: attributes.keySet()) {
                if (!removals.contains(name)) {
                    results.add(name);
                }
@@ -214,27 +231,10 @@ public class ServerConversationContext implements Context
        return results;
    }
    
-   private Set<String> getNamesForAllConversationsFromSession() 
-   {       
-       Set<String> results = new HashSet<String>();
-       
+   private List<String> getIdsForAllConversations()
+   {
        List<String> ids = Manager.instance().getCurrentConversationIdStack();
-       
-       if (ids != null) {
-           for (String conversationId: ids) {
-               String prefix = getPrefix(conversationId);
-               for (String name: session.keySet()) {
-                   if (name.startsWith(prefix)) {
-                       String shortName = name.substring(prefix.length());
-                       if (!removals.contains(shortName)) {
-                           results.add(name);
-                       }
-                   }
-               }
-           }
-       }
-
-       return results;
+       return ids == null ? Collections.<String>emptyList() : ids;
    }
    
 
@@ -247,16 +247,24 @@ public class ServerConversationContext implements Context
    {
       additions.clear();
       removals.addAll( getNamesFromSession() );
+      ResolutionCache.forgetAll();
    }
    
    public void unflush()
    {
-      for ( String key: getNamesForAllConversationsFromSession() )
+      for ( String conversationId: getIdsForAllConversations() )
       {
-         Object attribute = session.get(key);
-         if ( attribute!=null && attribute instanceof Wrapper ) 
+         Map<String, Object> attributes = getAttributes(conversationId);
+         if (attributes != null)
          {
-            ( (Wrapper) attribute ).activate();
+            for ( Map.Entry<String, Object> entry: attributes.entrySet() )
+            {
+               Object attribute = entry.getValue();
+               if ( attribute instanceof Wrapper && !removals.contains( entry.getKey() ) ) 
+               {
+                  ( (Wrapper) attribute ).activate();
+               }
+            }
          }
       }
    }
@@ -275,19 +283,31 @@ public class ServerConversationContext implements Context
       if ( longRunning )
       {
           //force update for dirty mutable objects
-          for (String key: getNamesForAllConversationsFromSession())  {
-              Object attribute = session.get(key);
+          for (String conversationId: getIdsForAllConversations())  {
+              Map<String, Object> attributes = getAttributes(conversationId);
+              if (attributes == null) continue;
               
-              if (attribute!=null) {
-                  if (passivate(attribute) || isAttributeDirty(attribute)) {
-                      session.put(key, attribute);
+              boolean dirty = false;
+              for (Map.Entry<String, Object> entry: attributes.entrySet()) {
+                  Object attribute = entry.getValue();
+                  if ( !removals.contains(entry.getKey()) && (passivate(attribute) || isAttributeDirty(attribute)) ) {
+                      dirty = true;
                   }
               }
+              if (dirty) {
+                  session.put(getKey(conversationId), attributes);
+              }
           }
+          
+          String key = getKey( getId() );
+          ConversationAttributes attributes = getAttributes( getId() );
+          boolean changed = false;
     
           //remove removed objects
-          for (String name: removals) {
-              session.remove(getKey(name));
+          if (attributes != null) {
+              for (String name: removals) {
+                  changed |= attributes.removeAttribute(name);
+              }
           }
           removals.clear();
 
@@ -298,26 +318,34 @@ public class ServerConversationContext implements Context
              // new objects being added to additions during the following for-loop
              PersistenceContexts.instance();
              
+             if (attributes == null) {
+                 attributes = new ConversationAttributes(key);
+             }
+             
              //add new objects
              for (Map.Entry<String, Object> entry: additions.entrySet())  {
                  Object attribute = entry.getValue();
                  
                  passivate(attribute); 
-                 session.put(getKey(entry.getKey()), attribute);
+                 attributes.setAttribute(entry.getKey(), attribute);
              }
              additions.clear();
+             changed = true;
+          }
+          
+          if (changed) {
+              if (attributes.isEmpty()) {
+                  session.remove(key);
+              } else {
+                  session.put(key, attributes);
+              }
           }
       }
       else
       {
          //TODO: for a pure temporary conversation, this is unnecessary, optimize it
-         for (String name: getNamesFromSession()) {
-            session.remove( getKey(name) );
-         }
-         
-         // remove removed objects
-         for (String name: removals) {
-             session.remove(getKey(name));
+         if (getAttributes( getId() ) != null) {
+            session.remove( getKey( getId() ) );
          }
          removals.clear();
       }
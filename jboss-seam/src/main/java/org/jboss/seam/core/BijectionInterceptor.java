@@ -1,6 +1,7 @@
 //$Id: BijectionInterceptor.java 9561 2008-11-14 03:26:13Z dan.j.allen $
 package org.jboss.seam.core;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.seam.Component;
@@ -16,6 +17,13 @@ import org.jboss.seam.util.Exceptions;
  * Before invoking the component, inject all dependencies. After
  * invoking, outject dependencies back into their context.
  * 
+ * Components annotated @ConcurrentBijection track their clients 
+ * with a compare-and-set counter instead of the lock, so calls 
+ * arriving while the component is already injected do not contend
+ * on a lock. Calls arriving while the first client is injecting, 
+ * or the last one is disinjecting, wait on the counter's monitor
+ * until it is done.
+ * 
  * @author Gavin King
  * @author Shane Bryzak
  */
@@ -32,6 +40,14 @@ public class BijectionInterceptor extends AbstractInterceptor
    
    private ReentrantLock lock = new ReentrantLock();
    
+   private static final int BUSY = -1;
+   
+   // client count for @ConcurrentBijection components, or BUSY 
+   // while the first client injects or the last one disinjects
+   private final AtomicInteger state = new AtomicInteger();
+   
+   private transient volatile Thread injectingThread;
+   
    @Override
    public void setComponent(Component component)
    {
@@ -45,6 +61,11 @@ public class BijectionInterceptor extends AbstractInterceptor
       Component component = getComponent();
       boolean enforceRequired = !component.isLifecycleMethod( invocation.getMethod() );      
       
+      if ( component.isConcurrentBijection() )
+      {
+         return aroundInvokeConcurrently(invocation, component, enforceRequired);
+      }
+      
       try
       {    
          lock.lock();
@@ -108,16 +129,7 @@ public class BijectionInterceptor extends AbstractInterceptor
       }
       catch (Exception e)
       {
-         Exception root = e;
-         while (Exceptions.getCause(root) != null)
-         {
-            root = Exceptions.getCause(root);
-         }
-         if (root instanceof CyclicDependencyException)
-         {
-            CyclicDependencyException cyclicDependencyException = (CyclicDependencyException) root;
-            cyclicDependencyException.addInvocation(getComponent().getName(), invocation.getMethod());
-         }
+         addCyclicInvocation(e, invocation);
          throw e;
       }
       finally
@@ -143,6 +155,165 @@ public class BijectionInterceptor extends AbstractInterceptor
       }
    }
 
+   private Object aroundInvokeConcurrently(InvocationContext invocation, Component component, boolean enforceRequired) throws Exception
+   {
+      Object target = invocation.getTarget();
+      try
+      {
+         enter(target, component, enforceRequired);
+         boolean success = false;
+         try
+         {
+            Object result = invocation.proceed();
+            success = true;
+            return result;
+         }
+         finally
+         {
+            leave(target, component, enforceRequired, success);
+         }
+      }
+      catch (Exception e)
+      {
+         addCyclicInvocation(e, invocation);
+         throw e;
+      }
+   }
+   
+   private void enter(Object target, Component component, boolean enforceRequired)
+   {
+      while (true)
+      {
+         int clients = state.get();
+         if (clients > 0)
+         {
+            if ( state.compareAndSet(clients, clients + 1) )
+            {
+               return;
+            }
+         }
+         else if (clients == 0)
+         {
+            if ( state.compareAndSet(0, BUSY) )
+            {
+               injectingThread = Thread.currentThread();
+               boolean injected = false;
+               try
+               {
+                  component.inject(target, enforceRequired);
+                  injected = true;
+               }
+               finally
+               {
+                  injectingThread = null;
+                  release(injected ? 1 : 0);
+               }
+               return;
+            }
+         }
+         else if ( injectingThread == Thread.currentThread() )
+         {
+            throw new CyclicDependencyException();
+         }
+         else
+         {
+            // another client is injecting or disinjecting
+            awaitRelease();
+         }
+      }
+   }
+   
+   private void leave(Object target, Component component, boolean enforceRequired, boolean outject)
+   {
+      try
+      {
+         if ( outject && state.get() == 1 )
+         {
+            component.outject(target, enforceRequired);
+         }
+      }
+      finally
+      {
+         while (true)
+         {
+            int clients = state.get();
+            if (clients > 1)
+            {
+               if ( state.compareAndSet(clients, clients - 1) )
+               {
+                  return;
+               }
+            }
+            else if ( state.compareAndSet(1, BUSY) )
+            {
+               try
+               {
+                  component.disinject(target);
+               }
+               finally
+               {
+                  release(0);
+               }
+               return;
+            }
+         }
+      }
+   }
+   
+   /**
+    * Leave the BUSY state, and wake up the clients waiting for it
+    */
+   private void release(int clients)
+   {
+      synchronized (state)
+      {
+         state.set(clients);
+         state.notifyAll();
+      }
+   }
+   
+   /**
+    * Wait until the client which is injecting or disinjecting the
+    * component is done, rather than spinning while it may be
+    * creating components or querying the database
+    */
+   private void awaitRelease()
+   {
+      boolean interrupted = false;
+      synchronized (state)
+      {
+         while ( state.get() == BUSY )
+         {
+            try
+            {
+               state.wait();
+            }
+            catch (InterruptedException e)
+            {
+               interrupted = true;
+            }
+         }
+      }
+      if (interrupted)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+   
+   private void addCyclicInvocation(Exception e, InvocationContext invocation)
+   {
+      Exception root = e;
+      while (Exceptions.getCause(root) != null)
+      {
+         root = Exceptions.getCause(root);
+      }
+      if (root instanceof CyclicDependencyException)
+      {
+         CyclicDependencyException cyclicDependencyException = (CyclicDependencyException) root;
+         cyclicDependencyException.addInvocation(getComponent().getName(), invocation.getMethod());
+      }
+   }
+
    public boolean isInterceptorEnabled()
    {
       return getComponent().needsInjection() || getComponent().needsOutjection();
@@ -3,12 +3,17 @@ package org.jboss.seam.core;
 import static org.jboss.seam.annotations.Install.BUILT_IN;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import org.jboss.seam.Component;
 import org.jboss.seam.ScopeType;
@@ -20,7 +25,9 @@ import org.jboss.seam.contexts.Contexts;
 
 /**
  * Manages a map of conversation id to ConversationEntry 
- * in the session context.
+ * in the session context. Also keeps the entries ordered
+ * by expiration time, so that timeout checks only need to
+ * look at the conversations that have expired.
  * 
  * @author Gavin King
  */
@@ -33,6 +40,22 @@ public class ConversationEntries extends AbstractMutable implements Serializable
    private static final long serialVersionUID = 7996835952419813634L;
    private Map<String, ConversationEntry> conversationIdEntryMap = new HashMap<String, ConversationEntry>();
    
+   //entries using the default timeout, by last request time
+   private transient SortedSet<ConversationEntry> defaultTimeoutIndex;
+   //entries with their own timeout, by expiration time
+   private transient SortedSet<ConversationEntry> timeoutIndex;
+   
+   private static final Comparator<ConversationEntry> TIMEOUT_INDEX_ORDER = new Comparator<ConversationEntry>()
+   {
+      public int compare(ConversationEntry x, ConversationEntry y)
+      {
+         long xTime = x.getTimeoutIndexTime();
+         long yTime = y.getTimeoutIndexTime();
+         int result = xTime < yTime ? -1 : ( xTime == yTime ? 0 : 1 );
+         return result==0 ? x.getId().compareTo( y.getId() ) : result;
+      }
+   };
+   
    public synchronized Collection<ConversationEntry> getConversationEntries()
    {
       return Collections.unmodifiableCollection( conversationIdEntryMap.values() );
@@ -64,7 +87,11 @@ public class ConversationEntries extends AbstractMutable implements Serializable
    public synchronized ConversationEntry removeConversationEntry(String id)
    {
       ConversationEntry entry = conversationIdEntryMap.remove(id);
-      if ( entry!=null ) setDirty();
+      if ( entry!=null ) 
+      {
+         getTimeoutIndex(entry).remove(entry);
+         setDirty();
+      }
       return entry;
    }
    
@@ -77,7 +104,10 @@ public class ConversationEntries extends AbstractMutable implements Serializable
       }
       else
       {
+         SortedSet<ConversationEntry> index = getTimeoutIndex(entry);
+         index.remove(entry);
          entry.setId(newId);
+         index.add(entry);
          entry.getConversationIdStack().set(0, newId);
          conversationIdEntryMap.put(newId, entry);
          setDirty();
@@ -85,6 +115,80 @@ public class ConversationEntries extends AbstractMutable implements Serializable
       }
    }
    
+   /**
+    * Get the entries whose timeout has passed, without 
+    * visiting any of the entries that are still active.
+    * The caller should check the timeout of each entry
+    * again, and call updateTimeoutIndex() if it has not 
+    * really expired.
+    * 
+    * @param currentTime the time of the timeout check
+    * @param defaultTimeout the timeout of entries that don't have their own
+    */
+   public synchronized List<ConversationEntry> getExpiredConversationEntries(long currentTime, long defaultTimeout)
+   {
+      List<ConversationEntry> result = new ArrayList<ConversationEntry>();
+      addExpiredEntries( result, getTimeoutIndex(false), currentTime );
+      addExpiredEntries( result, getTimeoutIndex(true), currentTime - defaultTimeout );
+      return result;
+   }
+   
+   private void addExpiredEntries(List<ConversationEntry> result, SortedSet<ConversationEntry> index, long expirationTime)
+   {
+      Iterator<ConversationEntry> iter = index.iterator();
+      while ( iter.hasNext() )
+      {
+         ConversationEntry entry = iter.next();
+         if ( entry.getTimeoutIndexTime() >= expirationTime )
+         {
+            break;
+         }
+         else if ( conversationIdEntryMap.get( entry.getId() )!=entry )
+         {
+            //touched after it was removed
+            iter.remove();
+         }
+         else
+         {
+            result.add(entry);
+         }
+      }
+   }
+   
+   synchronized void updateTimeoutIndex(ConversationEntry entry, long lastRequestTime, Integer timeout)
+   {
+      getTimeoutIndex(entry).remove(entry);
+      if (timeout==null)
+      {
+         entry.setTimeoutIndexTime(lastRequestTime, true);
+      }
+      else
+      {
+         entry.setTimeoutIndexTime(lastRequestTime + timeout, false);
+      }
+      getTimeoutIndex(entry).add(entry);
+   }
+   
+   private SortedSet<ConversationEntry> getTimeoutIndex(ConversationEntry entry)
+   {
+      return getTimeoutIndex( entry.isDefaultTimeoutIndexed() );
+   }
+   
+   private SortedSet<ConversationEntry> getTimeoutIndex(boolean defaultTimeout)
+   {
+      if (timeoutIndex==null)
+      {
+         //not serialized, so rebuild it after replication or passivation
+         timeoutIndex = new TreeSet<ConversationEntry>(TIMEOUT_INDEX_ORDER);
+         defaultTimeoutIndex = new TreeSet<ConversationEntry>(TIMEOUT_INDEX_ORDER);
+         for ( ConversationEntry entry: conversationIdEntryMap.values() )
+         {
+            ( entry.isDefaultTimeoutIndexed() ? defaultTimeoutIndex : timeoutIndex ).add(entry);
+         }
+      }
+      return defaultTimeout ? defaultTimeoutIndex : timeoutIndex;
+   }
+   
    public static ConversationEntries instance()
    {
       if ( !Contexts.isSessionContextActive() )
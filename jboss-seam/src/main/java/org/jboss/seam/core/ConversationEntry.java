@@ -3,13 +3,14 @@ package org.jboss.seam.core;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.jboss.seam.Component;
-import org.jboss.seam.ScopeType;
 import org.jboss.seam.contexts.Context;
 import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.contexts.ServerConversationContext;
 
 /**
  * Metadata about an active conversation. Also used
@@ -33,6 +34,8 @@ public final class ConversationEntry implements Serializable, Comparable<Convers
    private Integer concurrentRequestTimeout;
    private boolean removeAfterRedirect;
    private boolean ended;
+   private long timeoutIndexTime; //guarded by entries
+   private boolean defaultTimeoutIndexed; //guarded by entries
   
    private ConversationEntries entries;
    
@@ -79,11 +82,41 @@ public final class ConversationEntry implements Serializable, Comparable<Convers
       return lastRequestTime;
    }
    
-   synchronized void touch() 
+   void touch() 
    {
-      entries.setDirty();
-      lastRequestTime = System.currentTimeMillis();
-      lastDatetime = new Date();
+      long time = System.currentTimeMillis();
+      synchronized (this)
+      {
+         entries.setDirty();
+         lastRequestTime = time;
+         lastDatetime = new Date();
+      }
+      entries.updateTimeoutIndex(this, time, timeout);
+   }
+   
+   /**
+    * Reposition this entry in the timeout index of
+    * ConversationEntries.
+    */
+   void updateTimeoutIndex()
+   {
+      entries.updateTimeoutIndex( this, getLastRequestTime(), timeout );
+   }
+   
+   long getTimeoutIndexTime()
+   {
+      return timeoutIndexTime;
+   }
+   
+   boolean isDefaultTimeoutIndexed()
+   {
+      return defaultTimeoutIndexed;
+   }
+   
+   void setTimeoutIndexTime(long timeoutIndexTime, boolean defaultTimeoutIndexed)
+   {
+      this.timeoutIndexTime = timeoutIndexTime;
+      this.defaultTimeoutIndexed = defaultTimeoutIndexed;
    }
    
    public String getId() 
@@ -180,6 +213,7 @@ public final class ConversationEntry implements Serializable, Comparable<Convers
    {
       entries.setDirty(this.timeout, timeout);
       this.timeout = conversationTimeout;
+      updateTimeoutIndex();
    }
    
    public Integer getConcurrentRequestTimeout()
@@ -261,11 +295,11 @@ public final class ConversationEntry implements Serializable, Comparable<Convers
     * conversation is contributing the instance that we already know exists.
     * 
     * The low-level interaction with the session context should be refactored
-    * out. The problem is that it is defined in private areas of
-    * ServerConversationContext and cannot be reused. Actually, what we really
-    * need is a general purpose utility for analyzing the contents of each
-    * conversation in the stack (at least the keys).
+    * out. Actually, what we really need is a general purpose utility for 
+    * analyzing the contents of each conversation in the stack (at least the 
+    * keys).
     */
+   @SuppressWarnings("unchecked")
    public String findPositionInConversationStack(Component component)
    {
       if (component.isPerNestedConversation()) {
@@ -277,8 +311,8 @@ public final class ConversationEntry implements Serializable, Comparable<Convers
       String location = id;
       for (int i = 1, len = conversationIdStack.size(); i < len; i++) {
          String cid = conversationIdStack.get(i);
-         String key = ScopeType.CONVERSATION.getPrefix() + '#' + cid + '$' + name;
-         if (session.get(key) != null) {
+         Map<String, Object> attributes = (Map<String, Object>) session.get( ServerConversationContext.getSessionKey(cid) );
+         if (attributes != null && attributes.get(name) != null) {
             location = cid;
             break;
          }
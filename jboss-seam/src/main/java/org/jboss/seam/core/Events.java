@@ -2,8 +2,6 @@ package org.jboss.seam.core;
 
 import static org.jboss.seam.annotations.Install.BUILT_IN;
 
-import java.util.List;
-
 import org.jboss.seam.Component;
 import org.jboss.seam.ScopeType;
 import org.jboss.seam.annotations.Install;
@@ -59,35 +57,52 @@ public class Events
    public void raiseEvent(String type, Object... parameters)
    {
       //TODO: find a way to map event parameters to params in an EL-defined listener
-      log.trace("Processing event:" + type);
-      List<Init.ObserverMethodExpression> list = Init.instance().getObserverMethodExpressions(type);
-      if (list!=null)
+      if ( log.isTraceEnabled() )
       {
-         for (ObserverMethodExpression listener: list )
-         {
-            listener.getMethodBinding().invoke(parameters);
-         }
+         log.trace("Processing event:" + type);
       }
-      List<Init.ObserverMethod> observers = Init.instance().getObserverMethods(type);
+      Init.EventObservers observers = Init.instance().getEventObservers(type);
       if (observers!=null)
       {
-         for (ObserverMethod observer: observers)
+         for ( ObserverMethodExpression listener: observers.getMethodExpressions() )
          {
-            String name = observer.getComponent().getName();
+            listener.getMethodBinding().invoke(parameters);
+         }
+         for ( ObserverMethod observer: observers.getMethods() )
+         {
+            Component component = observer.getComponent();
+            String name = component.getName();
             Object listener = Component.getInstance( name, observer.isCreate(), false );
-            if ( observer.getComponent().hasUnwrapMethod() )
+            if ( component.hasUnwrapMethod() )
             {
-               listener = observer.getComponent().getScope().getContext().get(name);
+               listener = component.getScope().getContext().get(name);
             }
             
             if (listener!=null)
             {
-               observer.getComponent().callComponentMethod(listener, observer.getMethod(), parameters);
+               observer.invoke(listener, parameters);
             }
          }
       }
    }
    
+   /**
+    * Raise an event, whose type is made up of a prefix and a qualifier, 
+    * that is to be processed synchronously. The event type is only built 
+    * if something observes it.
+    * 
+    * @param prefix the event type prefix, for example "org.jboss.seam.preSetVariable."
+    * @param qualifier the rest of the event type, for example a context variable name
+    * @param parameters parameters to be passes to the listener method
+    */
+   public void raiseQualifiedEvent(String prefix, String qualifier, Object... parameters)
+   {
+      if ( Init.instance().isObserved(prefix, qualifier) )
+      {
+         raiseEvent(prefix + qualifier, parameters);
+      }
+   }
+   
    /**
     * Raise an event that is to be processed asynchronously
     * 
@@ -9,7 +9,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.el.ELContext;
@@ -26,11 +28,14 @@ import org.jboss.seam.el.EL;
 import org.jboss.seam.el.SeamExpressionFactory;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.util.BoundedCache;
 
 /**
  * Factory for EL method and value expressions.
  * 
- * This default implementation uses JBoss EL.
+ * This default implementation uses JBoss EL. Parsed expressions
+ * are kept in a bounded cache, and shared by all expressions created
+ * from the same string.
  * 
  * @author Gavin King
  */
@@ -43,6 +48,11 @@ public class Expressions implements Serializable
    private static final LogProvider log = Logging.getLogProvider(Expressions.class);
    private static List<String> blacklist = new ArrayList<String>();
    
+   private int cacheSize = 1000;
+   private transient volatile BoundedCache<ExpressionKey, Object> expressionCache;
+   private final AtomicLong cacheHits = new AtomicLong();
+   private final AtomicLong cacheMisses = new AtomicLong();
+   
    // loading blacklisted patterns of non-valid EL expressions
    static 
    {
@@ -149,7 +159,7 @@ public class Expressions implements Serializable
          
          private javax.el.ValueExpression createExpression()
          {
-            return getExpressionFactory().createValueExpression( getELContext(), expression, type );
+            return parseValueExpression(expression, type);
          }
          
          public T getValue()
@@ -214,7 +224,7 @@ public class Expressions implements Serializable
          
          private javax.el.MethodExpression createExpression()
          {
-            return getExpressionFactory().createMethodExpression( getELContext(), expression, type, argTypes );
+            return parseMethodExpression(expression, type, argTypes);
          }
          
          public T invoke(Object... args)
@@ -230,6 +240,122 @@ public class Expressions implements Serializable
       };
    }
    
+   private javax.el.ValueExpression parseValueExpression(String expression, Class type)
+   {
+      ExpressionKey key = new ExpressionKey( expression, type, null, isFacesContextActive() );
+      BoundedCache<ExpressionKey, Object> cache = getExpressionCache();
+      javax.el.ValueExpression result = (javax.el.ValueExpression) cache.get(key);
+      if (result==null)
+      {
+         cacheMisses.incrementAndGet();
+         result = getExpressionFactory().createValueExpression( getELContext(), expression, type );
+         return (javax.el.ValueExpression) cache.putIfAbsent(key, result);
+      }
+      cacheHits.incrementAndGet();
+      return result;
+   }
+   
+   private javax.el.MethodExpression parseMethodExpression(String expression, Class type, Class[] argTypes)
+   {
+      ExpressionKey key = new ExpressionKey( expression, type, argTypes, isFacesContextActive() );
+      BoundedCache<ExpressionKey, Object> cache = getExpressionCache();
+      javax.el.MethodExpression result = (javax.el.MethodExpression) cache.get(key);
+      if (result==null)
+      {
+         cacheMisses.incrementAndGet();
+         result = getExpressionFactory().createMethodExpression( getELContext(), expression, type, argTypes );
+         return (javax.el.MethodExpression) cache.putIfAbsent(key, result);
+      }
+      cacheHits.incrementAndGet();
+      return result;
+   }
+   
+   private BoundedCache<ExpressionKey, Object> getExpressionCache()
+   {
+      BoundedCache<ExpressionKey, Object> cache = expressionCache;
+      if (cache==null)
+      {
+         synchronized (this)
+         {
+            cache = expressionCache;
+            if (cache==null)
+            {
+               cache = new BoundedCache<ExpressionKey, Object>(cacheSize);
+               expressionCache = cache;
+            }
+         }
+      }
+      return cache;
+   }
+   
+   /**
+    * Identifies a parsed expression. Expressions parsed against a 
+    * JSF ELContext are kept apart from those parsed against Seam's
+    * own ELContext, since they may resolve functions differently.
+    */
+   static final class ExpressionKey
+   {
+      private final String expression;
+      private final Class type;
+      private final Class[] argTypes; // null for a value expression
+      private final boolean faces;
+      
+      ExpressionKey(String expression, Class type, Class[] argTypes, boolean faces)
+      {
+         this.expression = expression;
+         this.type = type;
+         this.argTypes = argTypes;
+         this.faces = faces;
+      }
+      
+      @Override
+      public boolean equals(Object other)
+      {
+         if ( !(other instanceof ExpressionKey) ) return false;
+         ExpressionKey that = (ExpressionKey) other;
+         return ( expression==null ? that.expression==null : expression.equals(that.expression) ) && 
+               type==that.type && 
+               faces==that.faces &&
+               ( argTypes==null ? that.argTypes==null : Arrays.equals(argTypes, that.argTypes) );
+      }
+      
+      @Override
+      public int hashCode()
+      {
+         return ( expression==null ? 0 : expression.hashCode() ) * 31 + ( faces ? 1 : 0 );
+      }
+   }
+   
+   /**
+    * The number of expressions that were found already parsed
+    */
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+   
+   /**
+    * The number of expressions that had to be parsed
+    */
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+   
+   public int getCacheSize()
+   {
+      return cacheSize;
+   }
+   
+   /**
+    * The number of parsed expressions to keep
+    */
+   public void setCacheSize(int cacheSize)
+   {
+      this.cacheSize = cacheSize;
+      this.expressionCache = null;
+   }
+   
    /**
     * A value expression - an EL expression that evaluates to
     * an attribute getter or get/set pair. This interface
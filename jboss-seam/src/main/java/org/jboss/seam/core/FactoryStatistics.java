@@ -0,0 +1,150 @@
+package org.jboss.seam.core;
+
+import static org.jboss.seam.ScopeType.APPLICATION;
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+
+import org.jboss.seam.annotations.Create;
+import org.jboss.seam.annotations.Destroy;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.Startup;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Init.FactoryMethod;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Reports how often, and for how long, threads waited for
+ * another thread calling the same @Factory method.
+ *
+ * The statistics register themselves with the platform
+ * MBeanServer.
+ *
+ * @see Init.FactoryMethod#lock(Object)
+ */
+@Scope(APPLICATION)
+@Name("org.jboss.seam.core.factoryStatistics")
+@BypassInterceptors
+@Startup
+@Install(value=false, precedence=BUILT_IN)
+public class FactoryStatistics implements FactoryStatisticsMBean
+{
+   private static final LogProvider log = Logging.getLogProvider(FactoryStatistics.class);
+
+   private Init init;
+   private String objectName;
+   private ObjectName registeredName;
+
+   @Create
+   public void create()
+   {
+      init = Init.instance();
+      registerMBean();
+   }
+
+   @Destroy
+   public void destroy()
+   {
+      unregisterMBean();
+   }
+
+   private void registerMBean()
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName( getObjectName() );
+         if ( !server.isRegistered(name) )
+         {
+            server.registerMBean(this, name);
+            registeredName = name;
+         }
+      }
+      catch (Exception e)
+      {
+         log.warn("could not register factory statistics with JMX", e);
+      }
+   }
+
+   private void unregisterMBean()
+   {
+      if (registeredName!=null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+         }
+         catch (Exception e)
+         {
+            log.debug("could not unregister factory statistics from JMX", e);
+         }
+         registeredName = null;
+      }
+   }
+
+   public String[] getFactoryNames()
+   {
+      Set<String> names = init.getFactoryNames();
+      return names.toArray( new String[names.size()] );
+   }
+
+   public long getWaitCount(String factoryName)
+   {
+      FactoryMethod factoryMethod = init.getFactory(factoryName);
+      return factoryMethod==null ? 0 : factoryMethod.getWaitCount();
+   }
+
+   public long getWaitTime(String factoryName)
+   {
+      FactoryMethod factoryMethod = init.getFactory(factoryName);
+      return factoryMethod==null ? 0 : factoryMethod.getWaitTime();
+   }
+
+   public long getTotalWaitCount()
+   {
+      long count = 0;
+      for ( String name : init.getFactoryNames() )
+      {
+         count += getWaitCount(name);
+      }
+      return count;
+   }
+
+   public long getTotalWaitTime()
+   {
+      long time = 0;
+      for ( String name : init.getFactoryNames() )
+      {
+         time += getWaitTime(name);
+      }
+      return time;
+   }
+
+   public String getObjectName()
+   {
+      if (objectName==null)
+      {
+         ServletContext servletContext = ServletLifecycle.getCurrentServletContext();
+         String application = servletContext==null ? "" : servletContext.getContextPath();
+         return "org.jboss.seam:service=FactoryStatistics,application=" + ObjectName.quote(application);
+      }
+      return objectName;
+   }
+
+   /**
+    * The JMX name of the statistics
+    */
+   public void setObjectName(String objectName)
+   {
+      this.objectName = objectName;
+   }
+}
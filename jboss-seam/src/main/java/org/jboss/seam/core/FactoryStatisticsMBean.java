@@ -0,0 +1,40 @@
+package org.jboss.seam.core;
+
+/**
+ * JMX view of the FactoryStatistics.
+ *
+ * @see FactoryStatistics
+ */
+public interface FactoryStatisticsMBean
+{
+   /**
+    * @return the names of the context variables created by
+    * factory methods
+    */
+   public String[] getFactoryNames();
+
+   /**
+    * @return the number of times a thread had to wait for
+    * another thread calling the factory for the variable
+    */
+   public long getWaitCount(String factoryName);
+
+   /**
+    * @return the total time, in milliseconds, threads spent
+    * waiting for other threads calling the factory for the
+    * variable
+    */
+   public long getWaitTime(String factoryName);
+
+   /**
+    * @return the number of times a thread had to wait for
+    * another thread calling any factory
+    */
+   public long getTotalWaitCount();
+
+   /**
+    * @return the total time, in milliseconds, threads spent
+    * waiting for other threads calling any factory
+    */
+   public long getTotalWaitTime();
+}
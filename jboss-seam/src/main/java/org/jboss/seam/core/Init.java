@@ -9,12 +9,17 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jboss.seam.Component;
 import org.jboss.seam.Namespace;
@@ -38,6 +43,7 @@ import org.jboss.seam.security.Identity;
 import org.jboss.seam.security.SecurityInterceptor;
 import org.jboss.seam.transaction.RollbackInterceptor;
 import org.jboss.seam.transaction.TransactionInterceptor;
+import org.jboss.seam.util.Reflections;
 import org.jboss.seam.util.Resources;
 import org.jboss.seam.webservice.WSSecurityInterceptor;
 
@@ -89,6 +95,8 @@ public class Init
    
    private Map<String, List<ObserverMethod>> observerMethods = new HashMap<String, List<ObserverMethod>>();
    private Map<String, List<ObserverMethodExpression>> observerMethodBindings = new HashMap<String, List<ObserverMethodExpression>>();
+   private volatile Map<String, EventObservers> eventObservers;
+   private volatile Map<String, Set<String>> observedQualifiers;
    private Map<String, FactoryMethod> factories = new HashMap<String, FactoryMethod>();
    private Map<String, FactoryExpression> factoryMethodExpressions = new HashMap<String, FactoryExpression>();
    private Map<String, FactoryExpression> factoryValueExpressions = new HashMap<String, FactoryExpression>();
@@ -137,6 +145,10 @@ public class Init
        private Method method;
        private Component component;
        private ScopeType scope;
+       
+       private final ConcurrentMap<Object, Creation> creations = new ConcurrentHashMap<Object, Creation>();
+       private final AtomicLong waits = new AtomicLong();
+       private final AtomicLong waitTime = new AtomicLong();
       
 	   FactoryMethod(Method method, Component component)
 	   {
@@ -157,6 +169,70 @@ public class Init
       {
          return method;
       }
+      
+      /**
+       * Wait until no other thread is calling this factory for 
+       * the given key, then claim the key for the current thread. 
+       * Threads using different keys, for example different 
+       * session ids, do not wait for each other.
+       * 
+       * @return false if the current thread already holds the key
+       */
+      public boolean lock(Object key)
+      {
+         Creation creation = new Creation();
+         while (true)
+         {
+            Creation existing = creations.putIfAbsent(key, creation);
+            if (existing==null)
+            {
+               return true;
+            }
+            else if (existing.owner==Thread.currentThread())
+            {
+               return false;
+            }
+            else
+            {
+               long start = System.nanoTime();
+               existing.await();
+               waits.incrementAndGet();
+               waitTime.addAndGet( System.nanoTime() - start );
+            }
+         }
+      }
+      
+      /**
+       * Release a key claimed by {@link #lock(Object)}, waking
+       * any threads waiting for it.
+       */
+      public void unlock(Object key)
+      {
+         Creation creation = creations.remove(key);
+         if (creation!=null)
+         {
+            creation.done.countDown();
+         }
+      }
+      
+      /**
+       * @return the number of times a thread had to wait for 
+       * another thread calling this factory
+       */
+      public long getWaitCount()
+      {
+         return waits.get();
+      }
+      
+      /**
+       * @return the total time, in milliseconds, threads spent
+       * waiting for other threads calling this factory
+       */
+      public long getWaitTime()
+      {
+         return waitTime.get() / 1000000;
+      }
+      
       @Override
       public String toString()
       {
@@ -164,6 +240,33 @@ public class Init
       }
    }
    
+   private static class Creation
+   {
+      private final Thread owner = Thread.currentThread();
+      private final CountDownLatch done = new CountDownLatch(1);
+      
+      private void await()
+      {
+         boolean interrupted = false;
+         while (true)
+         {
+            try
+            {
+               done.await();
+               break;
+            }
+            catch (InterruptedException e)
+            {
+               interrupted = true;
+            }
+         }
+         if (interrupted)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+   
    public static class FactoryExpression 
    {
       private String expression;
@@ -201,6 +304,15 @@ public class Init
       return factories.get(variable);
    }
    
+   /**
+    * @return the names of the context variables created by
+    * factory methods
+    */
+   public Set<String> getFactoryNames()
+   {
+      return Collections.unmodifiableSet( factories.keySet() );
+   }
+   
    public FactoryExpression getFactoryMethodExpression(String variable)
    {
       return factoryMethodExpressions.get(variable);
@@ -291,6 +403,7 @@ public class Init
       private Method method;
       private Component component;
       private boolean create;
+      private transient volatile BoundMethod boundMethod;
       
       ObserverMethod(Method method, Component component, boolean create)
       {
@@ -298,6 +411,41 @@ public class Init
          this.component = component;
          this.create = create;
       }
+      
+      /**
+       * Call the observer method of the given listener instance,
+       * binding the method of the instance class on the first call
+       */
+      public Object invoke(Object listener, Object... parameters)
+      {
+         BoundMethod bound = boundMethod;
+         if ( bound==null || bound.type!=listener.getClass() )
+         {
+            try
+            {
+               bound = new BoundMethod( listener.getClass(), listener.getClass().getMethod( method.getName(), method.getParameterTypes() ) );
+            }
+            catch (NoSuchMethodException nsme)
+            {
+               //let the component report it
+               return component.callComponentMethod(listener, method, parameters);
+            }
+            boundMethod = bound;
+         }
+         
+         if ( bound.method.getParameterTypes().length==0 )
+         {
+            return Reflections.invokeAndWrap(bound.method, listener);
+         }
+         else if ( parameters.length>0 )
+         {
+            return Reflections.invokeAndWrap(bound.method, listener, parameters);
+         }
+         else
+         {
+            return Reflections.invokeAndWrap(bound.method, listener, component);
+         }
+      }
 
       public Component getComponent()
       {
@@ -353,6 +501,117 @@ public class Init
       }
    }
    
+   private static class BoundMethod
+   {
+      final Class type;
+      final Method method;
+      
+      BoundMethod(Class type, Method method)
+      {
+         this.type = type;
+         this.method = method;
+      }
+   }
+   
+   /**
+    * The observers of an event type, compiled from the registered
+    * observer methods and method expressions
+    */
+   public static class EventObservers
+   {
+      private final ObserverMethodExpression[] methodExpressions;
+      private final ObserverMethod[] methods;
+      
+      EventObservers(List<ObserverMethodExpression> methodExpressions, List<ObserverMethod> methods)
+      {
+         this.methodExpressions = methodExpressions==null ? 
+                  new ObserverMethodExpression[0] : methodExpressions.toArray( new ObserverMethodExpression[methodExpressions.size()] );
+         this.methods = methods==null ? 
+                  new ObserverMethod[0] : methods.toArray( new ObserverMethod[methods.size()] );
+      }
+
+      public ObserverMethodExpression[] getMethodExpressions()
+      {
+         return methodExpressions;
+      }
+
+      public ObserverMethod[] getMethods()
+      {
+         return methods;
+      }
+   }
+   
+   /**
+    * @return the observers of the given event type, or null if 
+    * nothing observes it
+    */
+   public EventObservers getEventObservers(String eventType)
+   {
+      Map<String, EventObservers> compiled = eventObservers;
+      if (compiled==null)
+      {
+         compiled = compileEventObservers();
+      }
+      return compiled.get(eventType);
+   }
+   
+   /**
+    * Determine if anything observes the event type made up of the 
+    * given prefix and qualifier, for example "org.jboss.seam.preSetVariable."
+    * and a context variable name, without concatenating them.
+    * 
+    * @param prefix an event type prefix, ending in '.'
+    * @param qualifier the rest of the event type
+    */
+   public boolean isObserved(String prefix, String qualifier)
+   {
+      if (eventObservers==null)
+      {
+         compileEventObservers();
+      }
+      Set<String> qualifiers = observedQualifiers.get(prefix);
+      return qualifiers!=null && qualifiers.contains(qualifier);
+   }
+   
+   private synchronized Map<String, EventObservers> compileEventObservers()
+   {
+      if (eventObservers!=null)
+      {
+         return eventObservers;
+      }
+      
+      Set<String> eventTypes = new HashSet<String>( observerMethods.keySet() );
+      eventTypes.addAll( observerMethodBindings.keySet() );
+      Map<String, EventObservers> compiled = new HashMap<String, EventObservers>();
+      Map<String, Set<String>> qualifiers = new HashMap<String, Set<String>>();
+      for (String eventType: eventTypes)
+      {
+         List<ObserverMethodExpression> expressions = observerMethodBindings.get(eventType);
+         List<ObserverMethod> methods = observerMethods.get(eventType);
+         if ( (expressions==null || expressions.isEmpty()) && (methods==null || methods.isEmpty()) )
+         {
+            continue;
+         }
+         compiled.put( eventType, new EventObservers(expressions, methods) );
+         
+         for ( int i = eventType.indexOf('.'); i>=0; i = eventType.indexOf('.', i+1) )
+         {
+            String prefix = eventType.substring(0, i+1);
+            Set<String> set = qualifiers.get(prefix);
+            if (set==null)
+            {
+               set = new HashSet<String>();
+               qualifiers.put(prefix, set);
+            }
+            set.add( eventType.substring(i+1) );
+         }
+      }
+      
+      observedQualifiers = qualifiers;
+      eventObservers = compiled;
+      return compiled;
+   }
+   
    public List<ObserverMethod> getObserverMethods(String eventType)
    {
       return observerMethods.get(eventType);
@@ -363,8 +622,9 @@ public class Init
       return observerMethodBindings.get(eventType);
    }
    
-   public void addObserverMethod(String eventType, Method method, Component component, boolean create)
+   public synchronized void addObserverMethod(String eventType, Method method, Component component, boolean create)
    {
+      eventObservers = null;
       List<ObserverMethod> observerList = observerMethods.get(eventType);
       if (observerList==null)
       {
@@ -379,8 +639,9 @@ public class Init
       }
    }
    
-   public void addObserverMethodExpression(String eventType, MethodExpression methodBinding)
+   public synchronized void addObserverMethodExpression(String eventType, MethodExpression methodBinding)
    {
+      eventObservers = null;
       List<ObserverMethodExpression> observerList = observerMethodBindings.get(eventType);
       if (observerList==null)
       {
@@ -395,8 +656,9 @@ public class Init
     * out old observer methods on hot deploy
     * @param component
     */
-   public void removeObserverMethods(Component component)
+   public synchronized void removeObserverMethods(Component component)
    {
+      eventObservers = null;
       // TODO Better implementation ;-)
       for (String eventType : observerMethods.keySet())
       {
@@ -1,28 +1,37 @@
 package org.jboss.seam.core;
 
-import static org.jboss.seam.ScopeType.STATELESS;
+import static org.jboss.seam.ScopeType.APPLICATION;
 import static org.jboss.seam.annotations.Install.BUILT_IN;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jboss.seam.Component;
 import org.jboss.seam.ScopeType;
+import org.jboss.seam.annotations.Create;
 import org.jboss.seam.annotations.Install;
 import org.jboss.seam.annotations.Name;
 import org.jboss.seam.annotations.Scope;
 import org.jboss.seam.annotations.intercept.BypassInterceptors;
 import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.core.Expressions.ValueExpression;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.util.BoundedCache;
 
 /**
- * Interpolates EL expressions in Strings
+ * Interpolates EL expressions in Strings. Each distinct string
+ * is parsed once, and the parsed templates of the most recently
+ * used strings are kept.
  * 
  * @author Gavin King
  */
 @BypassInterceptors
-@Scope(STATELESS)
+@Scope(APPLICATION)
 @Name("org.jboss.seam.core.interpolator")
 @Install(precedence = BUILT_IN)
 public class Interpolator
@@ -30,6 +39,10 @@ public class Interpolator
    
    private static final LogProvider log = Logging.getLogProvider(Interpolator.class);
    
+   private int cacheSize = 1000;
+   
+   private BoundedCache<String, Template> templates;
+   
    public static Interpolator instance()
    {
       if (Contexts.isApplicationContextActive())
@@ -42,6 +55,12 @@ public class Interpolator
       }
    }
    
+   @Create
+   public void create()
+   {
+      templates = new BoundedCache<String, Template>(cacheSize);
+   }
+   
    /**
     * Replace all EL expressions in the form #{...} with their evaluated values.
     * 
@@ -76,123 +95,290 @@ public class Interpolator
    
    private String interpolateExpressions(String string, Object... params)
    {
-      StringTokenizer tokens = new StringTokenizer(string, "#{}", true);
-      StringBuilder builder = new StringBuilder(string.length());
+      Template template = templates==null ? null : templates.get(string);
+      if (template==null)
+      {
+         template = new Template(string);
+         if (templates!=null)
+         {
+            templates.putIfAbsent(string, template);
+         }
+      }
+      return template.render(params);
+   }
+   
+   /**
+    * A string parsed into literal text, EL expressions, #n parameters 
+    * and {n} MessageFormat patterns, so that it only needs to be parsed 
+    * once
+    */
+   static class Template
+   {
+      private final String string;
+      private final Segment[] segments;
       
-      while (tokens.hasMoreTokens())
+      Template(String string)
       {
-         String tok = tokens.nextToken();
+         this.string = string;
+         this.segments = parse(string);
+      }
+      
+      String render(Object... params)
+      {
+         StringBuilder builder = new StringBuilder( string.length() );
+         for (Segment segment: segments)
+         {
+            segment.append(builder, params);
+         }
+         return builder.toString();
+      }
+      
+      private Segment[] parse(String string)
+      {
+         List<Segment> segments = new ArrayList<Segment>();
+         StringTokenizer tokens = new StringTokenizer(string, "#{}", true);
+         StringBuilder literal = new StringBuilder();
          
-         if ("#".equals(tok) && tokens.hasMoreTokens())
+         while (tokens.hasMoreTokens())
          {
-            String nextTok = tokens.nextToken();
+            String tok = tokens.nextToken();
             
-            while (nextTok.equals("#") && tokens.hasMoreTokens())
+            if ("#".equals(tok) && tokens.hasMoreTokens())
             {
-               builder.append(tok);
-               nextTok = tokens.nextToken();
-            }
-            
-            if ("{".equals(nextTok))
-            {
-               String expression = "#{" + tokens.nextToken() + "}";
-               try
+               String nextTok = tokens.nextToken();
+               
+               while (nextTok.equals("#") && tokens.hasMoreTokens())
                {
-                  Object value = Expressions.instance().createValueExpression(expression).getValue();
-                  if (value != null)
-                     builder.append(value);
+                  literal.append(tok);
+                  nextTok = tokens.nextToken();
                }
-               catch (Exception e)
+               
+               if ("{".equals(nextTok))
                {
-                  log.debug("exception interpolating string: " + string, e);
+                  String expression = "#{" + tokens.nextToken() + "}";
+                  addLiteral(segments, literal);
+                  segments.add( new ExpressionSegment(string, expression) );
+                  tokens.nextToken(); // the trailing "}"
                }
-               tokens.nextToken(); // the trailing "}"
-               
-            }
-            else if (nextTok.equals("#"))
-            {
-               // could be trailing #
-               builder.append("#");
-               
-            }
-            else
-            {
-               int index;
-               try
+               else if (nextTok.equals("#"))
                {
-                  index = Integer.parseInt(nextTok.substring(0, 1));
-                  if (index >= params.length)
+                  // could be trailing #
+                  literal.append("#");
+               }
+               else
+               {
+                  try
                   {
-                     // log.warn("parameter index out of bounds: " + index +
-                     // " in: " + string);
-                     builder.append("#").append(nextTok);
+                     int index = Integer.parseInt(nextTok.substring(0, 1));
+                     addLiteral(segments, literal);
+                     segments.add( new ParameterSegment(index, nextTok) );
                   }
-                  else
+                  catch (NumberFormatException nfe)
                   {
-                     builder.append(params[index]).append(nextTok.substring(1));
+                     literal.append("#").append(nextTok);
                   }
                }
-               catch (NumberFormatException nfe)
-               {
-                  builder.append("#").append(nextTok);
-               }
             }
-         }
-         else if ("{".equals(tok))
-         {
-            StringBuilder expr = new StringBuilder();
-            
-            expr.append(tok);
-            int level = 1;
-            
-            while (tokens.hasMoreTokens())
+            else if ("{".equals(tok))
             {
-               String nextTok = tokens.nextToken();
-               expr.append(nextTok);
+               StringBuilder expr = new StringBuilder();
                
-               if (nextTok.equals("{"))
-               {
-                  ++level;
-               }
-               else if (nextTok.equals("}"))
+               expr.append(tok);
+               int level = 1;
+               
+               while (tokens.hasMoreTokens())
                {
-                  if (--level == 0)
+                  String nextTok = tokens.nextToken();
+                  expr.append(nextTok);
+                  
+                  if (nextTok.equals("{"))
                   {
-                     try
-                     {
-                        if (params.length == 0)
-                        {
-                           builder.append(expr.toString());
-                        }
-                        else
-                        {
-                           String value = new MessageFormat(expr.toString(), Locale.instance()).format(params);
-                           builder.append(value);
-                        }
-                     }
-                     catch (Exception e)
+                     ++level;
+                  }
+                  else if (nextTok.equals("}"))
+                  {
+                     if (--level == 0)
                      {
-                        // if it is a bad message, use the expression itself
-                        builder.append(expr);
+                        addLiteral(segments, literal);
+                        segments.add( new MessageFormatSegment( expr.toString() ) );
+                        expr = null;
+                        break;
                      }
-                     expr = null;
-                     break;
                   }
                }
+               
+               if (expr != null)
+               {
+                  literal.append(expr);
+               }
             }
-            
-            if (expr != null)
+            else
             {
-               builder.append(expr);
+               literal.append(tok);
             }
          }
+         
+         addLiteral(segments, literal);
+         return segments.toArray( new Segment[segments.size()] );
+      }
+      
+      private static void addLiteral(List<Segment> segments, StringBuilder literal)
+      {
+         if ( literal.length()>0 )
+         {
+            segments.add( new LiteralSegment( literal.toString() ) );
+            literal.setLength(0);
+         }
+      }
+   }
+   
+   interface Segment
+   {
+      void append(StringBuilder builder, Object... params);
+   }
+   
+   static class LiteralSegment implements Segment
+   {
+      private final String text;
+      
+      LiteralSegment(String text)
+      {
+         this.text = text;
+      }
+      
+      public void append(StringBuilder builder, Object... params)
+      {
+         builder.append(text);
+      }
+   }
+   
+   /**
+    * #{...}
+    */
+   static class ExpressionSegment implements Segment
+   {
+      private final String string;
+      private final ValueExpression<Object> expression;
+      private final Exception exception;
+      
+      ExpressionSegment(String string, String expression)
+      {
+         this.string = string;
+         ValueExpression<Object> valueExpression = null;
+         Exception invalid = null;
+         try
+         {
+            valueExpression = Expressions.instance().createValueExpression(expression);
+         }
+         catch (Exception e)
+         {
+            invalid = e;
+         }
+         this.expression = valueExpression;
+         this.exception = invalid;
+      }
+      
+      public void append(StringBuilder builder, Object... params)
+      {
+         try
+         {
+            if (exception != null)
+            {
+               throw exception;
+            }
+            Object value = expression.getValue();
+            if (value != null)
+               builder.append(value);
+         }
+         catch (Exception e)
+         {
+            log.debug("exception interpolating string: " + string, e);
+         }
+      }
+   }
+   
+   /**
+    * #0 to #9, followed by any other text up to the next #, { or }
+    */
+   static class ParameterSegment implements Segment
+   {
+      private final int index;
+      private final String token;
+      
+      ParameterSegment(int index, String token)
+      {
+         this.index = index;
+         this.token = token;
+      }
+      
+      public void append(StringBuilder builder, Object... params)
+      {
+         if (index >= params.length)
+         {
+            builder.append("#").append(token);
+         }
          else
          {
-            builder.append(tok);
+            builder.append(params[index]).append(token, 1, token.length());
          }
       }
+   }
+   
+   /**
+    * {...}, a MessageFormat pattern
+    */
+   static class MessageFormatSegment implements Segment
+   {
+      private final String pattern;
+      private final ConcurrentMap<java.util.Locale, MessageFormat> formats = new ConcurrentHashMap<java.util.Locale, MessageFormat>(2);
+      
+      MessageFormatSegment(String pattern)
+      {
+         this.pattern = pattern;
+      }
       
-      return builder.toString();
+      public void append(StringBuilder builder, Object... params)
+      {
+         if (params.length == 0)
+         {
+            builder.append(pattern);
+            return;
+         }
+         
+         try
+         {
+            java.util.Locale locale = Locale.instance();
+            MessageFormat format = formats.get(locale);
+            if (format == null)
+            {
+               format = new MessageFormat(pattern, locale);
+               formats.putIfAbsent(locale, format);
+            }
+            // MessageFormat is not thread safe
+            synchronized (format)
+            {
+               builder.append( format.format(params) );
+            }
+         }
+         catch (Exception e)
+         {
+            // if it is a bad message, use the expression itself
+            builder.append(pattern);
+         }
+      }
+   }
+   
+   public int getCacheSize()
+   {
+      return cacheSize;
+   }
+   
+   /**
+    * The number of parsed strings to keep
+    */
+   public void setCacheSize(int cacheSize)
+   {
+      this.cacheSize = cacheSize;
    }
    
 }
@@ -32,6 +32,7 @@ import org.jboss.seam.navigation.ConversationIdParameter;
 import org.jboss.seam.navigation.Pages;
 import org.jboss.seam.pageflow.Pageflow;
 import org.jboss.seam.util.Id;
+import org.jboss.seam.web.ConversationReaper;
 import org.jboss.seam.web.Session;
 
 /**
@@ -184,6 +185,7 @@ public class Manager
    {
       currentConversationId = id;
       currentConversationEntry = null;
+      Contexts.clearResolutionCache();
    }
    
    /**
@@ -277,12 +279,14 @@ public class Manager
    public void setCurrentConversationIdStack(List<String> stack)
    {
       currentConversationIdStack = stack;
+      Contexts.clearResolutionCache();
    }
 
    private List<String> createCurrentConversationIdStack(String id)
    {
       currentConversationIdStack = new ArrayList<String>();
       currentConversationIdStack.add(id);
+      Contexts.clearResolutionCache();
       return currentConversationIdStack;
    }
 
@@ -377,21 +381,29 @@ public class Manager
 
    /**
     * Clean up timed-out conversations
+    * 
+    * @return the number of conversations that timed out
     */
-   public void conversationTimeout(Map<String, Object> session)
+   public int conversationTimeout(Map<String, Object> session)
    {
+      int timedOut = 0;
       long currentTime = System.currentTimeMillis();
       ConversationEntries conversationEntries = ConversationEntries.getInstance();
       if (conversationEntries!=null)
       {
-         List<ConversationEntry> entries = new ArrayList<ConversationEntry>( conversationEntries.getConversationEntries() );
+         List<ConversationEntry> entries = conversationEntries.getExpiredConversationEntries( currentTime, getConversationTimeout() );
          for (ConversationEntry conversationEntry: entries)
          {
             boolean locked = conversationEntry.lockNoWait(); //we had better not wait for it, or we would be waiting for ALL other requests
             try
             {
                long delta = currentTime - conversationEntry.getLastRequestTime();
-               if ( delta > conversationEntry.getTimeout() )
+               if ( delta <= conversationEntry.getTimeout() )
+               {
+                  //indexed before its timeout was changed
+                  conversationEntry.updateTimeoutIndex();
+               }
+               else
                {
                   if ( locked )
                   { 
@@ -419,6 +431,7 @@ public class Manager
                      Events.instance().raiseEvent(EVENT_CONVERSATION_TIMEOUT, conversationEntry.getId());
                   }
                   destroyConversation( conversationEntry.getId(), session );
+                  timedOut++;
                }
             }
             finally
@@ -427,6 +440,7 @@ public class Manager
             }
          }
       }
+      return timedOut;
    }
 
    /**
@@ -468,7 +482,13 @@ public class Manager
          // right now we do have to do it after committing the Seam
          // transaction because we can't close EMs inside a txn
          // (this might be a bug in HEM)
-         Manager.instance().conversationTimeout(session);
+         // when the reaper is installed, it times out conversations
+         // in the background instead, once it knows the session
+         ConversationReaper reaper = ConversationReaper.instance();
+         if ( reaper==null || !reaper.trackCurrentSession() )
+         {
+            Manager.instance().conversationTimeout(session);
+         }
       //}
    }
    
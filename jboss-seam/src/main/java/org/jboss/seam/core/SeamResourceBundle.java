@@ -3,10 +3,13 @@ package org.jboss.seam.core;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.ListResourceBundle;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
+import java.util.PropertyResourceBundle;
 import java.util.ResourceBundle;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -27,9 +30,67 @@ import org.jboss.seam.util.EnumerationEnumeration;
  */
 public class SeamResourceBundle extends java.util.ResourceBundle
 {
-   private Map<Init,Map<Locale, List<ResourceBundle>>> bundleCache = new ConcurrentHashMap<Init,Map<Locale, List<ResourceBundle>>>();
+   private Map<Init,Map<Locale, Bundles>> bundleCache = new ConcurrentHashMap<Init,Map<Locale, Bundles>>();
 
-   private Map<Locale, List<ResourceBundle>> getCachedBundle()
+   /**
+    * The delegate bundles for a locale, and an index of the first bundle
+    * with each key. Only property and list resource bundles are indexed,
+    * since other bundles may have keys that they do not enumerate.
+    */
+   private static class Bundles
+   {
+      private final List<ResourceBundle> bundles;
+      private final boolean[] indexed;
+      private final Map<String, Integer> positionsByKey = new HashMap<String, Integer>();
+      
+      Bundles(List<ResourceBundle> bundles)
+      {
+         this.bundles = bundles;
+         this.indexed = new boolean[bundles.size()];
+         for (int i = 0; i < bundles.size(); i++)
+         {
+            ResourceBundle bundle = bundles.get(i);
+            indexed[i] = bundle instanceof PropertyResourceBundle || bundle instanceof ListResourceBundle;
+            if (indexed[i])
+            {
+               for ( String key: bundle.keySet() )
+               {
+                  if ( !positionsByKey.containsKey(key) )
+                  {
+                     positionsByKey.put(key, i);
+                  }
+               }
+            }
+         }
+      }
+      
+      /**
+       * Search the bundles in order, skipping the indexed bundles which
+       * come before the first indexed bundle with the key
+       * 
+       * @return the resource, or null if no bundle has it
+       */
+      Object getObject(String key)
+      {
+         Integer position = positionsByKey.get(key);
+         int first = position == null ? bundles.size() : position;
+         for (int i = 0; i < bundles.size(); i++)
+         {
+            if ( i < first && indexed[i] )
+            {
+               continue;
+            }
+            try
+            {
+               return bundles.get(i).getObject(key);
+            }
+            catch (MissingResourceException mre) {}
+         }
+         return null;
+      }
+   }
+   
+   private Map<Locale, Bundles> getCachedBundle()
    {
       Init init; 
       if(Contexts.isApplicationContextActive())
@@ -43,7 +104,7 @@ public class SeamResourceBundle extends java.util.ResourceBundle
       }
       if(!bundleCache.containsKey(init))
       {
-         bundleCache.put(init, new ConcurrentHashMap<Locale, List<ResourceBundle>>());
+         bundleCache.put(init, new ConcurrentHashMap<Locale, Bundles>());
       }
       return bundleCache.get(init);
    }
@@ -69,13 +130,13 @@ public class SeamResourceBundle extends java.util.ResourceBundle
    }
 
    
-   private List<java.util.ResourceBundle> getBundlesForCurrentLocale()
+   private Bundles getBundlesForCurrentLocale()
    {
       Locale instance = org.jboss.seam.core.Locale.instance();
-      List<ResourceBundle> bundles = getCachedBundle().get(instance);
+      Bundles bundles = getCachedBundle().get(instance);
       if ( bundles==null )
       {
-         bundles = loadBundlesForCurrentLocale();
+         bundles = new Bundles( loadBundlesForCurrentLocale() );
          getCachedBundle().put(instance, bundles);
       }
       return bundles;
@@ -107,7 +168,7 @@ public class SeamResourceBundle extends java.util.ResourceBundle
    public Enumeration<String> getKeys()
    {
       List<java.util.ResourceBundle> pageBundles = getPageResourceBundles();
-      List<ResourceBundle> bundles = getBundlesForCurrentLocale();
+      List<ResourceBundle> bundles = getBundlesForCurrentLocale().bundles;
       Enumeration<String>[] enumerations = new Enumeration[bundles.size() + pageBundles.size()];
 
       int i = 0;
@@ -132,23 +193,20 @@ public class SeamResourceBundle extends java.util.ResourceBundle
       List<java.util.ResourceBundle> pageBundles = getPageResourceBundles();
       for (java.util.ResourceBundle pageBundle : pageBundles)
       {
-         try
-         {
-            return interpolate(pageBundle.getObject(key));
-         }
-         catch (MissingResourceException mre) {}
-      }
-
-      for (java.util.ResourceBundle littleBundle : getBundlesForCurrentLocale())
-      {
-         try
+         // only property and list resource bundles enumerate all their keys
+         boolean indexed = pageBundle instanceof PropertyResourceBundle || pageBundle instanceof ListResourceBundle;
+         if ( !indexed || pageBundle.containsKey(key) )
          {
-            return interpolate( littleBundle.getObject(key) );
+            try
+            {
+               return interpolate(pageBundle.getObject(key));
+            }
+            catch (MissingResourceException mre) {}
          }
-         catch (MissingResourceException mre) {}
       }
 
-      return null; // superclass is responsible for throwing MRE
+      // null if missing, the superclass is responsible for throwing MRE
+      return interpolate( getBundlesForCurrentLocale().getObject(key) );
    }
 
    private Object interpolate(Object message)
@@ -34,7 +34,7 @@ public abstract class AbstractScanner implements Scanner
    {
       
       // Cache descriptors for performance
-      private ClassFile classFile;
+      private Set<String> annotationTypes;
       private ClassDescriptor classDescriptor;
       private FileDescriptor fileDescriptor;
       
@@ -43,8 +43,9 @@ public abstract class AbstractScanner implements Scanner
       private String name;
       private ServletContext servletContext;
       
-      public Handler(String name, Set<Entry<String, DeploymentHandler>> deploymentHandlers, ClassLoader classLoader,ServletContext servletContext)
+      public Handler(String name, Set<String> annotationTypes, Set<Entry<String, DeploymentHandler>> deploymentHandlers, ClassLoader classLoader,ServletContext servletContext)
       {
+         this.annotationTypes = annotationTypes;
          this.deploymentHandlers = deploymentHandlers;
          this.name = name;
          this.classLoader = classLoader;
@@ -62,7 +63,7 @@ public abstract class AbstractScanner implements Scanner
             if (name.endsWith(".class"))
             {
                ClassDeploymentHandler classDeploymentHandler = (ClassDeploymentHandler) deploymentHandler;
-               if (hasAnnotations(getClassFile(), classDeploymentHandler.getMetadata().getClassAnnotatedWith()))
+               if (hasAnnotations(getAnnotationTypes(), classDeploymentHandler.getMetadata().getClassAnnotatedWith()))
                {
                   if (getClassDescriptor().getClazz() != null)
                   {
@@ -102,20 +103,20 @@ public abstract class AbstractScanner implements Scanner
          return handled;
       }
       
-      private ClassFile getClassFile()
+      private Set<String> getAnnotationTypes()
       {
-         if (classFile == null)
+         if (annotationTypes == null)
          {
             try
             {
-               classFile = loadClassFile(name, classLoader);
+               annotationTypes = loadAnnotationTypes(name, classLoader);
             } 
             catch (IOException e)
             {
                throw new RuntimeException("Error loading class file " + name, e);
             }
          }
-         return classFile;
+         return annotationTypes;
       }
       
       private ClassDescriptor getClassDescriptor()
@@ -141,6 +142,8 @@ public abstract class AbstractScanner implements Scanner
    
    private DeploymentStrategy deploymentStrategy;
    
+   private final boolean handleOverridden = isHandleOverridden( getClass() );
+   
    public AbstractScanner(DeploymentStrategy deploymentStrategy)
    {
       this.deploymentStrategy = deploymentStrategy;
@@ -177,6 +180,47 @@ public abstract class AbstractScanner implements Scanner
       return false;
    }
    
+   protected static boolean hasAnnotations(Set<String> classAnnotationTypes, Set<Class<? extends Annotation>> annotationTypes)
+   {
+      if ( annotationTypes.size() > 0 && classAnnotationTypes.size() > 0 )
+      {
+         for (Class<? extends Annotation> annotationType : annotationTypes)
+         {
+            if ( classAnnotationTypes.contains( annotationType.getName() ) )
+            {
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+   
+   /**
+    * Get the names of the runtime visible annotation types of a class
+    * file from the classLoader, reading just enough of the class file 
+    * to find them
+    */
+   protected static Set<String> loadAnnotationTypes(String name, ClassLoader classLoader) throws IOException 
+   {
+      if (name == null)
+      {
+         throw new NullPointerException("name cannot be null");
+      }
+      InputStream stream = classLoader.getResourceAsStream(name);
+      if (stream == null)
+      {
+         throw new IllegalStateException("Cannot load " + name + " from " + classLoader + " (using getResourceAsStream() returned null)");
+      }
+      try 
+      { 
+         return ClassAnnotationReader.readAnnotationTypes(stream); 
+      } 
+      finally 
+      { 
+         stream.close(); 
+      }
+   }
+   
    /**
     * Get a Javassist {@link ClassFile} for a given class name from the classLoader
     */
@@ -220,9 +264,45 @@ public abstract class AbstractScanner implements Scanner
    }
    
    
+   /**
+    * Handle a file. A subclass overriding this method sees every 
+    * file, including the entries of archives whose annotation 
+    * types have already been read.
+    */
    protected boolean handle(String name)
    {
-      return new Handler(name, deploymentStrategy.getDeploymentHandlers().entrySet(), deploymentStrategy.getClassLoader(),servletContext).handle();
+      return handle(name, null);
+   }
+   
+   /**
+    * Handle a file whose annotation types, if it is a class file, 
+    * have already been read. If a subclass overrides handle(String),
+    * the file is passed to it instead.
+    * 
+    * @param annotationTypes the annotation types, or null if they
+    * have not been read
+    */
+   protected boolean handle(String name, Set<String> annotationTypes)
+   {
+      if (annotationTypes!=null && handleOverridden)
+      {
+         return handle(name);
+      }
+      return new Handler(name, annotationTypes, deploymentStrategy.getDeploymentHandlers().entrySet(), deploymentStrategy.getClassLoader(),servletContext).handle();
+   }
+   
+   private static boolean isHandleOverridden(Class<?> clazz)
+   {
+      for ( Class<?> superClass = clazz; superClass!=AbstractScanner.class; superClass = superClass.getSuperclass() )
+      {
+         try
+         {
+            superClass.getDeclaredMethod("handle", String.class);
+            return true;
+         }
+         catch (NoSuchMethodException nsme) {}
+      }
+      return false;
    }
    
    public void scanDirectories(File[] directories, File[] excludedDirectories)
@@ -0,0 +1,233 @@
+package org.jboss.seam.deployment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads the names of the runtime visible annotations of a class
+ * from its class file, without building a full Javassist
+ * ClassFile. Only the constant pool and the class attributes
+ * are examined, the fields and methods are skipped over.
+ */
+class ClassAnnotationReader
+{
+   private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+   private final byte[] bytes;
+   private int position;
+   private int[] utf8Offsets;
+
+   private ClassAnnotationReader(byte[] bytes)
+   {
+      this.bytes = bytes;
+   }
+
+   /**
+    * @return the class names of the annotation types, for example
+    * "org.jboss.seam.annotations.Name"
+    */
+   static Set<String> readAnnotationTypes(InputStream stream) throws IOException
+   {
+      return new ClassAnnotationReader( readFully(stream) ).read();
+   }
+
+   private static byte[] readFully(InputStream stream) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+      byte[] buffer = new byte[4096];
+      int read;
+      while ( (read = stream.read(buffer)) != -1 )
+      {
+         out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+   }
+
+   private Set<String> read() throws IOException
+   {
+      try
+      {
+         if ( u4()!=0xCAFEBABE )
+         {
+            throw new IOException("not a class file");
+         }
+         position += 4; //minor and major version
+         readConstantPool();
+         position += 6; //access flags, this class, super class
+         int interfaces = u2();
+         position += 2 * interfaces;
+         skipMembers(); //fields
+         skipMembers(); //methods
+
+         int attributes = u2();
+         for (int i=0; i<attributes; i++)
+         {
+            String name = utf8( u2() );
+            int length = u4();
+            if ( RUNTIME_VISIBLE_ANNOTATIONS.equals(name) )
+            {
+               return readAnnotations();
+            }
+            position += length;
+         }
+         return Collections.emptySet();
+      }
+      catch (ArrayIndexOutOfBoundsException e)
+      {
+         throw new IOException("truncated class file");
+      }
+   }
+
+   private void readConstantPool() throws IOException
+   {
+      int count = u2();
+      utf8Offsets = new int[count];
+      for (int i=1; i<count; i++)
+      {
+         int tag = u1();
+         switch (tag)
+         {
+            case 1: //Utf8
+               utf8Offsets[i] = position;
+               int length = u2();
+               position += length;
+               break;
+            case 5: //Long
+            case 6: //Double
+               position += 8;
+               i++;
+               break;
+            case 3: //Integer
+            case 4: //Float
+            case 9: //Fieldref
+            case 10: //Methodref
+            case 11: //InterfaceMethodref
+            case 12: //NameAndType
+            case 17: //Dynamic
+            case 18: //InvokeDynamic
+               position += 4;
+               break;
+            case 15: //MethodHandle
+               position += 3;
+               break;
+            case 7: //Class
+            case 8: //String
+            case 16: //MethodType
+            case 19: //Module
+            case 20: //Package
+               position += 2;
+               break;
+            default:
+               throw new IOException("unknown constant pool tag: " + tag);
+         }
+      }
+   }
+
+   private void skipMembers()
+   {
+      int count = u2();
+      for (int i=0; i<count; i++)
+      {
+         position += 6; //access flags, name, descriptor
+         int attributes = u2();
+         for (int j=0; j<attributes; j++)
+         {
+            position += 2;
+            int length = u4();
+            position += length;
+         }
+      }
+   }
+
+   private Set<String> readAnnotations() throws IOException
+   {
+      int count = u2();
+      Set<String> types = new HashSet<String>(count * 2);
+      for (int i=0; i<count; i++)
+      {
+         types.add( toClassName( utf8( u2() ) ) );
+         skipElementValuePairs();
+      }
+      return types;
+   }
+
+   private void skipAnnotation()
+   {
+      position += 2; //type
+      skipElementValuePairs();
+   }
+
+   private void skipElementValuePairs()
+   {
+      int pairs = u2();
+      for (int i=0; i<pairs; i++)
+      {
+         position += 2; //name
+         skipElementValue();
+      }
+   }
+
+   private void skipElementValue()
+   {
+      int tag = u1();
+      switch (tag)
+      {
+         case 'e':
+            position += 4;
+            break;
+         case '@':
+            skipAnnotation();
+            break;
+         case '[':
+            int values = u2();
+            for (int i=0; i<values; i++)
+            {
+               skipElementValue();
+            }
+            break;
+         default:
+            position += 2;
+      }
+   }
+
+   private static String toClassName(String descriptor)
+   {
+      //Lcom/acme/Foo;
+      return descriptor.substring(1, descriptor.length()-1).replace('/', '.');
+   }
+
+   private String utf8(int index) throws UnsupportedEncodingException
+   {
+      int offset = utf8Offsets[index];
+      int length = ( (bytes[offset] & 0xFF) << 8 ) | (bytes[offset+1] & 0xFF);
+      //annotation types and attribute names are plain ASCII in practice,
+      //and modified UTF-8 only differs from UTF-8 for \0 and supplementary characters
+      return new String(bytes, offset+2, length, "UTF-8");
+   }
+
+   private int u1()
+   {
+      return bytes[position++] & 0xFF;
+   }
+
+   private int u2()
+   {
+      int value = ( (bytes[position] & 0xFF) << 8 ) | (bytes[position+1] & 0xFF);
+      position += 2;
+      return value;
+   }
+
+   private int u4()
+   {
+      int value = ( (bytes[position] & 0xFF) << 24 ) | ( (bytes[position+1] & 0xFF) << 16 ) |
+            ( (bytes[position+2] & 0xFF) << 8 ) | (bytes[position+3] & 0xFF);
+      position += 4;
+      return value;
+   }
+
+}
@@ -0,0 +1,160 @@
+package org.jboss.seam.deployment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Remembers the entries of the archives scanned by the URLScanner,
+ * and the annotation types of their classes, so that an archive
+ * that has not changed since the last deployment does not need
+ * to be opened. Archives are identified by their path, size and
+ * last modified time.
+ */
+class ScanIndex
+{
+   private static final LogProvider log = Logging.getLogProvider(ScanIndex.class);
+
+   private static final int VERSION = 1;
+
+   /**
+    * The entries of an archive, mapped to the annotation types of
+    * the entry, or null if the entry is not a class
+    */
+   static class Archive implements Serializable
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final long length;
+      private final long lastModified;
+      private final LinkedHashMap<String, Set<String>> entries;
+
+      Archive(File file, LinkedHashMap<String, Set<String>> entries)
+      {
+         this.length = file.length();
+         this.lastModified = file.lastModified();
+         this.entries = entries;
+      }
+
+      boolean isCurrent(File file)
+      {
+         return file.length()==length && file.lastModified()==lastModified;
+      }
+
+      Map<String, Set<String>> getEntries()
+      {
+         return entries;
+      }
+   }
+
+   private final File file;
+   private final Map<String, Archive> previous;
+   private final Map<String, Archive> current = new ConcurrentHashMap<String, Archive>();
+   private volatile boolean changed;
+
+   private ScanIndex(File file, Map<String, Archive> previous)
+   {
+      this.file = file;
+      this.previous = previous;
+   }
+
+   /**
+    * Load the index saved by the last deployment
+    *
+    * @param file where the index is kept, or null to keep no index
+    */
+   @SuppressWarnings("unchecked")
+   static ScanIndex load(File file)
+   {
+      Map<String, Archive> previous = new HashMap<String, Archive>();
+      if ( file!=null && file.isFile() )
+      {
+         try
+         {
+            ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream(file) ) );
+            try
+            {
+               if ( in.readInt()==VERSION )
+               {
+                  previous = (Map<String, Archive>) in.readObject();
+               }
+            }
+            finally
+            {
+               in.close();
+            }
+         }
+         catch (Exception e)
+         {
+            log.debug("could not read scan index " + file, e);
+         }
+      }
+      return new ScanIndex(file, previous);
+   }
+
+   /**
+    * @return the archive as it was last scanned, or null if it
+    * changed since
+    */
+   Archive get(File archive)
+   {
+      Archive indexed = previous.get( archive.getPath() );
+      if ( indexed!=null && indexed.isCurrent(archive) )
+      {
+         current.put( archive.getPath(), indexed );
+         return indexed;
+      }
+      return null;
+   }
+
+   void put(File archive, Archive scanned)
+   {
+      current.put( archive.getPath(), scanned );
+      changed = true;
+   }
+
+   /**
+    * Save the archives scanned by this deployment, forgetting
+    * any that were not scanned
+    */
+   void save()
+   {
+      if ( file==null || ( !changed && current.size()==previous.size() ) )
+      {
+         return;
+      }
+      try
+      {
+         ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream(file) ) );
+         try
+         {
+            out.writeInt(VERSION);
+            out.writeObject( new HashMap<String, Archive>(current) );
+         }
+         finally
+         {
+            out.close();
+         }
+      }
+      catch (IOException ioe)
+      {
+         log.debug("could not write scan index " + file, ioe);
+         file.delete();
+      }
+   }
+
+}
@@ -2,12 +2,23 @@ package org.jboss.seam.deployment;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLDecoder;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
@@ -92,47 +103,181 @@ public class URLScanner extends AbstractScanner
    
    protected void handle(Set<String> paths)
    {
+      List<File> archives = new ArrayList<File>();
       for ( String urlPath: paths )
       {
-         try
+         log.trace("scanning: " + urlPath);
+         File file = new File(urlPath);
+         if ( file.isDirectory() )
          {
-            log.trace("scanning: " + urlPath);
-            File file = new File(urlPath);
-            if ( file.isDirectory() )
+            handleDirectory(file, null);
+         }
+         else
+         {
+            archives.add(file);
+         }
+      }
+      handleArchives(archives);
+   }
+   
+   /**
+    * Read the archives in parallel, then pass their entries to the 
+    * deployment handlers, one at a time. Archives which have not 
+    * changed since the last deployment are not read again.
+    */
+   private void handleArchives(List<File> archives)
+   {
+      if ( archives.isEmpty() )
+      {
+         return;
+      }
+      
+      final ScanIndex index = ScanIndex.load( getIndexFile() );
+      int threads = Math.min( archives.size(), Runtime.getRuntime().availableProcessors() );
+      ExecutorService executor = threads>1 ? Executors.newFixedThreadPool(threads) : null;
+      try
+      {
+         List<Future<ScanIndex.Archive>> results = new ArrayList<Future<ScanIndex.Archive>>();
+         for (final File archive: archives)
+         {
+            Callable<ScanIndex.Archive> task = new Callable<ScanIndex.Archive>()
+            {
+               public ScanIndex.Archive call() throws IOException
+               {
+                  return readArchive(archive, index);
+               }
+            };
+            if (executor==null)
             {
-               handleDirectory(file, null);
+               FutureTask<ScanIndex.Archive> future = new FutureTask<ScanIndex.Archive>(task);
+               future.run();
+               results.add(future);
             }
             else
             {
-               handleArchiveByFile(file);
+               results.add( executor.submit(task) );
             }
          }
-         catch (IOException ioe) 
+         
+         for (int i=0; i<archives.size(); i++)
+         {
+            File archive = archives.get(i);
+            ScanIndex.Archive contents;
+            try
+            {
+               contents = results.get(i).get();
+            }
+            catch (ExecutionException ee)
+            {
+               if ( ee.getCause() instanceof IOException )
+               {
+                  log.warn("could not read entries", ee.getCause());
+                  continue;
+               }
+               else if ( ee.getCause() instanceof RuntimeException )
+               {
+                  throw (RuntimeException) ee.getCause();
+               }
+               else
+               {
+                  throw new RuntimeException("Error handling file " + archive, ee.getCause());
+               }
+            }
+            catch (InterruptedException ie)
+            {
+               Thread.currentThread().interrupt();
+               throw new RuntimeException("interrupted while scanning " + archive, ie);
+            }
+            
+            log.trace("archive: " + archive);
+            touchTimestamp(archive);
+            for ( Map.Entry<String, Set<String>> entry: contents.getEntries().entrySet() )
+            {
+               handle( entry.getKey(), entry.getValue() );
+            }
+         }
+      }
+      finally
+      {
+         if (executor!=null)
          {
-            log.warn("could not read entries", ioe);
+            executor.shutdownNow();
          }
       }
+      index.save();
    }
-
-   private void handleArchiveByFile(File file) throws IOException
+   
+   private static ScanIndex.Archive readArchive(File file, ScanIndex index) throws IOException
    {
+      ScanIndex.Archive archive = index.get(file);
+      if (archive!=null)
+      {
+         return archive;
+      }
+      
+      LinkedHashMap<String, Set<String>> entries = new LinkedHashMap<String, Set<String>>();
+      ZipFile zip;
       try
       {
-         log.trace("archive: " + file);
-         touchTimestamp(file);
-         ZipFile zip = new ZipFile(file);
-         Enumeration<? extends ZipEntry> entries = zip.entries();
-         while ( entries.hasMoreElements() )
+         zip = new ZipFile(file);
+      }
+      catch (ZipException e)
+      {
+         throw new RuntimeException("Error handling file " + file, e);
+      }
+      try
+      {
+         Enumeration<? extends ZipEntry> zipEntries = zip.entries();
+         while ( zipEntries.hasMoreElements() )
          {
-            ZipEntry entry = entries.nextElement();
+            ZipEntry entry = zipEntries.nextElement();
             String name = entry.getName();
-            handle(name);
+            Set<String> annotationTypes = null;
+            if ( name.endsWith(".class") )
+            {
+               InputStream stream = zip.getInputStream(entry);
+               try
+               {
+                  annotationTypes = ClassAnnotationReader.readAnnotationTypes(stream);
+               }
+               catch (IOException ioe)
+               {
+                  //leave it to the handler to load it from the classloader
+                  log.debug("could not read annotations of " + name + " in " + file, ioe);
+               }
+               finally
+               {
+                  stream.close();
+               }
+            }
+            entries.put(name, annotationTypes);
          }
       }
-      catch (ZipException e)
+      finally
       {
-         throw new RuntimeException("Error handling file " + file, e);
+         zip.close();
+      }
+      
+      archive = new ScanIndex.Archive(file, entries);
+      index.put(file, archive);
+      return archive;
+   }
+   
+   /**
+    * The scan index is kept in the servlet container's temporary
+    * directory for the web application, if there is one
+    */
+   private File getIndexFile()
+   {
+      if (servletContext!=null)
+      {
+         Object tempDir = servletContext.getAttribute("javax.servlet.context.tempdir");
+         if (tempDir instanceof File && ( (File) tempDir ).isDirectory())
+         {
+            return new File( (File) tempDir, "seam-scan-index.ser" );
+         }
       }
+      return null;
    }
 
    private void handleDirectory(File file, String path)
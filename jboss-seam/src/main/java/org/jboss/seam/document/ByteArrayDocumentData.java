@@ -20,6 +20,18 @@ public class ByteArrayDocumentData extends DocumentData
       stream.write(data);
    }
 
+   @Override
+   public void writeDataToStream(OutputStream stream, long offset, long length) throws IOException
+   {
+      stream.write(data, (int) offset, (int) length);
+   }
+
+   @Override
+   public long getSize()
+   {
+      return data.length;
+   }
+
    public byte[] getData()
    {
       return data;
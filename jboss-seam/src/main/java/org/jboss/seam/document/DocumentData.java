@@ -1,5 +1,6 @@
 package org.jboss.seam.document;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.Serializable;
@@ -12,6 +13,8 @@ public abstract class DocumentData implements Serializable
    String disposition = "inline";
    String fileName;
 
+   long lastModified = System.currentTimeMillis();
+
    public DocumentData(String baseName, DocumentType documentType)
    {
       super();
@@ -21,6 +24,41 @@ public abstract class DocumentData implements Serializable
 
    public abstract void writeDataToStream(OutputStream stream) throws IOException;
 
+   /**
+    * Writes length bytes of the document, starting at offset, to the
+    * stream. This is only used if the size of the document is known,
+    * to answer Range requests. By default the whole document is written
+    * and the bytes outside the range are skipped.
+    */
+   public void writeDataToStream(OutputStream stream, long offset, long length) throws IOException
+   {
+      writeDataToStream(new RangeOutputStream(stream, offset, length));
+   }
+
+   /**
+    * The size of the document in bytes, or -1 if it is not known
+    */
+   public long getSize()
+   {
+      return -1;
+   }
+
+   /**
+    * The time the document was created
+    */
+   public long getLastModified()
+   {
+      return lastModified;
+   }
+
+   /**
+    * Releases any resources held by the document, once it has been
+    * removed from the DocumentStore
+    */
+   public void dispose()
+   {
+   }
+
    public DocumentType getDocumentType()
    {
       return documentType;
@@ -80,4 +118,48 @@ public abstract class DocumentData implements Serializable
       }
 
    }
-}
\ No newline at end of file
+
+   private static class RangeOutputStream extends FilterOutputStream
+   {
+      private long skip;
+      private long remaining;
+
+      private RangeOutputStream(OutputStream out, long offset, long length)
+      {
+         super(out);
+         this.skip = offset;
+         this.remaining = length;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         write(new byte[] { (byte) b }, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         if (skip > 0)
+         {
+            int skipped = (int) Math.min(skip, len);
+            skip -= skipped;
+            off += skipped;
+            len -= skipped;
+         }
+         if (len > 0 && remaining > 0)
+         {
+            int written = (int) Math.min(remaining, len);
+            out.write(b, off, written);
+            remaining -= written;
+         }
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         // the response stream is closed by the container
+         flush();
+      }
+   }
+}
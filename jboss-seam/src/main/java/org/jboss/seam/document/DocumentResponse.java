@@ -0,0 +1,177 @@
+package org.jboss.seam.document;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.seam.web.ConditionalRequests;
+
+/**
+ * Sends a document from the DocumentStore in the response. Conditional
+ * requests are answered with 304 NOT MODIFIED, and a single byte range
+ * may be requested if the size of the document is known.
+ */
+public class DocumentResponse
+{
+   static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+   static final String HEADER_RANGE = "Range";
+   static final String HEADER_IF_RANGE = "If-Range";
+   static final String HEADER_CONTENT_RANGE = "Content-Range";
+
+   public void send(HttpServletRequest request, HttpServletResponse response, String id, DocumentData documentData)
+      throws IOException
+   {
+      response.setContentType(documentData.getDocumentType().getMimeType());
+      response.setHeader("Content-Disposition", documentData.getDisposition() + "; filename=\"" + documentData.getFileName() + "\"");
+
+      long size = documentData.getSize();
+
+      // HTTP dates have a precision of one second
+      long lastModified = documentData.getLastModified() / 1000 * 1000;
+      String entityTag = ConditionalRequests.createEntityTag(id + ":" + size + ":" + lastModified, false);
+
+      if (ConditionalRequests.sendConditional(request, response, entityTag, lastModified))
+      {
+         return;
+      }
+
+      if (size < 0)
+      {
+         documentData.writeDataToStream(response.getOutputStream());
+         return;
+      }
+
+      response.setHeader(HEADER_ACCEPT_RANGES, "bytes");
+
+      long[] range = null;
+      if (isRangeValid(request, entityTag, lastModified))
+      {
+         range = parseRange(request.getHeader(HEADER_RANGE), size);
+         if (range != null && range.length == 0)
+         {
+            response.setHeader(HEADER_CONTENT_RANGE, "bytes */" + size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+         }
+      }
+
+      if (range == null)
+      {
+         setContentLength(response, size);
+         documentData.writeDataToStream(response.getOutputStream(), 0, size);
+      }
+      else
+      {
+         long length = range[1] - range[0] + 1;
+         response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+         response.setHeader(HEADER_CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + size);
+         setContentLength(response, length);
+         documentData.writeDataToStream(response.getOutputStream(), range[0], length);
+      }
+   }
+
+   /**
+    * A Range header is only honoured if there is no If-Range header, or
+    * if it matches the current entity tag or modification time
+    */
+   private boolean isRangeValid(HttpServletRequest request, String entityTag, long lastModified)
+   {
+      if (request.getHeader(HEADER_RANGE) == null)
+      {
+         return false;
+      }
+
+      String ifRange = request.getHeader(HEADER_IF_RANGE);
+      if (ifRange == null)
+      {
+         return true;
+      }
+      else if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+      {
+         return ifRange.trim().equals(entityTag);
+      }
+      else
+      {
+         try
+         {
+            return request.getDateHeader(HEADER_IF_RANGE) == lastModified;
+         }
+         catch (IllegalArgumentException e)
+         {
+            return false;
+         }
+      }
+   }
+
+   /**
+    * Parses a single byte range
+    *
+    * @return the first and last byte of the range, an empty array if the
+    *         range cannot be satisfied, or null if the header is not a
+    *         single byte range
+    */
+   static long[] parseRange(String header, long size)
+   {
+      if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0)
+      {
+         return null;
+      }
+
+      String spec = header.substring("bytes=".length()).trim();
+      int dash = spec.indexOf('-');
+      if (dash < 0)
+      {
+         return null;
+      }
+
+      try
+      {
+         long first;
+         long last;
+         if (dash == 0)
+         {
+            // The last n bytes
+            long suffix = Long.parseLong(spec.substring(1));
+            if (suffix <= 0)
+            {
+               return new long[0];
+            }
+            first = Math.max(0, size - suffix);
+            last = size - 1;
+         }
+         else
+         {
+            first = Long.parseLong(spec.substring(0, dash));
+            last = dash == spec.length() - 1 ? size - 1 :
+                  Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            if (last < first && first < size)
+            {
+               return null;
+            }
+         }
+
+         if (first >= size || first < 0)
+         {
+            return new long[0];
+         }
+         return new long[] { first, last };
+      }
+      catch (NumberFormatException e)
+      {
+         return null;
+      }
+   }
+
+   private void setContentLength(HttpServletResponse response, long length)
+   {
+      if (length <= Integer.MAX_VALUE)
+      {
+         response.setContentLength((int) length);
+      }
+      else
+      {
+         response.setHeader("Content-Length", String.valueOf(length));
+      }
+   }
+}
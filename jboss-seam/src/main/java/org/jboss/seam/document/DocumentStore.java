@@ -1,7 +1,12 @@
 package org.jboss.seam.document;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.faces.application.ViewHandler;
@@ -9,11 +14,21 @@ import javax.faces.context.FacesContext;
 
 import org.jboss.seam.Component;
 import org.jboss.seam.ScopeType;
+import org.jboss.seam.annotations.Destroy;
 import org.jboss.seam.annotations.Install;
 import org.jboss.seam.annotations.Name;
 import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
 import org.jboss.seam.util.Faces;
 
+/**
+ * Keeps rendered documents for download on a later request, for as long
+ * as the conversation lasts. Documents may be written to temporary files
+ * instead of being kept in memory, may expire, and the number and total
+ * size of the documents kept may be limited, in which case the oldest
+ * documents are removed first.
+ */
 @Name("org.jboss.seam.document.documentStore")
 @Scope(ScopeType.CONVERSATION)
 @Install(precedence=Install.BUILT_IN)
@@ -24,7 +39,9 @@ public class DocumentStore
 
     private static final long serialVersionUID = -357154201942127711L;
 
-    Map<String,DocumentData> dataStore = new HashMap<String,DocumentData>();   
+    private static final LogProvider log = Logging.getLogProvider(DocumentStore.class);
+
+    Map<String,DocumentData> dataStore = new LinkedHashMap<String,DocumentData>();   
 
     long nextId = 1;
     
@@ -32,6 +49,12 @@ public class DocumentStore
     boolean useExtensions = false;
     String errorPage = null;
     
+    int fileThreshold = -1;
+    String directory;
+    int timeToLive;
+    int maxDocuments;
+    long maxSize;
+    
     public void setUseExtensions(boolean useExtensions) 
     {
         this.useExtensions = useExtensions;
@@ -52,21 +75,198 @@ public class DocumentStore
         return String.valueOf(nextId++);
     }
 
-    public void saveData(String id, DocumentData documentData) 
+    /**
+     * Documents larger than this number of bytes are written to a
+     * temporary file, or -1 to keep all documents in memory
+     */
+    public void setFileThreshold(int fileThreshold) 
+    {
+        this.fileThreshold = fileThreshold;
+    }
+    
+    public int getFileThreshold() 
+    {
+        return fileThreshold;
+    }
+    
+    /**
+     * The directory temporary files are written to, by default the
+     * directory given by the java.io.tmpdir system property
+     */
+    public void setDirectory(String directory) 
+    {
+        this.directory = directory;
+    }
+    
+    public String getDirectory() 
+    {
+        return directory;
+    }
+    
+    /**
+     * The number of seconds a document is kept, or 0 to keep it until
+     * the conversation ends
+     */
+    public void setTimeToLive(int timeToLive) 
+    {
+        this.timeToLive = timeToLive;
+    }
+    
+    public int getTimeToLive() 
+    {
+        return timeToLive;
+    }
+    
+    /**
+     * The number of documents kept, or 0 for no limit
+     */
+    public void setMaxDocuments(int maxDocuments) 
+    {
+        this.maxDocuments = maxDocuments;
+    }
+    
+    public int getMaxDocuments() 
+    {
+        return maxDocuments;
+    }
+    
+    /**
+     * The total number of bytes of the documents kept, or 0 for no limit.
+     * Documents of unknown size are not counted.
+     */
+    public void setMaxSize(long maxSize) 
+    {
+        this.maxSize = maxSize;
+    }
+    
+    public long getMaxSize() 
+    {
+        return maxSize;
+    }
+    
+    public synchronized void saveData(String id, DocumentData documentData) 
+    {
+        removeExpired();
+        
+        DocumentData storedData = store(documentData);
+        DocumentData previous = dataStore.put(id, storedData);
+        if (previous != null && previous != storedData)
+        {
+            previous.dispose();
+        }
+        
+        removeOldest(id);
+    }
+
+    /**
+     * Returns the form in which a document is kept. Documents larger than
+     * the file threshold are written to a temporary file, other documents
+     * are kept as they are. Override this method to keep documents
+     * elsewhere.
+     */
+    protected DocumentData store(DocumentData documentData) 
     {
-        dataStore.put(id, documentData);
+        if (fileThreshold < 0 || documentData instanceof FileDocumentData || 
+              documentData.getSize() <= fileThreshold)
+        {
+            return documentData;
+        }
+        
+        try
+        {
+            FileDocumentData fileData = FileDocumentData.create(documentData, 
+                  directory == null ? null : new File(directory));
+            documentData.dispose();
+            return fileData;
+        }
+        catch (IOException e)
+        {
+            log.warn("could not write document to a temporary file, keeping it in memory", e);
+            return documentData;
+        }
     }
 
-    public boolean idIsValid(String id) 
+    public synchronized boolean idIsValid(String id) 
     {
+        removeExpired();
         return dataStore.get(id) != null;
     }
     
-    public DocumentData getDocumentData(String id) 
+    public synchronized DocumentData getDocumentData(String id) 
     {
+        removeExpired();
         return dataStore.get(id);
     }
     
+    /**
+     * Removes all documents, and releases the resources they hold
+     */
+    @Destroy
+    public synchronized void clear() 
+    {
+        for (DocumentData documentData : dataStore.values())
+        {
+            documentData.dispose();
+        }
+        dataStore.clear();
+    }
+    
+    private void removeExpired() 
+    {
+        if (timeToLive <= 0) 
+        {
+            return;
+        }
+        
+        long expired = System.currentTimeMillis() - timeToLive * 1000L;
+        Iterator<DocumentData> iter = dataStore.values().iterator();
+        while (iter.hasNext())
+        {
+            DocumentData documentData = iter.next();
+            if (documentData.getLastModified() < expired)
+            {
+                iter.remove();
+                documentData.dispose();
+            }
+        }
+    }
+    
+    /**
+     * Removes the oldest documents until the limits are met, but never
+     * the document which was just saved
+     */
+    private void removeOldest(String savedId) 
+    {
+        if (maxDocuments <= 0 && maxSize <= 0) 
+        {
+            return;
+        }
+        
+        long size = 0;
+        for (DocumentData documentData : dataStore.values())
+        {
+            size += Math.max(0, documentData.getSize());
+        }
+        
+        List<String> ids = new ArrayList<String>(dataStore.keySet());
+        for (String id : ids)
+        {
+            boolean tooMany = maxDocuments > 0 && dataStore.size() > maxDocuments;
+            boolean tooLarge = maxSize > 0 && size > maxSize;
+            if (!tooMany && !tooLarge)
+            {
+                break;
+            }
+            
+            if (!id.equals(savedId))
+            {
+                DocumentData documentData = dataStore.remove(id);
+                size -= Math.max(0, documentData.getSize());
+                documentData.dispose();
+            }
+        }
+    }
+    
     public static DocumentStore instance()
     {
        return (DocumentStore) Component.getInstance("org.jboss.seam.document.documentStore");
@@ -6,6 +6,7 @@ import javax.faces.context.FacesContext;
 import javax.faces.event.PhaseEvent;
 import javax.faces.event.PhaseId;
 import javax.faces.event.PhaseListener;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.jboss.seam.log.LogProvider;
@@ -50,12 +51,10 @@ public class DocumentStorePhaseListener implements PhaseListener
          if (documentData != null)
          {
 
+            HttpServletRequest request = (HttpServletRequest) context.getExternalContext().getRequest();
             HttpServletResponse response = (HttpServletResponse) context.getExternalContext().getResponse();
-            response.setContentType(documentData.getDocumentType().getMimeType());
 
-            response.setHeader("Content-Disposition", documentData.getDisposition() + "; filename=\"" + documentData.getFileName() + "\"");
-
-            documentData.writeDataToStream(response.getOutputStream());
+            new DocumentResponse().send(request, response, contentId, documentData);
             context.responseComplete();
          }
       }
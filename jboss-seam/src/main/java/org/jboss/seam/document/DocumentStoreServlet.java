@@ -38,10 +38,7 @@ public class DocumentStoreServlet extends HttpServlet
       {
          DocumentData documentData = store.getDocumentData(contentId);
 
-         response.setContentType(documentData.getDocumentType().getMimeType());
-         response.setHeader("Content-Disposition", documentData.getDisposition() + "; filename=\"" + documentData.getFileName() + "\"");
-
-         documentData.writeDataToStream(response.getOutputStream());
+         new DocumentResponse().send(request, response, contentId, documentData);
       }
       else
       {
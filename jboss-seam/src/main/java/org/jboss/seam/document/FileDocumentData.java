@@ -0,0 +1,109 @@
+package org.jboss.seam.document;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A document kept in a file, which is streamed to the response instead
+ * of being held on the heap. Only the path of the file is serialized
+ * with the session, so a document written on one node of a cluster
+ * can only be downloaded from that node.
+ */
+public class FileDocumentData extends DocumentData
+{
+   private static final long serialVersionUID = 4563928120871361534L;
+
+   private File file;
+   private long size;
+
+   public FileDocumentData(String baseName, DocumentType documentType, File file)
+   {
+      super(baseName, documentType);
+      this.file = file;
+      this.size = file.length();
+   }
+
+   /**
+    * Writes a document to a new temporary file in the directory
+    *
+    * @param directory the directory, or null for the default temporary
+    *        file directory
+    */
+   public static FileDocumentData create(DocumentData documentData, File directory) throws IOException
+   {
+      File file = File.createTempFile("seam-document-", "." + documentData.getDocumentType().getExtension(), directory);
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+      try
+      {
+         documentData.writeDataToStream(out);
+         out.close();
+      }
+      catch (IOException e)
+      {
+         out.close();
+         file.delete();
+         throw e;
+      }
+
+      FileDocumentData fileData = new FileDocumentData(documentData.getBaseName(), documentData.getDocumentType(), file);
+      fileData.fileName = documentData.fileName;
+      fileData.disposition = documentData.disposition;
+      fileData.lastModified = documentData.lastModified;
+      return fileData;
+   }
+
+   @Override
+   public void writeDataToStream(OutputStream stream) throws IOException
+   {
+      writeDataToStream(stream, 0, size);
+   }
+
+   @Override
+   public void writeDataToStream(OutputStream stream, long offset, long length) throws IOException
+   {
+      FileInputStream in = new FileInputStream(file);
+      try
+      {
+         FileChannel channel = in.getChannel();
+         WritableByteChannel out = Channels.newChannel(stream);
+         while (length > 0)
+         {
+            long transferred = channel.transferTo(offset, length, out);
+            if (transferred <= 0)
+            {
+               break;
+            }
+            offset += transferred;
+            length -= transferred;
+         }
+      }
+      finally
+      {
+         in.close();
+      }
+   }
+
+   @Override
+   public long getSize()
+   {
+      return size;
+   }
+
+   public File getFile()
+   {
+      return file;
+   }
+
+   @Override
+   public void dispose()
+   {
+      file.delete();
+   }
+}
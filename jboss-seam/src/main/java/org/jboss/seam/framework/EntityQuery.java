@@ -1,5 +1,8 @@
 package org.jboss.seam.framework;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,10 +15,21 @@ import org.jboss.seam.persistence.PersistenceProvider;
 import org.jboss.seam.persistence.QueryParser;
 import org.jboss.seam.persistence.PersistenceProvider.Feature;
 import org.jboss.seam.transaction.Transaction;
+import org.jboss.seam.util.Reflections;
 
 /**
  * A Query object for JPA.
  * 
+ * With keyset pagination enabled, when the query is ordered by
+ * the keyset column, a page which directly follows a page that
+ * was already fetched is read by seeking past the value of the
+ * keyset column in the last row of that page, rather than by
+ * skipping the rows of all the previous pages. The keyset column
+ * must be unique and not null, for example the id. Queries
+ * ordered by any other column, and queries whose rows do not
+ * have the keyset column as a property, are paged by skipping
+ * rows.
+ * 
  * @author Gavin King
  *
  */
@@ -26,6 +40,19 @@ public class EntityQuery<E> extends Query<EntityManager, E>
    private E singleResult;
    private Long resultCount;
    private Map<String, String> hints;
+   
+   private static final String KEYSET_PARAMETER = "keysetValue";
+   
+   private boolean keysetPagination;
+   private String keysetColumn;
+   private List<Object> keysetShape;
+   private Map<Integer, Object> keysetValues = new HashMap<Integer, Object>();
+   private List<Object> resultListShape;
+   
+   private Integer resultCountCacheTimeout;
+   private List<Object> cachedResultCountKey;
+   private Long cachedResultCount;
+   private long cachedResultCountTime;
 
    /**
     * Validate the query
@@ -78,6 +105,10 @@ public class EntityQuery<E> extends Query<EntityManager, E>
       {
          javax.persistence.Query query = createQuery();
          resultList = query==null ? null : query.getResultList();
+         if (resultList!=null && resultListShape!=null)
+         {
+            rememberKeysetValue();
+         }
       }
    }
    
@@ -131,11 +162,37 @@ public class EntityQuery<E> extends Query<EntityManager, E>
    {
       if ( resultCount==null )
       {
+         List<Object> key = null;
+         if ( getResultCountCacheTimeout()!=null )
+         {
+            key = getResultCountKey();
+            if ( key.equals(cachedResultCountKey) && 
+                  System.currentTimeMillis() - cachedResultCountTime < getResultCountCacheTimeout() )
+            {
+               resultCount = cachedResultCount;
+               return;
+            }
+         }
+         
          javax.persistence.Query query = createCountQuery();
          resultCount = query==null ? 
                null : (Long) query.getSingleResult();
+         
+         if (key!=null)
+         {
+            cachedResultCountKey = key;
+            cachedResultCount = resultCount;
+            cachedResultCountTime = System.currentTimeMillis();
+         }
       }
    }
+   
+   private List<Object> getResultCountKey()
+   {
+      parseEjbql();
+      evaluateAllParameters();
+      return Arrays.<Object>asList( getCountEjbql(), getQueryParameterValues(), getRestrictionParameterValues() );
+   }
 
    /**
     * The refresh method will cause the result to be cleared.  The next access
@@ -152,6 +209,7 @@ public class EntityQuery<E> extends Query<EntityManager, E>
       resultCount = null;
       resultList = null;
       singleResult = null;
+      resultListShape = null;
    }
    
    public EntityManager getEntityManager()
@@ -178,10 +236,30 @@ public class EntityQuery<E> extends Query<EntityManager, E>
       
       joinTransaction();
       
-      javax.persistence.Query query = getEntityManager().createQuery( getRenderedEjbql() );
+      Object keysetValue = null;
+      if ( isKeysetPagination() )
+      {
+         resultListShape = getResultListShape();
+         if ( isKeysetApplicable() && resultListShape.equals(keysetShape) )
+         {
+            keysetValue = keysetValues.get( getFirstResult() );
+         }
+      }
+      
+      javax.persistence.Query query;
+      if (keysetValue==null)
+      {
+         query = getEntityManager().createQuery( getRenderedEjbql() );
+      }
+      else
+      {
+         String operator = "desc".equals( getOrderDirection() ) ? " < :" : " > :";
+         query = getEntityManager().createQuery( getRenderedEjbql( getKeysetColumn() + operator + KEYSET_PARAMETER ) );
+         query.setParameter(KEYSET_PARAMETER, keysetValue);
+      }
       setParameters( query, getQueryParameterValues(), 0 );
       setParameters( query, getRestrictionParameterValues(), getQueryParameterValues().size() );
-      if ( getFirstResult()!=null) query.setFirstResult( getFirstResult() );
+      if ( getFirstResult()!=null && keysetValue==null ) query.setFirstResult( getFirstResult() );
       if ( getMaxResults()!=null) query.setMaxResults( getMaxResults()+1 ); //add one, so we can tell if there is another page
       if ( getHints()!=null )
       {
@@ -219,6 +297,86 @@ public class EntityQuery<E> extends Query<EntityManager, E>
       }
    }
 
+   /**
+    * Seeking past the last row of the previous page can only be
+    * done when the query is ordered by the keyset column alone,
+    * and is not grouped
+    */
+   protected boolean isKeysetApplicable()
+   {
+      return getFirstResult()!=null && getFirstResult()>0 && getMaxResults()!=null &&
+            isOrderedByKeysetColumn();
+   }
+   
+   private boolean isOrderedByKeysetColumn()
+   {
+      return getKeysetColumn()!=null && getKeysetColumn().equals( getOrderColumn() ) && 
+            getGroupBy()==null;
+   }
+   
+   /**
+    * The remembered keyset values only apply to the query they
+    * were read from, with the same parameter values and page size
+    */
+   private List<Object> getResultListShape()
+   {
+      return Arrays.<Object>asList( getRenderedEjbql(), getMaxResults(), 
+            getQueryParameterValues(), getRestrictionParameterValues() );
+   }
+   
+   /**
+    * Remember the value of the keyset column in the last row of
+    * the current page, from which the next page starts
+    */
+   private void rememberKeysetValue()
+   {
+      if ( !resultListShape.equals(keysetShape) )
+      {
+         keysetValues.clear();
+         keysetShape = resultListShape;
+      }
+      Integer mr = getMaxResults();
+      if ( isOrderedByKeysetColumn() && mr!=null && resultList.size() > mr )
+      {
+         Object value = getKeysetValue( resultList.get(mr-1) );
+         if (value!=null)
+         {
+            Integer fr = getFirstResult();
+            keysetValues.put( ( fr==null ? 0 : fr ) + mr, value );
+         }
+      }
+   }
+   
+   /**
+    * Get the value of the keyset column of a row. The first element 
+    * of the keyset column is taken to be the alias of the row, for 
+    * example "p" in "p.id", and the rest is read as a property
+    * path.
+    * 
+    * @return the value, or null if the row has no getter for the
+    * property, for example the rows of a projection, in which case
+    * the next page is read by skipping rows
+    */
+   protected Object getKeysetValue(E row)
+   {
+      String[] path = getKeysetColumn().split("\\.");
+      Object value = row;
+      for (int i = path.length>1 ? 1 : 0; i<path.length && value!=null; i++)
+      {
+         Method getter;
+         try
+         {
+            getter = Reflections.getGetterMethod( value.getClass(), path[i] );
+         }
+         catch (IllegalArgumentException iae)
+         {
+            return null;
+         }
+         value = Reflections.invokeAndWrap(getter, value);
+      }
+      return value;
+   }
+   
    public Map<String, String> getHints()
    {
       return hints;
@@ -229,6 +387,54 @@ public class EntityQuery<E> extends Query<EntityManager, E>
       this.hints = hints;
    }
    
+   /**
+    * Is keyset (seek) pagination enabled?
+    */
+   public boolean isKeysetPagination()
+   {
+      return keysetPagination;
+   }
+
+   public void setKeysetPagination(boolean keysetPagination)
+   {
+      this.keysetPagination = keysetPagination;
+      keysetValues.clear();
+      keysetShape = null;
+   }
+   
+   /**
+    * The unique column, for example "p.id", which the query is 
+    * paged by seeking on when it is also the order column
+    */
+   public String getKeysetColumn()
+   {
+      return keysetColumn;
+   }
+
+   public void setKeysetColumn(String keysetColumn)
+   {
+      this.keysetColumn = keysetColumn;
+      keysetValues.clear();
+      keysetShape = null;
+   }
+
+   /**
+    * The time, in milliseconds, for which the result count is reused 
+    * when the query is refreshed but its parameters have not changed, 
+    * or null if the count is always reread
+    */
+   public Integer getResultCountCacheTimeout()
+   {
+      return resultCountCacheTimeout;
+   }
+
+   public void setResultCountCacheTimeout(Integer resultCountCacheTimeout)
+   {
+      this.resultCountCacheTimeout = resultCountCacheTimeout;
+      cachedResultCountKey = null;
+      cachedResultCount = null;
+   }
+   
    protected void joinTransaction()
    {
       try
@@ -1,6 +1,7 @@
 package org.jboss.seam.framework;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -14,6 +15,7 @@ import org.jboss.seam.core.Expressions;
 import org.jboss.seam.core.Expressions.ValueExpression;
 import org.jboss.seam.faces.DataModels;
 import org.jboss.seam.persistence.QueryParser;
+import org.jboss.seam.util.BoundedCache;
 
 /**
  * Base class for components which manage a query
@@ -43,6 +45,9 @@ public abstract class Query<T, E>
    private static final String LOGIC_OPERATOR_AND = "and";
    private static final String LOGIC_OPERATOR_OR = "or";
 
+   //the count queries of the rendered queries, shared by all instances
+   private static final BoundedCache<List<Object>, String> COUNT_EJBQL_CACHE = new BoundedCache<List<Object>, String>(1000);
+
    private String ejbql;
    private Integer firstResult;
    private Integer maxResults;
@@ -57,6 +62,7 @@ public abstract class Query<T, E>
    private DataModel dataModel;
    
    private String parsedEjbql;
+   private boolean parsedEjbqlHasWhere;
    private List<ValueExpression> queryParameters;
    private List<String> parsedRestrictions;
    private List<ValueExpression> restrictionParameters;
@@ -220,6 +226,7 @@ public abstract class Query<T, E>
          QueryParser qp = new QueryParser( getEjbql() );
          queryParameters = qp.getParameterValueBindings();
          parsedEjbql = qp.getEjbql();
+         parsedEjbqlHasWhere = WHERE_PATTERN.matcher(parsedEjbql).find();
          
          List<ValueExpression> restrictionFragments = getRestrictions();
          parsedRestrictions = new ArrayList<String>( restrictionFragments.size() );
@@ -239,26 +246,62 @@ public abstract class Query<T, E>
    }
    
    protected String getRenderedEjbql()
+   {
+      return getRenderedEjbql(null);
+   }
+   
+   /**
+    * Render the query, with an extra restriction which is
+    * always applied. The other conditions are enclosed in
+    * parentheses and joined to it with "and", so that it
+    * applies whatever operators they use.
+    * 
+    * @param additionalRestriction the restriction, or null
+    */
+   protected String getRenderedEjbql(String additionalRestriction)
    {
       StringBuilder builder = new StringBuilder().append(parsedEjbql);
+      boolean hasWhere = parsedEjbqlHasWhere;
+      int conditionsStart = -1;
+      if (hasWhere)
+      {
+         Matcher matcher = WHERE_PATTERN.matcher(parsedEjbql);
+         matcher.find();
+         conditionsStart = matcher.end();
+      }
       
       for (int i=0; i<getRestrictions().size(); i++)
       {
          Object parameterValue = restrictionParameters.get(i).getValue();
          if ( isRestrictionParameterSet(parameterValue) )
          {
-            if ( WHERE_PATTERN.matcher(builder).find() )
+            if (hasWhere)
             {
                builder.append(" ").append(getRestrictionLogicOperator()).append(" ");
             }
             else
             {
                builder.append(" where ");
+               hasWhere = true;
+               conditionsStart = builder.length();
             }
             builder.append( parsedRestrictions.get(i) );
          }
       }
       
+      if (additionalRestriction!=null)
+      {
+         if (hasWhere)
+         {
+            builder.insert(conditionsStart, '(').append(") and ");
+         }
+         else
+         {
+            builder.append(" where ");
+         }
+         builder.append(additionalRestriction);
+      }
+      
       if (getGroupBy()!=null) {
           builder.append(" group by ").append(getGroupBy());
       }
@@ -284,6 +327,19 @@ public abstract class Query<T, E>
    {
       String ejbql = getRenderedEjbql();
       
+      //the rendered query only varies with the restrictions which are set,
+      //so the same few count queries are built over and over
+      List<Object> key = Arrays.<Object>asList( ejbql, useWildcardAsCountQuerySubject, getGroupBy() );
+      String countEjbql = COUNT_EJBQL_CACHE.get(key);
+      if (countEjbql==null)
+      {
+         countEjbql = COUNT_EJBQL_CACHE.putIfAbsent( key, createCountEjbql(ejbql) );
+      }
+      return countEjbql;
+   }
+   
+   private String createCountEjbql(String ejbql)
+   {
       Matcher fromMatcher = FROM_PATTERN.matcher(ejbql);
       if ( !fromMatcher.find() )
       {
@@ -10,14 +10,12 @@ import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.faces.application.FacesMessage;
 import javax.faces.application.FacesMessage.Severity;
@@ -59,10 +57,12 @@ import org.jboss.seam.log.Logging;
 import org.jboss.seam.pageflow.Pageflow;
 import org.jboss.seam.security.Identity;
 import org.jboss.seam.security.NotLoggedInException;
+import org.jboss.seam.util.BoundedCache;
 import org.jboss.seam.util.Resources;
 import org.jboss.seam.util.Strings;
 import org.jboss.seam.util.XML;
 import org.jboss.seam.web.Parameters;
+import org.jboss.seam.web.Pattern;
 
 /**
  * Holds metadata for pages defined in pages.xml, including
@@ -85,23 +85,21 @@ public class Pages
    private Integer httpPort;
    private Integer httpsPort;
    
+   private Integer viewIdCacheSize = 1000;
+   
+   //pages declared in pages.xml, and their page stacks
    private Map<String, Page> pagesByViewId;  
    private Map<String, List<Page>> pageStacksByViewId;   
+   //default pages for any other view id, which may be requested 
+   //by any client, so only a bounded number of them is kept
+   private BoundedCache<String, Page> defaultPagesByViewId;
+   private BoundedCache<String, List<Page>> defaultPageStacksByViewId;
    private Map<String, ConversationIdParameter> conversations;    
+   private List<Pattern> rewritePatterns = Collections.emptyList();
    
    private String[] resources = { "/WEB-INF/pages.xml" };
  
-   private SortedSet<String> wildcardViewIds = new TreeSet<String>( 
-         new Comparator<String>() 
-         {
-            public int compare(String x, String y)
-            {
-               if ( x.length()<y.length() ) return -1;
-               if ( x.length()> y.length() ) return 1;
-               return x.compareTo(y);
-            }
-         } 
-      );
+   private WildcardViewIds wildcardViewIds = new WildcardViewIds();
 
    @Create
    public void create()
@@ -125,8 +123,11 @@ public class Pages
    
    public void initialize(Set<FileDescriptor> fileNames)
    {
-      pagesByViewId = Collections.synchronizedMap(new HashMap<String, Page>());   
-      pageStacksByViewId = Collections.synchronizedMap(new HashMap<String, List<Page>>());   
+      pagesByViewId = new ConcurrentHashMap<String, Page>();   
+      pageStacksByViewId = new ConcurrentHashMap<String, List<Page>>();   
+      defaultPagesByViewId = new BoundedCache<String, Page>(viewIdCacheSize);
+      defaultPageStacksByViewId = new BoundedCache<String, List<Page>>(viewIdCacheSize);
+      wildcardViewIds = new WildcardViewIds();
       conversations = Collections.synchronizedMap(new HashMap<String, ConversationIdParameter>());
 
       for (String resource: resources) 
@@ -149,6 +150,13 @@ public class Pages
       {
           parsePages(fileNames);
       }
+      
+      List<Pattern> patterns = new ArrayList<Pattern>();
+      for ( Page page: pagesByViewId.values() )
+      {
+         patterns.addAll( page.getRewritePatterns() );
+      }
+      rewritePatterns = Collections.unmodifiableList(patterns);
    }
    
    private void parsePages(Set<FileDescriptor> files)
@@ -238,14 +246,13 @@ public class Pages
     */
    private Page createPage(String viewId)
    {
-      Page result = new Page(viewId);
-      pagesByViewId.put(viewId, result);
-      return result;
+      return defaultPagesByViewId.putIfAbsent( viewId, new Page(viewId) );
    }
    
    private Page getCachedPage(String viewId)
    {
-      return pagesByViewId.get(viewId);
+      Page page = pagesByViewId.get(viewId);
+      return page==null ? defaultPagesByViewId.get(viewId) : page;
    }
    
    /**
@@ -256,11 +263,26 @@ public class Pages
     */
    protected List<Page> getPageStack(String viewId)
    {
+      if (viewId==null)
+      {
+         return createPageStack(viewId);
+      }
       List<Page> stack = pageStacksByViewId.get(viewId);
       if (stack==null)
+      {
+         stack = defaultPageStacksByViewId.get(viewId);
+      }
+      if (stack==null)
       {
          stack = createPageStack(viewId);
-         pageStacksByViewId.put(viewId, stack);
+         if ( pagesByViewId.containsKey(viewId) )
+         {
+            pageStacksByViewId.put(viewId, stack);
+         }
+         else
+         {
+            stack = defaultPageStacksByViewId.putIfAbsent(viewId, stack);
+         }
       }
       return stack;
    }
@@ -272,12 +294,9 @@ public class Pages
       List<Page> stack = new ArrayList<Page>(1);
       if ( viewId!=null && !isDebugPage(viewId) )
       {
-         for (String wildcard: wildcardViewIds)
+         for ( String wildcard: wildcardViewIds.match(viewId) )
          {
-            if ( viewId.startsWith( wildcard.substring(0, wildcard.length()-1) ) )
-            {
-               stack.add( getPage(wildcard) );
-            }
+            stack.add( getPage(wildcard) );
          }
       }
       Page page = getPage(viewId);
@@ -1718,6 +1737,20 @@ public class Pages
       this.httpsPort = httpsPort;
    }
    
+   public Integer getViewIdCacheSize()
+   {
+      return viewIdCacheSize;
+   }
+   
+   /**
+    * The maximum number of view ids not declared in pages.xml 
+    * to remember
+    */
+   public void setViewIdCacheSize(Integer viewIdCacheSize)
+   {
+      this.viewIdCacheSize = viewIdCacheSize;
+   }
+   
    public String[] getResources()
    {
       return resources;
@@ -1744,4 +1777,13 @@ public class Pages
        return pagesByViewId.keySet();
    }
    
+   /**
+    * The URL rewrite patterns of all pages. A new list is returned
+    * whenever the pages are reinitialized.
+    */
+   public List<Pattern> getRewritePatterns()
+   {
+      return rewritePatterns;
+   }
+   
 }
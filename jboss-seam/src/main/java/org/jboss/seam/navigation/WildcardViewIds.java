@@ -0,0 +1,64 @@
+package org.jboss.seam.navigation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The wildcarded view ids declared in pages.xml, for example
+ * "/admin/*", held in a trie of their prefixes, so that the
+ * wildcards matching a view id are found in a single pass
+ * over the view id.
+ */
+class WildcardViewIds
+{
+   private static class Node
+   {
+      private final Map<Character, Node> children = new HashMap<Character, Node>(4);
+      private String wildcardViewId;
+   }
+
+   private final Node root = new Node();
+
+   /**
+    * @param wildcardViewId a view id ending in *
+    */
+   void add(String wildcardViewId)
+   {
+      Node node = root;
+      for (int i=0; i<wildcardViewId.length()-1; i++)
+      {
+         Character c = wildcardViewId.charAt(i);
+         Node child = node.children.get(c);
+         if (child==null)
+         {
+            child = new Node();
+            node.children.put(c, child);
+         }
+         node = child;
+      }
+      node.wildcardViewId = wildcardViewId;
+   }
+
+   /**
+    * @return the wildcarded view ids that match the view id,
+    * from the shortest to the longest
+    */
+   List<String> match(String viewId)
+   {
+      List<String> result = new ArrayList<String>(2);
+      Node node = root;
+      int i = 0;
+      while (node!=null)
+      {
+         if (node.wildcardViewId!=null)
+         {
+            result.add(node.wildcardViewId);
+         }
+         node = i<viewId.length() ? node.children.get( viewId.charAt(i++) ) : null;
+      }
+      return result;
+   }
+
+}
@@ -129,7 +129,7 @@ public class ManagedEntityWrapper
          for (Iterator iter = ((Collection) value).iterator(); iter.hasNext();)
          {
             Object v = iter.next();
-            if (v != null && Seam.getEntityClass(v.getClass()) != null)
+            if (v != null && Seam.isEntityClass(v.getClass()))
             {
                return true;
             }
@@ -142,15 +142,15 @@ public class ManagedEntityWrapper
          for (Iterator iter = ((Map) value).entrySet().iterator(); iter.hasNext();)
          {
             Entry e = (Entry) iter.next();
-            if ((e.getKey() != null && Seam.getEntityClass(e.getKey().getClass()) != null) ||
-                  (e.getValue() != null && Seam.getEntityClass(e.getValue().getClass()) != null))
+            if ((e.getKey() != null && Seam.isEntityClass(e.getKey().getClass())) ||
+                  (e.getValue() != null && Seam.isEntityClass(e.getValue().getClass())))
             {
                return true;
             }
          }
          return false;
       }
-      else if (Seam.getEntityClass(value.getClass()) != null)
+      else if (Seam.isEntityClass(value.getClass()))
       {
          return true;
       }
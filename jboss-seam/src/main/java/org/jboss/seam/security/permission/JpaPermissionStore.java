@@ -26,6 +26,7 @@ import org.jboss.seam.annotations.security.permission.PermissionDiscriminator;
 import org.jboss.seam.annotations.security.permission.PermissionRole;
 import org.jboss.seam.annotations.security.permission.PermissionTarget;
 import org.jboss.seam.annotations.security.permission.PermissionUser;
+import org.jboss.seam.contexts.Contexts;
 import org.jboss.seam.core.Expressions;
 import org.jboss.seam.core.Expressions.ValueExpression;
 import org.jboss.seam.log.LogProvider;
@@ -70,6 +71,13 @@ public class JpaPermissionStore implements PermissionStore, Serializable
    
    private Map<Integer,String> queryCache = new HashMap<Integer,String>();
    
+   /**
+    * The maximum number of targets in the IN list of a single query
+    */
+   private int targetBatchSize = 100;
+   
+   private static final String PERMISSION_CACHE = "org.jboss.seam.security.permission.jpaPermissionStore.cache";
+   
    private IdentifierPolicy identifierPolicy;
    
    private PermissionMetadata metadata;
@@ -257,12 +265,14 @@ public class JpaPermissionStore implements PermissionStore, Serializable
    
    public boolean grantPermission(Permission permission)
    {
+      clearPermissionCache();
       return updatePermissionActions(permission.getTarget(), permission.getRecipient(), 
             new String[] {permission.getAction()}, true);
    }
    
    public boolean revokePermission(Permission permission)
    {
+      clearPermissionCache();
       return updatePermissionActions(permission.getTarget(), permission.getRecipient(),
             new String[] { permission.getAction() }, false);
    }   
@@ -451,6 +461,8 @@ public class JpaPermissionStore implements PermissionStore, Serializable
    
    public boolean grantPermissions(List<Permission> permissions)
    {
+      clearPermissionCache();
+      
       // Target/Recipient/Action map
       Map<Object,Map<Principal,List<Permission>>> groupedPermissions = groupPermissions(permissions);
       
@@ -472,6 +484,8 @@ public class JpaPermissionStore implements PermissionStore, Serializable
    
    public boolean revokePermissions(List<Permission> permissions)
    {
+      clearPermissionCache();
+      
       // Target/Recipient/Action map
       Map<Object,Map<Principal,List<Permission>>> groupedPermissions = groupPermissions(permissions);
       
@@ -595,8 +609,65 @@ public class JpaPermissionStore implements PermissionStore, Serializable
     */
    public List<Permission> listPermissions(Set<Object> targets, String action)
    {
-      // TODO limit the number of targets passed at a single time to 25
-      return listPermissions(null, targets, action);
+      Map<PermissionKey,List<Permission>> cache = getPermissionCache();
+      
+      List<Permission> permissions = new ArrayList<Permission>();
+      Set<Object> uncached = new HashSet<Object>();
+      for (Object target : targets)
+      {
+         List<Permission> cached = cache == null ? null : cache.get(createKey(target, action));
+         if (cached != null)
+         {
+            permissions.addAll(forTarget(cached, target));
+         }
+         else
+         {
+            uncached.add(target);
+         }
+      }
+      
+      // query the targets in batches, so that the IN list does not grow without bound
+      Set<Object> batch = new HashSet<Object>();
+      for (Object target : uncached)
+      {
+         batch.add(target);
+         if (batch.size() == targetBatchSize)
+         {
+            permissions.addAll(listAndCachePermissions(cache, batch, action));
+            batch = new HashSet<Object>();
+         }
+      }
+      if (!batch.isEmpty())
+      {
+         permissions.addAll(listAndCachePermissions(cache, batch, action));
+      }
+      
+      return permissions;
+   }
+   
+   private List<Permission> listAndCachePermissions(Map<PermissionKey,List<Permission>> cache, 
+         Set<Object> targets, String action)
+   {
+      List<Permission> permissions = listPermissions(null, targets, action);
+      
+      if (cache != null)
+      {
+         // every target of the batch gets an entry, even if it has no permissions
+         Map<PermissionKey,List<Permission>> permissionsByKey = new HashMap<PermissionKey,List<Permission>>();
+         for (Object target : targets)
+         {
+            PermissionKey key = createKey(target, action);
+            if (key != null) permissionsByKey.put(key, new ArrayList<Permission>());
+         }
+         for (Permission permission : permissions)
+         {
+            List<Permission> targetPermissions = permissionsByKey.get(createKey(permission.getTarget(), action));
+            if (targetPermissions != null) targetPermissions.add(permission);
+         }
+         cache.putAll(permissionsByKey);
+      }
+      
+      return permissions;
    }
    
    /**
@@ -604,7 +675,96 @@ public class JpaPermissionStore implements PermissionStore, Serializable
     */
    public List<Permission> listPermissions(Object target, String action) 
    {
-      return listPermissions(target, null, action);
+      Map<PermissionKey,List<Permission>> cache = getPermissionCache();
+      PermissionKey key = cache == null ? null : createKey(target, action);
+      if (key == null) return listPermissions(target, null, action);
+      
+      List<Permission> permissions = cache.get(key);
+      if (permissions == null)
+      {
+         permissions = listPermissions(target, null, action);
+         cache.put(key, permissions);
+      }
+      return forTarget(permissions, target);
+   }
+   
+   /**
+    * The cache is keyed by identifier, so a cached permission may refer to another 
+    * instance of the target. Callers match permissions to their targets with equals(), 
+    * so the permissions returned always refer to the instance that was asked for.
+    */
+   private List<Permission> forTarget(List<Permission> cached, Object target)
+   {
+      List<Permission> permissions = new ArrayList<Permission>(cached.size());
+      for (Permission permission : cached)
+      {
+         permissions.add(permission.getTarget() == target ? permission : 
+            new Permission(target, permission.getAction(), permission.getRecipient()));
+      }
+      return permissions;
+   }
+   
+   /**
+    * The permissions read during the current request, by target identifier and action. 
+    * Permissions are read for all recipients, so the cache can be shared by every
+    * permission check in the request.
+    * 
+    * @return the cache, or null if there is no active request
+    */
+   @SuppressWarnings("unchecked")
+   private Map<PermissionKey,List<Permission>> getPermissionCache()
+   {
+      if (!Contexts.isEventContextActive()) return null;
+      
+      Map<PermissionKey,List<Permission>> cache = (Map<PermissionKey,List<Permission>>) 
+         Contexts.getEventContext().get(PERMISSION_CACHE);
+      if (cache == null)
+      {
+         cache = new HashMap<PermissionKey,List<Permission>>();
+         Contexts.getEventContext().set(PERMISSION_CACHE, cache);
+      }
+      return cache;
+   }
+   
+   private PermissionKey createKey(Object target, String action)
+   {
+      String identifier = identifierPolicy.getIdentifier(target);
+      return identifier == null ? null : new PermissionKey(identifier, action);
+   }
+   
+   private void clearPermissionCache()
+   {
+      if (Contexts.isEventContextActive())
+      {
+         Contexts.getEventContext().remove(PERMISSION_CACHE);
+      }
+   }
+   
+   private static class PermissionKey
+   {
+      private String identifier;
+      private String action;
+      
+      PermissionKey(String identifier, String action)
+      {
+         this.identifier = identifier;
+         this.action = action;
+      }
+      
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof PermissionKey)) return false;
+         PermissionKey other = (PermissionKey) obj;
+         return identifier.equals(other.identifier) && 
+            (action == null ? other.action == null : action.equals(other.action));
+      }
+      
+      @Override
+      public int hashCode()
+      {
+         return identifier.hashCode() * 31 + (action == null ? 0 : action.hashCode());
+      }
    }
    
    protected List<Permission> listPermissions(Object target, Set<Object> targets, String action)
@@ -800,8 +960,20 @@ public class JpaPermissionStore implements PermissionStore, Serializable
       this.rolePermissionClass = rolePermissionClass;
    }
    
+   public int getTargetBatchSize()
+   {
+      return targetBatchSize;
+   }
+   
+   public void setTargetBatchSize(int targetBatchSize)
+   {
+      this.targetBatchSize = targetBatchSize;
+   }
+   
    public void clearPermissions(Object target)
    {
+      clearPermissionCache();
+      
       EntityManager em = lookupEntityManager();
       String identifier = identifierPolicy.getIdentifier(target);
       
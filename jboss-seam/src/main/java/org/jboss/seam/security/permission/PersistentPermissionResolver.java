@@ -4,8 +4,11 @@ import static org.jboss.seam.ScopeType.APPLICATION;
 import static org.jboss.seam.annotations.Install.BUILT_IN;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jboss.seam.Component;
@@ -119,42 +122,57 @@ public class PersistentPermissionResolver implements PermissionResolver, Seriali
       
       String username = identity.getPrincipal().getName();
       
+      // index the permissions by target, rather than scanning them for every target; targets 
+      // are still matched with equals(), and the permission store returns permissions that 
+      // refer to the very instances in the set, so targets without value equality match too
+      Map<Object,List<Permission>> permissionsByTarget = new HashMap<Object,List<Permission>>();
+      for (Permission permission : permissions)
+      {
+         List<Permission> targetPermissions = permissionsByTarget.get(permission.getTarget());
+         if (targetPermissions == null)
+         {
+            targetPermissions = new ArrayList<Permission>();
+            permissionsByTarget.put(permission.getTarget(), targetPermissions);
+         }
+         targetPermissions.add(permission);
+      }
+      
       Iterator iter = targets.iterator();
       while (iter.hasNext())
       {
          Object target = iter.next();
          
-         for (Permission permission : permissions)
+         List<Permission> targetPermissions = permissionsByTarget.get(target);
+         if (targetPermissions == null) continue;
+         
+         for (Permission permission : targetPermissions)
          {
-            if (permission.getTarget().equals(target))
+            if (permission.getRecipient() instanceof SimplePrincipal &&
+                  username.equals(permission.getRecipient().getName()))
             {
-               if (permission.getRecipient() instanceof SimplePrincipal &&
-                     username.equals(permission.getRecipient().getName()))
-               {
-                  iter.remove();
-                  break;
-               }
+               iter.remove();
+               break;
+            }
+            
+            if (permission.getRecipient() instanceof Role)
+            {
+               Role role = (Role) permission.getRecipient();
                
-               if (permission.getRecipient() instanceof Role)
+               if (role.isConditional())
                {
-                  Role role = (Role) permission.getRecipient();
-                  
-                  if (role.isConditional())
-                  {
-                     RuleBasedPermissionResolver resolver = RuleBasedPermissionResolver.instance();
-                     if (resolver.checkConditionalRole(role.getName(), target, action))
-                     {
-                        iter.remove();
-                        break;
-                     }
-                  }
-                  else if (identity.hasRole(role.getName()))
+                  RuleBasedPermissionResolver resolver = RuleBasedPermissionResolver.instance();
+                  if (resolver.checkConditionalRole(role.getName(), target, action))
                   {
                      iter.remove();
                      break;
                   }
-               }               
-            }
+               }
+               else if (identity.hasRole(role.getName()))
+               {
+                  iter.remove();
+                  break;
+               }
+            }               
          }
       }
    }
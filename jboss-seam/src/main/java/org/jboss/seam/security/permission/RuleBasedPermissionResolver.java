@@ -7,9 +7,13 @@ import java.io.Serializable;
 import java.security.Principal;
 import java.security.acl.Group;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.drools.FactHandle;
@@ -54,6 +58,64 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
    
    private RuleBase securityRules;  
    
+   private boolean cachePermissionChecks;
+   
+   private boolean batchChecks;
+   
+   /**
+    * The principal and roles the security context was last synchronized with
+    */
+   private transient List<Object> synchronizedState;
+   
+   private static final String CACHED_RESULTS = RuleBasedPermissionResolver.class.getName() + ".cachedResults";
+   
+   /**
+    * The results of the permission checks made during a request, which are
+    * only valid while the principal and roles are unchanged
+    */
+   private static class CachedResults
+   {
+      private final List<Object> state;
+      private final Map<CheckKey,Boolean> results = new HashMap<CheckKey,Boolean>();
+      
+      private CachedResults(List<Object> state)
+      {
+         this.state = state;
+      }
+   }
+   
+   /**
+    * Identifies a permission check by the identity of its target, or the
+    * value of a String or Class target, and its action
+    */
+   private static class CheckKey
+   {
+      private final Object target;
+      private final String action;
+      
+      private CheckKey(Object target, String action)
+      {
+         this.target = target;
+         this.action = action;
+      }
+      
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof CheckKey)) return false;
+         CheckKey other = (CheckKey) obj;
+         return (target instanceof String ? target.equals(other.target) : target == other.target) &&
+               (action == null ? other.action == null : action.equals(other.action));
+      }
+      
+      @Override
+      public int hashCode()
+      {
+         int hash = target instanceof String ? target.hashCode() : System.identityHashCode(target);
+         return 31 * hash + (action == null ? 0 : action.hashCode());
+      }
+   }
+   
    @Create
    public boolean create()
    {
@@ -94,29 +156,26 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
       
       if (securityContext == null) return false;      
       
+      List<Object> state = getSubjectState(Identity.instance());
+      
+      Map<CheckKey,Boolean> results = getCachedResults(state);
+      CheckKey key = new CheckKey(target, action);
+      if (results != null && results.containsKey(key))
+      {
+         return results.get(key);
+      }
+      
       List<FactHandle> handles = new ArrayList<FactHandle>();  
 
       PermissionCheck check;
       
       synchronized( securityContext )
       {
-         if (!(target instanceof String) && !(target instanceof Class))
-         {
-            handles.add( securityContext.insert(target) );
-         }
-         else if (target instanceof Class)
-         {
-            String componentName = Seam.getComponentName((Class) target);
-            target = componentName != null ? componentName : ((Class) target).getName();
-         }
-         
-         check = new PermissionCheck(target, action);         
-         
          try
          {
-            synchronizeContext();
+            synchronizeContext(state);
             
-            handles.add( securityContext.insert(check) );
+            check = insertCheck(securityContext, target, action, handles);
    
             securityContext.fireAllRules();
          }
@@ -129,19 +188,143 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
          }
       }
       
+      if (results != null)
+      {
+         results.put(key, check.isGranted());
+      }
+      
       return check.isGranted();
    }
    
+   /**
+    * Removes the targets for which the permission is granted from the set.
+    * If batchChecks is enabled, the checks for all targets are inserted
+    * into the security context together and the rules are fired once.
+    */
    public void filterSetByAction(Set<Object> targets, String action)
    {
+      if (!isBatchChecks() || targets.size() < 2)
+      {
+         Iterator iter = targets.iterator();
+         while (iter.hasNext())
+         {
+            Object target = iter.next();
+            if (hasPermission(target, action)) iter.remove();
+         }
+         return;
+      }
+      
+      StatefulSession securityContext = getSecurityContext();
+      
+      if (securityContext == null) return;
+      
+      List<Object> state = getSubjectState(Identity.instance());
+      Map<CheckKey,Boolean> results = getCachedResults(state);
+      
+      List<Object> unchecked = new ArrayList<Object>(targets.size());
+      for (Object target : targets)
+      {
+         if (results == null || !results.containsKey(new CheckKey(target, action)))
+         {
+            unchecked.add(target);
+         }
+      }
+      
+      List<FactHandle> handles = new ArrayList<FactHandle>();
+      List<PermissionCheck> checks = new ArrayList<PermissionCheck>(unchecked.size());
+      
+      if (!unchecked.isEmpty())
+      {
+         synchronized( securityContext )
+         {
+            try
+            {
+               synchronizeContext(state);
+               
+               for (Object target : unchecked)
+               {
+                  checks.add( insertCheck(securityContext, target, action, handles) );
+               }
+               
+               securityContext.fireAllRules();
+            }
+            finally
+            {
+               for (FactHandle handle : handles)
+               {
+                  securityContext.retract(handle);
+               }
+            }
+         }
+      }
+      
+      // The checks are in the same order as the targets without a cached result
+      Iterator<PermissionCheck> checkIter = checks.iterator();
       Iterator iter = targets.iterator();
       while (iter.hasNext())
       {
          Object target = iter.next();
-         if (hasPermission(target, action)) iter.remove();
+         CheckKey key = new CheckKey(target, action);
+         if (results != null && results.containsKey(key))
+         {
+            if (results.get(key)) iter.remove();
+            continue;
+         }
+         
+         boolean granted = checkIter.next().isGranted();
+         if (results != null)
+         {
+            results.put(key, granted);
+         }
+         if (granted) iter.remove();
       }
    }
    
+   /**
+    * Inserts the target of a permission check, unless it is a String or a
+    * Class, and the check itself into the security context. Facts which
+    * were already in the security context are left there.
+    */
+   private PermissionCheck insertCheck(StatefulSession securityContext, Object target,
+         String action, List<FactHandle> handles)
+   {
+      if (!(target instanceof String) && !(target instanceof Class))
+      {
+         if (securityContext.getFactHandle(target) == null)
+         {
+            handles.add( securityContext.insert(target) );
+         }
+      }
+      else if (target instanceof Class)
+      {
+         String componentName = Seam.getComponentName((Class) target);
+         target = componentName != null ? componentName : ((Class) target).getName();
+      }
+      
+      PermissionCheck check = new PermissionCheck(target, action);
+      handles.add( securityContext.insert(check) );
+      return check;
+   }
+   
+   private Map<CheckKey,Boolean> getCachedResults(List<Object> state)
+   {
+      if (!isCachePermissionChecks() || !Contexts.isEventContextActive()) return null;
+      
+      CachedResults cached = (CachedResults) Contexts.getEventContext().get(CACHED_RESULTS);
+      if (cached == null || !cached.state.equals(state))
+      {
+         cached = new CachedResults(state);
+         Contexts.getEventContext().set(CACHED_RESULTS, cached);
+      }
+      return cached.results;
+   }
+   
+   /**
+    * Checks if the user has a conditional role for the specified target and
+    * action. The target and the required values are only inserted into the
+    * security context, and retracted afterwards, if they are not already
+    * facts, such as the principal.
+    */
    public boolean checkConditionalRole(String roleName, Object target, String action)
    {      
       StatefulSession securityContext = getSecurityContext();
@@ -156,7 +339,10 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
       {
          if (!(target instanceof String) && !(target instanceof Class))
          {
-            handles.add( securityContext.insert(target) );
+            if (securityContext.getFactHandle(target) == null)
+            {
+               handles.add( securityContext.insert(target) );
+            }
          }
          else if (target instanceof Class)
          {
@@ -175,7 +361,7 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
                for (String requirement : check.getRequirements())
                {
                   Object value = Contexts.lookupInStatefulContexts(requirement);
-                  if (value != null)
+                  if (value != null && securityContext.getFactHandle(value) == null)
                   {
                      handles.add (securityContext.insert(value));
                   }
@@ -214,14 +400,43 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
    }
    
    /**
-    *  Synchronises the state of the security context with that of the subject
+    * Returns the principal and the names of the roles of the subject, which
+    * determine the facts synchronizeContext() inserts
     */
+   private List<Object> getSubjectState(Identity identity)
+   {
+      Set<String> roles = new HashSet<String>();
+      for ( Group sg : identity.getSubject().getPrincipals(Group.class) )
+      {
+         if ( Identity.ROLES_GROUP.equals( sg.getName() ) )
+         {
+            Enumeration e = sg.members();
+            while (e.hasMoreElements())
+            {
+               roles.add( ((Principal) e.nextElement()).getName() );
+            }
+         }
+      }
+      return Arrays.asList(identity.getPrincipal(), roles);
+   }
+   
    private void synchronizeContext()
+   {
+      synchronizeContext( getSubjectState(Identity.instance()) );
+   }
+   
+   /**
+    *  Synchronises the state of the security context with that of the subject,
+    *  unless the principal and roles are the same as when it was last synchronised
+    */
+   private void synchronizeContext(List<Object> state)
    {
       Identity identity = Identity.instance();
       
       if (getSecurityContext() != null)
       {
+         if (state.equals(synchronizedState)) return;
+         
          getSecurityContext().insert(identity.getPrincipal());
          
          for ( Group sg : identity.getSubject().getPrincipals(Group.class) )      
@@ -264,6 +479,8 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
                getSecurityContext().retract(fh);
             }
          }
+         
+         synchronizedState = state;
       }
    }
    
@@ -276,6 +493,7 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
    public void setSecurityContext(StatefulSession securityContext)
    {
       this.securityContext = securityContext;
+      synchronizedState = null;
    }
    
 
@@ -289,6 +507,38 @@ public class RuleBasedPermissionResolver implements PermissionResolver, Serializ
       this.securityRules = securityRules;
    }       
    
+   /**
+    * If true, the result of a permission check is reused for the same
+    * target and action for the rest of the request, as long as the
+    * principal and roles are unchanged. Targets are compared by identity,
+    * so the rules must not depend on state which changes during a request.
+    */
+   public boolean isCachePermissionChecks()
+   {
+      return cachePermissionChecks;
+   }
+   
+   public void setCachePermissionChecks(boolean cachePermissionChecks)
+   {
+      this.cachePermissionChecks = cachePermissionChecks;
+   }
+   
+   /**
+    * If true, filtering a collection fires the rules once for all of its
+    * targets. The rules must then match each PermissionCheck with its own
+    * target, as the targets of the other checks are in the security
+    * context at the same time.
+    */
+   public boolean isBatchChecks()
+   {
+      return batchChecks;
+   }
+   
+   public void setBatchChecks(boolean batchChecks)
+   {
+      this.batchChecks = batchChecks;
+   }
+   
    public static RuleBasedPermissionResolver instance()
    {
       if ( !Contexts.isSessionContextActive() )
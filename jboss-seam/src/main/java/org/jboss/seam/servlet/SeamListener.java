@@ -17,6 +17,7 @@ import org.jboss.seam.init.Initialization;
 import org.jboss.seam.jmx.JBossClusterMonitor;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
+import org.jboss.seam.web.ConversationReaper;
 
 /**
  * Drives certain Seam functionality such as initialization and cleanup
@@ -44,10 +45,20 @@ public class SeamListener implements ServletContextListener, HttpSessionListener
    public void sessionCreated(HttpSessionEvent event) 
    {
       ServletLifecycle.beginSession( event.getSession() );
+      ConversationReaper reaper = ConversationReaper.getInstance( event.getSession().getServletContext() );
+      if (reaper != null)
+      {
+         reaper.sessionCreated( event.getSession() );
+      }
    }
    
    public void sessionDestroyed(HttpSessionEvent event) 
    {
+      ConversationReaper reaper = ConversationReaper.getInstance( event.getSession().getServletContext() );
+      if (reaper != null)
+      {
+         reaper.sessionDestroyed( event.getSession() );
+      }
       JBossClusterMonitor monitor = JBossClusterMonitor.getInstance(event.getSession().getServletContext());
       if (monitor != null && monitor.failover())
       {
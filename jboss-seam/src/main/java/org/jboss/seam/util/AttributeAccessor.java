@@ -0,0 +1,15 @@
+package org.jboss.seam.util;
+
+/**
+ * Reads and writes the bijected attributes of a component
+ * class without reflection. Attributes are addressed by
+ * their index in the list of members the accessor was
+ * generated for.
+ * 
+ * @see AttributeAccessorFactory
+ */
+public interface AttributeAccessor
+{
+   public Object get(Object bean, int index);
+   public void set(Object bean, int index, Object value);
+}
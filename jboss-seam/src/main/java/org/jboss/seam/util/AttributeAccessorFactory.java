@@ -0,0 +1,268 @@
+package org.jboss.seam.util;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * Generates an AttributeAccessor for a component class
+ * with Javassist. The generated class lives in the package
+ * and class loader of the component class, and reads or 
+ * writes each member with a plain field access or method 
+ * call. 
+ * 
+ * Only members that the generated class can legally reach
+ * are compiled: private or final members, members of primitive 
+ * type or of a type the package cannot see, and members inherited
+ * from classes in other packages are left to reflection, see 
+ * {@link #isAccessible(Class, Member)}.
+ * 
+ * One ClassPool is kept per class loader and shared by all the
+ * components it loads.
+ */
+public class AttributeAccessorFactory
+{
+   private static final LogProvider log = Logging.getLogProvider(AttributeAccessorFactory.class);
+   
+   private static final AtomicInteger counter = new AtomicInteger();
+   
+   private static final AtomicBoolean warned = new AtomicBoolean();
+   
+   private static final Map<ClassLoader, ClassPool> pools = new WeakHashMap<ClassLoader, ClassPool>();
+   
+   /**
+    * Determine if a generated accessor for the given class
+    * can read or write the given field or method.
+    */
+   public static boolean isAccessible(Class<?> beanClass, Member member)
+   {
+      int modifiers = member.getModifiers();
+      if ( Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers) || 
+           Modifier.isPrivate( beanClass.getModifiers() ) )
+      {
+         return false;
+      }
+      if ( member instanceof Field && Modifier.isFinal(modifiers) )
+      {
+         return false;
+      }
+      Class<?> type = getType(member);
+      if ( type==null || type.isPrimitive() || !isVisible(beanClass, type) )
+      {
+         return false;
+      }
+      Class<?> declaringClass = member.getDeclaringClass();
+      if ( Modifier.isPublic(modifiers) && Modifier.isPublic( declaringClass.getModifiers() ) )
+      {
+         return true;
+      }
+      return isSamePackage(beanClass, declaringClass);
+   }
+   
+   /**
+    * Determine if code in the package of the given class can 
+    * name the given type in a cast
+    */
+   private static boolean isVisible(Class<?> beanClass, Class<?> type)
+   {
+      while ( type.isArray() )
+      {
+         type = type.getComponentType();
+      }
+      if ( type.isPrimitive() )
+      {
+         return true;
+      }
+      if ( Modifier.isPrivate( type.getModifiers() ) )
+      {
+         return false;
+      }
+      return Modifier.isPublic( type.getModifiers() ) || isSamePackage(beanClass, type);
+   }
+   
+   private static boolean isSamePackage(Class<?> beanClass, Class<?> clazz)
+   {
+      return clazz.getClassLoader()==beanClass.getClassLoader() && 
+            getPackageName(clazz).equals( getPackageName(beanClass) );
+   }
+   
+   /**
+    * Generate an accessor for the given members, which must
+    * all pass {@link #isAccessible(Class, Member)}.
+    * 
+    * @return the accessor, or null if it could not be generated
+    */
+   public static AttributeAccessor create(Class<?> beanClass, List<Member> members)
+   {
+      if ( members.isEmpty() || beanClass.getClassLoader()==null )
+      {
+         return null;
+      }
+      ClassPool pool = getClassPool( beanClass.getClassLoader() );
+      synchronized (pool)
+      {
+         return create(pool, beanClass, members);
+      }
+   }
+   
+   private static ClassPool getClassPool(ClassLoader classLoader)
+   {
+      synchronized (pools)
+      {
+         ClassPool pool = pools.get(classLoader);
+         if (pool==null)
+         {
+            pool = new ClassPool(true);
+            pool.appendClassPath( new LoaderClassPath(classLoader) );
+            pool.appendClassPath( new LoaderClassPath( AttributeAccessor.class.getClassLoader() ) );
+            pools.put(classLoader, pool);
+         }
+         return pool;
+      }
+   }
+   
+   private static AttributeAccessor create(ClassPool pool, Class<?> beanClass, List<Member> members)
+   {
+      CtClass accessorClass = null;
+      try
+      {
+         String name = beanClass.getName() + "_$$_accessor" + counter.incrementAndGet();
+         accessorClass = pool.makeClass(name);
+         accessorClass.addInterface( pool.get( AttributeAccessor.class.getName() ) );
+         accessorClass.addConstructor( CtNewConstructor.defaultConstructor(accessorClass) );
+         accessorClass.addMethod( CtNewMethod.make( getterSource(beanClass, members), accessorClass ) );
+         accessorClass.addMethod( CtNewMethod.make( setterSource(beanClass, members), accessorClass ) );
+         
+         Class<?> clazz = accessorClass.toClass( beanClass.getClassLoader(), beanClass.getProtectionDomain() );
+         return (AttributeAccessor) clazz.newInstance();
+      }
+      catch (Exception e)
+      {
+         return failed(beanClass, e);
+      }
+      catch (LinkageError e)
+      {
+         return failed(beanClass, e);
+      }
+      finally
+      {
+         if (accessorClass!=null)
+         {
+            accessorClass.detach();
+         }
+      }
+   }
+   
+   /**
+    * Log the first failure as a warning, since it usually means
+    * that no accessor can be generated on this JVM at all.
+    */
+   private static AttributeAccessor failed(Class<?> beanClass, Throwable t)
+   {
+      String message = "could not generate attribute accessor for " + beanClass.getName() + ", using reflection";
+      if ( warned.compareAndSet(false, true) )
+      {
+         log.warn(message, t);
+      }
+      else
+      {
+         log.debug(message, t);
+      }
+      return null;
+   }
+   
+   private static String getterSource(Class<?> beanClass, List<Member> members)
+   {
+      StringBuilder source = new StringBuilder()
+            .append("public Object get(Object bean, int index) { switch (index) { ");
+      String bean = "((" + getSourceName(beanClass) + ") bean)";
+      for (int i=0; i<members.size(); i++)
+      {
+         Member member = members.get(i);
+         if (member instanceof Field)
+         {
+            source.append("case ").append(i).append(": return ")
+                  .append(bean).append('.').append( member.getName() ).append("; ");
+         }
+         else if ( ( (Method) member ).getParameterTypes().length==0 )
+         {
+            source.append("case ").append(i).append(": return ")
+                  .append(bean).append('.').append( member.getName() ).append("(); ");
+         }
+      }
+      return source.append("default: throw new IllegalArgumentException(\"not readable: \" + index); } }")
+            .toString();
+   }
+   
+   private static String setterSource(Class<?> beanClass, List<Member> members)
+   {
+      StringBuilder source = new StringBuilder()
+            .append("public void set(Object bean, int index, Object value) { switch (index) { ");
+      String bean = "((" + getSourceName(beanClass) + ") bean)";
+      for (int i=0; i<members.size(); i++)
+      {
+         Member member = members.get(i);
+         String value = "(" + getSourceName( getType(member) ) + ") value";
+         if (member instanceof Field)
+         {
+            source.append("case ").append(i).append(": ")
+                  .append(bean).append('.').append( member.getName() ).append(" = ").append(value)
+                  .append("; return; ");
+         }
+         else if ( ( (Method) member ).getParameterTypes().length==1 )
+         {
+            source.append("case ").append(i).append(": ")
+                  .append(bean).append('.').append( member.getName() ).append('(').append(value)
+                  .append("); return; ");
+         }
+      }
+      return source.append("default: throw new IllegalArgumentException(\"not writable: \" + index); } }")
+            .toString();
+   }
+   
+   private static Class<?> getType(Member member)
+   {
+      if (member instanceof Field)
+      {
+         return ( (Field) member ).getType();
+      }
+      Method method = (Method) member;
+      switch ( method.getParameterTypes().length )
+      {
+         case 0: 
+            return method.getReturnType()==void.class ? null : method.getReturnType();
+         case 1: 
+            return method.getParameterTypes()[0];
+         default: 
+            return null;
+      }
+   }
+   
+   private static String getSourceName(Class<?> clazz)
+   {
+      return clazz.isArray() ? getSourceName( clazz.getComponentType() ) + "[]" : clazz.getName();
+   }
+   
+   private static String getPackageName(Class<?> clazz)
+   {
+      String name = clazz.getName();
+      int loc = name.lastIndexOf('.');
+      return loc<0 ? "" : name.substring(0, loc);
+   }
+   
+}
@@ -0,0 +1,78 @@
+package org.jboss.seam.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread safe cache which holds at most (roughly) a given
+ * number of entries, evicting the oldest entries first. Lookups
+ * do not lock, so the cache is suitable for values that are
+ * cheap to recreate and read far more often than written.
+ */
+public class BoundedCache<K, V>
+{
+   private final ConcurrentMap<K, V> map;
+   private final Queue<K> insertionOrder = new ConcurrentLinkedQueue<K>();
+   private final int maxSize;
+
+   /**
+    * @param maxSize the maximum number of entries, or 0 to
+    * cache nothing
+    */
+   public BoundedCache(int maxSize)
+   {
+      this.maxSize = maxSize;
+      this.map = new ConcurrentHashMap<K, V>( Math.min(maxSize, 64) );
+   }
+
+   public V get(K key)
+   {
+      return map.get(key);
+   }
+
+   /**
+    * Add an entry unless there already is one for the key
+    *
+    * @return the value now cached for the key, which is the given
+    * value unless another thread got there first
+    */
+   public V putIfAbsent(K key, V value)
+   {
+      if (maxSize<=0)
+      {
+         return value;
+      }
+      V existing = map.putIfAbsent(key, value);
+      if (existing!=null)
+      {
+         return existing;
+      }
+      insertionOrder.add(key);
+      while ( map.size()>maxSize )
+      {
+         K eldest = insertionOrder.poll();
+         if (eldest==null) break;
+         map.remove(eldest);
+      }
+      return value;
+   }
+
+   public void clear()
+   {
+      map.clear();
+      insertionOrder.clear();
+   }
+
+   public int size()
+   {
+      return map.size();
+   }
+
+   public int getMaxSize()
+   {
+      return maxSize;
+   }
+
+}
@@ -0,0 +1,232 @@
+package org.jboss.seam.web;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+import static org.jboss.seam.web.ConditionalAbstractResource.HEADER_ETAG;
+import static org.jboss.seam.web.ConditionalAbstractResource.HEADER_IF_MODIFIED_SINCE;
+import static org.jboss.seam.web.ConditionalAbstractResource.HEADER_IF_NONE_MATCH;
+import static org.jboss.seam.web.ConditionalAbstractResource.HEADER_LAST_MODIFIED;
+
+/**
+ * Answers conditional <tt>GET</tt> and <tt>HEAD</tt> requests with <tt>304 NOT MODIFIED</tt>, and creates
+ * entity tags. This is what {@link ConditionalAbstractResource} does, for responses which are not sent by
+ * a resource, such as the documents of the <tt>DocumentStore</tt>.
+ *
+ * @see ConditionalAbstractResource
+ */
+public class ConditionalRequests
+{
+
+   private static final LogProvider log = Logging.getLogProvider(ConditionalRequests.class);
+
+   /**
+    * Validates the request headers <tt>If-Modified-Since</tt> and <tt>If-None-Match</tt> to determine
+    * if a <tt>304 NOT MODIFIED</tt> response can be send. If that is the case, this method will automatically
+    * send the response and return <tt>true</tt>. If condition validation fails, it will not change the
+    * response and return <tt>false</tt>.
+    * <p/>
+    * Note that both <tt>entityTag</tt> and <tt>lastModified</tt> arguments can be <tt>null</tt>. The validation
+    * procedure and the outcome depends on what the client requested. If the client requires that both entity tags and
+    * modification timestamps be validated, both arguments must be supplied to the method and they must match, for
+    * a 304 response to be send.
+    * <p/>
+    * In addition to responding with <tt>304 NOT MODIFIED</tt> when conditions match, this method will also, if
+    * arguments are not <tt>null</tt>, send the right entity tag and last modification timestamps with the response,
+    * so that future requests from the client can be made conditional.
+    * <p/>
+    *
+    * @param request         The usual HttpServletRequest for header retrieval.
+    * @param response        The usual HttpServletResponse for header manipulation.
+    * @param entityTag       An entity tag (weak or strong, in doublequotes), typically produced by hashing the content
+    *                        of the resource representation. If <tt>null</tt>, no entity tag will be send and if
+    *                        validation is requested by the client, no match for a NOT MODIFIED response will be possible.
+    * @param lastModified    The timestamp in number of milliseconds since unix epoch when the resource was
+    *                        last modified. If <tt>null</tt>, no last modification timestamp will be send  and if
+    *                        validation is requested by the client, no match for a NOT MODIFIED response will be possible.
+    * @return <tt>true</tt> if a <tt>304 NOT MODIFIED</tt> response status has been set, <tt>false</tt> if requested
+    *         conditions were invalid given the current state of the resource.
+    * @throws IOException If setting the response status failed.
+    */
+   public static boolean sendConditional(HttpServletRequest request,
+                                         HttpServletResponse response,
+                                         String entityTag, Long lastModified) throws IOException
+   {
+      return sendConditional(request, response, entityTag, lastModified, null);
+   }
+
+   /**
+    * Validates the conditions with the checks of the resource, if there is one, as a subclass may
+    * override them
+    */
+   static boolean sendConditional(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  String entityTag, Long lastModified,
+                                  ConditionalAbstractResource resource) throws IOException
+   {
+
+      String noneMatchHeader = request.getHeader(HEADER_IF_NONE_MATCH);
+      Long modifiedSinceHeader = request.getDateHeader(HEADER_IF_MODIFIED_SINCE); // Careful, returns -1 instead of null!
+
+      boolean noneMatchValid = false;
+      if (entityTag != null)
+      {
+
+         if (! (entityTag.startsWith("\"") || entityTag.startsWith("W/\"")) && !entityTag.endsWith("\""))
+         {
+            throw new IllegalArgumentException("Entity tag is not properly formatted (or quoted): " + entityTag);
+         }
+
+         // Always send an entity tag with the response
+         response.setHeader(HEADER_ETAG, entityTag);
+
+         if (noneMatchHeader != null)
+         {
+            noneMatchValid = resource == null ?
+                  isNoneMatchConditionValid(noneMatchHeader, entityTag) :
+                  resource.isNoneMatchConditionValid(noneMatchHeader, entityTag);
+         }
+      }
+
+      boolean modifiedSinceValid = false;
+      if (lastModified != null)
+      {
+
+         // Always send the last modified timestamp with the response
+         response.setDateHeader(HEADER_LAST_MODIFIED, lastModified);
+
+         if (modifiedSinceHeader != -1)
+         {
+            modifiedSinceValid = resource == null ?
+                  isModifiedSinceConditionValid(modifiedSinceHeader, lastModified) :
+                  resource.isModifiedSinceConditionValid(modifiedSinceHeader, lastModified);
+         }
+
+      }
+
+      if (noneMatchHeader != null && modifiedSinceHeader != -1)
+      {
+         log.debug(HEADER_IF_NONE_MATCH + " and " + HEADER_IF_MODIFIED_SINCE + " must match");
+
+         // If both are received, we must not return 304 unless doing so is consistent with both header fields in the request!
+         if (noneMatchValid && modifiedSinceValid)
+         {
+            log.debug(HEADER_IF_NONE_MATCH + " and " + HEADER_IF_MODIFIED_SINCE + " conditions match, sending 304");
+            response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+         }
+         else
+         {
+            log.debug(HEADER_IF_NONE_MATCH + " and " + HEADER_IF_MODIFIED_SINCE + " conditions do not match, not sending 304");
+            return false;
+         }
+      }
+
+      if (noneMatchHeader != null && noneMatchValid)
+      {
+         log.debug(HEADER_IF_NONE_MATCH + " condition matches, sending 304");
+         response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
+         return true;
+      }
+
+      if (modifiedSinceHeader != -1 && modifiedSinceValid)
+      {
+         log.debug(HEADER_IF_MODIFIED_SINCE + " condition matches, sending 304");
+         response.sendError(HttpServletResponse.SC_NOT_MODIFIED);
+         return true;
+      }
+
+      log.debug("None of the cache conditions match, not sending 304");
+      return false;
+   }
+
+   public static boolean isNoneMatchConditionValid(String noneMatchHeader, String entityTag)
+   {
+      if (noneMatchHeader.trim().equals("*"))
+      {
+         log.debug("Found * conditional request, hence current entity tag matches");
+         return true;
+      }
+      String[] entityTagsArray = noneMatchHeader.trim().split(",");
+      for (String requestTag : entityTagsArray)
+      {
+         if (requestTag.trim().equals(entityTag))
+         {
+            log.debug("Found matching entity tag in request");
+            return true;
+         }
+      }
+      log.debug("Resource has different entity tag than requested");
+      return false;
+   }
+
+   public static boolean isModifiedSinceConditionValid(Long modifiedSinceHeader, Long lastModified)
+   {
+      if (lastModified <= modifiedSinceHeader)
+      {
+         log.debug("Resource has not been modified since requested timestamp");
+         return true;
+      }
+      log.debug("Resource has been modified since requested timestamp");
+      return false;
+   }
+
+   /**
+    * Creates a strong or weak entity tag, in double quotes, from the MD5 hash of the string.
+    *
+    * @return The entity tag, or <tt>null</tt> if the string is <tt>null</tt>.
+    */
+   public static String createEntityTag(String hashSource, boolean weak)
+   {
+      if (hashSource == null) return null;
+      return (weak ? "W/\"" : "\"") + hash(hashSource, "UTF-8", "MD5") + "\"";
+   }
+
+   /**
+    * Creates a strong or weak entity tag, in double quotes, from the MD5 hash of the bytes.
+    *
+    * @return The entity tag, or <tt>null</tt> if the bytes are <tt>null</tt>.
+    */
+   public static String createEntityTag(byte[] hashSource, boolean weak)
+   {
+      if (hashSource == null) return null;
+      return (weak ? "W/\"" : "\"") + hash(hashSource, "MD5") + "\"";
+   }
+
+   public static String hash(String text, String charset, String algorithm)
+   {
+      try
+      {
+         return hash(text.getBytes(charset), algorithm);
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+   public static String hash(byte[] bytes, String algorithm)
+   {
+      try
+      {
+         MessageDigest md = MessageDigest.getInstance(algorithm);
+         md.update(bytes);
+         BigInteger number = new BigInteger(1, md.digest());
+         StringBuffer sb = new StringBuffer("0");
+         sb.append(number.toString(16));
+         return sb.toString();
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException(e);
+      }
+   }
+
+}
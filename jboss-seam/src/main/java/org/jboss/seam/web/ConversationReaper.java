@@ -0,0 +1,298 @@
+package org.jboss.seam.web;
+
+import static org.jboss.seam.ScopeType.APPLICATION;
+import static org.jboss.seam.annotations.Install.BUILT_IN;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.Create;
+import org.jboss.seam.annotations.Destroy;
+import org.jboss.seam.annotations.Install;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.Startup;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.ConversationEntries;
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.jboss.seam.servlet.ServletSessionMap;
+
+/**
+ * Times out long-running conversations from a background 
+ * thread, instead of at the end of each request. Sessions
+ * are tracked from the sessionCreated() and sessionDestroyed()
+ * events received by SeamListener, so conversations held by
+ * idle sessions are reclaimed without waiting for the user to 
+ * come back. The org.jboss.seam.conversationTimeout event is 
+ * raised on the reaper thread.
+ * 
+ * Sessions that existed before the application started, for
+ * example sessions restored by the container after a restart 
+ * or a failover, are tracked from their next request. If the
+ * session of a request cannot be determined, conversations
+ * are timed out at the end of the request, as usual.
+ * 
+ * The reaper registers itself with the platform MBeanServer.
+ * 
+ */
+@Scope(APPLICATION)
+@Name("org.jboss.seam.web.conversationReaper")
+@BypassInterceptors
+@Startup
+@Install(value=false, precedence=BUILT_IN)
+public class ConversationReaper implements ConversationReaperMBean
+{
+   private static final LogProvider log = Logging.getLogProvider(ConversationReaper.class);
+   
+   private long interval = 60000; //one minute
+   private String objectName;
+   
+   private final ConcurrentMap<String, HttpSession> sessions = new ConcurrentHashMap<String, HttpSession>();
+   
+   private volatile int liveConversations;
+   private final AtomicLong expiredConversations = new AtomicLong();
+   private final AtomicLong reclaimedConversations = new AtomicLong();
+   
+   private ServletContext servletContext;
+   private ScheduledExecutorService executor;
+   private ObjectName registeredName;
+   
+   @Create
+   public void startup()
+   {
+      servletContext = ServletLifecycle.getCurrentServletContext();
+      executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() 
+      {
+         public Thread newThread(Runnable runnable)
+         {
+            Thread thread = new Thread(runnable, "Seam conversation reaper");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      executor.scheduleWithFixedDelay( new Runnable()
+      {
+         public void run()
+         {
+            reap();
+         }
+      }, interval, interval, TimeUnit.MILLISECONDS );
+      registerMBean();
+   }
+   
+   @Destroy
+   public void destroy()
+   {
+      unregisterMBean();
+      executor.shutdownNow();
+      sessions.clear();
+   }
+   
+   public void sessionCreated(HttpSession session)
+   {
+      sessions.put( session.getId(), session );
+   }
+   
+   public void sessionDestroyed(HttpSession session)
+   {
+      sessions.remove( session.getId() );
+   }
+   
+   /**
+    * Track the session of the current request, if the reaper
+    * has not seen it created.
+    * 
+    * @return false if the request has no servlet session
+    */
+   public boolean trackCurrentSession()
+   {
+      ServletContexts servletContexts = ServletContexts.getInstance();
+      HttpServletRequest request = servletContexts==null ? null : servletContexts.getRequest();
+      HttpSession session = request==null ? null : request.getSession(false);
+      if (session==null)
+      {
+         return false;
+      }
+      sessions.putIfAbsent( session.getId(), session );
+      return true;
+   }
+   
+   public void reap()
+   {
+      int live = 0;
+      for ( Map.Entry<String, HttpSession> entry: sessions.entrySet() )
+      {
+         try
+         {
+            live += reap( entry.getKey(), entry.getValue() );
+         }
+         catch (Exception e)
+         {
+            log.warn("error timing out conversations of session: " + entry.getKey(), e);
+         }
+      }
+      liveConversations = live;
+   }
+   
+   private int reap(String id, HttpSession session)
+   {
+      String name = Seam.getComponentName(ConversationEntries.class);
+      ConversationEntries conversationEntries;
+      try
+      {
+         conversationEntries = (ConversationEntries) session.getAttribute(name);
+      }
+      catch (IllegalStateException ise)
+      {
+         //invalidated, but we have not yet seen the event
+         log.debug("session invalidated before conversation timeout: " + id);
+         sessions.remove(id, session);
+         return 0;
+      }
+      if (conversationEntries==null || conversationEntries.size()==0)
+      {
+         return 0;
+      }
+      
+      int before = conversationEntries.size();
+      int expired = Lifecycle.timeoutConversations( new ServletSessionMap(session), new ServletApplicationMap(servletContext) );
+      int after = conversationEntries.size();
+      
+      expiredConversations.addAndGet(expired);
+      if (after < before)
+      {
+         reclaimedConversations.addAndGet(before - after);
+         //let a replicating container know the entries changed
+         session.setAttribute(name, conversationEntries);
+      }
+      return after;
+   }
+   
+   private void registerMBean()
+   {
+      try
+      {
+         MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+         ObjectName name = new ObjectName( getObjectName() );
+         if ( !server.isRegistered(name) )
+         {
+            server.registerMBean(this, name);
+            registeredName = name;
+         }
+      }
+      catch (Exception e)
+      {
+         log.warn("could not register conversation reaper with JMX", e);
+      }
+   }
+   
+   private void unregisterMBean()
+   {
+      if (registeredName!=null)
+      {
+         try
+         {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+         }
+         catch (Exception e)
+         {
+            log.debug("could not unregister conversation reaper from JMX", e);
+         }
+         registeredName = null;
+      }
+   }
+   
+   public int getSessionCount()
+   {
+      return sessions.size();
+   }
+   
+   public int getLiveConversationCount()
+   {
+      return liveConversations;
+   }
+   
+   public long getExpiredConversationCount()
+   {
+      return expiredConversations.get();
+   }
+   
+   public long getReclaimedConversationCount()
+   {
+      return reclaimedConversations.get();
+   }
+   
+   public long getInterval()
+   {
+      return interval;
+   }
+   
+   /**
+    * How often to check for timed out conversations
+    * 
+    * @param interval the period in milliseconds
+    */
+   public void setInterval(long interval)
+   {
+      this.interval = interval;
+   }
+   
+   public String getObjectName()
+   {
+      if (objectName==null)
+      {
+         String application = servletContext==null ? "" : servletContext.getContextPath();
+         return "org.jboss.seam:service=ConversationReaper,application=" + ObjectName.quote(application);
+      }
+      return objectName;
+   }
+   
+   /**
+    * The JMX name of the reaper
+    */
+   public void setObjectName(String objectName)
+   {
+      this.objectName = objectName;
+   }
+   
+   public static ConversationReaper getInstance(ServletContext servletContext)
+   {
+      return (ConversationReaper) servletContext.getAttribute( Seam.getComponentName(ConversationReaper.class) );
+   }
+   
+   /**
+    * The reaper of the current application, or null if
+    * it is not installed
+    */
+   public static ConversationReaper instance()
+   {
+      return isInstalled() ? 
+            (ConversationReaper) Contexts.getApplicationContext().get( Seam.getComponentName(ConversationReaper.class) ) : null;
+   }
+   
+   public static boolean isInstalled()
+   {
+      return Contexts.isApplicationContextActive() && 
+            Contexts.getApplicationContext().isSet( Seam.getComponentName(ConversationReaper.class) );
+   }
+   
+}
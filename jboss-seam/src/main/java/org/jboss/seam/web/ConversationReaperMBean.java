@@ -0,0 +1,40 @@
+package org.jboss.seam.web;
+
+/**
+ * JMX view of the ConversationReaper.
+ * 
+ * @see ConversationReaper
+ */
+public interface ConversationReaperMBean
+{
+   /**
+    * @return the number of sessions tracked by the reaper
+    */
+   public int getSessionCount();
+   
+   /**
+    * @return the number of long-running conversations found
+    * during the last timeout check
+    */
+   public int getLiveConversationCount();
+   
+   /**
+    * @return the number of conversations found expired since
+    * the application started
+    */
+   public long getExpiredConversationCount();
+   
+   /**
+    * @return the number of expired conversations destroyed 
+    * since the application started
+    */
+   public long getReclaimedConversationCount();
+   
+   public long getInterval();
+   
+   /**
+    * Check all tracked sessions for timed out conversations
+    * now, rather than waiting for the next scheduled check.
+    */
+   public void reap();
+}
@@ -43,6 +43,27 @@ public class MultipartFilter extends AbstractFilter
     * The maximum size of a file upload request.  0 means no limit.
     */
    private int maxRequestSize = 0; 
+   
+   /**
+    * The size above which an uploaded file is written to a temporary file,
+    * rather than held in memory.  0 means no limit.
+    */
+   private int fileSizeThreshold = 0;
+   
+   /**
+    * The maximum number of bytes of uploaded files that a single request may
+    * hold in memory, beyond which they are written to temporary files.  0 means 
+    * no limit.
+    */
+   private int maxRequestMemory = 0;
+   
+   /**
+    * The maximum number of bytes of uploaded files that all requests together
+    * may hold in memory.  0 means no limit.
+    */
+   private int maxMemory = 0;
+   
+   private volatile UploadBudget budget;
      
    public boolean getCreateTempFiles()
    {
@@ -64,6 +85,59 @@ public class MultipartFilter extends AbstractFilter
       this.maxRequestSize = maxFileSize;
    }   
    
+   public int getFileSizeThreshold()
+   {
+      return fileSizeThreshold;
+   }
+   
+   public void setFileSizeThreshold(int fileSizeThreshold)
+   {
+      this.fileSizeThreshold = fileSizeThreshold;
+   }
+   
+   public int getMaxRequestMemory()
+   {
+      return maxRequestMemory;
+   }
+   
+   public void setMaxRequestMemory(int maxRequestMemory)
+   {
+      this.maxRequestMemory = maxRequestMemory;
+   }
+   
+   public int getMaxMemory()
+   {
+      return maxMemory;
+   }
+   
+   public void setMaxMemory(int maxMemory)
+   {
+      this.maxMemory = maxMemory;
+      this.budget = null;
+   }
+   
+   /**
+    * The memory used by uploaded files, and the number of bytes held in 
+    * memory and written to temporary files
+    */
+   public UploadBudget getBudget()
+   {
+      UploadBudget result = budget;
+      if (result == null)
+      {
+         synchronized (this)
+         {
+            result = budget;
+            if (result == null)
+            {
+               result = new UploadBudget(maxMemory);
+               budget = result;
+            }
+         }
+      }
+      return result;
+   }
+   
    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException
    {
@@ -77,13 +151,20 @@ public class MultipartFilter extends AbstractFilter
 
       if (isMultipartRequest(httpRequest))
       {
-         MultipartRequest multipartRequest = new MultipartRequestImpl(httpRequest, createTempFiles, 
-               maxRequestSize); 
-         
-         // Force the request to be parsed now
-         multipartRequest.getParameterNames();
+         MultipartRequestImpl multipartRequest = new MultipartRequestImpl(httpRequest, createTempFiles, 
+               maxRequestSize, fileSizeThreshold, maxRequestMemory, getBudget()); 
          
-         chain.doFilter(multipartRequest, response);
+         try
+         {
+            // Force the request to be parsed now
+            multipartRequest.getParameterNames();
+            
+            chain.doFilter(multipartRequest, response);
+         }
+         finally
+         {
+            multipartRequest.release();
+         }
       }
       else
       {
@@ -6,11 +6,16 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.rmi.server.UID;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -37,6 +42,12 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
    private static final int CHUNK_SIZE = 512;
    
    private boolean createTempFiles;
+   private int fileSizeThreshold;
+   private int maxRequestMemory;
+   private UploadBudget budget;
+   
+   // bytes of uploaded files held in memory by this request
+   private long memoryInUse;
    
    private String encoding = null;
    
@@ -86,8 +97,7 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
       public void complete()
          throws UnsupportedEncodingException
       {
-         String val = encoding == null ? new String(buf.toByteArray()) :
-                                         new String(buf.toByteArray(), encoding);
+         String val = encoding == null ? buf.toString() : buf.toString(encoding);
          if (value == null)
          {
             value = val;
@@ -118,8 +128,9 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
       private String contentType;
       private int fileSize;
            
-      private ByteArrayOutputStream bOut = null;
-      private FileOutputStream fOut = null;
+      private byte[] data = null;
+      private int count;
+      private FileChannel channel = null;
       private File tempFile = null;
       
       public FileParam(String name)
@@ -158,7 +169,8 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
          {
             tempFile = File.createTempFile(new UID().toString().replace(":", "-"), ".upload");
             tempFile.deleteOnExit();
-            fOut = new FileOutputStream(tempFile);            
+            channel = new FileOutputStream(tempFile).getChannel();
+            if (budget != null) budget.spilledFile();
          }
          catch (IOException ex)
          {
@@ -170,59 +182,107 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
       public void appendData(byte[] data, int start, int length)
          throws IOException
       {
-         if (fOut != null)
+         if (channel == null && !reserveMemory(count, length))
+         {
+            spill();
+         }
+         
+         if (channel != null)
          {
-            fOut.write(data, start, length);
-            fOut.flush();
+            write(data, start, length);
+            if (budget != null) budget.spilled(length);
          }
          else
          {
-            if (bOut == null) bOut = new ByteArrayOutputStream();
-            bOut.write(data, start, length);
+            ensureCapacity(count + length);
+            System.arraycopy(data, start, this.data, count, length);
+            count += length;
+            if (budget != null) budget.buffered(length);
          }
          
          fileSize += length;
       }
       
-      public byte[] getData()
+      private void ensureCapacity(int capacity)
+      {
+         if (data == null)
+         {
+            data = new byte[Math.max(capacity, CHUNK_SIZE)];
+         }
+         else if (capacity > data.length)
+         {
+            int grown = fileSizeThreshold > 0 ? 
+                     Math.min(data.length * 2, fileSizeThreshold) : data.length * 2;
+            data = Arrays.copyOf(data, Math.max(capacity, grown));
+         }
+      }
+      
+      /**
+       * Move the data held in memory to a temporary file, and write
+       * any further data straight to the file
+       */
+      private void spill() throws IOException
+      {
+         createTempFile();
+         if (count > 0)
+         {
+            write(data, 0, count);
+            releaseMemory(count);
+            if (budget != null) budget.spilled(count);
+         }
+         data = null;
+         count = 0;
+      }
+      
+      private void write(byte[] data, int start, int length) throws IOException
+      {
+         ByteBuffer buffer = ByteBuffer.wrap(data, start, length);
+         while (buffer.hasRemaining())
+         {
+            channel.write(buffer);
+         }
+      }
+      
+      private void closeChannel()
       {
-         if (fOut != null)
+         if (channel != null)
          {
             try
             {
-               fOut.close();
+               channel.close();
             }
             catch (IOException ex) {}
-            fOut = null;
+            channel = null;
          }
+      }
+      
+      public byte[] getData()
+      {
+         closeChannel();
          
-         if (bOut != null)
+         if (tempFile == null)
          {
-            return bOut.toByteArray();
+            //a copy, so that the caller cannot change what getInputStream() reads
+            return data == null ? null : Arrays.copyOf(data, count);
          }
-         else if (tempFile != null)
+         else if (tempFile.exists())
          {
-            if (tempFile.exists())
+            try
             {
+               FileChannel in = new FileInputStream(tempFile).getChannel();
                try
                {
-                  FileInputStream fIn = new FileInputStream(tempFile);
-                  ByteArrayOutputStream bOut = new ByteArrayOutputStream();
-                  byte[] buf = new byte[512];
-                  int read = fIn.read(buf);
-                  while (read != -1)
-                  {
-                     bOut.write(buf, 0, read);
-                     read = fIn.read(buf);
-                  }
-                  bOut.flush();
-
-                  fIn.close();
+                  ByteBuffer buffer = ByteBuffer.allocate( (int) in.size() );
+                  while ( buffer.hasRemaining() && in.read(buffer) != -1 ) {}
                   tempFile.delete();
-                  return bOut.toByteArray();
+                  return buffer.array();
+               }
+               finally
+               {
+                  in.close();
                }
-               catch (IOException ex) { /* too bad? */}
             }
+            catch (IOException ex) { /* too bad? */}
          }
         
         return null;
@@ -230,25 +290,18 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
       
       public InputStream getInputStream()
       {
-         if (fOut != null)
-         {
-            try
-            {
-               fOut.close();
-            }
-            catch (IOException ex) {}
-            fOut = null;
-         }
+         closeChannel();
          
-         if (bOut!=null)
+         if (tempFile == null)
          {
-            return new ByteArrayInputStream(bOut.toByteArray());
+            return data == null ? null : new ByteArrayInputStream(data, 0, count);
          }
-         else if (tempFile!=null)
+         else
          {
             try
             {
-               return new FileInputStream(tempFile) {
+               FileChannel in = new FileInputStream(tempFile).getChannel();
+               return new FilterInputStream( Channels.newInputStream(in) ) {
                   @Override
                   public void close() throws IOException
                   {
@@ -268,10 +321,26 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
 
    public MultipartRequestImpl(HttpServletRequest request, boolean createTempFiles,
             int maxRequestSize)
+   {
+      this(request, createTempFiles, maxRequestSize, 0, 0, null);
+   }
+   
+   /**
+    * @param fileSizeThreshold the size above which an uploaded file is
+    *        written to a temporary file, or 0 for no limit
+    * @param maxRequestMemory the maximum number of bytes of uploaded files 
+    *        this request may hold in memory, or 0 for no limit
+    * @param budget the memory shared by all requests, or null
+    */
+   public MultipartRequestImpl(HttpServletRequest request, boolean createTempFiles,
+            int maxRequestSize, int fileSizeThreshold, int maxRequestMemory, UploadBudget budget)
    {
       super(request);
       this.request = request;
       this.createTempFiles = createTempFiles;
+      this.fileSizeThreshold = fileSizeThreshold;
+      this.maxRequestMemory = maxRequestMemory;
+      this.budget = budget;
       
       String contentLength = request.getHeader("Content-Length");
       if (contentLength != null && maxRequestSize > 0 && 
@@ -281,6 +350,34 @@ public class MultipartRequestImpl extends HttpServletRequestWrapper implements M
       }
    }
 
+   /**
+    * @return true if the data may be held in memory
+    */
+   private boolean reserveMemory(int fileSize, int length)
+   {
+      if (fileSizeThreshold > 0 && fileSize + length > fileSizeThreshold) return false;
+      if (maxRequestMemory > 0 && memoryInUse + length > maxRequestMemory) return false;
+      if (budget != null && !budget.reserve(length)) return false;
+      memoryInUse += length;
+      return true;
+   }
+   
+   private void releaseMemory(int length)
+   {
+      memoryInUse -= length;
+      if (budget != null) budget.release(length);
+   }
+   
+   /**
+    * Return the memory held by the uploaded files of this request to 
+    * the shared budget, once the request has been processed
+    */
+   public void release()
+   {
+      if (budget != null) budget.release(memoryInUse);
+      memoryInUse = 0;
+   }
+   
    private void parseRequest()
    {               
       byte[] boundaryMarker = getBoundaryMarker(request.getContentType());
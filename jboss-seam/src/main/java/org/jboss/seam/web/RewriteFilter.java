@@ -3,8 +3,7 @@ package org.jboss.seam.web;
 import static org.jboss.seam.ScopeType.APPLICATION;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.servlet.FilterChain;
@@ -23,7 +22,6 @@ import org.jboss.seam.annotations.intercept.BypassInterceptors;
 import org.jboss.seam.annotations.web.Filter;
 import org.jboss.seam.log.LogProvider;
 import org.jboss.seam.log.Logging;
-import org.jboss.seam.navigation.Page;
 import org.jboss.seam.navigation.Pages;
 
 @Scope(APPLICATION)
@@ -38,6 +36,8 @@ public class RewriteFilter
 
     private String viewMapping;
     
+    private volatile RewriteRules rules;
+    
     
     public void doFilter(ServletRequest request, 
                          ServletResponse response, 
@@ -45,18 +45,18 @@ public class RewriteFilter
         throws IOException, 
                ServletException 
     {
-        List<Pattern> allPatterns = getAllPatterns();
+        RewriteRules rules = getRules();
         
         boolean done = false;
         
         if (request instanceof HttpServletRequest && response instanceof HttpServletResponse) {
             response = new RewritingResponse((HttpServletRequest) request,
                     (HttpServletResponse)response,
-                    allPatterns);
+                    rules);
             
             done = process((HttpServletRequest) request, 
                            (HttpServletResponse) response,
-                            allPatterns);
+                            rules);
         }
                 
        if (!done) {
@@ -65,11 +65,18 @@ public class RewriteFilter
     }
     
     
-    @SuppressWarnings("unchecked")
     public boolean process(HttpServletRequest request, 
                         HttpServletResponse response, List<Pattern> patterns)
         throws IOException, 
                ServletException 
+    {
+        return process(request, response, new RewriteRules(patterns, null));
+    }
+    
+    private boolean process(HttpServletRequest request, 
+                        HttpServletResponse response, RewriteRules rules)
+        throws IOException, 
+               ServletException 
     {
         String fullPath = request.getRequestURI();
         //log.debug("incoming URL is " + fullPath);
@@ -77,7 +84,7 @@ public class RewriteFilter
 
         String localPath = strip(fullPath, request.getContextPath());
        
-        Rewrite rewrite = matchPatterns(localPath, patterns);
+        Rewrite rewrite = rules.matchIncoming(localPath);
         if (rewrite!=null) {
             String newPath = rewrite.rewrite();
             
@@ -104,16 +111,6 @@ public class RewriteFilter
     }
 
 
-    private Rewrite matchPatterns(String localPath, List<Pattern> patterns) {
-        for (Pattern pattern: patterns) {
-            Rewrite rewrite = pattern.matchIncoming(localPath);
-            if (rewrite!=null && rewrite.isMatch()) {
-                return rewrite;
-            }
-        }
-        return null;
-    }
-
     private String strip(String fullPath, String contextPath) {
         if (fullPath.startsWith(contextPath)) {
             return fullPath.substring(contextPath.length());
@@ -123,27 +120,26 @@ public class RewriteFilter
     }
     
     
-    private List<Pattern> getAllPatterns() {
-        List<Pattern> allPatterns = new ArrayList<Pattern>();
-        
+    /**
+     * The rules are compiled from the rewrite patterns of the pages,
+     * and recompiled when the pages are redeployed
+     */
+    private RewriteRules getRules() {
+        List<Pattern> patterns;
         Pages pages = (Pages) getServletContext().getAttribute(Seam.getComponentName(Pages.class));
         if (pages != null) {
-            Collection<String> ids = pages.getKnownViewIds();
-
-            for (String id: ids) {
-                 Page page = pages.getPage(id);
-                 allPatterns.addAll(page.getRewritePatterns());
-            }
+            patterns = pages.getRewritePatterns();
         } else {
             log.warn("Pages is null for incoming request!");
+            patterns = Collections.emptyList();
         }
         
-        ServletMapping mapping = new ServletMapping(getViewMapping());
-        for (Pattern pattern: allPatterns) {
-            pattern.setViewMapping(mapping);
+        RewriteRules current = rules;
+        if (current == null || !current.isCompiledFrom(patterns)) {
+            current = new RewriteRules(patterns, new ServletMapping(getViewMapping()));
+            rules = current;
         }
-        
-        return allPatterns;
+        return current;
     }
 
 
@@ -0,0 +1,201 @@
+package org.jboss.seam.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.seam.log.LogProvider;
+import org.jboss.seam.log.Logging;
+
+/**
+ * The rewrite patterns of all pages, compiled once and indexed
+ * so that a URL is only tried against the patterns that could
+ * match it. Incoming patterns are indexed by their first path
+ * segment, when it contains no argument, and outgoing patterns
+ * by the URL of their view id. Patterns are still tried in the
+ * order they were given, and the first match wins.
+ */
+public class RewriteRules
+{
+    private static LogProvider log = Logging.getLogProvider(RewriteRules.class);
+
+    private final Collection<Pattern> patterns;
+    private final ServletMapping viewMapping;
+
+    private final Map<String, List<IndexedPattern>> incomingBySegment = new HashMap<String, List<IndexedPattern>>();
+    private final List<IndexedPattern> unindexedIncoming = new ArrayList<IndexedPattern>();
+    private final Map<String, List<Pattern>> outgoingByURL = new HashMap<String, List<Pattern>>();
+    private final List<Pattern> unindexedOutgoing = new ArrayList<Pattern>();
+
+    static class IndexedPattern {
+        final int position;
+        final Pattern pattern;
+
+        IndexedPattern(int position, Pattern pattern) {
+            this.position = position;
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * @param patterns the patterns, in the order they should be tried
+     * @param viewMapping the mapping of the faces servlet, or null if
+     *        the view mapping of the patterns has already been set
+     */
+    public RewriteRules(Collection<Pattern> patterns, ServletMapping viewMapping) {
+        this.patterns = patterns;
+        this.viewMapping = viewMapping;
+
+        int position = 0;
+        for (Pattern pattern: patterns) {
+            if (viewMapping != null) {
+                pattern.setViewMapping(viewMapping);
+            }
+            try {
+                //compile the regular expressions now, rather than on the first request
+                pattern.inPattern();
+                pattern.outPattern();
+            } catch (IllegalArgumentException e) {
+                log.warn("ignoring invalid rewrite pattern " + pattern + ": " + e.getMessage());
+                continue;
+            }
+
+            IndexedPattern indexed = new IndexedPattern(position++, pattern);
+            String segment = patternSegment(pattern.pattern);
+            if (segment == null) {
+                unindexedIncoming.add(indexed);
+            } else {
+                add(incomingBySegment, segment, indexed);
+            }
+
+            if (viewMapping == null) {
+                unindexedOutgoing.add(pattern);
+            } else {
+                String url = viewMapping.getViewIdKey(pattern.view);
+                if (url != null) {
+                    add(outgoingByURL, url, pattern);
+                }
+            }
+        }
+    }
+
+    private static <T> void add(Map<String, List<T>> index, String key, T value) {
+        List<T> list = index.get(key);
+        if (list == null) {
+            list = new ArrayList<T>(1);
+            index.put(key, list);
+        }
+        list.add(value);
+    }
+
+    /**
+     * @return true if the rules were compiled from the given patterns
+     */
+    public boolean isCompiledFrom(Collection<Pattern> patterns) {
+        return this.patterns == patterns;
+    }
+
+    /**
+     * @return the first literal path segment of the pattern,
+     * or null if the segment contains an argument
+     */
+    private static String patternSegment(String pattern) {
+        if (!pattern.startsWith("/")) {
+            return null;
+        }
+        int end = pattern.indexOf('/', 1);
+        String segment = end == -1 ? pattern.substring(1) : pattern.substring(1, end);
+        return segment.indexOf('{') == -1 ? segment : null;
+    }
+
+    /**
+     * @return the first path segment of the path, or null if
+     * the path is not absolute
+     */
+    private static String pathSegment(String path) {
+        if (!path.startsWith("/")) {
+            return null;
+        }
+        int end = 1;
+        while (end < path.length() && path.charAt(end) != '/' && path.charAt(end) != '?') {
+            end++;
+        }
+        return path.substring(1, end);
+    }
+
+    /**
+     * Find the first pattern that matches an incoming path
+     *
+     * @param localPath the path, relative to the context path
+     * @return the rewrite, or null if no pattern matches
+     */
+    public Rewrite matchIncoming(String localPath) {
+        String segment = pathSegment(localPath);
+        List<IndexedPattern> indexed = segment == null ? null : incomingBySegment.get(segment);
+        if (indexed == null) {
+            return matchIncoming(localPath, unindexedIncoming);
+        } else if (unindexedIncoming.isEmpty()) {
+            return matchIncoming(localPath, indexed);
+        }
+
+        //merge the two lists, preserving the order of the patterns
+        int i = 0;
+        int j = 0;
+        while (i < indexed.size() || j < unindexedIncoming.size()) {
+            IndexedPattern next;
+            if (j == unindexedIncoming.size() ||
+                    (i < indexed.size() && indexed.get(i).position < unindexedIncoming.get(j).position)) {
+                next = indexed.get(i++);
+            } else {
+                next = unindexedIncoming.get(j++);
+            }
+            Rewrite rewrite = next.pattern.matchIncoming(localPath);
+            if (rewrite != null) {
+                return rewrite;
+            }
+        }
+        return null;
+    }
+
+    private Rewrite matchIncoming(String localPath, List<IndexedPattern> candidates) {
+        for (IndexedPattern candidate: candidates) {
+            Rewrite rewrite = candidate.pattern.matchIncoming(localPath);
+            if (rewrite != null) {
+                return rewrite;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first pattern that matches an outgoing path
+     *
+     * @param path the path, relative to the context path,
+     *        with its query string
+     * @return the rewrite, or null if no pattern matches
+     */
+    public Rewrite matchOutgoing(String path) {
+        List<Pattern> candidates = unindexedOutgoing;
+        if (viewMapping != null) {
+            if (outgoingByURL.isEmpty()) {
+                return null;
+            }
+            int queryPos = path.indexOf('?');
+            String base = queryPos == -1 ? path : path.substring(0, queryPos);
+            candidates = outgoingByURL.get(viewMapping.getURLKey(base));
+            if (candidates == null) {
+                return null;
+            }
+        }
+
+        for (Pattern pattern: candidates) {
+            Rewrite rewrite = pattern.matchOutgoing(path);
+            if (rewrite != null) {
+                return rewrite;
+            }
+        }
+        return null;
+    }
+}
@@ -18,16 +18,23 @@ public class RewritingResponse
     private static LogProvider log = Logging.getLogProvider(RewritingResponse.class);
 
     private HttpServletRequest request;
-    private Collection<Pattern> patterns;
+    private RewriteRules rules;
 
     public RewritingResponse(HttpServletRequest request, 
             HttpServletResponse response, 
             Collection<Pattern> patterns) 
+    {
+        this(request, response, new RewriteRules(patterns, null));
+    }   
+
+    public RewritingResponse(HttpServletRequest request, 
+            HttpServletResponse response, 
+            RewriteRules rules) 
     {
         super(response);
 
-        this.request  = request;
-        this.patterns = patterns;   
+        this.request = request;
+        this.rules   = rules;   
     }   
 
     @Override
@@ -81,11 +88,9 @@ public class RewritingResponse
         String path = originalPath.startsWith(contextPath) ? 
                       originalPath.substring(contextPath.length()) : originalPath;
                       
-        for (Pattern pattern: patterns) {
-            Rewrite rewrite = pattern.matchOutgoing(path);
-            if (rewrite != null) {
-                return request.getContextPath() + rewrite.rewrite();
-            }
+        Rewrite rewrite = rules.matchOutgoing(path);
+        if (rewrite != null) {
+            return request.getContextPath() + rewrite.rewrite();
         }
 
         return originalPath;
@@ -48,4 +48,32 @@ public class ServletMapping {
         return false;        
     }
 
+    /**
+     * @return a key for the URLs of the view id, such that a URL
+     *         is mapped to the view id if and only if getURLKey() 
+     *         returns the same key for it, or null if no URL is
+     *         mapped to the view id
+     * @see #isMapped(String, String)
+     */
+    public String getViewIdKey(String viewId) {
+        if (mapping.startsWith("*.")) {
+            return stripExtension(viewId);
+        } else if (mapping.endsWith("/*")) {
+            return mapping.substring(0,mapping.length()-2) + viewId;
+        }
+        return null;
+    }
+
+    /**
+     * @see #getViewIdKey(String)
+     */
+    public String getURLKey(String baseURL) {
+        if (mapping.startsWith("*.")) {
+            return stripExtension(baseURL);
+        } else if (mapping.endsWith("/*")) {
+            return baseURL;
+        }
+        return null;
+    }
+
 }
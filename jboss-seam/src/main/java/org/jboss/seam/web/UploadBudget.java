@@ -0,0 +1,113 @@
+package org.jboss.seam.web;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the memory used by file uploads which are held
+ * in memory by all multipart requests, and of how many bytes were
+ * held in memory or written to temporary files.
+ *
+ * @see MultipartFilter
+ */
+public class UploadBudget
+{
+   private final long maxMemory;
+
+   private final AtomicLong memoryInUse = new AtomicLong();
+   private final AtomicLong bufferedBytes = new AtomicLong();
+   private final AtomicLong spilledBytes = new AtomicLong();
+   private final AtomicLong spilledFiles = new AtomicLong();
+
+   /**
+    * @param maxMemory the maximum number of bytes of uploaded files
+    * held in memory at once, or 0 for no limit
+    */
+   public UploadBudget(long maxMemory)
+   {
+      this.maxMemory = maxMemory;
+   }
+
+   /**
+    * Reserve memory for uploaded data
+    *
+    * @return false if there is not enough memory left, and the
+    * data should be written to a temporary file
+    */
+   boolean reserve(int bytes)
+   {
+      if (maxMemory <= 0)
+      {
+         memoryInUse.addAndGet(bytes);
+         return true;
+      }
+
+      long inUse = memoryInUse.get();
+      while (inUse + bytes <= maxMemory)
+      {
+         if ( memoryInUse.compareAndSet(inUse, inUse + bytes) )
+         {
+            return true;
+         }
+         inUse = memoryInUse.get();
+      }
+      return false;
+   }
+
+   void release(long bytes)
+   {
+      memoryInUse.addAndGet(-bytes);
+   }
+
+   void buffered(int bytes)
+   {
+      bufferedBytes.addAndGet(bytes);
+   }
+
+   void spilled(int bytes)
+   {
+      spilledBytes.addAndGet(bytes);
+   }
+
+   void spilledFile()
+   {
+      spilledFiles.incrementAndGet();
+   }
+
+   public long getMaxMemory()
+   {
+      return maxMemory;
+   }
+
+   /**
+    * The number of bytes of uploaded files currently held in memory
+    */
+   public long getMemoryInUse()
+   {
+      return memoryInUse.get();
+   }
+
+   /**
+    * The total number of bytes of uploaded files held in memory
+    */
+   public long getBufferedBytes()
+   {
+      return bufferedBytes.get();
+   }
+
+   /**
+    * The total number of bytes of uploaded files written to
+    * temporary files
+    */
+   public long getSpilledBytes()
+   {
+      return spilledBytes.get();
+   }
+
+   /**
+    * The number of temporary files written
+    */
+   public long getSpilledFiles()
+   {
+      return spilledFiles.get();
+   }
+}
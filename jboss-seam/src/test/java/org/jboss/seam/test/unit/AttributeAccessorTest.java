@@ -0,0 +1,82 @@
+package org.jboss.seam.test.unit;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.seam.util.AttributeAccessor;
+import org.jboss.seam.util.AttributeAccessorFactory;
+import org.jboss.seam.util.Reflections;
+import org.testng.annotations.Test;
+
+public class AttributeAccessorTest
+{
+   @Test
+   public void testIsAccessible() throws Exception
+   {
+      assert AttributeAccessorFactory.isAccessible( AttributeBean.class, field("name") );
+      assert AttributeAccessorFactory.isAccessible( AttributeBean.class, field("foo") );
+      assert AttributeAccessorFactory.isAccessible( AttributeBean.class, AttributeBean.class.getMethod("getBar") );
+      assert AttributeAccessorFactory.isAccessible( AttributeBean.class, AttributeBean.class.getMethod("setBar", Bar.class) );
+      
+      assert !AttributeAccessorFactory.isAccessible( AttributeBean.class, field("hidden") );
+      assert !AttributeAccessorFactory.isAccessible( AttributeBean.class, field("count") );
+      assert !AttributeAccessorFactory.isAccessible( AttributeBean.class, field("constant") );
+      // the type of the field is private to the bean class
+      assert !AttributeAccessorFactory.isAccessible( AttributeBean.class, field("secret") );
+   }
+   
+   @Test
+   public void testGeneratedAccessorMatchesReflection() throws Exception
+   {
+      Field name = field("name");
+      Field foo = field("foo");
+      Method getBar = AttributeBean.class.getMethod("getBar");
+      Method setBar = AttributeBean.class.getMethod("setBar", Bar.class);
+      List<Member> members = Arrays.<Member>asList(name, foo, getBar, setBar);
+      
+      AttributeAccessor accessor = AttributeAccessorFactory.create(AttributeBean.class, members);
+      assert accessor != null;
+      
+      AttributeBean bean = new AttributeBean();
+      bean.name = "seam";
+      bean.foo = new Foo();
+      bean.setBar( new Bar() );
+      
+      assert accessor.get(bean, 0) == Reflections.get(name, bean);
+      assert accessor.get(bean, 1) == Reflections.get(foo, bean);
+      assert accessor.get(bean, 2) == Reflections.invoke(getBar, bean);
+      
+      Foo otherFoo = new Foo();
+      Bar otherBar = new Bar();
+      accessor.set(bean, 0, "other");
+      accessor.set(bean, 1, otherFoo);
+      accessor.set(bean, 3, otherBar);
+      assert "other".equals( Reflections.get(name, bean) );
+      assert Reflections.get(foo, bean) == otherFoo;
+      assert Reflections.invoke(getBar, bean) == otherBar;
+      
+      try
+      {
+         // a setter cannot be read
+         accessor.get(bean, 3);
+         assert false;
+      }
+      catch (IllegalArgumentException e) {}
+      
+      try
+      {
+         // a getter cannot be written
+         accessor.set(bean, 2, otherBar);
+         assert false;
+      }
+      catch (IllegalArgumentException e) {}
+   }
+   
+   private Field field(String name) throws Exception
+   {
+      return AttributeBean.class.getDeclaredField(name);
+   }
+}
@@ -0,0 +1,33 @@
+package org.jboss.seam.test.unit;
+
+/**
+ * A bean with attributes the generated accessor can and cannot reach
+ */
+public class AttributeBean
+{
+   public String name;
+   
+   Foo foo;
+   
+   private Bar bar;
+   
+   private String hidden;
+   
+   int count;
+   
+   final String constant = "constant";
+   
+   Secret secret;
+   
+   private static class Secret {}
+   
+   public Bar getBar()
+   {
+      return bar;
+   }
+   
+   public void setBar(Bar bar)
+   {
+      this.bar = bar;
+   }
+}
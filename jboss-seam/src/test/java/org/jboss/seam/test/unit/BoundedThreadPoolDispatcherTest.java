@@ -0,0 +1,191 @@
+package org.jboss.seam.test.unit;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.async.AbstractDispatcher;
+import org.jboss.seam.async.BoundedThreadPoolDispatcher;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Events;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BoundedThreadPoolDispatcherTest
+{
+   private static final String BLOCK = "block";
+   private static final String RECORD = "record";
+   
+   private MockServletContext servletContext;
+   private BoundedThreadPoolDispatcher dispatcher;
+   
+   @BeforeMethod
+   public void setup() throws Exception
+   {
+      servletContext = new MockServletContext()
+      {
+         @Override
+         public String getContextPath()
+         {
+            return "/shop";
+         }
+      };
+      ServletLifecycle.beginApplication(servletContext);
+      Context appContext = new ApplicationContext( new ServletApplicationMap(servletContext) );
+      installComponent(appContext, Events.class);
+      installComponent(appContext, Manager.class);
+      installComponent(appContext, Listener.class);
+      Init init = new Init();
+      Component listener = new Component(Listener.class);
+      init.addObserverMethod( BLOCK, Listener.class.getMethod("block"), listener, true );
+      init.addObserverMethod( RECORD, Listener.class.getMethod("record"), listener, true );
+      appContext.set( Seam.getComponentName(Init.class), init );
+      
+      Listener.release = new CountDownLatch(1);
+      Listener.blocked = new CountDownLatch(1);
+      Listener.thread = null;
+      Listener.eventContext = null;
+      Listener.executingAsynchronousCall = false;
+      
+      dispatcher = new BoundedThreadPoolDispatcher();
+      dispatcher.setThreadPoolSize(1);
+      dispatcher.setQueueSize(1);
+      
+      // calls are scheduled from a request
+      Lifecycle.beginCall();
+   }
+   
+   @AfterMethod
+   public void cleanup()
+   {
+      Lifecycle.endCall();
+      Listener.release.countDown();
+      dispatcher.destroy();
+      ServletLifecycle.endApplication();
+   }
+   
+   @Test
+   public void testObjectName()
+   {
+      assert "org.jboss.seam:service=AsynchronousDispatcher,application=\"/shop\"".equals( dispatcher.getObjectName() );
+      dispatcher.setObjectName("org.jboss.seam:service=AsynchronousDispatcher,application=shop");
+      assert "org.jboss.seam:service=AsynchronousDispatcher,application=shop".equals( dispatcher.getObjectName() );
+      dispatcher.startup();
+   }
+   
+   @Test
+   public void testAbort() throws Exception
+   {
+      dispatcher.startup();
+      fillQueue();
+      try
+      {
+         dispatcher.scheduleAsynchronousEvent(RECORD);
+         assert false : "the queue is full";
+      }
+      catch (RejectedExecutionException ree) {}
+      assert dispatcher.getRejectedCount() == 1;
+      assert dispatcher.getCallerRunsCount() == 0;
+   }
+   
+   @Test
+   public void testCallerRuns() throws Exception
+   {
+      dispatcher.setRejectionPolicy(BoundedThreadPoolDispatcher.CALLER_RUNS);
+      dispatcher.startup();
+      fillQueue();
+      
+      Context eventContext = Contexts.getEventContext();
+      Future future = dispatcher.scheduleAsynchronousEvent(RECORD);
+      assert future.isDone();
+      assert dispatcher.getCallerRunsCount() == 1;
+      
+      // the call is made by this thread, but not in its contexts
+      assert Listener.thread == Thread.currentThread();
+      assert Listener.executingAsynchronousCall;
+      assert Listener.eventContext != eventContext;
+      assert Contexts.getEventContext() == eventContext;
+      assert !eventContext.isSet(AbstractDispatcher.EXECUTING_ASYNCHRONOUS_CALL);
+   }
+   
+   @Test
+   public void testCoalesceEvents() throws Exception
+   {
+      dispatcher.setCoalesceEvents(true);
+      dispatcher.startup();
+      occupyThread();
+      
+      Future future = dispatcher.scheduleAsynchronousEvent(RECORD, "foo");
+      assert dispatcher.scheduleAsynchronousEvent(RECORD, "foo") == future;
+      assert dispatcher.getCoalescedCount() == 1;
+      
+      Listener.release.countDown();
+      future.get(5, TimeUnit.SECONDS);
+      assert dispatcher.getCompletedCount() == 2;
+   }
+   
+   /**
+    * Occupy the only thread of the pool
+    */
+   private void occupyThread() throws Exception
+   {
+      dispatcher.scheduleAsynchronousEvent(BLOCK);
+      assert Listener.blocked.await(5, TimeUnit.SECONDS);
+   }
+   
+   /**
+    * Occupy the only thread and the only place in the queue
+    */
+   private void fillQueue() throws Exception
+   {
+      occupyThread();
+      dispatcher.scheduleAsynchronousEvent(BLOCK);
+      assert dispatcher.getQueueDepth() == 1;
+   }
+   
+   private void installComponent(Context appContext, Class clazz)
+   {
+      appContext.set( Seam.getComponentName(clazz) + ".component", new Component(clazz) );
+   }
+   
+   @Name("asynchronousListener")
+   @Scope(ScopeType.APPLICATION)
+   @BypassInterceptors
+   public static class Listener
+   {
+      static volatile CountDownLatch blocked;
+      static volatile CountDownLatch release;
+      static volatile Thread thread;
+      static volatile Context eventContext;
+      static volatile boolean executingAsynchronousCall;
+      
+      public void block() throws InterruptedException
+      {
+         blocked.countDown();
+         release.await(5, TimeUnit.SECONDS);
+      }
+      
+      public void record()
+      {
+         thread = Thread.currentThread();
+         eventContext = Contexts.getEventContext();
+         executingAsynchronousCall = eventContext.isSet(AbstractDispatcher.EXECUTING_ASYNCHRONOUS_CALL);
+      }
+   }
+}
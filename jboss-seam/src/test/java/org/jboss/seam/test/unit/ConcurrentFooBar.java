@@ -0,0 +1,11 @@
+package org.jboss.seam.test.unit;
+
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.annotations.ConcurrentBijection;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+
+@Name("concurrentFooBar")
+@Scope(ScopeType.APPLICATION)
+@ConcurrentBijection
+public class ConcurrentFooBar extends FooBar {}
@@ -1,11 +1,20 @@
 //$Id: ContextTest.java 11208 2009-06-25 14:55:53Z manaRH $
 package org.jboss.seam.test.unit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.Map;
 
 import javax.el.ELContext;
 import javax.faces.context.ExternalContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSessionActivationListener;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import javax.servlet.http.HttpSessionEvent;
 
 import org.jboss.seam.Component;
 import org.jboss.seam.Namespace;
@@ -115,8 +124,9 @@ public class ContextTest {
         assert !Contexts.isSessionContextActive();
         assert !Contexts.isConversationContextActive();
         assert !Contexts.isApplicationContextActive();
+        // foo, zzz and the variables of conversation 3
         assert ((MockHttpSession) externalContext.getSession(false))
-                .getAttributes().size() == 4;
+                .getAttributes().size() == 3;
         assert ((MockServletContext) externalContext.getContext())
                 .getAttributes().size() == 12;
 
@@ -195,6 +205,43 @@ public class ContextTest {
 
     }
 
+    @Test
+    public void testLookupInStatefulContexts() {
+        MockServletContext servletContext = new MockServletContext();
+        ServletLifecycle.beginApplication(servletContext);
+        MockExternalContext externalContext = new MockExternalContext(
+                servletContext);
+        Context appContext = new ApplicationContext(externalContext
+                .getApplicationMap());
+        installComponent(appContext, ConversationEntries.class);
+        installComponent(appContext, Manager.class);
+        installComponent(appContext, Session.class);
+        installComponent(appContext, ServletContexts.class);
+        appContext.set(Seam.getComponentName(Init.class), new Init());
+
+        FacesLifecycle.beginRequest(externalContext);
+        Manager.instance().setCurrentConversationId("4");
+        FacesLifecycle.resumeConversation(externalContext);
+
+        assert Contexts.lookupInStatefulContexts("shadowed") == null;
+        Contexts.getSessionContext().set("shadowed", "session");
+        assert "session".equals(Contexts.lookupInStatefulContexts("shadowed"));
+
+        // a narrower context must still win once the variable is known to be in the session
+        Contexts.getConversationContext().set("shadowed", "conversation");
+        assert "conversation".equals(Contexts.lookupInStatefulContexts("shadowed"));
+        Contexts.getConversationContext().remove("shadowed");
+        assert "session".equals(Contexts.lookupInStatefulContexts("shadowed"));
+
+        Contexts.getEventContext().set("shadowed", "event");
+        assert "event".equals(Contexts.lookupInStatefulContexts("shadowed"));
+        Contexts.getEventContext().remove("shadowed");
+        assert "session".equals(Contexts.lookupInStatefulContexts("shadowed"));
+
+        FacesLifecycle.endRequest(externalContext);
+        ServletLifecycle.endApplication();
+    }
+
     @Test
     public void testContexts() {
         MockServletContext servletContext = new MockServletContext();
@@ -239,6 +286,95 @@ public class ContextTest {
         ServletLifecycle.endApplication();
     }
     
+    @Test
+    public void testConversationPassivation() throws Exception {
+        MockServletContext servletContext = new MockServletContext();
+        ServletLifecycle.beginApplication(servletContext);
+        MockHttpSession session = new MockHttpSession(servletContext);
+        MockHttpServletRequest request = new MockHttpServletRequest(session);
+        ExternalContext externalContext = new MockExternalContext(
+                servletContext, request);
+        Map sessionAdaptor = new ServletRequestSessionMap(request);
+        Context appContext = new ApplicationContext(externalContext
+                .getApplicationMap());
+        installComponent(appContext, ConversationEntries.class);
+        installComponent(appContext, Manager.class);
+        appContext.set(Seam.getComponentName(Init.class), new Init());
+        FacesLifecycle.beginRequest(externalContext);
+        Manager.instance().setLongRunningConversation(true);
+
+        SessionListener listener = new SessionListener();
+        Context ctx = new ServerConversationContext(sessionAdaptor, "1");
+        ctx.set("listener", listener);
+        ctx.flush();
+
+        // the mock session does not notify its attributes, so act as the container would
+        String key = ServerConversationContext.getSessionKey("1");
+        Object attributes = session.getAttribute(key);
+        ((HttpSessionBindingListener) attributes)
+                .valueBound(new HttpSessionBindingEvent(session, key, attributes));
+        assert listener.bound == 1;
+
+        ((HttpSessionActivationListener) attributes)
+                .sessionWillPassivate(new HttpSessionEvent(session));
+        assert listener.passivated == 1;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(attributes);
+        out.close();
+        attributes = new ObjectInputStream(new ByteArrayInputStream(bytes
+                .toByteArray())).readObject();
+        session.setAttribute(key, attributes);
+        ((HttpSessionActivationListener) attributes)
+                .sessionDidActivate(new HttpSessionEvent(session));
+
+        ctx = new ServerConversationContext(sessionAdaptor, "1");
+        SessionListener activated = (SessionListener) ctx.get("listener");
+        assert activated != listener;
+        assert activated.passivated == 1;
+        assert activated.activated == 1;
+
+        // variables added and removed while the conversation is in the session
+        SessionListener other = new SessionListener();
+        ctx.set("other", other);
+        ctx.remove("listener");
+        ctx.flush();
+        assert other.bound == 1;
+        assert activated.unbound == 1;
+
+        ((HttpSessionBindingListener) session.getAttribute(key))
+                .valueUnbound(new HttpSessionBindingEvent(session, key));
+        assert other.unbound == 1;
+
+        FacesLifecycle.endRequest(externalContext);
+        ServletLifecycle.endApplication();
+    }
+
+    private static class SessionListener implements Serializable,
+            HttpSessionActivationListener, HttpSessionBindingListener {
+        int bound;
+        int unbound;
+        int passivated;
+        int activated;
+
+        public void valueBound(HttpSessionBindingEvent event) {
+            bound++;
+        }
+
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            unbound++;
+        }
+
+        public void sessionWillPassivate(HttpSessionEvent event) {
+            passivated++;
+        }
+
+        public void sessionDidActivate(HttpSessionEvent event) {
+            activated++;
+        }
+    }
+
     private interface ContextCreator {
         Context createContext();
     }
@@ -0,0 +1,133 @@
+package org.jboss.seam.test.unit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.FacesLifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Conversation;
+import org.jboss.seam.core.ConversationEntries;
+import org.jboss.seam.core.ConversationEntry;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockExternalContext;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.web.Parameters;
+import org.jboss.seam.web.ServletContexts;
+import org.jboss.seam.web.Session;
+import org.testng.annotations.Test;
+
+public class ConversationEntriesTest
+{
+   @Test
+   public void testTimeoutIndex()
+   {
+      ConversationEntries entries = new ConversationEntries();
+      ConversationEntry first = entries.createConversationEntry( "1", stack("1") );
+      ConversationEntry second = entries.createConversationEntry( "2", stack("2") );
+      long lastRequestTime = Math.max( first.getLastRequestTime(), second.getLastRequestTime() );
+      
+      assert entries.getExpiredConversationEntries(lastRequestTime, 1000).isEmpty();
+      
+      // the oldest entry first
+      List<ConversationEntry> expired = entries.getExpiredConversationEntries(lastRequestTime + 1001, 1000);
+      assert expired.size() == 2;
+      assert expired.get(0) == first;
+      assert expired.get(1) == second;
+      
+      // a shorter default timeout applies to entries indexed earlier
+      assert entries.getExpiredConversationEntries(lastRequestTime + 11, 10).size() == 2;
+      
+      entries.removeConversationEntry("1");
+      expired = entries.getExpiredConversationEntries(lastRequestTime + 1001, 1000);
+      assert expired.size() == 1;
+      assert expired.get(0) == second;
+      
+      entries.updateConversationId("2", "3");
+      expired = entries.getExpiredConversationEntries(lastRequestTime + 1001, 1000);
+      assert expired.size() == 1;
+      assert "3".equals( expired.get(0).getId() );
+      
+      entries.removeConversationEntry("3");
+      assert entries.getExpiredConversationEntries(lastRequestTime + 1001, 1000).isEmpty();
+   }
+   
+   @Test
+   public void testConversationTimeout() throws Exception
+   {
+      MockServletContext servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      MockExternalContext externalContext = new MockExternalContext(servletContext);
+      Context appContext = new ApplicationContext( externalContext.getApplicationMap() );
+      installComponent(appContext, ConversationEntries.class);
+      installComponent(appContext, Manager.class);
+      installComponent(appContext, Conversation.class);
+      installComponent(appContext, Session.class);
+      installComponent(appContext, ServletContexts.class);
+      installComponent(appContext, Parameters.class);
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+      
+      // a conversation using the default timeout
+      String defaultTimeoutId = beginConversation(externalContext);
+      endRequest(externalContext);
+      
+      // a conversation with a timeout of its own
+      String ownTimeoutId = beginConversation(externalContext);
+      Conversation.instance().setTimeout(1);
+      // as the JSF phase listener does before rendering
+      new Manager()
+      {
+         {
+            setLongRunningConversation(true);
+            flushConversationMetadata();
+         }
+      };
+      endRequest(externalContext);
+      
+      Thread.sleep(20);
+      
+      // the timeout check runs at the end of every request
+      FacesLifecycle.beginRequest(externalContext);
+      Manager.instance().initializeTemporaryConversation();
+      FacesLifecycle.resumeConversation(externalContext);
+      endRequest(externalContext);
+      
+      ConversationEntries entries = (ConversationEntries) externalContext.getSessionMap()
+            .get( Seam.getComponentName(ConversationEntries.class) );
+      assert entries.getConversationIds().contains(defaultTimeoutId);
+      assert !entries.getConversationIds().contains(ownTimeoutId);
+      
+      ServletLifecycle.endApplication();
+   }
+   
+   private String beginConversation(MockExternalContext externalContext)
+   {
+      FacesLifecycle.beginRequest(externalContext);
+      Manager.instance().initializeTemporaryConversation();
+      FacesLifecycle.resumeConversation(externalContext);
+      Manager.instance().beginConversation();
+      return Manager.instance().getCurrentConversationId();
+   }
+   
+   private void endRequest(MockExternalContext externalContext)
+   {
+      Manager.instance().endRequest( externalContext.getSessionMap() );
+      FacesLifecycle.endRequest(externalContext);
+   }
+   
+   private void installComponent(Context appContext, Class clazz)
+   {
+      appContext.set( Seam.getComponentName(clazz) + ".component", new Component(clazz) );
+   }
+   
+   private List<String> stack(String id)
+   {
+      List<String> stack = new ArrayList<String>();
+      stack.add(id);
+      return stack;
+   }
+}
@@ -0,0 +1,122 @@
+package org.jboss.seam.test.unit;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.FacesLifecycle;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Conversation;
+import org.jboss.seam.core.ConversationEntries;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockExternalContext;
+import org.jboss.seam.mock.MockHttpServletRequest;
+import org.jboss.seam.mock.MockHttpSession;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.web.ConversationReaper;
+import org.jboss.seam.web.Parameters;
+import org.jboss.seam.web.ServletContexts;
+import org.jboss.seam.web.Session;
+import org.testng.annotations.Test;
+
+public class ConversationReaperTest
+{
+   @Test
+   public void testRestoredSession() throws Exception
+   {
+      MockServletContext servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      MockHttpSession session = new MockHttpSession(servletContext)
+      {
+         @Override
+         public String getId()
+         {
+            return "restored";
+         }
+         
+         @Override
+         public Object getAttribute(String name)
+         {
+            if ( isInvalid() )
+            {
+               throw new IllegalStateException("session invalidated");
+            }
+            return super.getAttribute(name);
+         }
+      };
+      MockHttpServletRequest request = new MockHttpServletRequest(session);
+      MockExternalContext externalContext = new MockExternalContext(servletContext, request);
+      Context appContext = new ApplicationContext( externalContext.getApplicationMap() );
+      installComponent(appContext, ConversationEntries.class);
+      installComponent(appContext, Manager.class);
+      installComponent(appContext, Conversation.class);
+      installComponent(appContext, Session.class);
+      installComponent(appContext, ServletContexts.class);
+      installComponent(appContext, Parameters.class);
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+      
+      ConversationReaper reaper = new ConversationReaper();
+      reaper.startup();
+      appContext.set( Seam.getComponentName(ConversationReaper.class), reaper );
+      try
+      {
+         // the reaper never saw this session created
+         assert reaper.getSessionCount() == 0;
+         
+         FacesLifecycle.beginRequest(externalContext);
+         ServletContexts.instance().setRequest(request);
+         Manager.instance().initializeTemporaryConversation();
+         FacesLifecycle.resumeConversation(externalContext);
+         Manager.instance().beginConversation();
+         Conversation.instance().setTimeout(1);
+         new Manager()
+         {
+            {
+               setLongRunningConversation(true);
+               flushConversationMetadata();
+            }
+         };
+         Manager.instance().endRequest( externalContext.getSessionMap() );
+         FacesLifecycle.endRequest(externalContext);
+         
+         assert reaper.getSessionCount() == 1;
+         
+         // a failure that does not come from an invalidated session
+         Lifecycle.beginCall();
+         try
+         {
+            reaper.reap();
+         }
+         finally
+         {
+            Lifecycle.endCall();
+         }
+         assert reaper.getSessionCount() == 1;
+         assert reaper.getExpiredConversationCount() == 0;
+         
+         Thread.sleep(20);
+         reaper.reap();
+         assert reaper.getExpiredConversationCount() == 1;
+         assert reaper.getReclaimedConversationCount() == 1;
+         assert reaper.getLiveConversationCount() == 0;
+         assert reaper.getSessionCount() == 1;
+         
+         // invalidated without the event reaching the reaper
+         session.invalidate();
+         reaper.reap();
+         assert reaper.getSessionCount() == 0;
+      }
+      finally
+      {
+         reaper.destroy();
+         ServletLifecycle.endApplication();
+      }
+   }
+   
+   private void installComponent(Context appContext, Class clazz)
+   {
+      appContext.set( Seam.getComponentName(clazz) + ".component", new Component(clazz) );
+   }
+}
@@ -0,0 +1,100 @@
+package org.jboss.seam.test.unit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.jboss.seam.document.ByteArrayDocumentData;
+import org.jboss.seam.document.DocumentData;
+import org.jboss.seam.document.DocumentData.DocumentType;
+import org.jboss.seam.document.DocumentStore;
+import org.jboss.seam.document.FileDocumentData;
+import org.testng.annotations.Test;
+
+public class DocumentStoreTest
+{
+   private static final DocumentType TEXT = new DocumentType("txt", "text/plain");
+   
+   @Test
+   public void testFileThreshold() throws Exception
+   {
+      DocumentStore store = new DocumentStore();
+      store.setFileThreshold(4);
+      
+      store.saveData("1", new ByteArrayDocumentData("small", TEXT, "abc".getBytes()));
+      store.saveData("2", new ByteArrayDocumentData("large", TEXT, "0123456789".getBytes()));
+      
+      assert store.getDocumentData("1") instanceof ByteArrayDocumentData;
+      assert store.getDocumentData("2") instanceof FileDocumentData;
+      
+      FileDocumentData fileData = (FileDocumentData) store.getDocumentData("2");
+      File file = fileData.getFile();
+      assert file.exists();
+      assertEquals(fileData.getSize(), 10);
+      assertEquals(fileData.getFileName(), "large.txt");
+      
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      fileData.writeDataToStream(out);
+      assertEquals(out.toString(), "0123456789");
+      
+      out.reset();
+      fileData.writeDataToStream(out, 3, 4);
+      assertEquals(out.toString(), "3456");
+      
+      // The file is deleted with the store
+      store.clear();
+      assert !file.exists();
+      assertNull(store.getDocumentData("2"));
+   }
+   
+   @Test
+   public void testRange() throws Exception
+   {
+      DocumentData documentData = new ByteArrayDocumentData("doc", TEXT, "0123456789".getBytes());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      documentData.writeDataToStream(out, 8, 2);
+      assertEquals(out.toString(), "89");
+      
+      // A document of unknown size skips the bytes outside the range
+      documentData = new DocumentData("doc", TEXT)
+      {
+         @Override
+         public void writeDataToStream(OutputStream stream) throws IOException
+         {
+            stream.write("01234".getBytes());
+            stream.write('5');
+            stream.write("6789".getBytes());
+         }
+      };
+      out.reset();
+      documentData.writeDataToStream(out, 4, 3);
+      assertEquals(out.toString(), "456");
+   }
+   
+   @Test
+   public void testLimits()
+   {
+      DocumentStore store = new DocumentStore();
+      store.setMaxDocuments(2);
+      store.setMaxSize(25);
+      
+      store.saveData("1", new ByteArrayDocumentData("one", TEXT, new byte[10]));
+      store.saveData("2", new ByteArrayDocumentData("two", TEXT, new byte[10]));
+      store.saveData("3", new ByteArrayDocumentData("three", TEXT, new byte[10]));
+      
+      // The oldest document is removed first
+      assert !store.idIsValid("1");
+      assert store.idIsValid("2");
+      assert store.idIsValid("3");
+      
+      // A document larger than the limit is kept on its own
+      store.saveData("4", new ByteArrayDocumentData("four", TEXT, new byte[30]));
+      assert !store.idIsValid("2");
+      assert !store.idIsValid("3");
+      assert store.idIsValid("4");
+   }
+}
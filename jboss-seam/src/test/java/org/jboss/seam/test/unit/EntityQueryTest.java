@@ -0,0 +1,315 @@
+package org.jboss.seam.test.unit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.framework.EntityQuery;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs an EntityQuery against an entity manager which pages through
+ * ten items ordered by id, and records the queries it is given
+ */
+public class EntityQueryTest extends AbstractPageTest
+{
+   private List<RecordedQuery> queries;
+   private EntityManager entityManager;
+
+   @BeforeMethod
+   public void createEntityManager()
+   {
+      queries = new ArrayList<RecordedQuery>();
+      entityManager = (EntityManager) Proxy.newProxyInstance( getClass().getClassLoader(),
+            new Class[] { EntityManager.class }, new InvocationHandler()
+      {
+         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+         {
+            if ( method.getName().equals("createQuery") )
+            {
+               RecordedQuery query = new RecordedQuery( (String) args[0] );
+               queries.add(query);
+               return query.proxy;
+            }
+            throw new UnsupportedOperationException( method.getName() );
+         }
+      } );
+   }
+
+   @Test
+   public void testKeysetPages()
+   {
+      ItemQuery query = createQuery("select i from Item i");
+
+      assertEquals( ids( query.getResultList() ), Arrays.asList(1L, 2L, 3L) );
+      assertTrue( query.isNextExists() );
+      query.next();
+      assertEquals( ids( query.getResultList() ), Arrays.asList(4L, 5L, 6L) );
+      assertSeek(3L);
+      query.next();
+      assertEquals( ids( query.getResultList() ), Arrays.asList(7L, 8L, 9L) );
+      assertSeek(6L);
+      query.next();
+      assertEquals( ids( query.getResultList() ), Arrays.asList(10L) );
+      assertSeek(9L);
+      assertFalse( query.isNextExists() );
+   }
+
+   @Test
+   public void testKeysetDroppedOnParameterChange()
+   {
+      ItemQuery query = createQuery("select i from Item i");
+      // an empty restriction parameter is left out of the query
+      Contexts.getEventContext().set("prefix", "");
+      query.setRestrictionExpressionStrings( Arrays.asList("i.name like #{prefix}") );
+
+      query.getResultList();
+      query.next();
+      query.getResultList();
+      assertSeek(3L);
+
+      Contexts.getEventContext().set("prefix", "banana%");
+      assertEquals( ids( query.getResultList() ), Arrays.asList(9L, 10L) );
+      assertOffset(3);
+
+      // the values read with the other parameter are forgotten
+      Contexts.getEventContext().set("prefix", "");
+      assertEquals( ids( query.getResultList() ), Arrays.asList(4L, 5L, 6L) );
+      assertOffset(3);
+   }
+
+   @Test
+   public void testKeysetDroppedOnPageSizeChange()
+   {
+      ItemQuery query = createQuery("select i from Item i");
+
+      query.getResultList();
+      query.next();
+      query.getResultList();
+      assertSeek(3L);
+
+      query.setMaxResults(2);
+      assertEquals( ids( query.getResultList() ), Arrays.asList(4L, 5L) );
+      assertOffset(3);
+      query.next();
+      assertEquals( ids( query.getResultList() ), Arrays.asList(6L, 7L) );
+      assertSeek(5L);
+   }
+
+   @Test
+   public void testOffsetForOtherOrderColumn()
+   {
+      ItemQuery query = createQuery("select i from Item i");
+      query.setOrderColumn("i.name");
+
+      query.getResultList();
+      query.next();
+      assertEquals( ids( query.getResultList() ), Arrays.asList(4L, 5L, 6L) );
+      assertOffset(3);
+   }
+
+   @Test
+   public void testOffsetForProjection()
+   {
+      ItemQuery query = createQuery("select i.name from Item i");
+
+      assertEquals( query.getResultList(), Arrays.asList("apple1", "apple2", "apple3") );
+      query.next();
+      assertEquals( query.getResultList(), Arrays.asList("apple4", "apple5", "banana6") );
+      assertOffset(3);
+   }
+
+   @Test
+   public void testResultCountCache() throws Exception
+   {
+      ItemQuery query = createQuery("select i from Item i");
+      // an empty restriction parameter is left out of the query
+      Contexts.getEventContext().set("prefix", "");
+      query.setRestrictionExpressionStrings( Arrays.asList("i.name like #{prefix}") );
+      query.setResultCountCacheTimeout(500);
+
+      assertEquals( query.getResultCount(), new Long(10) );
+      query.refresh();
+      assertEquals( query.getResultCount(), new Long(10) );
+      assertEquals( countQueries(), 1 );
+
+      // another parameter value is counted again
+      Contexts.getEventContext().set("prefix", "banana%");
+      assertEquals( query.getResultCount(), new Long(5) );
+      assertEquals( countQueries(), 2 );
+
+      Thread.sleep(600);
+      query.refresh();
+      assertEquals( query.getResultCount(), new Long(5) );
+      assertEquals( countQueries(), 3 );
+   }
+
+   private ItemQuery createQuery(String ejbql)
+   {
+      ItemQuery query = new ItemQuery();
+      query.setEntityManager(entityManager);
+      query.setEjbql(ejbql);
+      query.setOrderColumn("i.id");
+      query.setKeysetColumn("i.id");
+      query.setKeysetPagination(true);
+      query.setMaxResults(3);
+      return query;
+   }
+
+   private void assertSeek(Long keysetValue)
+   {
+      RecordedQuery query = queries.get( queries.size() - 1 );
+      assertTrue( query.ejbql.contains("i.id > :keysetValue"), query.ejbql );
+      assertEquals( query.parameters.get("keysetValue"), keysetValue );
+      assertNull(query.firstResult);
+   }
+
+   private void assertOffset(int firstResult)
+   {
+      RecordedQuery query = queries.get( queries.size() - 1 );
+      assertFalse( query.ejbql.contains(":keysetValue"), query.ejbql );
+      assertEquals( query.firstResult, new Integer(firstResult) );
+   }
+
+   private int countQueries()
+   {
+      int count = 0;
+      for (RecordedQuery query : queries)
+      {
+         if ( query.ejbql.startsWith("select count(") ) count++;
+      }
+      return count;
+   }
+
+   private static List<Long> ids(List<?> items)
+   {
+      List<Long> ids = new ArrayList<Long>();
+      for (Object item : items)
+      {
+         ids.add( ( (Item) item ).getId() );
+      }
+      return ids;
+   }
+
+   public static class Item
+   {
+      private Long id;
+      private String name;
+
+      public Item(long id)
+      {
+         this.id = id;
+         this.name = ( id <= 5 ? "apple" : "banana" ) + id;
+      }
+
+      public Long getId()
+      {
+         return id;
+      }
+
+      public String getName()
+      {
+         return name;
+      }
+   }
+
+   public static class ItemQuery extends EntityQuery<Object>
+   {
+      @Override
+      protected void joinTransaction() {}
+   }
+
+   /**
+    * A query which filters the items by the keyset value and any
+    * name prefix it is given, then applies the offset and page size
+    */
+   private static class RecordedQuery implements InvocationHandler
+   {
+      private String ejbql;
+      private Map<String, Object> parameters = new HashMap<String, Object>();
+      private Integer firstResult;
+      private Integer maxResults;
+      private javax.persistence.Query proxy;
+
+      RecordedQuery(String ejbql)
+      {
+         this.ejbql = ejbql;
+         proxy = (javax.persistence.Query) Proxy.newProxyInstance( getClass().getClassLoader(),
+               new Class[] { javax.persistence.Query.class }, this );
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         String name = method.getName();
+         if ( name.equals("setParameter") )
+         {
+            parameters.put( (String) args[0], args[1] );
+            return proxy;
+         }
+         else if ( name.equals("setFirstResult") )
+         {
+            firstResult = (Integer) args[0];
+            return proxy;
+         }
+         else if ( name.equals("setMaxResults") )
+         {
+            maxResults = (Integer) args[0];
+            return proxy;
+         }
+         else if ( name.equals("getSingleResult") )
+         {
+            return new Long( getItems().size() );
+         }
+         else if ( name.equals("getResultList") )
+         {
+            List<Item> items = getItems();
+            int from = Math.min( firstResult==null ? 0 : firstResult, items.size() );
+            int to = maxResults==null ? items.size() : Math.min( from + maxResults, items.size() );
+            List<Object> results = new ArrayList<Object>();
+            for ( Item item : items.subList(from, to) )
+            {
+               results.add( ejbql.startsWith("select i.name") ? item.getName() : item );
+            }
+            return results;
+         }
+         throw new UnsupportedOperationException(name);
+      }
+
+      private List<Item> getItems()
+      {
+         List<Item> items = new ArrayList<Item>();
+         for (long id = 1; id <= 10; id++)
+         {
+            Item item = new Item(id);
+            boolean included = true;
+            for ( Map.Entry<String, Object> parameter : parameters.entrySet() )
+            {
+               if ( parameter.getKey().equals("keysetValue") )
+               {
+                  included &= item.getId() > (Long) parameter.getValue();
+               }
+               else
+               {
+                  included &= item.getName().startsWith( parameter.getValue().toString().replace("%", "") );
+               }
+            }
+            if (included) items.add(item);
+         }
+         return items;
+      }
+   }
+}
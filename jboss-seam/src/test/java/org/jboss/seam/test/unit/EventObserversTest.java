@@ -0,0 +1,56 @@
+package org.jboss.seam.test.unit;
+
+import java.lang.reflect.Method;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.core.Init;
+import org.testng.annotations.Test;
+
+public class EventObserversTest
+{
+   @Test
+   public void testQualifiedEventIndex() throws Exception
+   {
+      Init init = new Init();
+      Component component = new Component(Foo.class);
+      Method method = Foo.class.getMethod("foo");
+      init.addObserverMethod("org.jboss.seam.preSetVariable.foo", method, component, false);
+      init.addObserverMethod("org.jboss.seam.postCreate.org.jboss.seam.core.manager", method, component, false);
+      
+      assert init.isObserved("org.jboss.seam.preSetVariable.", "foo");
+      assert !init.isObserved("org.jboss.seam.preSetVariable.", "bar");
+      assert !init.isObserved("org.jboss.seam.postSetVariable.", "foo");
+      
+      // every prefix ending in '.' is indexed, including those inside a qualifier
+      assert init.isObserved("org.jboss.seam.postCreate.", "org.jboss.seam.core.manager");
+      assert init.isObserved("org.jboss.seam.postCreate.org.jboss.seam.core.", "manager");
+      assert init.isObserved("org.", "jboss.seam.preSetVariable.foo");
+      assert !init.isObserved("org.jboss.seam.postCreate", ".org.jboss.seam.core.manager");
+      
+      assert init.getEventObservers("org.jboss.seam.preSetVariable.foo").getMethods().length == 1;
+      assert init.getEventObservers("org.jboss.seam.preSetVariable.bar") == null;
+   }
+   
+   @Test
+   public void testRecompileAfterRegistration() throws Exception
+   {
+      Init init = new Init();
+      Component component = new Component(Foo.class);
+      Method method = Foo.class.getMethod("foo");
+      init.addObserverMethod("org.jboss.seam.preSetVariable.foo", method, component, false);
+      assert !init.isObserved("org.jboss.seam.preSetVariable.", "bar");
+      
+      init.addObserverMethod("org.jboss.seam.preSetVariable.bar", method, component, false);
+      assert init.isObserved("org.jboss.seam.preSetVariable.", "bar");
+      
+      // the same method is only registered once
+      init.addObserverMethod("org.jboss.seam.preSetVariable.foo", method, component, false);
+      assert init.getEventObservers("org.jboss.seam.preSetVariable.foo").getMethods().length == 1;
+      
+      // event types left without observers are dropped from the index
+      init.removeObserverMethods(component);
+      assert !init.isObserved("org.jboss.seam.preSetVariable.", "foo");
+      assert !init.isObserved("org.jboss.seam.preSetVariable.", "bar");
+      assert init.getEventObservers("org.jboss.seam.preSetVariable.foo") == null;
+   }
+}
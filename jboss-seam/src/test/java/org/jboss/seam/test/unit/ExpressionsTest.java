@@ -52,6 +52,23 @@ public class ExpressionsTest
       assertEquals(expressions.createValueExpression(expr).getValue(), "bar");
    }
    
+   /**
+    * Validate that an expression string is parsed once, and that the parsed
+    * expression is shared by the expressions created from it.
+    */
+   @Test
+   public void testParsedExpressionCache()
+   {
+      Expressions expressions = new Expressions();
+      Object first = expressions.createValueExpression("#{1 + 1}").toUnifiedValueExpression();
+      Object second = expressions.createValueExpression("#{1 + 1}").toUnifiedValueExpression();
+      assert first == second;
+      assert expressions.createValueExpression("#{1 + 1}", Long.class).toUnifiedValueExpression() != first;
+      assertEquals(expressions.createValueExpression("#{1 + 1}", Long.class).getValue(), 2L);
+      assertEquals(expressions.getCacheMisses(), 2);
+      assertEquals(expressions.getCacheHits(), 2);
+   }
+   
    protected FacesContext setupFacesContextToAccessRequestParams(Map<String, String> params)
    {
       MockHttpServletRequest request = new MockHttpServletRequest(new MockHttpSession());
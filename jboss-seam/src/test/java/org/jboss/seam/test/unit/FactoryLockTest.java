@@ -0,0 +1,251 @@
+package org.jboss.seam.test.unit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.Factory;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.FactoryStatistics;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Init.FactoryMethod;
+import org.jboss.seam.mock.MockHttpServletRequest;
+import org.jboss.seam.mock.MockHttpSession;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.jboss.seam.web.ServletContexts;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that calls of a session scoped @Factory wait only for
+ * other threads of the same session.
+ */
+public class FactoryLockTest
+{
+   private static final String VARIABLE = "sessionValue";
+
+   @Name("sessionValueFactory")
+   @Scope(ScopeType.APPLICATION)
+   @BypassInterceptors
+   public static class SessionValueFactory
+   {
+      static AtomicInteger calls;
+      static CountDownLatch started;
+      static CountDownLatch release;
+      static boolean fail;
+
+      @Factory(value=VARIABLE, scope=ScopeType.SESSION)
+      public String createValue() throws InterruptedException
+      {
+         int call = calls.incrementAndGet();
+         started.countDown();
+         if ( !release.await(5, TimeUnit.SECONDS) )
+         {
+            throw new IllegalStateException("factory not released");
+         }
+         if (fail)
+         {
+            throw new IllegalStateException("factory failed");
+         }
+         return "value" + call;
+      }
+   }
+
+   /**
+    * A session with an id, which the mock session does not have
+    */
+   public static class Session extends MockHttpSession
+   {
+      private String id;
+
+      public Session(String id)
+      {
+         this.id = id;
+      }
+
+      @Override
+      public String getId()
+      {
+         return id;
+      }
+   }
+
+   private MockServletContext servletContext;
+   private Init init;
+   private ExecutorService executor;
+
+   @BeforeMethod
+   public void setup() throws Exception
+   {
+      servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      Context appContext = new ApplicationContext( new ServletApplicationMap(servletContext) );
+      init = new Init();
+      appContext.set( Seam.getComponentName(Init.class), init );
+      // the component adds its factory method to init
+      appContext.set( Seam.getComponentName(SessionValueFactory.class) + ".component", new Component(SessionValueFactory.class, appContext) );
+      appContext.set( Seam.getComponentName(ServletContexts.class) + ".component", new Component(ServletContexts.class) );
+
+      SessionValueFactory.calls = new AtomicInteger();
+      SessionValueFactory.started = new CountDownLatch(1);
+      SessionValueFactory.release = new CountDownLatch(0);
+      SessionValueFactory.fail = false;
+      executor = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod
+   public void cleanup()
+   {
+      executor.shutdownNow();
+      ServletLifecycle.endApplication();
+   }
+
+   @Test
+   public void testSessionsRunConcurrently() throws Exception
+   {
+      // each call fails unless both have started
+      SessionValueFactory.started = new CountDownLatch(2);
+      SessionValueFactory.release = SessionValueFactory.started;
+
+      Future<Object> first = getLater( new Session("first") );
+      Future<Object> second = getLater( new Session("second") );
+      Set<Object> values = new HashSet<Object>();
+      values.add( first.get(10, TimeUnit.SECONDS) );
+      values.add( second.get(10, TimeUnit.SECONDS) );
+      assertEquals( values, new HashSet<Object>( Arrays.asList("value1", "value2") ) );
+      assertEquals( init.getFactory(VARIABLE).getWaitCount(), 0 );
+   }
+
+   @Test
+   public void testSameSessionCollapsed() throws Exception
+   {
+      SessionValueFactory.release = new CountDownLatch(1);
+      Session session = new Session("session");
+
+      Future<Object> first = getLater(session);
+      assertTrue( SessionValueFactory.started.await(5, TimeUnit.SECONDS) );
+      Future<Object> second = getLater(session);
+      assertWaiting(second);
+
+      SessionValueFactory.release.countDown();
+      assertEquals( first.get(5, TimeUnit.SECONDS), "value1" );
+      assertEquals( second.get(5, TimeUnit.SECONDS), "value1" );
+      assertEquals( SessionValueFactory.calls.get(), 1 );
+
+      FactoryStatistics statistics = new FactoryStatistics();
+      Lifecycle.setupApplication( new ServletApplicationMap(servletContext) );
+      try
+      {
+         statistics.create();
+      }
+      finally
+      {
+         Lifecycle.cleanupApplication();
+      }
+      try
+      {
+         assertEquals( statistics.getFactoryNames(), new String[] { VARIABLE } );
+         assertEquals( statistics.getWaitCount(VARIABLE), 1 );
+         assertEquals( statistics.getTotalWaitCount(), 1 );
+         assertEquals( statistics.getWaitCount("unknown"), 0 );
+      }
+      finally
+      {
+         statistics.destroy();
+      }
+   }
+
+   @Test
+   public void testReentrantLock() throws Exception
+   {
+      final FactoryMethod factoryMethod = init.getFactory(VARIABLE);
+      assertTrue( factoryMethod.lock("session") );
+      // the owning thread runs straight through, and must not release the key
+      assertFalse( factoryMethod.lock("session") );
+
+      Future<Boolean> other = executor.submit( new Callable<Boolean>()
+      {
+         public Boolean call() throws Exception
+         {
+            boolean locked = factoryMethod.lock("session");
+            factoryMethod.unlock("session");
+            return locked;
+         }
+      } );
+      assertWaiting(other);
+      factoryMethod.unlock("session");
+      assertTrue( other.get(5, TimeUnit.SECONDS) );
+   }
+
+   @Test
+   public void testFailureReleasesKey() throws Exception
+   {
+      SessionValueFactory.fail = true;
+      Session session = new Session("session");
+      try
+      {
+         getLater(session).get(5, TimeUnit.SECONDS);
+         assert false : "Expecting the factory to fail";
+      }
+      catch (ExecutionException ee) {}
+
+      SessionValueFactory.fail = false;
+      assertEquals( getLater(session).get(5, TimeUnit.SECONDS), "value2" );
+      assertEquals( init.getFactory(VARIABLE).getWaitCount(), 0 );
+   }
+
+   private void assertWaiting(Future<?> future) throws Exception
+   {
+      try
+      {
+         future.get(200, TimeUnit.MILLISECONDS);
+         assert false : "Expecting the call to wait";
+      }
+      catch (TimeoutException te) {}
+   }
+
+   private Future<Object> getLater(final Session session)
+   {
+      return executor.submit( new Callable<Object>()
+      {
+         public Object call() throws Exception
+         {
+            MockHttpServletRequest request = new MockHttpServletRequest(session);
+            ServletLifecycle.beginRequest(request, servletContext);
+            try
+            {
+               ServletContexts.instance().setRequest(request);
+               return Component.getInstance(VARIABLE);
+            }
+            finally
+            {
+               ServletLifecycle.endRequest(request);
+            }
+         }
+      } );
+   }
+}
@@ -402,6 +402,86 @@ public class InterceptorTest
       Assert.assertEquals(invocationResults.get("C"), foo, "Injected value not accurate at end of method invocation C.");
    }
    
+   @Test
+   public void testConcurrentBijection() throws Exception
+   {
+      MockServletContext servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      final MockExternalContext externalContext = new MockExternalContext(servletContext);
+      Context appContext = new ApplicationContext( externalContext.getApplicationMap() );
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+      appContext.set( Seam.getComponentName(ConversationEntries.class) + ".component", 
+            new Component(ConversationEntries.class, appContext) );
+      appContext.set( Seam.getComponentName(Manager.class) + ".component", 
+            new Component(Manager.class, appContext) );
+      appContext.set( Seam.getComponentName(Foo.class) + ".component", 
+            new Component(Foo.class, appContext) );
+      
+      final Foo foo = new Foo();
+      final ConcurrentFooBar fooBar = new ConcurrentFooBar();
+      
+      Component component = new Component(ConcurrentFooBar.class, appContext);
+      assert component.isConcurrentBijection();
+      final BijectionInterceptor bi = new BijectionInterceptor();
+      bi.setComponent(component);
+      
+      final Method m = FooBar.class.getMethod("delayedGetFoo", InvocationControl.class);
+      final Map<String, Foo> invocationResults = new HashMap<String, Foo>();
+      final WrappedException threadException = new WrappedException();
+      
+      InvocationControl[] controls = { new InvocationControl("A"), new InvocationControl("B") };
+      for (final InvocationControl control : controls)
+      {
+         new Thread(new Runnable() {
+            public void run() {
+               try
+               {
+                  FacesLifecycle.beginRequest(externalContext);
+                  Manager.instance().setCurrentConversationId("1");
+                  FacesLifecycle.resumeConversation(externalContext);
+                  FacesLifecycle.setPhaseId(PhaseId.RENDER_RESPONSE);
+                  
+                  Contexts.getSessionContext().set("foo", foo);
+                  Foo result = (Foo) bi.aroundInvoke( new MockInvocationContext() {
+                     @Override public Object getTarget() { return fooBar; }         
+                     @Override public Method getMethod() { return m; }
+                     @Override public Object[] getParameters() { return new Object[] { control }; }
+                     @Override public Object proceed() throws Exception { return Reflections.invoke(getMethod(), getTarget(), getParameters()); }
+                  });
+                  synchronized (invocationResults)
+                  {
+                     invocationResults.put(control.getName(), result);
+                  }
+               }
+               catch (Exception ex) 
+               { 
+                  threadException.exception = ex;
+               }
+               finally
+               {
+                  control.markFinished();
+               }
+            }     
+         }).start();
+      }
+      
+      // both invocations are in progress at the same time
+      for (InvocationControl control : controls)
+      {
+         control.start();
+      }
+      for (InvocationControl control : controls)
+      {
+         control.finish();
+      }
+      
+      if (threadException.exception != null) throw threadException.exception;
+      
+      Assert.assertEquals(invocationResults.get("A"), foo, "Injected value not accurate at end of method invocation A.");
+      Assert.assertEquals(invocationResults.get("B"), foo, "Injected value not accurate at end of method invocation B.");
+      Assert.assertNull(fooBar.foo, "Last client should disinject the component.");
+   }
+   
    @Test
    public void testCyclicDependencyThowsException() throws Exception
    {
@@ -47,6 +47,11 @@ public class InterpolatorTest extends MockContainerTest
         Assert.assertEquals(interpolator.interpolate("#0 #{contextVariable} #1", "a", "z"), "a value z");
         Assert.assertEquals(interpolator.interpolate("#0 ##{contextVariable} #1", "a", "z"), "a #value z");
         
+        // the parsed string is reused, but the expression is evaluated again
+        Contexts.getEventContext().set("contextVariable", "other value");
+        Assert.assertEquals(interpolator.interpolate("#0 #{contextVariable} #1", "a", "z"), "a other value z");
+        Assert.assertEquals(interpolator.interpolate("#0 #{contextVariable} #1", "b"), "b other value #1");
+        
         Date date = new Date(0);
                 
         Assert.assertEquals(interpolator.interpolate("{0,date,short}", date), DateFormat.getDateInstance(DateFormat.SHORT).format(date)); 
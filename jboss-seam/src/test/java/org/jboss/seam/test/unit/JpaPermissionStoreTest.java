@@ -0,0 +1,236 @@
+package org.jboss.seam.test.unit;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.security.permission.Identifier;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Expressions.ValueExpression;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.security.SimplePrincipal;
+import org.jboss.seam.security.permission.IdentifierPolicy;
+import org.jboss.seam.security.permission.IdentifierStrategy;
+import org.jboss.seam.security.permission.JpaPermissionStore;
+import org.jboss.seam.security.permission.Permission;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class JpaPermissionStoreTest
+{
+   /**
+    * A target without value equality, identified by its id
+    */
+   @Identifier(TargetStrategy.class)
+   public static class Target
+   {
+      private int id;
+
+      public Target(int id)
+      {
+         this.id = id;
+      }
+   }
+
+   public static class TargetStrategy implements IdentifierStrategy
+   {
+      public boolean canIdentify(Class<?> targetClass)
+      {
+         return targetClass == Target.class;
+      }
+
+      public String getIdentifier(Object target)
+      {
+         return "target:" + ( (Target) target ).id;
+      }
+   }
+
+   /**
+    * Grants "read" on the targets with an even id, and records the queries
+    */
+   public static class Store extends JpaPermissionStore
+   {
+      private List<Integer> queries = new ArrayList<Integer>();
+
+      @Override
+      protected void initProperties() {}
+
+      @Override
+      protected List<Permission> listPermissions(Object target, Set<Object> targets, String action)
+      {
+         Set<Object> queried = targets==null ? new HashSet<Object>( Arrays.asList(target) ) : targets;
+         queries.add( queried.size() );
+         List<Permission> permissions = new ArrayList<Permission>();
+         for (Object t : queried)
+         {
+            if ( ( (Target) t ).id % 2 == 0 )
+            {
+               permissions.add( new Permission(t, action, new SimplePrincipal("user")) );
+            }
+         }
+         return permissions;
+      }
+
+      @Override
+      protected boolean updatePermissionActions(Object target, Principal recipient, String[] actions, boolean set)
+      {
+         return true;
+      }
+   }
+
+   /**
+    * The store never gets as far as the entity manager
+    */
+   public static class NoEntityManager implements ValueExpression<EntityManager>
+   {
+      public EntityManager getValue()
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      public void setValue(EntityManager value)
+      {
+         throw new UnsupportedOperationException();
+      }
+
+      public String getExpressionString()
+      {
+         return "#{entityManager}";
+      }
+
+      public Class<EntityManager> getType()
+      {
+         return EntityManager.class;
+      }
+
+      public javax.el.ValueExpression toUnifiedValueExpression()
+      {
+         throw new UnsupportedOperationException();
+      }
+   }
+
+   private Store store;
+
+   @BeforeMethod
+   public void setup()
+   {
+      MockServletContext servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      Context appContext = new ApplicationContext( new ServletApplicationMap(servletContext) );
+      installComponent(appContext, IdentifierPolicy.class);
+      installComponent(appContext, Manager.class);
+      IdentifierPolicy identifierPolicy = new IdentifierPolicy();
+      identifierPolicy.getRegisteredStrategies().add( new TargetStrategy() );
+      appContext.set( Seam.getComponentName(IdentifierPolicy.class), identifierPolicy );
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+
+      Lifecycle.beginCall();
+      store = new Store();
+      store.setUserPermissionClass(Object.class);
+      store.setEntityManager( new NoEntityManager() );
+      store.init();
+   }
+
+   @AfterMethod
+   public void cleanup()
+   {
+      Lifecycle.endCall();
+      ServletLifecycle.endApplication();
+   }
+
+   @Test
+   public void testRequestCache()
+   {
+      Target first = new Target(2);
+      Target second = new Target(3);
+
+      assert store.listPermissions(first, "read").size() == 1;
+      assert store.listPermissions(first, "read").size() == 1;
+      assert store.queries.size() == 1;
+
+      // only the target that has not been read yet is queried
+      assert store.listPermissions(targets(first, second), "read").size() == 1;
+      assert store.queries.equals( Arrays.asList(1, 1) );
+
+      // a target without permissions is cached too
+      assert store.listPermissions(second, "read").isEmpty();
+      assert store.queries.size() == 2;
+
+      // another action is another entry
+      store.listPermissions(first, "write");
+      assert store.queries.size() == 3;
+
+      // changing permissions drops the cache
+      store.grantPermission( new Permission(first, "read", new SimplePrincipal("other")) );
+      store.listPermissions(first, "read");
+      assert store.queries.size() == 4;
+
+      // the cache only lives as long as the request
+      Lifecycle.endCall();
+      Lifecycle.beginCall();
+      store.listPermissions(first, "read");
+      assert store.queries.size() == 5;
+   }
+
+   @Test
+   public void testCachedTargets()
+   {
+      Target loaded = new Target(2);
+      store.listPermissions(loaded, "read");
+
+      // another instance of the same target, as a later query might load it
+      Target reloaded = new Target(2);
+      List<Permission> permissions = store.listPermissions(targets(reloaded), "read");
+      assert store.queries.size() == 1;
+      assert permissions.size() == 1;
+      assert permissions.get(0).getTarget() == reloaded;
+      assert store.listPermissions(reloaded, "read").get(0).getTarget() == reloaded;
+   }
+
+   @Test
+   public void testBatching()
+   {
+      store.setTargetBatchSize(2);
+      Set<Object> targets = new LinkedHashSet<Object>();
+      for (int i = 0; i < 5; i++)
+      {
+         targets.add( new Target(i) );
+      }
+
+      assert store.listPermissions(targets, "read").size() == 3;
+      assert store.queries.equals( Arrays.asList(2, 2, 1) );
+
+      // every target of every batch is cached, with or without permissions
+      assert store.listPermissions(targets, "read").size() == 3;
+      for (Object target : targets)
+      {
+         store.listPermissions(target, "read");
+      }
+      assert store.queries.size() == 3;
+   }
+
+   private Set<Object> targets(Object... targets)
+   {
+      return new LinkedHashSet<Object>( Arrays.asList(targets) );
+   }
+
+   private void installComponent(Context appContext, Class clazz)
+   {
+      appContext.set( Seam.getComponentName(clazz) + ".component", new Component(clazz) );
+   }
+}
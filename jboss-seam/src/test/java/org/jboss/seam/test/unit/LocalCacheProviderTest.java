@@ -0,0 +1,83 @@
+package org.jboss.seam.test.unit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.seam.cache.LocalCacheProvider;
+import org.testng.annotations.Test;
+
+public class LocalCacheProviderTest
+{
+   @Test
+   public void testPutGetRemove()
+   {
+      LocalCacheProvider cacheProvider = new LocalCacheProvider();
+      cacheProvider.put("key", "value");
+      cacheProvider.put("region", "key", "other value");
+      assertEquals(cacheProvider.get("key"), "value");
+      assertEquals(cacheProvider.get(cacheProvider.getDefaultRegion(), "key"), "value");
+      assertEquals(cacheProvider.get("region", "key"), "other value");
+      
+      cacheProvider.put("key", "new value");
+      assertEquals(cacheProvider.get("key"), "new value");
+      
+      cacheProvider.remove("key");
+      assertNull(cacheProvider.get("key"));
+      assertEquals(cacheProvider.get("region", "key"), "other value");
+      
+      cacheProvider.clear();
+      assertNull(cacheProvider.get("region", "key"));
+      
+      assertEquals(cacheProvider.getCacheRegion("region").getHitCount(), 2);
+      assertEquals(cacheProvider.getCacheRegion("region").getMissCount(), 1);
+      assertEquals(cacheProvider.getHitCount(), 5);
+      assertEquals(cacheProvider.getMissCount(), 2);
+   }
+   
+   /**
+    * A region never holds more than its maximum size, and entries
+    * which are read often are not evicted by entries which are
+    * only put once.
+    */
+   @Test
+   public void testEviction()
+   {
+      LocalCacheProvider cacheProvider = new LocalCacheProvider();
+      Map<String, Integer> regionMaxSizes = new HashMap<String, Integer>();
+      regionMaxSizes.put("small", 10);
+      cacheProvider.setRegionMaxSizes(regionMaxSizes);
+      
+      cacheProvider.put("small", "popular", "value");
+      for (int i = 0; i < 1000; i++)
+      {
+         if (i % 5 == 0)
+         {
+            assertEquals(cacheProvider.get("small", "popular"), "value");
+         }
+         cacheProvider.put("small", "key" + i, i);
+         assert cacheProvider.getSize("small") <= 10;
+      }
+      assertEquals(cacheProvider.get("small", "popular"), "value");
+      assertEquals(cacheProvider.getSize("small"), 10);
+      assertEquals(cacheProvider.getEvictionCount("small"), 991);
+   }
+   
+   @Test
+   public void testTimeToLive() throws InterruptedException
+   {
+      LocalCacheProvider cacheProvider = new LocalCacheProvider();
+      Map<String, Long> regionTimeToLives = new HashMap<String, Long>();
+      regionTimeToLives.put("shortLived", 1L);
+      cacheProvider.setRegionTimeToLives(regionTimeToLives);
+      
+      cacheProvider.put("shortLived", "key", "value");
+      cacheProvider.put("key", "value");
+      Thread.sleep(20);
+      assertNull(cacheProvider.get("shortLived", "key"));
+      assertEquals(cacheProvider.get("key"), "value");
+      assertEquals(cacheProvider.getCacheRegion("shortLived").getExpirationCount(), 1);
+   }
+}
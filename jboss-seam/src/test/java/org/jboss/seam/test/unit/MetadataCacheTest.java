@@ -0,0 +1,137 @@
+package org.jboss.seam.test.unit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class MetadataCacheTest
+{
+   @Name("copied")
+   @Scope(ScopeType.SESSION)
+   public static class Copied {}
+
+   /**
+    * Defines its own copy of a class, as a redeployed application would
+    */
+   public static class CopyingClassLoader extends ClassLoader
+   {
+      public CopyingClassLoader()
+      {
+         super( MetadataCacheTest.class.getClassLoader() );
+      }
+
+      public Class<?> copy(Class<?> clazz) throws IOException
+      {
+         InputStream stream = getParent().getResourceAsStream( clazz.getName().replace('.', '/') + ".class" );
+         try
+         {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ( (read = stream.read(buffer)) != -1 )
+            {
+               out.write(buffer, 0, read);
+            }
+            byte[] bytes = out.toByteArray();
+            return defineClass( clazz.getName(), bytes, 0, bytes.length );
+         }
+         finally
+         {
+            stream.close();
+         }
+      }
+   }
+
+   @AfterMethod
+   public void cleanup()
+   {
+      Seam.clearComponentNameCache();
+   }
+
+   @Test
+   public void testConcurrentLookup() throws Exception
+   {
+      final Class<?>[] classes = { Foo.class, Bar.class, FooBar.class, Factory.class, Copied.class, String.class };
+      final String[] names = new String[classes.length];
+      for (int i = 0; i < classes.length; i++)
+      {
+         names[i] = Seam.getComponentName( classes[i] );
+      }
+      assert "foo".equals( names[0] );
+      assert "copied".equals( names[4] );
+      assert names[5] == null;
+      Seam.clearComponentNameCache();
+
+      ExecutorService executor = Executors.newFixedThreadPool(8);
+      try
+      {
+         List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+         for (int thread = 0; thread < 8; thread++)
+         {
+            results.add( executor.submit( new Callable<Boolean>()
+            {
+               public Boolean call() throws Exception
+               {
+                  for (int run = 0; run < 1000; run++)
+                  {
+                     for (int i = 0; i < classes.length; i++)
+                     {
+                        String name = Seam.getComponentName( classes[i] );
+                        if ( name == null ? names[i] != null : !name.equals( names[i] ) )
+                        {
+                           return false;
+                        }
+                     }
+                  }
+                  return true;
+               }
+            } ) );
+         }
+         for (Future<Boolean> result : results)
+         {
+            assert result.get();
+         }
+      }
+      finally
+      {
+         executor.shutdownNow();
+      }
+   }
+
+   @Test
+   public void testClassLoaderCollected() throws Exception
+   {
+      CopyingClassLoader classLoader = new CopyingClassLoader();
+      Class<?> copy = classLoader.copy(Copied.class);
+      assert copy != Copied.class;
+      assert "copied".equals( Seam.getComponentName(copy) );
+      assert Seam.getComponentScope(copy) == ScopeType.SESSION;
+
+      WeakReference<ClassLoader> reference = new WeakReference<ClassLoader>(classLoader);
+      classLoader = null;
+      copy = null;
+      for (int i = 0; i < 50 && reference.get() != null; i++)
+      {
+         System.gc();
+         Thread.sleep(10);
+      }
+      assert reference.get() == null : "the metadata cache kept the class loader alive";
+
+      // the original class keeps its metadata
+      assert "copied".equals( Seam.getComponentName(Copied.class) );
+   }
+}
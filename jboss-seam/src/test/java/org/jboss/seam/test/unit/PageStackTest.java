@@ -0,0 +1,95 @@
+package org.jboss.seam.test.unit;
+
+import java.util.Map;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.navigation.Page;
+import org.jboss.seam.navigation.Pages;
+import org.jboss.seam.util.Conversions;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies how wild-card view-ids are matched to a view-id, and that
+ * the default pages of undeclared view-ids are only cached up to the
+ * view-id-cache-size.
+ */
+public class PageStackTest extends AbstractPageTest
+{
+   private static final String WILDCARD_PAGES_DOT_XML = "/META-INF/pagesForWildcardTest.xml";
+
+   @Override
+   protected void installComponents(Context appContext)
+   {
+      super.installComponents(appContext);
+      Map<String, Conversions.PropertyValue> properties = (Map<String, Conversions.PropertyValue>) appContext.get(Component.PROPERTIES);
+      properties.put(Seam.getComponentName(Pages.class) + ".resources", new Conversions.FlatPropertyValue(WILDCARD_PAGES_DOT_XML));
+      // the component reads its properties when it is installed
+      installComponent(appContext, Pages.class);
+   }
+
+   /**
+    * The longest matching wild-card view-id takes precedence, whatever
+    * the order of the declarations.
+    */
+   @Test
+   public void testLongestWildcardWins()
+   {
+      Pages pages = Pages.instance();
+
+      assert "list".equals(pages.getDescription("/admin/users/list.xhtml"));
+      assert "admin".equals(pages.getDescription("/admin/users/edit.xhtml")) :
+         "Expecting the description of /admin/* as /admin/users/* has none";
+      assert "admin".equals(pages.getDescription("/admin/index.xhtml"));
+      assert "admin-prefix".equals(pages.getDescription("/administration.xhtml"));
+      assert "everything".equals(pages.getDescription("/index.xhtml"));
+
+      assert pages.getTimeout("/admin/users/list.xhtml") == 300;
+      assert pages.getTimeout("/admin/users/edit.xhtml") == 300;
+      assert pages.getTimeout("/admin/index.xhtml") == 200;
+      assert pages.getTimeout("/administration.xhtml") == 100;
+      assert pages.getTimeout("/index.xhtml") == 100;
+   }
+
+   /**
+    * Of two declarations of the same wild-card view-id, the later one is used.
+    */
+   @Test
+   public void testRedeclaredWildcard()
+   {
+      assert "reports-redeclared".equals(Pages.instance().getDescription("/reports/daily.xhtml"));
+   }
+
+   @Test
+   public void testDefaultPageEviction()
+   {
+      Pages pages = Pages.instance();
+      pages.setViewIdCacheSize(2);
+      pages.initialize();
+
+      Page first = pages.getPage("/first.xhtml");
+      assert pages.getPage("/first.xhtml") == first;
+      Page declared = pages.getPage("/admin/users/list.xhtml");
+
+      pages.getPage("/second.xhtml");
+      pages.getPage("/third.xhtml");
+      assert pages.getPage("/first.xhtml") != first : "Expecting the eldest default page to be evicted";
+
+      // declared pages are never evicted
+      assert pages.getPage("/admin/users/list.xhtml") == declared;
+      // wild-cards still apply to a view-id whose page stack was evicted
+      assert "everything".equals(pages.getDescription("/first.xhtml"));
+   }
+
+   @Test
+   public void testNoDefaultPageCache()
+   {
+      Pages pages = Pages.instance();
+      pages.setViewIdCacheSize(0);
+      pages.initialize();
+
+      assert pages.getPage("/first.xhtml") != pages.getPage("/first.xhtml");
+      assert "everything".equals(pages.getDescription("/first.xhtml"));
+   }
+}
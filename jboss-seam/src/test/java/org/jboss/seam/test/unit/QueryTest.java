@@ -73,6 +73,43 @@ public class QueryTest
 	   
    }
 
+   @Test
+   public void testKeysetRestriction()
+   {
+      UnitQuery query = new UnitQuery();
+      query.setEjbql("from Person p where p.name is not null");
+      query.setOrderColumn("p.name");
+      query.parseEjbql();
+      assertEquals(query.getRenderedEjbql("p.name > :keysetValue"), 
+            "from Person p where (p.name is not null) and p.name > :keysetValue order by p.name");
+      assertEquals(query.getCountEjbql(), "select count(*) from Person p where p.name is not null");
+      
+      // the keyset restriction applies to both sides of an "or"
+      query.setEjbql("from Person p where p.name = 'Gavin' or p.name = 'Pete'");
+      query.parseEjbql();
+      assertEquals(query.getRenderedEjbql("p.name > :keysetValue"), 
+            "from Person p where (p.name = 'Gavin' or p.name = 'Pete') and p.name > :keysetValue order by p.name");
+      assertEquals(query.getRenderedEjbql(), 
+            "from Person p where p.name = 'Gavin' or p.name = 'Pete' order by p.name");
+      
+      query.setEjbql("from Person p");
+      query.parseEjbql();
+      assertEquals(query.getRenderedEjbql("p.name > :keysetValue"), "from Person p where p.name > :keysetValue order by p.name");
+      query.setKeysetColumn("p.name");
+      assertEquals(query.getKeysetValue(new Person("Gavin")), "Gavin");
+      // a row without the property, such as a projection, has no keyset value
+      assertNull(query.getKeysetValue("Gavin"));
+      
+      // the count query is shared, but depends on the subject of the query
+      assertEquals(query.getCountEjbql(), "select count(*) from Person p");
+      query.setEjbql("select p from Person p");
+      query.parseEjbql();
+      query.setUseWildcardAsCountQuerySubject(false);
+      assertEquals(query.getCountEjbql(), "select count(p) from Person p");
+      query.setUseWildcardAsCountQuerySubject(true);
+      assertEquals(query.getCountEjbql(), "select count(*) from Person p");
+   }
+
    class UnitQuery extends EntityQuery {
 
       @Override
@@ -87,6 +124,18 @@ public class QueryTest
          return super.getRenderedEjbql();
       }
 
+      @Override
+      protected String getRenderedEjbql(String additionalRestriction)
+      {
+         return super.getRenderedEjbql(additionalRestriction);
+      }
+
+      @Override
+      protected Object getKeysetValue(Object row)
+      {
+         return super.getKeysetValue(row);
+      }
+
       @Override
       protected String getCountEjbql()
       {
@@ -0,0 +1,139 @@
+package org.jboss.seam.test.unit;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.ListResourceBundle;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import javax.faces.context.FacesContext;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.core.ResourceLoader;
+import org.jboss.seam.core.SeamResourceBundle;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that the Seam resource bundle searches its delegate bundles in
+ * order, including bundles which do not enumerate all of their keys.
+ */
+public class ResourceBundleTest extends AbstractPageTest
+{
+   private static final String PROPERTIES = "org.jboss.seam.test.unit.ResourceBundleTestMessages";
+   private static final String LIST = "org.jboss.seam.test.unit.ResourceBundleTest$ListBundle";
+   private static final String DYNAMIC = "org.jboss.seam.test.unit.ResourceBundleTest$DynamicBundle";
+
+   public static class ListBundle extends ListResourceBundle
+   {
+      @Override
+      protected Object[][] getContents()
+      {
+         return new Object[][] { { "shared", "list" }, { "listOnly", "list" } };
+      }
+   }
+
+   /**
+    * A bundle which answers keys that it does not enumerate, as a bundle
+    * backed by a database might
+    */
+   public static class DynamicBundle extends ResourceBundle
+   {
+      @Override
+      protected Object handleGetObject(String key)
+      {
+         if ( key.startsWith("dynamic.") )
+         {
+            return "dynamic:" + key;
+         }
+         return "shared".equals(key) ? "dynamic" : null;
+      }
+
+      @Override
+      public Enumeration<String> getKeys()
+      {
+         return Collections.enumeration( Collections.<String>emptyList() );
+      }
+   }
+
+   public static class BundleNames extends ResourceLoader
+   {
+      static String[] bundleNames;
+
+      @Override
+      public String[] getBundleNames()
+      {
+         return bundleNames;
+      }
+   }
+
+   @Override
+   protected void installComponents(Context appContext)
+   {
+      super.installComponents(appContext);
+      appContext.set( Seam.getComponentName(ResourceLoader.class) + ".component", 
+               new Component( BundleNames.class, Seam.getComponentName(ResourceLoader.class) ) );
+   }
+
+   @Test
+   public void testDynamicBundleFirst()
+   {
+      BundleNames.bundleNames = new String[] { DYNAMIC, PROPERTIES, LIST };
+      ResourceBundle bundle = new SeamResourceBundle();
+
+      assert "dynamic:dynamic.key".equals( bundle.getString("dynamic.key") );
+      assert "dynamic".equals( bundle.getString("shared") );
+      assert "properties".equals( bundle.getString("greeting") );
+      assert "list".equals( bundle.getString("listOnly") );
+      assertMissing(bundle, "missing");
+   }
+
+   @Test
+   public void testDynamicBundleLast()
+   {
+      BundleNames.bundleNames = new String[] { PROPERTIES, LIST, DYNAMIC };
+      ResourceBundle bundle = new SeamResourceBundle();
+
+      assert "dynamic:dynamic.key".equals( bundle.getString("dynamic.key") );
+      assert "properties".equals( bundle.getString("shared") );
+      assert "list".equals( bundle.getString("listOnly") );
+      assertMissing(bundle, "missing");
+   }
+
+   @Test
+   public void testIndexedBundlesOnly()
+   {
+      BundleNames.bundleNames = new String[] { LIST, PROPERTIES };
+      ResourceBundle bundle = new SeamResourceBundle();
+
+      assert "list".equals( bundle.getString("shared") );
+      assert "properties".equals( bundle.getString("greeting") );
+      assertMissing(bundle, "dynamic.key");
+   }
+
+   @Test
+   public void testDynamicPageBundle()
+   {
+      BundleNames.bundleNames = new String[] { PROPERTIES, LIST };
+      FacesContext.getCurrentInstance().getViewRoot().setViewId("/bundle-test.xhtml");
+      ResourceBundle bundle = new SeamResourceBundle();
+
+      // the page bundle is searched first, although it does not enumerate its keys
+      assert "dynamic:dynamic.key".equals( bundle.getString("dynamic.key") );
+      assert "dynamic".equals( bundle.getString("shared") );
+      assert "properties".equals( bundle.getString("greeting") );
+      assert "list".equals( bundle.getString("listOnly") );
+      assertMissing(bundle, "missing");
+   }
+
+   private void assertMissing(ResourceBundle bundle, String key)
+   {
+      try
+      {
+         bundle.getString(key);
+         assert false : "Expecting no resource for " + key;
+      }
+      catch (MissingResourceException mre) {}
+   }
+}
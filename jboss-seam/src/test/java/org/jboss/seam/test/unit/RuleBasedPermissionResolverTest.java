@@ -0,0 +1,251 @@
+package org.jboss.seam.test.unit;
+
+import java.io.StringReader;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+
+import org.drools.RuleBase;
+import org.drools.RuleBaseFactory;
+import org.drools.compiler.PackageBuilder;
+import org.jboss.seam.Component;
+import org.jboss.seam.Seam;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Contexts;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.security.Identity;
+import org.jboss.seam.security.Role;
+import org.jboss.seam.security.SimpleGroup;
+import org.jboss.seam.security.SimplePrincipal;
+import org.jboss.seam.security.permission.RuleBasedPermissionResolver;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RuleBasedPermissionResolverTest
+{
+   private static final String RULES =
+      "package org.jboss.seam.test.unit;\n" +
+      "import java.security.Principal;\n" +
+      "import java.util.List;\n" +
+      "import org.jboss.seam.security.Role;\n" +
+      "import org.jboss.seam.security.permission.PermissionCheck;\n" +
+      "import org.jboss.seam.security.permission.RoleCheck;\n" +
+      "global List checked;\n" +
+      "rule \"record checks\" salience 10\n" +
+      "when\n" +
+      "  $check : PermissionCheck()\n" +
+      "then\n" +
+      "  checked.add( $check.getTarget() );\n" +
+      "end\n" +
+      "rule \"readers read documents\"\n" +
+      "when\n" +
+      "  Role( name == \"reader\" )\n" +
+      "  $check : PermissionCheck( target == \"document\", action == \"read\" )\n" +
+      "then\n" +
+      "  $check.grant();\n" +
+      "end\n" +
+      "rule \"even numbers are readable\"\n" +
+      "when\n" +
+      "  $number : Integer()\n" +
+      "  eval( $number.intValue() % 2 == 0 )\n" +
+      "  $check : PermissionCheck( target == $number, action == \"read\" )\n" +
+      "then\n" +
+      "  $check.grant();\n" +
+      "end\n" +
+      "rule \"users view their profile\"\n" +
+      "when\n" +
+      "  Principal( name == \"user\" )\n" +
+      "  $check : PermissionCheck( target == \"profile\", action == \"view\" )\n" +
+      "then\n" +
+      "  $check.grant();\n" +
+      "end\n" +
+      "rule \"users own their principal\"\n" +
+      "when\n" +
+      "  $principal : Principal( name == \"user\" )\n" +
+      "  PermissionCheck( target == $principal, action == \"own\" )\n" +
+      "  $role : RoleCheck( name == \"owner\" )\n" +
+      "then\n" +
+      "  $role.grant();\n" +
+      "end\n";
+
+   /**
+    * An identity with a fixed principal, whose roles are set by the test
+    */
+   public static class TestIdentity extends Identity
+   {
+      private Principal principal = new SimplePrincipal("user");
+      private Subject subject = new Subject();
+      private SimpleGroup roles = new SimpleGroup(ROLES_GROUP);
+
+      public TestIdentity()
+      {
+         subject.getPrincipals().add(roles);
+      }
+
+      @Override
+      public Principal getPrincipal()
+      {
+         return principal;
+      }
+
+      @Override
+      public Subject getSubject()
+      {
+         return subject;
+      }
+
+      @Override
+      public boolean hasRole(String role)
+      {
+         return roles.isMember( new Role(role) );
+      }
+
+      @Override
+      public boolean addRole(String role)
+      {
+         return roles.addMember( new Role(role) );
+      }
+
+      @Override
+      public void removeRole(String role)
+      {
+         roles.removeMember( new Role(role) );
+      }
+   }
+
+   private static RuleBase ruleBase;
+
+   private RuleBasedPermissionResolver resolver;
+   private TestIdentity identity;
+   private List<Object> checked;
+
+   @BeforeClass
+   public void compileRules() throws Exception
+   {
+      PackageBuilder builder = new PackageBuilder();
+      builder.addPackageFromDrl( new StringReader(RULES) );
+      assert !builder.hasErrors() : builder.getErrors().toString();
+      ruleBase = RuleBaseFactory.newRuleBase();
+      ruleBase.addPackage( builder.getPackage() );
+   }
+
+   @BeforeMethod
+   public void setup()
+   {
+      MockServletContext servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      Context appContext = new ApplicationContext( new ServletApplicationMap(servletContext) );
+      appContext.set( Seam.getComponentName(Manager.class) + ".component", new Component(Manager.class) );
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+
+      Lifecycle.beginCall();
+      identity = new TestIdentity();
+      Contexts.getSessionContext().set( Seam.getComponentName(Identity.class), identity );
+      checked = new ArrayList<Object>();
+      Contexts.getEventContext().set("checked", checked);
+
+      resolver = new RuleBasedPermissionResolver();
+      resolver.setSecurityRules(ruleBase);
+      assert resolver.create();
+   }
+
+   @AfterMethod
+   public void cleanup()
+   {
+      resolver.getSecurityContext().dispose();
+      Lifecycle.endCall();
+      ServletLifecycle.endApplication();
+   }
+
+   /**
+    * A String target is cached by value, any other target by identity
+    */
+   @Test
+   public void testCachedChecks()
+   {
+      resolver.setCachePermissionChecks(true);
+
+      assert !resolver.hasPermission( new String("document"), "read" );
+      assert !resolver.hasPermission( new String("document"), "read" );
+      assert checked.size() == 1;
+      assert !resolver.hasPermission( "document", "write" );
+      assert checked.size() == 2;
+
+      Integer number = new Integer(2);
+      assert resolver.hasPermission(number, "read");
+      assert resolver.hasPermission(number, "read");
+      assert checked.size() == 3;
+      assert resolver.hasPermission( new Integer(2), "read" );
+      assert checked.size() == 4;
+
+      // the cache only lives as long as the request
+      Lifecycle.endCall();
+      Lifecycle.beginCall();
+      Contexts.getSessionContext().set( Seam.getComponentName(Identity.class), identity );
+      Contexts.getEventContext().set("checked", checked);
+      assert resolver.hasPermission(number, "read");
+      assert checked.size() == 5;
+   }
+
+   @Test
+   public void testRoleChange()
+   {
+      resolver.setCachePermissionChecks(true);
+
+      assert !resolver.hasPermission("document", "read");
+      identity.addRole("reader");
+      assert resolver.hasPermission("document", "read");
+      identity.removeRole("reader");
+      assert !resolver.hasPermission("document", "read");
+      assert checked.size() == 3;
+   }
+
+   @Test
+   public void testBatchChecks()
+   {
+      resolver.setBatchChecks(true);
+      resolver.setCachePermissionChecks(true);
+
+      List<Integer> numbers = new ArrayList<Integer>();
+      for (int i = 0; i < 6; i++)
+      {
+         numbers.add( new Integer(i) );
+      }
+      // some results are already cached
+      assert resolver.hasPermission( numbers.get(1), "read" ) == false;
+      assert resolver.hasPermission( numbers.get(4), "read" );
+
+      Set<Object> targets = new LinkedHashSet<Object>(numbers);
+      resolver.filterSetByAction(targets, "read");
+      assert new ArrayList<Object>(targets).equals( Arrays.asList(1, 3, 5) );
+      assert checked.size() == 6;
+
+      // a single target is checked on its own
+      targets = new LinkedHashSet<Object>( Arrays.asList( numbers.get(0) ) );
+      resolver.filterSetByAction(targets, "read");
+      assert targets.isEmpty();
+      assert checked.size() == 6;
+   }
+
+   @Test
+   public void testConditionalRoleKeepsFacts()
+   {
+      assert resolver.hasPermission("profile", "view");
+      assert resolver.checkConditionalRole( "owner", identity.getPrincipal(), "own" );
+      // the principal is still a fact, although the context is not synchronized again
+      assert resolver.hasPermission("profile", "view");
+   }
+}
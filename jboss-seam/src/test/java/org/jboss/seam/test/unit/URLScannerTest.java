@@ -0,0 +1,382 @@
+package org.jboss.seam.test.unit;
+
+import static java.lang.annotation.RetentionPolicy.CLASS;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.servlet.ServletContext;
+
+import org.jboss.seam.deployment.AnnotationDeploymentHandler;
+import org.jboss.seam.deployment.ClassDescriptor;
+import org.jboss.seam.deployment.DeploymentHandler;
+import org.jboss.seam.deployment.DeploymentStrategy;
+import org.jboss.seam.deployment.URLScanner;
+import org.jboss.seam.mock.MockServletContext;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class URLScannerTest
+{
+   @Retention(RUNTIME)
+   public @interface Scanned {}
+
+   @Retention(RUNTIME)
+   public @interface Inner
+   {
+      String value();
+   }
+
+   @Retention(RUNTIME)
+   public @interface Outer
+   {
+      Inner[] value();
+      Class<?> type() default Object.class;
+      ElementType kind() default ElementType.TYPE;
+      int[] numbers() default {};
+   }
+
+   @Retention(CLASS)
+   public @interface Invisible {}
+
+   @Scanned
+   @Invisible
+   @Outer(value={ @Inner("a"), @Inner("b") }, type=String.class, kind=ElementType.FIELD, numbers={1, 2})
+   @Deprecated
+   public static class Annotated
+   {
+      //long and double constants take two constant pool slots
+      public static final long LONG = 1L << 40;
+      public static final double DOUBLE = Math.PI;
+      public long total = LONG + 2;
+      public double ratio = DOUBLE / 3;
+      public float scale = 1.5f;
+      public String text = "text";
+
+      @Inner("field")
+      public Object field;
+
+      @Inner("method")
+      public long sum(long value)
+      {
+         return value + total;
+      }
+   }
+
+   public static class Plain
+   {
+      @Scanned
+      public Object field;
+
+      @Scanned
+      public void method() {}
+   }
+
+   @Scanned
+   public static class Added {}
+
+   public static class Reader extends URLScanner
+   {
+      public Reader(DeploymentStrategy deploymentStrategy)
+      {
+         super(deploymentStrategy);
+      }
+
+      public static Set<String> read(Class<?> clazz) throws IOException
+      {
+         return read( clazz, clazz.getClassLoader() );
+      }
+
+      public static Set<String> read(Class<?> clazz, ClassLoader classLoader) throws IOException
+      {
+         return loadAnnotationTypes( getFileName(clazz), classLoader );
+      }
+
+      public void scan(File archive)
+      {
+         handle( new HashSet<String>( Arrays.asList( archive.getPath() ) ) );
+      }
+   }
+
+   public static class RecordingScanner extends Reader
+   {
+      private Set<String> names = new HashSet<String>();
+
+      public RecordingScanner(DeploymentStrategy deploymentStrategy)
+      {
+         super(deploymentStrategy);
+      }
+
+      @Override
+      protected boolean handle(String name)
+      {
+         names.add(name);
+         return super.handle(name);
+      }
+   }
+
+   private File tempDir;
+   private File archive;
+
+   @BeforeMethod
+   public void createTempDir() throws IOException
+   {
+      tempDir = File.createTempFile("scan", "");
+      tempDir.delete();
+      tempDir.mkdir();
+      archive = new File(tempDir, "components.jar");
+   }
+
+   @AfterMethod
+   public void deleteTempDir()
+   {
+      for ( File file: tempDir.listFiles() )
+      {
+         file.delete();
+      }
+      tempDir.delete();
+   }
+
+   @Test
+   public void testReadAnnotationTypes() throws Exception
+   {
+      Set<String> annotationTypes = Reader.read(Annotated.class);
+      assert annotationTypes.equals( getAnnotationTypes(Annotated.class) );
+      assert annotationTypes.contains( Scanned.class.getName() );
+      assert annotationTypes.contains( Outer.class.getName() );
+      assert annotationTypes.contains( Deprecated.class.getName() );
+      //nested annotations, class retention and member annotations are not class annotations
+      assert !annotationTypes.contains( Inner.class.getName() );
+      assert !annotationTypes.contains( Invisible.class.getName() );
+
+      assert Reader.read(Plain.class).isEmpty();
+   }
+
+   @Test
+   public void testReadNewerConstantPool() throws Exception
+   {
+      //a class file with method handle and invokedynamic constants, if the JDK has one
+      Class<?> clazz;
+      try
+      {
+         clazz = Class.forName("java.util.function.Function");
+      }
+      catch (ClassNotFoundException cnfe)
+      {
+         return;
+      }
+      InputStream stream = ClassLoader.getSystemResourceAsStream( getFileName(clazz) );
+      if (stream==null)
+      {
+         return;
+      }
+      stream.close();
+      assert Reader.read( clazz, ClassLoader.getSystemClassLoader() ).equals( getAnnotationTypes(clazz) );
+   }
+
+   @Test
+   public void testReadTruncatedClassFile() throws Exception
+   {
+      byte[] bytes = getBytes(Annotated.class);
+      writeArchive( Arrays.copyOf(bytes, bytes.length / 2), Annotated.class );
+      URLClassLoader classLoader = new URLClassLoader( new URL[] { archive.toURI().toURL() }, null );
+      try
+      {
+         Reader.read(Annotated.class, classLoader);
+         assert false : "truncated class file was read";
+      }
+      catch (IOException ioe)
+      {
+         //expected
+      }
+   }
+
+   @Test
+   public void testScanArchive() throws Exception
+   {
+      writeArchive(Annotated.class, Plain.class);
+      AnnotationDeploymentHandler handler = scan( new Reader( new Strategy() ) );
+      assert handler.getClasses().size() == 1;
+      assert handler.getClasses().iterator().next().getClazz() == Annotated.class;
+      assert new File(tempDir, "seam-scan-index.ser").isFile();
+
+      //the second scan reads the entries from the index
+      handler = scan( new Reader( new Strategy() ) );
+      assert handler.getClasses().size() == 1;
+   }
+
+   @Test
+   public void testCorruptIndex() throws Exception
+   {
+      writeArchive(Annotated.class, Plain.class);
+      File indexFile = new File(tempDir, "seam-scan-index.ser");
+      FileOutputStream out = new FileOutputStream(indexFile);
+      out.write( new byte[] { 1, 2, 3, 4, 5, 6, 7 } );
+      out.close();
+
+      AnnotationDeploymentHandler handler = scan( new Reader( new Strategy() ) );
+      assert handler.getClasses().size() == 1;
+      assert indexFile.length() > 7;
+   }
+
+   @Test
+   public void testStaleIndex() throws Exception
+   {
+      writeArchive(Annotated.class, Plain.class);
+      assert scan( new Reader( new Strategy() ) ).getClasses().size() == 1;
+
+      long lastModified = archive.lastModified();
+      writeArchive(Annotated.class, Plain.class, Added.class);
+      archive.setLastModified(lastModified + 2000);
+
+      Set<Class<?>> classes = new HashSet<Class<?>>();
+      for ( ClassDescriptor classDescriptor: scan( new Reader( new Strategy() ) ).getClasses() )
+      {
+         classes.add( classDescriptor.getClazz() );
+      }
+      assert classes.equals( new HashSet<Class<?>>( Arrays.asList(Annotated.class, Added.class) ) );
+   }
+
+   @Test
+   public void testOverriddenHandle() throws Exception
+   {
+      writeArchive(Annotated.class, Plain.class);
+      RecordingScanner scanner = new RecordingScanner( new Strategy() );
+      AnnotationDeploymentHandler handler = scan(scanner);
+      assert scanner.names.contains( getFileName(Annotated.class) );
+      assert scanner.names.contains( getFileName(Plain.class) );
+      assert handler.getClasses().size() == 1;
+   }
+
+   private AnnotationDeploymentHandler scan(Reader scanner)
+   {
+      scanner.scan(archive);
+      return (AnnotationDeploymentHandler) scanner.getDeploymentStrategy().getDeploymentHandlers().get(AnnotationDeploymentHandler.NAME);
+   }
+
+   private void writeArchive(Class<?>... classes) throws IOException
+   {
+      ZipOutputStream out = new ZipOutputStream( new FileOutputStream(archive) );
+      try
+      {
+         for (Class<?> clazz: classes)
+         {
+            out.putNextEntry( new ZipEntry( getFileName(clazz) ) );
+            out.write( getBytes(clazz) );
+            out.closeEntry();
+         }
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   private void writeArchive(byte[] bytes, Class<?> clazz) throws IOException
+   {
+      ZipOutputStream out = new ZipOutputStream( new FileOutputStream(archive) );
+      try
+      {
+         out.putNextEntry( new ZipEntry( getFileName(clazz) ) );
+         out.write(bytes);
+         out.closeEntry();
+      }
+      finally
+      {
+         out.close();
+      }
+   }
+
+   private static String getFileName(Class<?> clazz)
+   {
+      return clazz.getName().replace('.', '/') + ".class";
+   }
+
+   private static byte[] getBytes(Class<?> clazz) throws IOException
+   {
+      InputStream stream = clazz.getClassLoader().getResourceAsStream( getFileName(clazz) );
+      try
+      {
+         ByteArrayOutputStream out = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         int read;
+         while ( (read = stream.read(buffer)) != -1 )
+         {
+            out.write(buffer, 0, read);
+         }
+         return out.toByteArray();
+      }
+      finally
+      {
+         stream.close();
+      }
+   }
+
+   private static Set<String> getAnnotationTypes(Class<?> clazz)
+   {
+      Set<String> names = new HashSet<String>();
+      for ( Annotation annotation: clazz.getAnnotations() )
+      {
+         names.add( annotation.annotationType().getName() );
+      }
+      return names;
+   }
+
+   private class Strategy extends DeploymentStrategy
+   {
+      private MockServletContext servletContext = new MockServletContext();
+      private Map<String, DeploymentHandler> deploymentHandlers = new HashMap<String, DeploymentHandler>();
+
+      Strategy()
+      {
+         servletContext.setAttribute("javax.servlet.context.tempdir", tempDir);
+         List<String> annotationTypes = Arrays.asList( Scanned.class.getName() );
+         deploymentHandlers.put( AnnotationDeploymentHandler.NAME, new AnnotationDeploymentHandler( annotationTypes, getClassLoader() ) );
+      }
+
+      @Override
+      public void scan() {}
+
+      @Override
+      public ClassLoader getClassLoader()
+      {
+         return URLScannerTest.class.getClassLoader();
+      }
+
+      @Override
+      public ServletContext getServletContext()
+      {
+         return servletContext;
+      }
+
+      @Override
+      public Map<String, DeploymentHandler> getDeploymentHandlers()
+      {
+         return deploymentHandlers;
+      }
+
+      @Override
+      protected String getDeploymentHandlersKey()
+      {
+         return "org.jboss.seam.test.unit.deploymentHandlers";
+      }
+   }
+}
@@ -0,0 +1,197 @@
+package org.jboss.seam.test.unit;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.seam.Component;
+import org.jboss.seam.ScopeType;
+import org.jboss.seam.Seam;
+import org.jboss.seam.annotations.Name;
+import org.jboss.seam.annotations.Scope;
+import org.jboss.seam.annotations.async.Duration;
+import org.jboss.seam.annotations.async.IntervalDuration;
+import org.jboss.seam.annotations.intercept.BypassInterceptors;
+import org.jboss.seam.async.VirtualThreadDispatcher;
+import org.jboss.seam.contexts.ApplicationContext;
+import org.jboss.seam.contexts.Context;
+import org.jboss.seam.contexts.Lifecycle;
+import org.jboss.seam.contexts.ServletLifecycle;
+import org.jboss.seam.core.Init;
+import org.jboss.seam.core.Manager;
+import org.jboss.seam.mock.MockServletContext;
+import org.jboss.seam.servlet.ServletApplicationMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Runs on the pool of platform threads unless the JVM
+ * supports virtual threads
+ */
+public class VirtualThreadDispatcherTest
+{
+   private MockServletContext servletContext;
+   private VirtualThreadDispatcher dispatcher;
+   private Component first;
+   private Component second;
+   
+   @BeforeMethod
+   public void setup()
+   {
+      servletContext = new MockServletContext();
+      ServletLifecycle.beginApplication(servletContext);
+      Context appContext = new ApplicationContext( new ServletApplicationMap(servletContext) );
+      installComponent(appContext, Manager.class);
+      appContext.set( Seam.getComponentName(Init.class), new Init() );
+      first = new Component(Worker.class, "firstWorker");
+      second = new Component(Worker.class, "secondWorker");
+      appContext.set( "firstWorker.component", first );
+      appContext.set( "secondWorker.component", second );
+      
+      Worker.release = new CountDownLatch(1);
+      Worker.blocked = new CountDownLatch(1);
+      Worker.interrupted = new CountDownLatch(1);
+      Worker.runs.set(0);
+      Worker.running.set(0);
+      Worker.overlaps.set(0);
+      
+      dispatcher = new VirtualThreadDispatcher();
+      
+      // calls are scheduled from a request
+      Lifecycle.beginCall();
+   }
+   
+   @AfterMethod
+   public void cleanup()
+   {
+      Lifecycle.endCall();
+      Worker.release.countDown();
+      dispatcher.destroy();
+      ServletLifecycle.endApplication();
+   }
+   
+   @Test
+   public void testCallsOverTheLimitDoNotHoldThreads() throws Exception
+   {
+      dispatcher.setThreadPoolSize(2);
+      dispatcher.setMaxConcurrentCallsPerComponent(1);
+      dispatcher.startup();
+      
+      Future blocking = dispatcher.scheduleInvocation( invocation("block"), first );
+      assert Worker.blocked.await(5, TimeUnit.SECONDS);
+      Future waiting = dispatcher.scheduleInvocation( invocation("block"), first );
+      
+      // another component still gets the second thread
+      dispatcher.scheduleInvocation( invocation("count"), second ).get(5, TimeUnit.SECONDS);
+      assert !waiting.isDone();
+      
+      Worker.release.countDown();
+      blocking.get(5, TimeUnit.SECONDS);
+      waiting.get(5, TimeUnit.SECONDS);
+      assert Worker.runs.get() == 3;
+   }
+   
+   @Test
+   public void testRepeatingCallsDoNotOverlap() throws Exception
+   {
+      dispatcher.setThreadPoolSize(2);
+      dispatcher.startup();
+      
+      Future future = dispatcher.scheduleInvocation( invocation("slowTick", 0l, 5l), first );
+      Thread.sleep(200);
+      future.cancel(false);
+      
+      assert Worker.runs.get() > 1;
+      assert Worker.overlaps.get() == 0;
+   }
+   
+   @Test
+   public void testCancelInterruptsRunningCall() throws Exception
+   {
+      dispatcher.startup();
+      
+      Future future = dispatcher.scheduleInvocation( invocation("blockingTick", 0l, 1000l), first );
+      assert Worker.blocked.await(5, TimeUnit.SECONDS);
+      assert future.cancel(true);
+      assert Worker.interrupted.await(5, TimeUnit.SECONDS);
+      assert future.isCancelled();
+   }
+   
+   private MockInvocationContext invocation(String methodName, final Object... parameters) throws Exception
+   {
+      final Method method = parameters.length==0 ? 
+               Worker.class.getMethod(methodName) : 
+               Worker.class.getMethod(methodName, Long.class, Long.class);
+      return new MockInvocationContext()
+      {
+         @Override
+         public Method getMethod()
+         {
+            return method;
+         }
+         
+         @Override
+         public Object[] getParameters()
+         {
+            return parameters;
+         }
+      };
+   }
+   
+   private void installComponent(Context appContext, Class clazz)
+   {
+      appContext.set( Seam.getComponentName(clazz) + ".component", new Component(clazz) );
+   }
+   
+   @Name("worker")
+   @Scope(ScopeType.APPLICATION)
+   @BypassInterceptors
+   public static class Worker
+   {
+      static volatile CountDownLatch blocked;
+      static volatile CountDownLatch release;
+      static volatile CountDownLatch interrupted;
+      static final AtomicInteger runs = new AtomicInteger();
+      static final AtomicInteger running = new AtomicInteger();
+      static final AtomicInteger overlaps = new AtomicInteger();
+      
+      public void block() throws InterruptedException
+      {
+         runs.incrementAndGet();
+         blocked.countDown();
+         release.await(5, TimeUnit.SECONDS);
+      }
+      
+      public void count()
+      {
+         runs.incrementAndGet();
+      }
+      
+      public void slowTick(@Duration Long duration, @IntervalDuration Long interval) throws InterruptedException
+      {
+         if ( running.incrementAndGet()>1 )
+         {
+            overlaps.incrementAndGet();
+         }
+         runs.incrementAndGet();
+         Thread.sleep(20);
+         running.decrementAndGet();
+      }
+      
+      public void blockingTick(@Duration Long duration, @IntervalDuration Long interval)
+      {
+         blocked.countDown();
+         try
+         {
+            release.await(5, TimeUnit.SECONDS);
+         }
+         catch (InterruptedException ie)
+         {
+            interrupted.countDown();
+         }
+      }
+   }
+}
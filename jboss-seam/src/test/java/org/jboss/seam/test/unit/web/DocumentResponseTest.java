@@ -0,0 +1,166 @@
+package org.jboss.seam.test.unit.web;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.seam.document.ByteArrayDocumentData;
+import org.jboss.seam.document.DocumentData;
+import org.jboss.seam.document.DocumentData.DocumentType;
+import org.jboss.seam.document.DocumentResponse;
+import org.jboss.seam.mock.EnhancedMockHttpServletRequest;
+import org.jboss.seam.mock.EnhancedMockHttpServletResponse;
+import org.jboss.seam.mock.MockHttpSession;
+import org.jboss.seam.web.ConditionalAbstractResource;
+import org.testng.annotations.Test;
+
+public class DocumentResponseTest
+{
+   private static final byte[] CONTENT = "0123456789".getBytes();
+
+   private DocumentData documentData = new ByteArrayDocumentData("document", new DocumentType("txt", "text/plain"), CONTENT);
+
+   @Test
+   public void testFullResponse() throws Exception
+   {
+      EnhancedMockHttpServletResponse response = send(request());
+
+      assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
+      assertEquals(response.getHeader("Accept-Ranges"), "bytes");
+      assertEquals(response.getContentLength(), CONTENT.length);
+      assertEquals(response.getContentAsByteArray(), CONTENT);
+      assert response.getHeader(ConditionalAbstractResource.HEADER_ETAG) != null;
+   }
+
+   @Test
+   public void testNotModified() throws Exception
+   {
+      String entityTag = send(request()).getHeader(ConditionalAbstractResource.HEADER_ETAG);
+
+      EnhancedMockHttpServletRequest request = request();
+      request.addHeader(ConditionalAbstractResource.HEADER_IF_NONE_MATCH, entityTag);
+      EnhancedMockHttpServletResponse response = send(request);
+      assertEquals(response.getStatus(), HttpServletResponse.SC_NOT_MODIFIED);
+      assertEquals(response.getContentAsByteArray().length, 0);
+
+      // the entity tag changes with the id of the document
+      request = request();
+      request.addHeader(ConditionalAbstractResource.HEADER_IF_NONE_MATCH, entityTag);
+      response = new EnhancedMockHttpServletResponse();
+      new DocumentResponse().send(request, response, "other", documentData);
+      assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
+   }
+
+   @Test
+   public void testRanges() throws Exception
+   {
+      assertRange("bytes=2-5", 2, 5);
+      assertRange("bytes=7-", 7, 9);
+      assertRange("bytes=-3", 7, 9);
+      assertRange("bytes=-20", 0, 9);
+      assertRange("bytes=8-100", 8, 9);
+      assertRange("bytes= 0-0", 0, 0);
+   }
+
+   @Test
+   public void testIgnoredRanges() throws Exception
+   {
+      // several ranges, reversed ranges and other units are answered with the whole document
+      for (String range : new String[] { "bytes=0-1,3-4", "bytes=5-2", "bytes=abc", "bytes=3", "items=0-1" })
+      {
+         EnhancedMockHttpServletRequest request = request();
+         request.addHeader("Range", range);
+         EnhancedMockHttpServletResponse response = send(request);
+         assertEquals(response.getStatus(), HttpServletResponse.SC_OK, range);
+         assertEquals(response.getContentAsByteArray(), CONTENT, range);
+         assertNull(response.getHeader("Content-Range"), range);
+      }
+   }
+
+   @Test
+   public void testUnsatisfiableRange() throws Exception
+   {
+      for (String range : new String[] { "bytes=10-", "bytes=20-30", "bytes=-0" })
+      {
+         EnhancedMockHttpServletRequest request = request();
+         request.addHeader("Range", range);
+         EnhancedMockHttpServletResponse response = send(request);
+         assertEquals(response.getStatus(), HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE, range);
+         assertEquals(response.getHeader("Content-Range"), "bytes */10", range);
+         assertEquals(response.getContentAsByteArray().length, 0, range);
+      }
+   }
+
+   @Test
+   public void testIfRange() throws Exception
+   {
+      EnhancedMockHttpServletResponse response = send(request());
+      String entityTag = response.getHeader(ConditionalAbstractResource.HEADER_ETAG);
+      long lastModified = documentData.getLastModified() / 1000 * 1000;
+
+      // the range is only sent if the document is unchanged
+      assertIfRange(entityTag, HttpServletResponse.SC_PARTIAL_CONTENT);
+      assertIfRange("\"changed\"", HttpServletResponse.SC_OK);
+      assertIfRange("W/\"changed\"", HttpServletResponse.SC_OK);
+      assertIfRange(lastModified, HttpServletResponse.SC_PARTIAL_CONTENT);
+      assertIfRange(lastModified - 1000, HttpServletResponse.SC_OK);
+   }
+
+   @Test
+   public void testUnknownSize() throws Exception
+   {
+      DocumentData unknownSize = new DocumentData("document", new DocumentType("txt", "text/plain"))
+      {
+         @Override
+         public void writeDataToStream(OutputStream stream) throws IOException
+         {
+            stream.write(CONTENT);
+         }
+      };
+      EnhancedMockHttpServletRequest request = request();
+      request.addHeader("Range", "bytes=2-5");
+      EnhancedMockHttpServletResponse response = new EnhancedMockHttpServletResponse();
+      new DocumentResponse().send(request, response, "id", unknownSize);
+
+      assertEquals(response.getStatus(), HttpServletResponse.SC_OK);
+      assertNull(response.getHeader("Accept-Ranges"));
+      assertEquals(response.getContentAsByteArray(), CONTENT);
+   }
+
+   private void assertRange(String range, int first, int last) throws Exception
+   {
+      EnhancedMockHttpServletRequest request = request();
+      request.addHeader("Range", range);
+      EnhancedMockHttpServletResponse response = send(request);
+
+      assertEquals(response.getStatus(), HttpServletResponse.SC_PARTIAL_CONTENT, range);
+      assertEquals(response.getHeader("Content-Range"), "bytes " + first + "-" + last + "/10", range);
+      assertEquals(response.getContentLength(), last - first + 1, range);
+      assertEquals(response.getContentAsByteArray(), Arrays.copyOfRange(CONTENT, first, last + 1), range);
+   }
+
+   private void assertIfRange(Object ifRange, int status) throws Exception
+   {
+      EnhancedMockHttpServletRequest request = request();
+      request.addHeader("Range", "bytes=2-5");
+      request.addHeader("If-Range", ifRange);
+      assertEquals(send(request).getStatus(), status, ifRange.toString());
+   }
+
+   private EnhancedMockHttpServletRequest request()
+   {
+      return new EnhancedMockHttpServletRequest( new MockHttpSession() );
+   }
+
+   private EnhancedMockHttpServletResponse send(EnhancedMockHttpServletRequest request) throws Exception
+   {
+      EnhancedMockHttpServletResponse response = new EnhancedMockHttpServletResponse();
+      new DocumentResponse().send(request, response, "id", documentData);
+      return response;
+   }
+}
@@ -3,10 +3,12 @@ package org.jboss.seam.test.unit.web;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 
+import java.io.InputStream;
 import java.util.Map;
 
 import org.jboss.seam.mock.EnhancedMockHttpServletRequest;
 import org.jboss.seam.web.MultipartRequestImpl;
+import org.jboss.seam.web.UploadBudget;
 import org.testng.annotations.Test;
 
 public class MultipartRequestImplTest
@@ -79,6 +81,55 @@ public class MultipartRequestImplTest
       }
    }
 
+   @Test
+   public void testParseRequestFileSizeThreshold() throws Throwable
+   {
+      String boundary = "boundary10";
+      StringBuffer file = appendPaddingValue(new StringBuffer(), 20000);
+
+      String data =
+         HYPHENS + boundary + CRLF +
+         "Content-Disposition: form-data; name=\"small\"; filename=\"small.txt\"" + CRLF +
+         CRLF +
+         "bar" + CRLF +
+         HYPHENS + boundary + CRLF +
+         "Content-Disposition: form-data; name=\"large\"; filename=\"large.txt\"" + CRLF +
+         CRLF +
+         file + CRLF +
+         HYPHENS + boundary + HYPHENS;
+
+      EnhancedMockHttpServletRequest req = new EnhancedMockHttpServletRequest();
+      req.setContent(data.getBytes("UTF-8"));
+      req.setContentType("multipart/form-data; boundary=" + boundary);
+      UploadBudget budget = new UploadBudget(0);
+      MultipartRequestImpl r = new MultipartRequestImpl(req, false, 0, 1000, 0, budget);
+
+      assertEquals(new String(r.getFileBytes("small"), "UTF-8"), "bar");
+      // each call returns a copy of the data held in memory
+      r.getFileBytes("small")[0] = 'c';
+      assertEquals(new String(r.getFileBytes("small"), "UTF-8"), "bar");
+      InputStream small = r.getFileInputStream("small");
+      assertEquals(small.read(), 'b');
+      small.close();
+      assertEquals(r.getFileSize("large"), 20000);
+      InputStream in = r.getFileInputStream("large");
+      byte[] large = new byte[20000];
+      int read = 0;
+      while (read < large.length)
+      {
+         read += in.read(large, read, large.length - read);
+      }
+      assert in.read() == -1;
+      in.close();
+      assertEquals(new String(large, "UTF-8"), file.toString());
+
+      assertEquals(budget.getSpilledFiles(), 1);
+      assertEquals(budget.getSpilledBytes(), 20000);
+      assertEquals(budget.getMemoryInUse(), 3);
+      r.release();
+      assertEquals(budget.getMemoryInUse(), 0);
+   }
+
    private static StringBuffer appendPaddingValue(StringBuffer buffer, int length)
    {
       for (int i = 0; i < length; i++)
@@ -1,9 +1,12 @@
 package org.jboss.seam.test.unit.web;
 
+import java.util.Arrays;
+
 import org.testng.annotations.Test;
 
 import org.jboss.seam.web.Pattern;
 import org.jboss.seam.web.Rewrite;
+import org.jboss.seam.web.RewriteRules;
 import org.jboss.seam.web.ServletMapping;
 
 import static org.testng.Assert.*;
@@ -111,6 +114,29 @@ public class RewriteTest
     }
     
     
+    @Test
+    public void testRules()
+        throws Exception
+    {
+        RewriteRules rules = new RewriteRules(Arrays.asList(
+                new Pattern("/foo.seam", "/foo/{id}"),
+                new Pattern("/any.seam", "/{page}/{id}"),
+                new Pattern("/bar.seam", "/bar/{id}"),
+                new Pattern("/bar.seam", "/bar")),
+                new ServletMapping("*.seam"));
+
+        assertEquals(rules.matchIncoming("/foo/1").rewrite(), "/foo.seam?id=1");
+        assertEquals(rules.matchIncoming("/bar/1").rewrite(), "/any.seam?page=bar&id=1");
+        assertEquals(rules.matchIncoming("/baz/1?x=y").rewrite(), "/any.seam?x=y&page=baz&id=1");
+        assertEquals(rules.matchIncoming("/bar").rewrite(), "/bar.seam");
+        assertNull(rules.matchIncoming("/baz"));
+        
+        assertEquals(rules.matchOutgoing("/foo.seam?id=1").rewrite(), "/foo/1");
+        assertEquals(rules.matchOutgoing("/bar.seam?id=1").rewrite(), "/bar/1");
+        assertEquals(rules.matchOutgoing("/bar.seam?x=y").rewrite(), "/bar?x=y");
+        assertNull(rules.matchOutgoing("/baz.seam?id=1"));
+    }
+    
     public void testNoMatchIn(Pattern pattern, String incoming) {
         assertNull(pattern.matchIncoming(incoming), incoming);
     }